@@ -20,6 +20,8 @@ import java.io.DataInput;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import net.fec.openrq.DataUtils.SourceBlockSupplier;
 import net.fec.openrq.decoder.DataDecoder;
@@ -46,6 +48,52 @@ public final class ArrayDataDecoder implements DataDecoder {
      */
     static ArrayDataDecoder newDecoder(FECParameters fecParams, int symbOver) {
 
+        return newDecoder(fecParams, symbOver, null);
+    }
+
+    /**
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbOver
+     *            Repair symbol overhead (must be non-negative)
+     * @param executor
+     *            The executor that runs the decoding operations, or {@code null} if source blocks are decoded by the
+     *            threads that put the encoding packets
+     * @return a data decoder object that decodes source data into an array of bytes
+     * @exception NullPointerException
+     *                If {@code fecParams} is {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || extraSymbols < 0}
+     */
+    static ArrayDataDecoder newDecoder(FECParameters fecParams, int symbOver, Executor executor) {
+
+        return newDecoder(fecParams, symbOver, executor, null);
+    }
+
+    /**
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbOver
+     *            Repair symbol overhead (must be non-negative)
+     * @param executor
+     *            The executor that runs the decoding operations, or {@code null} if source blocks are decoded by the
+     *            threads that put the encoding packets
+     * @param workspace
+     *            The workspace whose memory is reused by the decoding operations, or {@code null} if each decoding
+     *            operation allocates its own memory
+     * @return a data decoder object that decodes source data into an array of bytes
+     * @exception NullPointerException
+     *                If {@code fecParams} is {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || extraSymbols < 0}
+     */
+    static ArrayDataDecoder newDecoder(
+        FECParameters fecParams,
+        int symbOver,
+        Executor executor,
+        DecoderWorkspace workspace)
+    {
+
         // throws NullPointerException if null fecParams
         if (fecParams.dataLength() > Integer.MAX_VALUE) {
             throw new IllegalArgumentException("data length must be at most 2^^31 - 1");
@@ -55,7 +103,7 @@ public final class ArrayDataDecoder implements DataDecoder {
         }
 
         final byte[] dataArray = new byte[fecParams.dataLengthAsInt()];
-        return new ArrayDataDecoder(dataArray, fecParams, symbOver);
+        return new ArrayDataDecoder(dataArray, fecParams, symbOver, executor, workspace);
     }
 
 
@@ -63,11 +111,25 @@ public final class ArrayDataDecoder implements DataDecoder {
     private final FECParameters fecParams;
     private final ImmutableList<SourceBlockDecoder> srcBlockDecoders;
 
+    private final Executor executor; // null if decoding in the caller thread
+    private final DecoderWorkspace workspace; // null if decodings allocate their own memory
+    private final Object decodingsLock = new Object();
+    private int pendingDecodings = 0; // guarded by decodingsLock
+    private Throwable decodingFailure = null; // guarded by decodingsLock
+
 
-    private ArrayDataDecoder(byte[] dataArray, FECParameters fecParams, final int symbOver) {
+    private ArrayDataDecoder(
+        byte[] dataArray,
+        FECParameters fecParams,
+        final int symbOver,
+        Executor executor,
+        DecoderWorkspace workspace)
+    {
 
         this.dataArray = dataArray;
         this.fecParams = fecParams;
+        this.executor = executor;
+        this.workspace = workspace;
         this.srcBlockDecoders = DataUtils.partitionSourceData(
             fecParams,
             SourceBlockDecoder.class, new SourceBlockSupplier<SourceBlockDecoder>() {
@@ -142,6 +204,93 @@ public final class ArrayDataDecoder implements DataDecoder {
         return srcBlockDecoders;
     }
 
+    /**
+     * Waits until all the decoding operations submitted to the executor of this decoder are finished, or until the
+     * timeout elapses. Returns immediately if this decoder has no executor.
+     * <p>
+     * Use method {@link #isDataDecoded()} to check if the data is complete after the decoding operations are finished,
+     * since a decoding operation may fail, or some source blocks may still need more encoding packets.
+     * <p>
+     * If a decoding operation threw an exception or error in the executor, it is thrown by this method once all
+     * decoding operations are finished; only the first one is kept, and it is cleared after being thrown.
+     * 
+     * @param timeout
+     *            The maximum time to wait
+     * @param unit
+     *            The time unit of the {@code timeout} argument
+     * @return {@code true} if all decoding operations are finished, or {@code false} if the timeout elapsed before
+     * @throws InterruptedException
+     *             If the current thread is interrupted while waiting
+     * @throws RuntimeException
+     *             If a finished decoding operation threw this exception in the executor
+     * @throws Error
+     *             If a finished decoding operation threw this error in the executor
+     * @see OpenRQ#newDecoder(FECParameters, int, Executor)
+     */
+    public boolean awaitDecodings(long timeout, TimeUnit unit) throws InterruptedException {
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (decodingsLock) {
+            while (pendingDecodings > 0) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(decodingsLock, remaining);
+            }
+
+            final Throwable failure = decodingFailure;
+            decodingFailure = null;
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException)failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error)failure;
+            }
+            return true;
+        }
+    }
+
+    // null if source blocks are decoded in the thread that puts the encoding packets
+    Executor executor() {
+
+        return executor;
+    }
+
+    // null if each decoding operation allocates its own memory
+    DecoderWorkspace workspace() {
+
+        return workspace;
+    }
+
+    // called by a source block decoder before submitting a decoding operation to the executor
+    void decodingSubmitted() {
+
+        synchronized (decodingsLock) {
+            pendingDecodings++;
+        }
+    }
+
+    // called by a source block decoder when a submitted decoding operation throws, before it finishes
+    void decodingFailed(Throwable failure) {
+
+        synchronized (decodingsLock) {
+            if (decodingFailure == null) {
+                decodingFailure = failure;
+            }
+        }
+    }
+
+    // called by a source block decoder after a submitted decoding operation finishes or is rejected
+    void decodingFinished() {
+
+        synchronized (decodingsLock) {
+            if (--pendingDecodings == 0) {
+                decodingsLock.notifyAll();
+            }
+        }
+    }
+
     /**
      * Returns an array of bytes containing the source data. Use method {@link #isDataDecoded()} to check if the data is
      * complete.
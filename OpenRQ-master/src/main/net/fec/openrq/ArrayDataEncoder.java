@@ -16,7 +16,15 @@
 package net.fec.openrq;
 
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
 
 import net.fec.openrq.DataUtils.SourceBlockSupplier;
 import net.fec.openrq.encoder.DataEncoder;
@@ -139,6 +147,65 @@ public final class ArrayDataEncoder implements DataEncoder {
         return srcBlockEncoders;
     }
 
+    /**
+     * Generates the intermediate symbols of all source blocks concurrently, using the provided executor.
+     * <p>
+     * The repair symbols of a source block are generated from its intermediate symbols, which are otherwise generated
+     * when the first repair symbol of the source block is requested. Since source blocks are independent, this method
+     * submits one task per source block to the executor, so that the intermediate symbols of large data objects are
+     * generated across multiple threads before any repair symbol is requested. This method waits until all tasks are
+     * finished; source blocks whose intermediate symbols were already generated are skipped. If a task throws, or if
+     * the current thread is interrupted, the unfinished tasks are cancelled before the exception is thrown.
+     * 
+     * @param executor
+     *            The executor that runs the tasks
+     * @throws InterruptedException
+     *             If the current thread is interrupted while waiting
+     * @exception NullPointerException
+     *                If {@code executor} is {@code null}
+     */
+    public void generateIntermediateSymbols(Executor executor) throws InterruptedException {
+
+        final CompletionService<Void> service = new ExecutorCompletionService<>(Objects.requireNonNull(executor));
+        final List<Future<Void>> futures = new ArrayList<>(srcBlockEncoders.size());
+        for (SourceBlockEncoder sbEnc : srcBlockEncoders) {
+            final ArraySourceBlockEncoder arraySBEnc = (ArraySourceBlockEncoder)sbEnc;
+            futures.add(service.submit(new Callable<Void>() {
+
+                @Override
+                public Void call() {
+
+                    arraySBEnc.generateIntermediateSymbolsOnce();
+                    return null;
+                }
+            }));
+        }
+
+        boolean finished = false;
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    service.take().get();
+                }
+                catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+                    if (cause instanceof Error) throw (Error)cause;
+                    throw new AssertionError(cause); // tasks do not throw checked exceptions
+                }
+            }
+            finished = true;
+        }
+        finally {
+            if (!finished) {
+                // do not leave the tasks of the remaining source blocks running after a failure or interruption
+                for (Future<Void> future : futures) {
+                    future.cancel(true);
+                }
+            }
+        }
+    }
+
     /**
      * Returns an array of bytes containing the source data.
      * 
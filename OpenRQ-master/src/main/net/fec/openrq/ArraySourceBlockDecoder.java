@@ -17,15 +17,21 @@ package net.fec.openrq;
 
 
 import java.nio.ByteBuffer;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.Map;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -33,9 +39,10 @@ import net.fec.openrq.decoder.SourceBlockDecoder;
 import net.fec.openrq.decoder.SourceBlockState;
 import net.fec.openrq.parameters.FECParameters;
 import net.fec.openrq.parameters.ParameterChecker;
+import net.fec.openrq.util.collection.AppendOnlyArray;
 import net.fec.openrq.util.collection.BitSetIterators;
+import net.fec.openrq.util.collection.ConcurrentBitSet;
 import net.fec.openrq.util.collection.ImmutableList;
-import net.fec.openrq.util.io.ByteBuffers.BufferType;
 import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
 import net.fec.openrq.util.rq.SystematicIndices;
 
@@ -65,6 +72,12 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
 
                     return ArraySourceSymbol.newSymbol(array, off, T);
                 }
+
+                @Override
+                public SourceSymbol getInterleaved(int blockOff, int K, int esi, SubBlockPartition subBlocks) {
+
+                    return InterleavedArraySourceSymbol.newSymbol(array, blockOff, K, esi, subBlocks);
+                }
             });
 
         return new ArraySourceBlockDecoder(dataDecoder, sbn, sourceSymbols, symbOver);
@@ -76,6 +89,19 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
     private final int sbn;
 
     private final SymbolsState symbolsState;
+    private final SubBlockPartition subBlocks;
+
+    // serializes decoding operations and the replacement of the incremental system
+    private final Lock decodingLock;
+
+    // the number of requested decoding operations that were not served yet; the thread that increments it from zero
+    // runs the decoding operations (or submits them to the executor of the data decoder) until it drops to zero again
+    private final AtomicInteger decodingRequests;
+
+    // non-null iff incremental decoding is enabled and the source block is not decoded yet (only replaced while holding
+    // decodingLock, but symbols are added to it without the lock, since the system reduces them concurrently)
+    private volatile IncrementalLinearSystem incrementalSystem = null;
+    private volatile boolean incrementalDecoding = false;
 
 
     private ArraySourceBlockDecoder(
@@ -89,7 +115,11 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
 
         this.sbn = sbn;
 
-        this.symbolsState = new SymbolsState(sourceSymbols, symbOver);
+        this.symbolsState = new SymbolsState(sourceSymbols, symbOver, dataDecoder.fecParameters().symbolSize());
+        this.subBlocks = SubBlockPartition.of(dataDecoder.fecParameters());
+
+        this.decodingLock = new ReentrantLock(false); // non-fair lock
+        this.decodingRequests = new AtomicInteger(0);
     }
 
     private FECParameters fecParameters() {
@@ -124,90 +154,48 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
     public boolean containsSourceSymbol(int esi) {
 
         checkSourceSymbolESI(esi);
-        symbolsState.lock();
-        try {
-            return symbolsState.containsSourceSymbol(esi);
-        }
-        finally {
-            symbolsState.unlock();
-        }
+        return symbolsState.containsSourceSymbol(esi);
     }
 
     @Override
     public boolean containsRepairSymbol(int esi) {
 
         checkRepairSymbolESI(esi);
-        symbolsState.lock();
-        try {
-            return symbolsState.containsRepairSymbol(esi);
-        }
-        finally {
-            symbolsState.unlock();
-        }
+        return symbolsState.containsRepairSymbol(esi);
     }
 
     @Override
     public boolean isSourceBlockDecoded() {
 
-        symbolsState.lock();
-        try {
-            return symbolsState.isSourceBlockDecoded();
-        }
-        finally {
-            symbolsState.unlock();
-        }
+        return symbolsState.isSourceBlockDecoded();
     }
 
     @Override
     public SourceBlockState latestState() {
 
-        symbolsState.lock();
-        try {
-            return symbolsState.sourceBlockState();
-        }
-        finally {
-            symbolsState.unlock();
-        }
+        return symbolsState.sourceBlockState();
     }
 
     @Override
     public Set<Integer> missingSourceSymbols() {
 
-        symbolsState.lock();
-        try {
-            return getMissingSourceSymbols();
-        }
-        finally {
-            symbolsState.unlock();
-        }
+        return getMissingSourceSymbols();
     }
 
     @Override
     public Set<Integer> availableRepairSymbols() {
 
-        symbolsState.lock();
-        try {
-            return getAvailableRepairSymbols();
-        }
-        finally {
-            symbolsState.unlock();
-        }
+        return getAvailableRepairSymbols();
     }
 
     @Override
     public SBDInfo information() {
 
-        symbolsState.lock();
-        try {
-            return SBDInfo.newInformation(
-                sbn,
-                symbolsState.sourceBlockState(),
-                getMissingSourceSymbols(),
-                getAvailableRepairSymbols());
-        }
-        finally {
-            symbolsState.unlock();
-        }
+        return SBDInfo.newInformation(
+            sbn,
+            symbolsState.sourceBlockState(),
+            getMissingSourceSymbols(),
+            getAvailableRepairSymbols());
     }
 
     @Override
@@ -218,72 +206,109 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
             throw new IllegalArgumentException("the provided packet is not compatible with this source block");
         }
 
-        symbolsState.lock();
-        try {
-            if (!symbolsState.isSourceBlockDecoded()) { // do nothing if already decoded
-                final ByteBuffer symbols = packet.symbols();
-                final int esi = packet.encodingSymbolID();
-                boolean putNewSymbol = false;
-
-                // put symbol data
-                switch (packet.symbolType()) {
-                    case SOURCE:
-                        for (int i = 0; i < packet.numberOfSymbols(); i++) {
-                            putNewSymbol |= putSourceData(esi + i, symbols, SourceSymbolDataType.TRANSPORT);
+        if (!symbolsState.isSourceBlockDecoded()) { // do nothing if already decoded
+            final ByteBuffer symbols = packet.symbols();
+            final int esi = packet.encodingSymbolID();
+            boolean putNewSymbol = false;
+
+            // put symbol data
+            switch (packet.symbolType()) {
+                case SOURCE:
+                    for (int i = 0; i < packet.numberOfSymbols(); i++) {
+                        if (putSourceData(esi + i, symbols, SourceSymbolDataType.TRANSPORT)) {
+                            putNewSymbol = true;
+                            if (incrementalDecoding) {
+                                addIncrementalSourceSymbol(esi + i);
+                            }
                         }
-                    break;
+                    }
+                break;
 
-                    case REPAIR:
-                        for (int i = 0; i < packet.numberOfSymbols(); i++) {
-                            putNewSymbol |= putRepairData(esi + i, symbols);
+                case REPAIR:
+                    for (int i = 0; i < packet.numberOfSymbols(); i++) {
+                        final RepairSymbol repairSymbol = putRepairData(esi + i, symbols, packet.hasPrivateSymbols());
+                        if (repairSymbol != null) {
+                            putNewSymbol = true;
+                            if (incrementalDecoding) {
+                                addIncrementalRepairSymbol(esi + i, repairSymbol);
+                            }
                         }
-                    break;
+                    }
+                break;
 
-                    default:
-                        throw new AssertionError("unknown enum value");
-                }
+                default:
+                    throw new AssertionError("unknown enum value");
+            }
 
-                // 1. don't bother if no new symbols were added
-                // 2. the addition of a source symbol may have decoded the source block
-                // 3. enough (source/repair) symbols may have been received for a decode to start
-                if (putNewSymbol &&
-                    !symbolsState.isSourceBlockDecoded() &&
-                    symbolsState.haveEnoughSymbolsToDecode())
-                {
-                    decode();
+            // 1. don't bother if no new symbols were added
+            // 2. the addition of a source symbol may have decoded the source block
+            // 3. the incremental system may have been solved, or
+            // 4. enough (source/repair) symbols may have been received for a decode to start
+            if (putNewSymbol && !symbolsState.isSourceBlockDecoded()) {
+                if (incrementalDecoding) {
+                    finishIncrementalDecodingIfSolved();
+                }
+                else if (symbolsState.haveEnoughSymbolsToDecode()) {
+                    requestDecoding();
                 }
             }
-
-            return symbolsState.sourceBlockState();
-        }
-        finally {
-            symbolsState.unlock();
         }
+
+        return symbolsState.sourceBlockState();
     }
 
     @Override
     public int symbolOverhead() {
 
-        symbolsState.lock();
-        try {
-            return symbolsState.symbolOverhead();
-        }
-        finally {
-            symbolsState.unlock();
-        }
+        return symbolsState.symbolOverhead();
     }
 
     @Override
     public void setSymbolOverhead(int symbOver) {
 
         if (symbOver < 0) throw new IllegalArgumentException("symbol overhead must be non-negative");
+        symbolsState.setSymbolOverhead(symbOver);
+    }
 
-        symbolsState.lock();
+    @Override
+    public boolean isIncrementalDecodingEnabled() {
+
+        return incrementalDecoding;
+    }
+
+    @Override
+    public void setIncrementalDecodingEnabled(boolean enabled) {
+
+        // the incremental system holds an L x L matrix, so larger source blocks are always decoded in batch
+        if (enabled && SystematicIndices.ceil(K()) > MAX_INCREMENTAL_DECODING_SYMBOLS) {
+            return;
+        }
+
+        decodingLock.lock();
         try {
-            symbolsState.setSymbolOverhead(symbOver);
+            // symbols put after the flag is set are added by the threads that put them, and symbols put before are
+            // added here (a symbol that is added twice is simply redundant)
+            incrementalDecoding = enabled;
+            if (!enabled) {
+                incrementalSystem = null;
+            }
+            else if (incrementalSystem == null && !symbolsState.isSourceBlockDecoded()) {
+                incrementalSystem = new IncrementalLinearSystem(K(), fecParameters().symbolSize());
+                final BitSet sourceSymbols = symbolsState.sourceSymbolsSnapshot();
+                for (Iterator<Integer> it = BitSetIterators.newTrueIterator(sourceSymbols); it.hasNext();) {
+                    addIncrementalSourceSymbol(it.next());
+                }
+                for (Entry<Integer, RepairSymbol> repair : symbolsState.repairSymbolsSnapshot()) {
+                    addIncrementalRepairSymbol(repair.getKey(), repair.getValue());
+                }
+            }
         }
         finally {
-            symbolsState.unlock();
+            decodingLock.unlock();
+        }
+
+        if (enabled) {
+            finishIncrementalDecodingIfSolved();
         }
     }
 
@@ -301,75 +326,224 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
         }
     }
 
-    /*
-     * ===== Requires locked symbolsState! =====
-     */
     private Set<Integer> getMissingSourceSymbols() {
 
+        final BitSet sourceSymbols = symbolsState.sourceSymbolsSnapshot();
+        final int numMissing = K() - sourceSymbols.cardinality();
+
+        // linked hash set preserves insertion ordering (while not being sorted)
+        final Set<Integer> missingSourceSymbols = new LinkedHashSet<>(numMissing);
+        for (Iterator<Integer> it = BitSetIterators.newFalseIterator(sourceSymbols, K()); it.hasNext();) {
+            missingSourceSymbols.add(it.next());
+        }
+
+        return missingSourceSymbols.isEmpty() ? Collections.<Integer>emptySet() : missingSourceSymbols;
+    }
+
+    private Set<Integer> getAvailableRepairSymbols() {
+
         if (symbolsState.isSourceBlockDecoded()) {
             return Collections.emptySet();
         }
         else {
-            final int numMissing = symbolsState.numMissingSourceSymbols();
+            final List<Entry<Integer, RepairSymbol>> repairSymbols = symbolsState.repairSymbolsSnapshot();
 
             // linked hash set preserves insertion ordering (while not being sorted)
-            final Set<Integer> missingSourceSymbols = new LinkedHashSet<>(numMissing);
-            for (Integer esi : symbolsState.missingSourceSymbols()) {
-                missingSourceSymbols.add(esi);
+            final Set<Integer> esis = new LinkedHashSet<>(repairSymbols.size());
+            for (Entry<Integer, RepairSymbol> repair : repairSymbols) {
+                esis.add(repair.getKey());
             }
-
-            return missingSourceSymbols;
+            return esis;
         }
     }
 
     /*
-     * ===== Requires locked symbolsState! =====
+     * Requests a decoding operation. Only the thread that finds no pending requests runs the decoding operation (or
+     * submits it to the executor), and requests made meanwhile by other threads are served by a single additional
+     * decoding operation, if the source block is not decoded by then.
      */
-    private Set<Integer> getAvailableRepairSymbols() {
+    private void requestDecoding() {
 
-        if (symbolsState.isSourceBlockDecoded()) {
-            return Collections.emptySet();
+        if (decodingRequests.getAndIncrement() == 0) {
+            final Executor executor = dataDecoder.executor();
+            if (executor == null) {
+                runDecodings();
+            }
+            else {
+                dataDecoder.decodingSubmitted();
+                try {
+                    executor.execute(new Runnable() {
+
+                        @Override
+                        public void run() {
+
+                            try {
+                                runDecodings();
+                            }
+                            catch (RuntimeException | Error e) {
+                                // no caller to throw to, so awaitDecodings rethrows it
+                                dataDecoder.decodingFailed(e);
+                            }
+                            finally {
+                                dataDecoder.decodingFinished();
+                            }
+                        }
+                    });
+                }
+                catch (RejectedExecutionException e) {
+                    // decode in the caller thread instead
+                    dataDecoder.decodingFinished();
+                    runDecodings();
+                }
+            }
         }
-        else {
-            // linked hash set preserves insertion ordering (while not being sorted)
-            return new LinkedHashSet<>(symbolsState.repairSymbolsESIs());
+    }
+
+    private void runDecodings() {
+
+        int requests = decodingRequests.get();
+        try {
+            do {
+                decodingLock.lock();
+                try {
+                    if (!incrementalDecoding &&
+                        !symbolsState.isSourceBlockDecoded() &&
+                        symbolsState.haveEnoughSymbolsToDecode())
+                    {
+                        decode();
+                    }
+                }
+                finally {
+                    decodingLock.unlock();
+                }
+
+                requests = decodingRequests.addAndGet(-requests);
+            }
+            while (requests != 0);
+        }
+        catch (RuntimeException | Error e) {
+            decodingRequests.set(0); // so that later symbols can request decoding operations again
+            throw e;
         }
     }
 
     /*
-     * ===== Requires locked symbolsState! =====
+     * ===== Requires locked decodingLock! =====
      */
     private void decode() {
 
-        // generate intermediate symbols -- watch out for decoding failure
-        final byte[][] intermediate_symbols = generateIntermediateSymbols();
+        // the symbols put by other threads during the decoding are left for a later decoding operation
+        final BitSet sourceSymbols = symbolsState.sourceSymbolsSnapshot();
+        final List<Entry<Integer, RepairSymbol>> repairSymbols = symbolsState.repairSymbolsSnapshot();
+        if (repairSymbols.size() < K() - sourceSymbols.cardinality()) {
+            return; // the source block was decoded meanwhile
+        }
+
+        // use the workspace of the data decoder, unless it is busy with another decoding
+        final DecoderWorkspace sharedWorkspace = dataDecoder.workspace();
+        final boolean acquired = sharedWorkspace != null && sharedWorkspace.tryAcquire();
+        final DecoderWorkspace workspace = acquired ? sharedWorkspace : new DecoderWorkspace();
+        try {
+            // generate intermediate symbols -- watch out for decoding failure
+            final byte[][][] intermediate_symbols =
+                generateIntermediateSymbols(sourceSymbols, repairSymbols, workspace);
 
-        if (intermediate_symbols == null) {
-            symbolsState.setSourceBlockDecodingFailure();
+            if (intermediate_symbols == null) {
+                symbolsState.setSourceBlockDecodingFailure();
+            }
+            else {
+                /*
+                 * with the intermediate symbols calculated, one can recover
+                 * every missing source symbol
+                 */
+
+                final int Kprime = SystematicIndices.ceil(K());
+                final byte[] sourceSymbol = workspace.symbolBuffer(subBlocks.symbolSize());
+
+                // recover missing source symbols, one sub-symbol per sub-block
+                for (Iterator<Integer> it = BitSetIterators.newFalseIterator(sourceSymbols, K()); it.hasNext();) {
+                    final int esi = it.next();
+                    for (int j = 0; j < intermediate_symbols.length; j++) {
+                        LinearSystem.enc(Kprime, intermediate_symbols[j], esi,
+                            sourceSymbol, subBlocks.subSymbolPosition(j), subBlocks.subSymbolSize(j));
+                    }
+
+                    // write to data buffer
+                    putSourceData(esi, ByteBuffer.wrap(sourceSymbol), SourceSymbolDataType.CODE);
+                }
+            }
         }
-        else {
-            /*
-             * with the intermediate symbols calculated, one can recover
-             * every missing source symbol
-             */
+        finally {
+            if (acquired) {
+                sharedWorkspace.release();
+            }
+        }
+    }
+
+    // requires a received source symbol
+    private void addIncrementalSourceSymbol(int esi) {
+
+        // the system reduces the symbol without holding decodingLock, so other receivers are not blocked
+        final IncrementalLinearSystem system = incrementalSystem;
+        if (system != null && !symbolsState.isSourceBlockDecoded()) {
+            final byte[] symbol = new byte[fecParameters().symbolSize()];
+            symbolsState.getSourceSymbol(esi).getCodeData(ByteBuffer.wrap(symbol));
+            system.addEncodingSymbol(esi, symbol); // the ISI of a source symbol is its ESI
+        }
+    }
 
+    private void addIncrementalRepairSymbol(int esi, RepairSymbol repairSymbol) {
+
+        final IncrementalLinearSystem system = incrementalSystem;
+        if (system != null && !symbolsState.isSourceBlockDecoded()) {
+            final byte[] symbol = new byte[fecParameters().symbolSize()];
+            repairSymbol.readOnlyData().get(symbol);
             final int Kprime = SystematicIndices.ceil(K());
+            system.addEncodingSymbol(SystematicIndices.getISI(esi, K(), Kprime), symbol);
+        }
+    }
 
-            // recover missing source symbols
-            for (int esi : missingSourceSymbols()) {
-                byte[] sourceSymbol = LinearSystem.enc(
-                    Kprime, intermediate_symbols, new Tuple(Kprime, esi), fecParameters().symbolSize());
+    private void finishIncrementalDecodingIfSolved() {
 
-                // write to data buffer
-                putSourceData(esi, ByteBuffer.wrap(sourceSymbol), SourceSymbolDataType.CODE);
+        // only take the lock when there is something to finish
+        final IncrementalLinearSystem system = incrementalSystem;
+        if (system == null || (!system.isSolved() && !symbolsState.isSourceBlockDecoded())) {
+            return;
+        }
+
+        decodingLock.lock();
+        try {
+            if (incrementalSystem != null && incrementalSystem.isSolved()) {
+                // the intermediate symbols span the whole symbol, so each missing source symbol is recovered at once
+                final byte[][] C = incrementalSystem.intermediateSymbols();
+                final int Kprime = SystematicIndices.ceil(K());
+                final int T = fecParameters().symbolSize();
+                final byte[] sourceSymbol = new byte[T];
+
+                for (int esi : getMissingSourceSymbols()) {
+                    LinearSystem.enc(Kprime, C, esi, sourceSymbol, 0, T);
+                    putSourceData(esi, ByteBuffer.wrap(sourceSymbol), SourceSymbolDataType.CODE);
+                }
+            }
+            if (symbolsState.isSourceBlockDecoded()) {
+                incrementalSystem = null; // free memory
             }
         }
+        finally {
+            decodingLock.unlock();
+        }
     }
 
     /*
-     * ===== Requires locked symbolsState! =====
+     * ===== Requires locked decodingLock! =====
      */
-    private final byte[][] generateIntermediateSymbols() {
+    // returns one vector of intermediate symbols per sub-block, or null if the decoding fails
+    // (the first vector is owned by the workspace)
+    private final byte[][][] generateIntermediateSymbols(
+        BitSet sourceSymbols,
+        List<Entry<Integer, RepairSymbol>> repairSymbols,
+        DecoderWorkspace workspace)
+    {
 
         // constraint matrix parameters
         final int Kprime = SystematicIndices.ceil(K());
@@ -377,23 +551,42 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
         int S = SystematicIndices.S(Ki);
         int H = SystematicIndices.H(Ki);
         int L = Kprime + S + H;
-        int T = fecParameters().symbolSize();
+        int N = subBlocks.numSubBlocks();
 
         // number of extra repair symbols to be used for the decoding process
-        int overhead = symbolsState.numRepairSymbols() - symbolsState.numMissingSourceSymbols();
+        int overhead = repairSymbols.size() - (K() - sourceSymbols.cardinality());
 
         // number of rows in the decoding matrix
         int M = L + overhead;
 
-        // generate the original constraint matrix and allocate memory for overhead rows
-        ByteMatrix A = LinearSystem.generateConstraintMatrix(Kprime, overhead);
+        // generate the original constraint matrix with memory for overhead rows
+        ByteMatrix A = LinearSystem.generateConstraintMatrix(Kprime, overhead, workspace);
 
-        // initialize D
-        byte[][] D = new byte[M][T];
+        // D, one vector per sub-block, where the rows that are not overwritten below must be zero
+        // (the LDPC and HDPC rows, and the padding symbols)
+        final byte[][][] D = workspace.symbolVectors(M, subBlocks);
+        for (int j = 0; j < N; j++) {
+            for (int row = 0; row < S + H; row++) {
+                Arrays.fill(D[j][row], (byte)0);
+            }
+            for (int row = S + H + K(); row < L; row++) {
+                Arrays.fill(D[j][row], (byte)0);
+            }
+        }
+
+        // buffer for splitting source symbols into sub-symbols (only used with multiple sub-blocks)
+        final byte[] symbol = (N == 1) ? null : workspace.symbolBuffer(subBlocks.symbolSize());
 
         // populate D with the received source symbols
-        for (int esi : symbolsState.receivedSourceSymbols()) {
-            symbolsState.getSourceSymbol(esi).getCodeData(ByteBuffer.wrap(D[S + H + esi]));
+        for (Iterator<Integer> it = BitSetIterators.newTrueIterator(sourceSymbols); it.hasNext();) {
+            final int esi = it.next();
+            if (N == 1) {
+                symbolsState.getSourceSymbol(esi).getCodeData(ByteBuffer.wrap(D[0][S + H + esi]));
+            }
+            else {
+                symbolsState.getSourceSymbol(esi).getCodeData(ByteBuffer.wrap(symbol));
+                splitSymbol(symbol, D, S + H + esi);
+            }
         }
 
         /*
@@ -402,11 +595,15 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
          * - populate D accordingly
          */
 
-        Iterator<Entry<Integer, RepairSymbol>> repairSymbolsIter = symbolsState.repairSymbols().iterator();
+        Iterator<Entry<Integer, RepairSymbol>> repairSymbolsIter = repairSymbols.iterator();
+
+        // the indexes of the non-zeros of each "repair line"
+        final int[] indexes = new int[LinearSystem.MAX_ENC_INDEXES];
 
         // identify missing source symbols and replace their lines with "repair lines"
-        for (Integer missingSrcESI : missingSourceSymbols()) {
+        for (Iterator<Integer> it = BitSetIterators.newFalseIterator(sourceSymbols, K()); it.hasNext();) {
 
+            final int missingSrcESI = it.next();
             Entry<Integer, RepairSymbol> next = repairSymbolsIter.next();
             final int repairESI = next.getKey();
             final int repairISI = SystematicIndices.getISI(repairESI, K(), Kprime);
@@ -415,15 +612,15 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
             final int row = S + H + missingSrcESI;
 
             // replace line S + H + missingSrcESI with the line for encIndexes
-            Set<Integer> indexes = LinearSystem.encIndexes(Kprime, new Tuple(Kprime, repairISI));
+            final int numIndexes = LinearSystem.encIndexes(Kprime, repairISI, indexes);
 
             A.clearRow(row); // must clear previous data first!
-            for (Integer col : indexes) {
-                A.set(row, col, (byte)1);
+            for (int n = 0; n < numIndexes; n++) {
+                A.set(row, indexes[n], (byte)1);
             }
 
             // fill in missing source symbols in D with the repair symbols
-            D[row] = repairSymbol.copyOfData(BufferType.ARRAY_BACKED).array();
+            putRepairSymbol(repairSymbol, D, row);
         }
 
         // insert the values for overhead (repair) symbols
@@ -435,15 +632,15 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
             final RepairSymbol repairSymbol = next.getValue();
 
             // generate the overhead lines
-            Set<Integer> indexes = LinearSystem.encIndexes(Kprime, new Tuple(Kprime, repairISI));
+            final int numIndexes = LinearSystem.encIndexes(Kprime, repairISI, indexes);
 
             A.clearRow(row); // must clear previous data first!
-            for (Integer col : indexes) {
-                A.set(row, col, (byte)1);
+            for (int n = 0; n < numIndexes; n++) {
+                A.set(row, indexes[n], (byte)1);
             }
 
             // update D with the data for that symbol
-            D[row] = repairSymbol.copyOfData(BufferType.ARRAY_BACKED).array();
+            putRepairSymbol(repairSymbol, D, row);
         }
 
         /*
@@ -452,7 +649,20 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
          */
 
         try {
-            return LinearSystem.PInactivationDecoding(A, D, Kprime);
+            final byte[][][] C = new byte[N][][];
+            if (N == 1) {
+                C[0] = LinearSystem.PInactivationDecoding(A, D[0], Kprime, null, workspace);
+            }
+            else {
+                // the operations on the symbols only depend on the decoding matrix, so the
+                // other sub-blocks replay the ones recorded while decoding the first
+                final List<ISDOperation> schedule = new ArrayList<>();
+                C[0] = LinearSystem.PInactivationDecoding(A, D[0], Kprime, schedule, workspace);
+                for (int j = 1; j < N; j++) {
+                    C[j] = LinearSystem.replaySchedule(schedule, D[j]);
+                }
+            }
+            return C;
             // return MatrixUtilities.gaussElimination(constraint_matrix, D);
         }
         catch (SingularMatrixException e) {
@@ -461,39 +671,47 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
         }
     }
 
-    /*
-     * ===== Requires locked symbolsState! =====
-     */
+    // copies the sub-symbols of a repair symbol directly to the given row of the vector D of each sub-block
+    private static void putRepairSymbol(RepairSymbol repairSymbol, byte[][][] D, int row) {
+
+        final ByteBuffer data = repairSymbol.readOnlyData();
+        for (int j = 0; j < D.length; j++) { // the sub-symbols are contiguous and in sub-block order
+            data.get(D[j][row]);
+        }
+    }
+
+    // copies each sub-symbol of a symbol to the given row of the vector D of its sub-block
+    private void splitSymbol(byte[] symbol, byte[][][] D, int row) {
+
+        for (int j = 0; j < D.length; j++) {
+            System.arraycopy(symbol, subBlocks.subSymbolPosition(j), D[j][row], 0, subBlocks.subSymbolSize(j));
+        }
+    }
+
     // requires valid ESI
     private boolean putSourceData(int esi, ByteBuffer symbolData, SourceSymbolDataType dataType) {
 
-        if (symbolsState.containsSourceSymbol(esi)) { // if already received, just advance the buffer position
+        if (symbolsState.addSourceSymbol(esi, symbolData, dataType)) {
+            return true;
+        }
+        else { // if already received (or being received by another thread), just advance the buffer position
             final int T = fecParameters().symbolSize();
             symbolData.position(symbolData.position() + T);
             return false;
         }
-        else {
-            symbolsState.addSourceSymbol(esi, symbolData, dataType);
-            return true;
-        }
     }
 
-    /*
-     * ===== Requires locked symbolsState! =====
-     */
-    // requires valid ESI
-    private boolean putRepairData(int esi, ByteBuffer symbolData) {
+    // requires valid ESI, returns the new repair symbol or null if it was already received
+    // (private symbol data is never modified by anyone else, so it is referenced instead of copied)
+    private RepairSymbol putRepairData(int esi, ByteBuffer symbolData, boolean privateData) {
 
-        if (symbolsState.containsRepairSymbol(esi)) { // if already received, just advance the buffer position
+        final RepairSymbol repairSymbol = symbolsState.addRepairSymbol(esi, symbolData, privateData);
+        if (repairSymbol == null) { // if already received, just advance the buffer position
             final int T = fecParameters().symbolSize();
             symbolData.position(symbolData.position() + T);
-            return false;
-        }
-        else {
-            // add this repair symbol to the set of received repair symbols
-            symbolsState.addRepairSymbol(esi, symbolData);
-            return true;
         }
+
+        return repairSymbol;
     }
 
 
@@ -503,38 +721,45 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
         TRANSPORT
     }
 
+    /*
+     * The symbols of the source block, which can be put and read by multiple threads without locking.
+     * 
+     * A source symbol is first claimed, so that only one thread writes its data, and is only marked as received
+     * after its data is written. A repair symbol is claimed by its ESI, and then added to an array that keeps the
+     * order by which repair symbols are received.
+     */
     private static final class SymbolsState {
 
-        private SourceBlockState sbState;
+        private final AtomicReference<SourceBlockState> sbState;
 
         private final ImmutableList<SourceSymbol> sourceSymbols;
-        private final Map<Integer, RepairSymbol> repairSymbols;
+        private final ConcurrentBitSet claimedSourceSymbols;
+        private final ConcurrentBitSet sourceSymbolsBitSet;
+        private final AtomicInteger numSourceSymbols;
 
-        private final BitSet sourceSymbolsBitSet;
-        private final Iterable<Integer> missingSourceSymbols;
-        private final Iterable<Integer> receivedSourceSymbols;
+        // null once the source block is decoded, to free memory
+        private volatile RepairSymbols repairSymbols;
 
-        private int symbolOverhead;
+        private final int T;
+        private volatile int symbolOverhead;
 
-        private final Lock symbolsStateLock;
 
+        SymbolsState(ImmutableList<SourceSymbol> sourceSymbols, int symbOver, int T) {
 
-        SymbolsState(ImmutableList<SourceSymbol> sourceSymbols, int symbOver) {
-
-            this.sbState = SourceBlockState.INCOMPLETE;
+            this.sbState = new AtomicReference<>(SourceBlockState.INCOMPLETE);
 
             this.sourceSymbols = Objects.requireNonNull(sourceSymbols);
-            this.repairSymbols = new LinkedHashMap<>(); // preserved receiving ordering
 
             final int K = sourceSymbols.size();
 
-            this.sourceSymbolsBitSet = new BitSet(K);
-            this.missingSourceSymbols = new MissingSourceSymbolsIterable(sourceSymbolsBitSet, K);
-            this.receivedSourceSymbols = new ReceivedSourceSymbolsIterable(sourceSymbolsBitSet);
+            this.claimedSourceSymbols = new ConcurrentBitSet(K);
+            this.sourceSymbolsBitSet = new ConcurrentBitSet(K);
+            this.numSourceSymbols = new AtomicInteger(0);
 
-            setSymbolOverhead(symbOver);
+            this.repairSymbols = new RepairSymbols(K);
 
-            this.symbolsStateLock = new ReentrantLock(false); // non-fair lock
+            this.T = T;
+            setSymbolOverhead(symbOver);
         }
 
         int K() {
@@ -542,36 +767,32 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
             return sourceSymbols.size();
         }
 
-        // Always call this method before accessing the symbols state!
-        void lock() {
-
-            symbolsStateLock.lock();
-        }
-
-        // Always call this method after using the symbols state!
-        void unlock() {
-
-            symbolsStateLock.unlock();
-        }
-
         SourceBlockState sourceBlockState() {
 
-            return sbState;
+            return sbState.get();
         }
 
         void setSourceBlockDecodingFailure() {
 
-            sbState = SourceBlockState.DECODING_FAILURE;
+            setStateUnlessDecoded(SourceBlockState.DECODING_FAILURE);
         }
 
         boolean isSourceBlockDecoded() {
 
-            return sbState == SourceBlockState.DECODED;
+            return sbState.get() == SourceBlockState.DECODED;
         }
 
-        int numMissingSourceSymbols() {
+        // a decoded source block stays decoded
+        private void setStateUnlessDecoded(SourceBlockState state) {
 
-            return K() - sourceSymbolsBitSet.cardinality();
+            SourceBlockState current;
+            do {
+                current = sbState.get();
+                if (current == SourceBlockState.DECODED || current == state) {
+                    return;
+                }
+            }
+            while (!sbState.compareAndSet(current, state));
         }
 
         // requires valid parameter
@@ -580,17 +801,22 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
             return sourceSymbolsBitSet.get(esi);
         }
 
-        // requires valid parameter
-        void addSourceSymbol(int esi, ByteBuffer symbolData, SourceSymbolDataType dataType) {
+        // requires valid parameter, returns false if the symbol was already claimed
+        boolean addSourceSymbol(int esi, ByteBuffer symbolData, SourceSymbolDataType dataType) {
+
+            if (!claimedSourceSymbols.set(esi)) {
+                return false;
+            }
 
             putSourceSymbolData(esi, symbolData, dataType);
             sourceSymbolsBitSet.set(esi); // mark the symbol as received
-            sbState = SourceBlockState.INCOMPLETE;
+            setStateUnlessDecoded(SourceBlockState.INCOMPLETE);
 
-            if (numMissingSourceSymbols() == 0) {
-                sbState = SourceBlockState.DECODED;
-                repairSymbols.clear(); // free memory
+            if (numSourceSymbols.incrementAndGet() == K()) {
+                sbState.set(SourceBlockState.DECODED);
+                repairSymbols = null; // free memory
             }
+            return true;
         }
 
         private void putSourceSymbolData(int esi, ByteBuffer symbolData, SourceSymbolDataType dataType) {
@@ -615,50 +841,49 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
             return sourceSymbols.get(esi);
         }
 
-        Iterable<Integer> missingSourceSymbols() {
+        // the received source symbols
+        BitSet sourceSymbolsSnapshot() {
 
-            return missingSourceSymbols;
-        }
-
-        Iterable<Integer> receivedSourceSymbols() {
-
-            return receivedSourceSymbols;
-        }
-
-        int numRepairSymbols() {
-
-            return repairSymbols.size();
+            return sourceSymbolsBitSet.snapshot();
         }
 
         // requires valid parameter
         boolean containsRepairSymbol(int esi) {
 
-            return !isSourceBlockDecoded() && repairSymbols.containsKey(esi);
+            final RepairSymbols repairs = repairSymbols;
+            return repairs != null && repairs.contains(esi);
         }
 
         /*
          * requires valid parameter
-         * requires !isSourceBlockDecoded()
+         * returns null if the symbol was already received or if the source block is decoded
          */
-        void addRepairSymbol(int esi, ByteBuffer symbolData) {
+        RepairSymbol addRepairSymbol(int esi, ByteBuffer symbolData, boolean privateData) {
 
-            repairSymbols.put(esi, RepairSymbol.copyData(symbolData));
-            sbState = SourceBlockState.INCOMPLETE;
-        }
-
-        Iterable<Entry<Integer, RepairSymbol>> repairSymbols() {
+            final RepairSymbols repairs = repairSymbols;
+            if (repairs == null) {
+                return null;
+            }
 
-            return repairSymbols.entrySet();
+            final RepairSymbol repairSymbol = repairs.add(esi, symbolData, T, privateData);
+            if (repairSymbol != null) {
+                setStateUnlessDecoded(SourceBlockState.INCOMPLETE);
+            }
+            return repairSymbol;
         }
 
-        Set<Integer> repairSymbolsESIs() {
+        // the received repair symbols, in the order by which they were received
+        List<Entry<Integer, RepairSymbol>> repairSymbolsSnapshot() {
 
-            return repairSymbols.keySet();
+            final RepairSymbols repairs = repairSymbols;
+            return (repairs == null) ? Collections.<Entry<Integer, RepairSymbol>>emptyList() : repairs.snapshot();
         }
 
         boolean haveEnoughSymbolsToDecode() {
 
-            return (sourceSymbolsBitSet.cardinality() + repairSymbols.size()) >= (K() + symbolOverhead);
+            final RepairSymbols repairs = repairSymbols;
+            final int numRepairSymbols = (repairs == null) ? 0 : repairs.size();
+            return (numSourceSymbols.get() + numRepairSymbols) >= (K() + symbolOverhead);
         }
 
         int symbolOverhead() {
@@ -674,39 +899,62 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
         }
 
 
-        private static final class MissingSourceSymbolsIterable implements Iterable<Integer> {
+        private static final class RepairSymbols {
 
-            private final BitSet bitSet;
             private final int K;
+            private final ConcurrentBitSet claimedESIs; // indexed by ESI - K
+            private final AppendOnlyArray<Entry<Integer, RepairSymbol>> symbols;
+            private final AtomicInteger size; // the number of symbols in the array
 
 
-            MissingSourceSymbolsIterable(BitSet bitSet, int K) {
+            RepairSymbols(int K) {
 
-                this.bitSet = Objects.requireNonNull(bitSet);
                 this.K = K;
+                this.claimedESIs = new ConcurrentBitSet(ParameterChecker.maxEncodingSymbolID() + 1 - K);
+                this.symbols = new AppendOnlyArray<>();
+                this.size = new AtomicInteger(0);
             }
 
-            @Override
-            public Iterator<Integer> iterator() {
+            boolean contains(int esi) {
 
-                return BitSetIterators.newFalseIterator(bitSet, K);
+                return claimedESIs.get(esi - K);
             }
-        }
 
-        private static final class ReceivedSourceSymbolsIterable implements Iterable<Integer> {
+            // returns null if the symbol was already claimed
+            RepairSymbol add(int esi, ByteBuffer symbolData, int T, boolean privateData) {
 
-            private final BitSet bitSet;
+                if (!claimedESIs.set(esi - K)) {
+                    return null;
+                }
 
+                final RepairSymbol repairSymbol;
+                if (privateData) {
+                    repairSymbol = RepairSymbol.wrapData(symbolData, T);
+                }
+                else {
+                    repairSymbol = RepairSymbol.copyData(symbolData, T);
+                }
+                symbols.add(new SimpleImmutableEntry<>(esi, repairSymbol));
+                size.incrementAndGet(); // only counted once it can be read from the array
+                return repairSymbol;
+            }
 
-            ReceivedSourceSymbolsIterable(BitSet bitSet) {
+            int size() {
 
-                this.bitSet = bitSet;
+                return size.get();
             }
 
-            @Override
-            public Iterator<Integer> iterator() {
+            List<Entry<Integer, RepairSymbol>> snapshot() {
 
-                return BitSetIterators.newTrueIterator(bitSet);
+                final int claimed = symbols.size();
+                final List<Entry<Integer, RepairSymbol>> list = new ArrayList<>(claimed);
+                for (int i = 0; i < claimed; i++) {
+                    final Entry<Integer, RepairSymbol> entry = symbols.get(i);
+                    if (entry != null) { // skip the symbols that are still being added
+                        list.add(entry);
+                    }
+                }
+                return list;
             }
         }
     }
@@ -716,14 +964,24 @@ final class ArraySourceBlockDecoder implements SourceBlockDecoder {
 
     static SourceBlockState forceDecode(ArraySourceBlockDecoder decoder) {
 
-        decoder.symbolsState.lock();
+        decoder.decodingLock.lock();
         try {
             decoder.decode();
             return decoder.symbolsState.sourceBlockState();
         }
         finally {
-            decoder.symbolsState.unlock();
+            decoder.decodingLock.unlock();
         }
     }
-}
 
+    static void runWithDecodingLock(ArraySourceBlockDecoder decoder, Runnable runnable) {
+
+        decoder.decodingLock.lock();
+        try {
+            runnable.run();
+        }
+        finally {
+            decoder.decodingLock.unlock();
+        }
+    }
+}
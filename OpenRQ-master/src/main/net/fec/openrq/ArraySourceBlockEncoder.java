@@ -16,9 +16,15 @@
 package net.fec.openrq;
 
 
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import net.fec.openrq.encoder.SourceBlockEncoder;
 import net.fec.openrq.parameters.FECParameters;
@@ -48,15 +54,33 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
 
                     return ArraySourceSymbol.newSymbol(array, off, T);
                 }
+
+                @Override
+                public SourceSymbol getInterleaved(int blockOff, int K, int esi, SubBlockPartition subBlocks) {
+
+                    return InterleavedArraySourceSymbol.newSymbol(array, blockOff, K, esi, subBlocks);
+                }
             });
 
         return new ArraySourceBlockEncoder(dataEncoder, sbn, sourceSymbols);
     }
 
 
+    // maximum size of the intermediate array used to write repair symbols into buffers without an accessible array
+    private static final int MAX_INDIRECT_CHUNK_BYTES = 64 * 1024;
+
+    // minimum number of repair symbols generated by a single task of a pool
+    private static final int MIN_PARALLEL_SYMBOLS = 16;
+
+    // maximum size of each array holding the repair symbols generated in parallel for an iterable
+    static final int MAX_REPAIR_CHUNK_BYTES = 16 * 1024 * 1024;
+
     private final ArrayDataEncoder dataEncoder;
     private final ImmutableList<SourceSymbol> sourceSymbols;
-    private byte[][] intermediateSymbols = null;
+    private final SubBlockPartition subBlocks;
+    // one vector of intermediate symbols per sub-block, written once under the lock, then only read
+    private volatile byte[][][] intermediateSymbols = null;
+    private final Object intermediateSymbolsLock = new Object();
 
     private final int sbn;
     private final int Kprime;
@@ -68,6 +92,8 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
         this.dataEncoder = Objects.requireNonNull(dataEncoder);
         this.sourceSymbols = Objects.requireNonNull(sourceSymbols);
 
+        this.subBlocks = SubBlockPartition.of(dataEncoder.fecParameters());
+
         this.sbn = sbn;
         this.Kprime = SystematicIndices.ceil(K());
     }
@@ -83,21 +109,32 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
     }
 
     // use only this method for access to the intermediate symbols
-    private byte[][] getIntermediateSymbols() {
+    private byte[][][] getIntermediateSymbols() {
 
-        // Note: if multiple threads call this method concurrently, then
-        // no harm is done, only the fact that some threads may perform
-        // useless work
+        // the intermediate symbols are generated only once, even if multiple
+        // threads call this method concurrently (the volatile field publishes
+        // the fully generated symbols to the threads that do not lock)
 
-        byte[][] is = intermediateSymbols;
+        byte[][][] is = intermediateSymbols;
         if (is == null) {
-            is = generateIntermediateSymbols();
-            intermediateSymbols = is;
+            synchronized (intermediateSymbolsLock) {
+                is = intermediateSymbols;
+                if (is == null) {
+                    is = generateIntermediateSymbols();
+                    intermediateSymbols = is;
+                }
+            }
         }
 
         return is;
     }
 
+    // generates the intermediate symbols now, if not generated already
+    void generateIntermediateSymbolsOnce() {
+
+        getIntermediateSymbols();
+    }
+
     @Override
     public ArrayDataEncoder dataEncoder() {
 
@@ -127,7 +164,7 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
         }
         else { // repair symbol
             return EncodingPacket.newRepairPacket(sbn, esi,
-                getRepairSymbol(esi).readOnlyData(), 1);
+                getRepairSymbol(esi).readOnlyData(), 1, true);
         }
     }
 
@@ -167,7 +204,7 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
 
         checkRepairSymbolESI(esi);
         return EncodingPacket.newRepairPacket(sbn, esi, getRepairSymbol(esi)
-            .readOnlyData(), 1);
+            .readOnlyData(), 1, true);
     }
 
     @Override
@@ -176,16 +213,64 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
         checkRepairSymbolESI(esi);
         checkNumRepairSymbols(esi, numSymbols);
 
-        // retrieve repair symbols data
-        final ByteBuffer symbols = ByteBuffer.allocate(numSymbols
-                                                       * fecParameters().symbolSize());
-        for (int i = 0; i < numSymbols; i++) {
-            symbols.put(getRepairSymbol(esi + i).readOnlyData());
-        }
-        symbols.flip();
+        // generate all repair symbols directly into the packet data
+        final int T = fecParameters().symbolSize();
+        final byte[] symbols = new byte[numSymbols * T];
+        generateRepairSymbols(esi, numSymbols, symbols, 0);
 
         return EncodingPacket.newRepairPacket(sbn, esi,
-            symbols.asReadOnlyBuffer(), numSymbols);
+            ByteBuffer.wrap(symbols).asReadOnlyBuffer(), numSymbols, true);
+    }
+
+    @Override
+    public void writeRepairSymbols(int esi, int numSymbols, byte[] array, int offset) {
+
+        checkRepairSymbolESI(esi);
+        checkNumRepairSymbols(esi, numSymbols);
+
+        final long length = (long)numSymbols * fecParameters().symbolSize();
+        if (offset < 0 || array.length - offset < length) throw new IndexOutOfBoundsException();
+
+        generateRepairSymbols(esi, numSymbols, array, offset);
+    }
+
+    @Override
+    public void writeRepairSymbols(int esi, int numSymbols, ByteBuffer buffer) {
+
+        checkRepairSymbolESI(esi);
+        checkNumRepairSymbols(esi, numSymbols);
+
+        final int T = fecParameters().symbolSize();
+        if (buffer.isReadOnly()) throw new ReadOnlyBufferException();
+        if (buffer.remaining() / T < numSymbols) throw new BufferOverflowException();
+
+        if (buffer.hasArray()) {
+            final int pos = buffer.position();
+            generateRepairSymbols(esi, numSymbols, buffer.array(), buffer.arrayOffset() + pos);
+            buffer.position(pos + numSymbols * T);
+        }
+        else {
+            // generate as many symbols as fit in a bounded array at a time
+            final int chunkSymbols = Math.min(numSymbols, Math.max(1, MAX_INDIRECT_CHUNK_BYTES / T));
+            final byte[] chunk = new byte[chunkSymbols * T];
+            for (int n = 0; n < numSymbols; n += chunkSymbols) {
+                final int num = Math.min(chunkSymbols, numSymbols - n);
+                generateRepairSymbols(esi + n, num, chunk, 0);
+                buffer.put(chunk, 0, num * T);
+            }
+        }
+    }
+
+    @Override
+    public void writeRepairSymbols(int esi, int numSymbols, byte[] array, int offset, ForkJoinPool pool) {
+
+        checkRepairSymbolESI(esi);
+        checkNumRepairSymbols(esi, numSymbols);
+
+        final long length = (long)numSymbols * fecParameters().symbolSize();
+        if (offset < 0 || array.length - offset < length) throw new IndexOutOfBoundsException();
+
+        generateRepairSymbols(esi, numSymbols, array, offset, pool);
     }
 
     @Override
@@ -215,6 +300,43 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
             .endAt(numberOfSourceSymbols() + numRepairPackets - 1).build();
     }
 
+    @Override
+    public Iterable<EncodingPacket> repairPacketsIterable(int numRepairPackets, ForkJoinPool pool) {
+
+        if (numRepairPackets < 1
+            || numRepairPackets > ParameterChecker
+                .numRepairSymbolsPerBlock(K())) {
+            throw new IllegalArgumentException(
+                "invalid number of repair packets");
+        }
+
+        Objects.requireNonNull(pool);
+        final int T = fecParameters().symbolSize();
+
+        // numRepairPackets * T may not fit in an int, so the symbols are generated into one array per chunk
+        final int chunkSymbols = repairChunkSymbols(T);
+        final EncodingPacket[] packets = new EncodingPacket[numRepairPackets];
+        for (int first = 0; first < numRepairPackets; first += chunkSymbols) {
+            final int numSymbols = Math.min(chunkSymbols, numRepairPackets - first);
+            final byte[] symbols = new byte[numSymbols * T];
+            generateRepairSymbols(K() + first, numSymbols, symbols, 0, pool);
+
+            for (int n = 0; n < numSymbols; n++) {
+                final ByteBuffer symbol = ByteBuffer.wrap(symbols, n * T, T).slice();
+                packets[first + n] = EncodingPacket.newRepairPacket(sbn, K() + first + n, symbol.asReadOnlyBuffer(),
+                    1, true);
+            }
+        }
+
+        return ImmutableList.of(packets);
+    }
+
+    // the number of repair symbols of the given size that fit in one chunk array of repairPacketsIterable
+    static int repairChunkSymbols(int T) {
+
+        return Math.max(1, MAX_REPAIR_CHUNK_BYTES / T);
+    }
+
     private void checkGenericEncodingSymbolESI(int esi) {
 
         if (esi < 0 || esi > ParameterChecker.maxEncodingSymbolID()) {
@@ -268,45 +390,95 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
         // calculate ISI from ESI
         final int isi = SystematicIndices.getISI(esi, K(), Kprime);
 
-        // generate the repair symbol data
-        final int T = fecParameters().symbolSize();
-        byte[] enc_data = LinearSystem.enc(Kprime, getIntermediateSymbols(),
-            new Tuple(Kprime, isi), T);
+        // generate the repair symbol data, one sub-symbol per sub-block; repair symbols are
+        // not stored, callers that need many of them should use writeRepairSymbols with
+        // their own buffer
+        final byte[][][] C = getIntermediateSymbols();
+        final byte[] enc_data = new byte[subBlocks.symbolSize()];
+        for (int j = 0; j < C.length; j++) {
+            LinearSystem.enc(Kprime, C[j], isi, enc_data, subBlocks.subSymbolPosition(j), subBlocks.subSymbolSize(j));
+        }
 
-        // TODO should we store the repair symbols generated?
         return RepairSymbol.wrapData(ByteBuffer.wrap(enc_data));
     }
 
-    private byte[][] initVectorD() {
+    // requires valid ESI, number of symbols and array bounds
+    private void generateRepairSymbols(int esi, int numSymbols, byte[] array, int offset) {
+
+        // consecutive ESIs of repair symbols have consecutive ISIs
+        final int isi = SystematicIndices.getISI(esi, K(), Kprime);
+        final int T = subBlocks.symbolSize();
+
+        // the batch is generated one sub-block at a time, so that only the intermediate
+        // symbols of one sub-block are walked for the whole batch
+        final byte[][][] C = getIntermediateSymbols();
+        for (int j = 0; j < C.length; j++) {
+            LinearSystem.encBatch(Kprime, C[j], isi, numSymbols,
+                array, offset + subBlocks.subSymbolPosition(j), T, subBlocks.subSymbolSize(j));
+        }
+    }
+
+    // requires valid ESI, number of symbols and array bounds
+    private void generateRepairSymbols(int esi, int numSymbols, byte[] array, int offset, ForkJoinPool pool) {
+
+        // generate the intermediate symbols before forking, so that the
+        // workers of the pool do not wait for each other
+        getIntermediateSymbols();
+
+        final int minSymbols = Math.max(MIN_PARALLEL_SYMBOLS, numSymbols / (4 * pool.getParallelism()));
+        pool.invoke(new RepairSymbolsTask(esi, numSymbols, array, offset, minSymbols));
+    }
+
+    // returns one vector D per sub-block
+    private byte[][][] initVectorD() {
 
         // source block's parameters
         int Ki = SystematicIndices.getKIndex(Kprime);
         int S = SystematicIndices.S(Ki);
         int H = SystematicIndices.H(Ki);
         int L = Kprime + S + H;
-        int T = fecParameters().symbolSize();
+        int N = subBlocks.numSubBlocks();
 
         // allocate and initialize vector D
-        byte[][] D = new byte[L][T];
-        for (int row = S + H, esi = 0; row < K() + S + H; row++, esi++) {
-            getSourceSymbol(esi).getCodeData(ByteBuffer.wrap(D[row]));
+        byte[][][] D = new byte[N][][];
+        for (int j = 0; j < N; j++) {
+            D[j] = new byte[L][subBlocks.subSymbolSize(j)];
+        }
+
+        if (N == 1) {
+            for (int row = S + H, esi = 0; row < K() + S + H; row++, esi++) {
+                getSourceSymbol(esi).getCodeData(ByteBuffer.wrap(D[0][row]));
+            }
+        }
+        else { // split each source symbol into its sub-symbols
+            final byte[] symbol = new byte[subBlocks.symbolSize()];
+            for (int row = S + H, esi = 0; row < K() + S + H; row++, esi++) {
+                getSourceSymbol(esi).getCodeData(ByteBuffer.wrap(symbol));
+                for (int j = 0; j < N; j++) {
+                    System.arraycopy(symbol, subBlocks.subSymbolPosition(j), D[j][row], 0, subBlocks.subSymbolSize(j));
+                }
+            }
         }
 
         return D;
     }
 
-    private byte[][] generateIntermediateSymbols() {
+    private byte[][][] generateIntermediateSymbols() {
 
-        // initialize the vector D with source data
-        final byte[][] D = initVectorD();
+        // initialize the vector D of each sub-block with source data
+        final byte[][][] D = initVectorD();
+        final byte[][][] C = new byte[D.length][][];
 
         // first try to obtain an optimized decoder that supports Kprime
         final IntermediateSymbolsDecoder isd = ISDManager.get(Kprime);
         if (isd != null) {
-            return isd.decode(D);
+            for (int j = 0; j < D.length; j++) {
+                C[j] = isd.decode(D[j]);
+            }
         }
         else { // if no optimized decoder is available, fall back to the
-               // standard decoding process
+               // standard decoding process, and record it for the next
+               // encoders with the same Kprime (and the other sub-blocks)
 
             // generate LxL Constraint Matrix
             ByteMatrix constraint_matrix = LinearSystem
@@ -314,8 +486,13 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
 
             // solve system of equations
             try {
-                return LinearSystem.PInactivationDecoding(constraint_matrix, D,
-                    Kprime);
+                final List<ISDOperation> schedule = new ArrayList<>();
+                C[0] = LinearSystem.PInactivationDecoding(
+                    constraint_matrix, D[0], Kprime, schedule);
+                ISDManager.record(Kprime, schedule);
+                for (int j = 1; j < D.length; j++) {
+                    C[j] = LinearSystem.replaySchedule(schedule, D[j]);
+                }
                 // return Utilities.gaussElimination(constraint_matrix, D);
             }
             catch (SingularMatrixException e) {
@@ -323,9 +500,48 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
                     "FATAL ERROR: Singular matrix for the encoding process. This should never happen.");
             }
         }
+
+        return C;
     }
 
 
+    // generates a range of repair symbols, splitting it in halves until it is small enough
+    private final class RepairSymbolsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int esi;
+        private final int numSymbols;
+        private final byte[] array;
+        private final int offset;
+        private final int minSymbols;
+
+
+        RepairSymbolsTask(int esi, int numSymbols, byte[] array, int offset, int minSymbols) {
+
+            this.esi = esi;
+            this.numSymbols = numSymbols;
+            this.array = array;
+            this.offset = offset;
+            this.minSymbols = minSymbols;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (numSymbols <= minSymbols) {
+                generateRepairSymbols(esi, numSymbols, array, offset);
+            }
+            else {
+                final int half = numSymbols / 2;
+                final int halfOffset = offset + half * fecParameters().symbolSize();
+                invokeAll(
+                    new RepairSymbolsTask(esi, half, array, offset, minSymbols),
+                    new RepairSymbolsTask(esi + half, numSymbols - half, array, halfOffset, minSymbols));
+            }
+        }
+    }
+
     private static final class IterBuilder implements IterableBuilder {
 
         private final SourceBlockEncoder encoder;
@@ -464,7 +680,7 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
 
     // ============================= TEST_CODE ============================= //
 
-    static byte[][] forceInitVectorD(ArraySourceBlockEncoder enc) {
+    static byte[][][] forceInitVectorD(ArraySourceBlockEncoder enc) {
 
         return enc.initVectorD();
     }
@@ -473,5 +689,10 @@ final class ArraySourceBlockEncoder implements SourceBlockEncoder {
 
         enc.generateIntermediateSymbols();
     }
+
+    static boolean hasIntermediateSymbols(ArraySourceBlockEncoder enc) {
+
+        return enc.intermediateSymbols != null;
+    }
 }
 
@@ -47,6 +47,9 @@ final class DataUtils {
     static interface SourceSymbolSupplier<SS> {
 
         SS get(int off, int esi, int T);
+
+        // only called if the source block is divided into multiple sub-blocks
+        SS getInterleaved(int blockOff, int K, int esi, SubBlockPartition subBlocks);
     }
 
 
@@ -141,8 +144,21 @@ final class DataUtils {
         final SS[] srcSymbols = ArrayUtils.newArray(clazz, K);
 
         final int T = fecParams.symbolSize();
-        for (int esi = 0, off = startOffset; esi < K; esi++, off += T) {
-            srcSymbols[esi] = supplier.get(off, esi, T);
+        if (fecParams.interleaverLength() == 1) {
+            for (int esi = 0, off = startOffset; esi < K; esi++, off += T) {
+                srcSymbols[esi] = supplier.get(off, esi, T);
+            }
+        }
+        else {
+            /*
+             * Each source block MUST be divided into N = NL + NS contiguous
+             * sub-blocks, and the m-th symbol of a source block consists of the
+             * concatenation of the m-th sub-symbol from each of the N sub-blocks.
+             */
+            final SubBlockPartition subBlocks = SubBlockPartition.of(fecParams);
+            for (int esi = 0; esi < K; esi++) {
+                srcSymbols[esi] = supplier.getInterleaved(startOffset, K, esi, subBlocks);
+            }
         }
 
         return ImmutableList.of(srcSymbols);
@@ -369,7 +385,7 @@ final class DataUtils {
             if (numSymbols <= (1 + maxESI - esi)) {
                 return Parsed.of(EncodingPacket.newRepairPacket(sbn, esi,
                     getSymbolData(symbols, symbLen, copySymbols),
-                    numSymbols));
+                    numSymbols, copySymbols)); // copied symbols are private
             }
             else {
                 return Parsed
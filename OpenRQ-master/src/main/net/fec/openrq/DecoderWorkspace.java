@@ -0,0 +1,191 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.linearalgebra.matrix.hybrid.HybridByteMatrix;
+
+
+/**
+ * Memory that is reused by consecutive source block decodings.
+ * <p>
+ * Decoding a source block needs the constraint matrix and a copy of it, the vector of received symbols and a few
+ * permutation arrays, all sized by the number of source symbols and the symbol size of the block. A data decoder
+ * created with a workspace (see {@link OpenRQ#newDecoder(net.fec.openrq.parameters.FECParameters, int,
+ * DecoderWorkspace)}) keeps all of these in the workspace, so that after the first decoding, decoding source blocks
+ * with the same dimensions (and the same number of received repair symbols beyond the minimum) does not allocate any
+ * of them again. Whenever the dimensions change, the workspace replaces its memory with memory for the new
+ * dimensions.
+ * <p>
+ * A workspace is used by a single decoding at a time, and can be shared by multiple data decoders. If a decoding
+ * starts while the workspace is in use by another one (for example, when source blocks are decoded concurrently by an
+ * executor), that decoding allocates its own memory, as if there was no workspace.
+ */
+public final class DecoderWorkspace {
+
+    private final AtomicBoolean inUse = new AtomicBoolean(false);
+
+    // the vector D of each sub-block
+    private byte[][][] vectors;
+    private byte[] symbol;
+
+    private HybridByteMatrix constraintMatrix;
+    private HybridByteMatrix matrixCopy;
+
+    private int[] columnIndexes;
+    private int[] rowIndexes;
+    private int[] rowPositions;
+    private Phase1Rows phase1Rows;
+    private byte[][] intermediateSymbols;
+
+
+    /**
+     * Creates an empty workspace, whose memory is allocated by the first decoding that uses it.
+     */
+    public DecoderWorkspace() {
+
+        // memory is allocated on demand
+    }
+
+    // returns true iff the caller now has exclusive use of this workspace, and must call release() when done
+    boolean tryAcquire() {
+
+        return inUse.compareAndSet(false, true);
+    }
+
+    void release() {
+
+        inUse.set(false);
+    }
+
+    /*
+     * Returns one vector D with M rows per sub-block, where each row has the sub-symbol size of the sub-block. The
+     * contents of the rows are undefined.
+     */
+    byte[][][] symbolVectors(int M, SubBlockPartition subBlocks) {
+
+        final int N = subBlocks.numSubBlocks();
+        if (!hasShape(vectors, M, subBlocks)) {
+            vectors = new byte[N][][];
+            for (int j = 0; j < N; j++) {
+                vectors[j] = new byte[M][subBlocks.subSymbolSize(j)];
+            }
+        }
+        return vectors;
+    }
+
+    private static boolean hasShape(byte[][][] vectors, int M, SubBlockPartition subBlocks) {
+
+        if (vectors == null || vectors.length != subBlocks.numSubBlocks()) {
+            return false;
+        }
+        for (int j = 0; j < vectors.length; j++) {
+            if (vectors[j].length != M || (M > 0 && vectors[j][0].length != subBlocks.subSymbolSize(j))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // returns an array with the given size, with undefined contents
+    byte[] symbolBuffer(int size) {
+
+        if (symbol == null || symbol.length != size) {
+            symbol = new byte[size];
+        }
+        return symbol;
+    }
+
+    // returns a copy of the given (unmodified) matrix with extra zero rows at the end
+    ByteMatrix constraintMatrix(HybridByteMatrix original, int overheadRows) {
+
+        final int rows = original.rows() + overheadRows;
+        if (!hasShape(constraintMatrix, rows, original.columns())) {
+            constraintMatrix = new HybridByteMatrix(rows, original.columns());
+        }
+        constraintMatrix.copyRowsFrom(original);
+        return constraintMatrix;
+    }
+
+    // returns a copy of the given matrix, overwriting the previous copy
+    ByteMatrix copyOf(ByteMatrix A) {
+
+        if (!(A instanceof HybridByteMatrix)) {
+            return A.copy();
+        }
+        if (!hasShape(matrixCopy, A.rows(), A.columns())) {
+            matrixCopy = new HybridByteMatrix(A.rows(), A.columns());
+        }
+        matrixCopy.copyRowsFrom((HybridByteMatrix)A);
+        return matrixCopy;
+    }
+
+    private static boolean hasShape(ByteMatrix matrix, int rows, int columns) {
+
+        return matrix != null && matrix.rows() == rows && matrix.columns() == columns;
+    }
+
+    // the vector c of the permanent inactivation decoding, with undefined contents
+    int[] columnIndexes(int L) {
+
+        if (columnIndexes == null || columnIndexes.length != L) {
+            columnIndexes = new int[L];
+        }
+        return columnIndexes;
+    }
+
+    // the vector d of the permanent inactivation decoding, with undefined contents
+    int[] rowIndexes(int M) {
+
+        if (rowIndexes == null || rowIndexes.length != M) {
+            rowIndexes = new int[M];
+        }
+        return rowIndexes;
+    }
+
+    // the current position of each row during the first phase of the decoding, with undefined contents
+    int[] rowPositions(int M) {
+
+        if (rowPositions == null || rowPositions.length != M) {
+            rowPositions = new int[M];
+        }
+        return rowPositions;
+    }
+
+    // the rows of the first phase of the decoding, without any rows added
+    Phase1Rows phase1Rows(int M, int L, int S, int H) {
+
+        if (phase1Rows == null || !phase1Rows.hasDimensions(M, L, S, H)) {
+            phase1Rows = new Phase1Rows(M, L, S, H);
+        }
+        else {
+            phase1Rows.reset();
+        }
+        return phase1Rows;
+    }
+
+    // the array of references to the intermediate symbols, with undefined contents
+    byte[][] intermediateSymbols(int L) {
+
+        if (intermediateSymbols == null || intermediateSymbols.length != L) {
+            intermediateSymbols = new byte[L][];
+        }
+        return intermediateSymbols;
+    }
+}
@@ -78,7 +78,22 @@ public abstract class EncodingPacket {
      */
     static EncodingPacket newRepairPacket(int sbn, int esi, ByteBuffer symbols, int numSymbols) {
 
-        return new RepairPacket(sbn, esi, symbols, numSymbols);
+        return newRepairPacket(sbn, esi, symbols, numSymbols, false);
+    }
+
+    /**
+     * @param sbn
+     * @param esi
+     * @param symbols
+     * @param numSymbols
+     * @param privateSymbols
+     *            Whether the symbols buffer is only referenced by the new packet, in which case its data never changes
+     *            and can be referenced by a decoder instead of copied
+     * @return a new repair packet
+     */
+    static EncodingPacket newRepairPacket(int sbn, int esi, ByteBuffer symbols, int numSymbols, boolean privateSymbols) {
+
+        return new RepairPacket(sbn, esi, symbols, numSymbols, privateSymbols);
     }
 
     /**
@@ -480,6 +495,11 @@ public abstract class EncodingPacket {
      */
     public abstract void writeTo(WritableByteChannel ch) throws IOException;
 
+    /*
+     * Returns true iff the symbols buffer is only referenced by this packet (and so its data never changes).
+     */
+    abstract boolean hasPrivateSymbols();
+
     private EncodingPacket() {
 
         // private constructor to prevent external sub-classing
@@ -491,13 +511,15 @@ public abstract class EncodingPacket {
         private final int fecPayloadID;
         private final ByteBuffer symbols;
         private final int numSymbols;
+        private final boolean privateSymbols;
 
 
-        AbstractEncodingPacket(int sbn, int esi, ByteBuffer symbols, int numSymbols) {
+        AbstractEncodingPacket(int sbn, int esi, ByteBuffer symbols, int numSymbols, boolean privateSymbols) {
 
             this.fecPayloadID = ParameterIO.buildFECpayloadID(sbn, esi);
             this.symbols = Objects.requireNonNull(symbols);
             this.numSymbols = numSymbols;
+            this.privateSymbols = privateSymbols;
         }
 
         @Override
@@ -536,6 +558,12 @@ public abstract class EncodingPacket {
             return symbols.remaining();
         }
 
+        @Override
+        boolean hasPrivateSymbols() {
+
+            return privateSymbols;
+        }
+
         @Override
         public SerializablePacket asSerializable() {
 
@@ -630,7 +658,7 @@ public abstract class EncodingPacket {
 
         SourcePacket(int sbn, int esi, ByteBuffer symbols, int numSymbols) {
 
-            super(sbn, esi, symbols, numSymbols);
+            super(sbn, esi, symbols, numSymbols, false);
         }
 
         @Override
@@ -642,9 +670,9 @@ public abstract class EncodingPacket {
 
     private static final class RepairPacket extends AbstractEncodingPacket {
 
-        RepairPacket(int sbn, int esi, ByteBuffer symbols, int numSymbols) {
+        RepairPacket(int sbn, int esi, ByteBuffer symbols, int numSymbols, boolean privateSymbols) {
 
-            super(sbn, esi, symbols, numSymbols);
+            super(sbn, esi, symbols, numSymbols, privateSymbols);
         }
 
         @Override
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+
+/**
+ * Generates the resource files of the optimized decoders of intermediate symbols that are shipped with the library
+ * (see {@link ISDManager}).
+ * <p>
+ * Usage: {@code ISDGenerator <output directory> <K'> [<K'> ...]}
+ * <p>
+ * For each K', the operations performed on the symbols by a permanent inactivation decoding of the constraint matrix
+ * are written to a file named "ISD_{K'}.dat" in the output directory. The K' values must then be listed in the "ISDs"
+ * resource file for the decoders to be loaded.
+ */
+final class ISDGenerator {
+
+    public static void main(String[] args) throws IOException {
+
+        if (args.length < 2) {
+            System.err.println("Usage: ISDGenerator <output directory> <K'> [<K'> ...]");
+            System.exit(1);
+        }
+
+        final Path dir = Paths.get(args[0]);
+        for (int n = 1; n < args.length; n++) {
+            final int Kprime = Integer.parseInt(args[n]);
+            final List<ISDOperation> schedule = generateSchedule(Kprime);
+
+            final Path file = dir.resolve(ISDManager.resourceName(Kprime));
+            try (WritableByteChannel ch = Files.newByteChannel(file,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeSchedule(schedule, ch);
+            }
+
+            System.out.printf("%s: %d operations%n", file, schedule.size());
+        }
+    }
+
+    /**
+     * Returns the operations performed on the symbols by a permanent inactivation decoding of the constraint matrix
+     * for the given value of K'.
+     * 
+     * @param Kprime
+     *            The number of source (and padding) symbols in an extended source block
+     * @return a list of operations
+     * @exception IllegalArgumentException
+     *                If {@code Kprime} is an unknown K'
+     */
+    static List<ISDOperation> generateSchedule(int Kprime) {
+
+        if (!SystematicIndices.containsKPrime(Kprime)) {
+            throw new IllegalArgumentException("unknown K': " + Kprime);
+        }
+
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int L = Kprime + SystematicIndices.S(Ki) + SystematicIndices.H(Ki);
+
+        // the operations do not depend on the symbols, so these can have any size
+        final ByteMatrix A = LinearSystem.generateConstraintMatrix(Kprime);
+        final byte[][] D = new byte[L][1];
+
+        final List<ISDOperation> schedule = new ArrayList<>();
+        try {
+            LinearSystem.PInactivationDecoding(A, D, Kprime, schedule);
+        }
+        catch (SingularMatrixException e) {
+            throw new RuntimeException(
+                "FATAL ERROR: Singular matrix for the encoding process. This should never happen.");
+        }
+
+        return schedule;
+    }
+
+    /**
+     * Writes a list of operations to a channel, in the format read by
+     * {@link ISDOps#readOperation(java.nio.channels.ReadableByteChannel)}.
+     * 
+     * @param schedule
+     *            A list of operations
+     * @param ch
+     *            The channel to write to
+     * @throws IOException
+     *             If an I/O error occurs while writing
+     */
+    static void writeSchedule(List<ISDOperation> schedule, WritableByteChannel ch) throws IOException {
+
+        for (ISDOperation op : schedule) {
+            op.serializeToChannel(ch);
+        }
+    }
+
+    private ISDGenerator() {
+
+        // not instantiable
+    }
+}
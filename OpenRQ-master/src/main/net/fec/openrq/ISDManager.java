@@ -23,7 +23,10 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -34,7 +37,12 @@ import net.fec.openrq.util.rq.SystematicIndices;
 
 
 /**
- * 
+ * Keeps the optimized decoders of intermediate symbols, i.e., schedules of symbol operations that replay the permanent
+ * inactivation decoding of the constraint matrix for a given K'.
+ * <p>
+ * Decoders are either shipped as resources (listed in the "ISDs" file, see {@link ISDGenerator}), or recorded at
+ * runtime by the encoder the first time it decodes the intermediate symbols for some K'. Recorded decoders are kept in
+ * a cache that holds at most {@value #MAX_RECORDED_OPERATIONS} operations, evicting the least recently used ones.
  */
 final class ISDManager {
 
@@ -42,6 +50,9 @@ final class ISDManager {
     private static final String K_PRIME_FORMAT = "[0-9]+";
     private static final String ISD_PREFIX = "ISD_";
 
+    // upper bound on the total number of operations of the recorded decoders
+    static final int MAX_RECORDED_OPERATIONS = 1 << 20;
+
     private static final ISDManager INSTANCE;
     static {
         final List<IntermediateSymbolsDecoder> isdsList = new ArrayList<>();
@@ -108,9 +119,29 @@ final class ISDManager {
         return INSTANCE.getDecoder(Kprime);
     }
 
+    /**
+     * Registers an optimized decoder for the given value of K', from a schedule recorded during the permanent
+     * inactivation decoding of the constraint matrix (see
+     * {@link LinearSystem#PInactivationDecoding(net.fec.openrq.util.linearalgebra.matrix.ByteMatrix, byte[][], int, List)}
+     * ). Schedules that are too large to be cached are ignored.
+     * 
+     * @param Kprime
+     *            The number of source (and padding) symbols in an extended source block
+     * @param schedule
+     *            The recorded operations, which must not be modified afterwards
+     */
+    static void record(int Kprime, List<ISDOperation> schedule) {
+
+        INSTANCE.putRecorded(new ISD(Kprime, schedule));
+    }
+
 
     private final Map<Integer, IntermediateSymbolsDecoder> map;
 
+    // access ordered, guarded by itself
+    private final LinkedHashMap<Integer, ISD> recorded;
+    private int recordedOperations;
+
 
     private ISDManager(Iterable<IntermediateSymbolsDecoder> decoders) {
 
@@ -118,11 +149,58 @@ final class ISDManager {
         for (IntermediateSymbolsDecoder dec : decoders) {
             map.put(dec.supportedKPrime(), dec);
         }
+
+        this.recorded = new LinkedHashMap<>(16, 0.75f, true);
+        this.recordedOperations = 0;
     }
 
     private IntermediateSymbolsDecoder getDecoder(int Kprime) {
 
-        return map.get(Kprime);
+        final IntermediateSymbolsDecoder dec = map.get(Kprime);
+        if (dec != null) {
+            return dec;
+        }
+
+        synchronized (recorded) {
+            return recorded.get(Kprime);
+        }
+    }
+
+    private void putRecorded(ISD isd) {
+
+        final int numOps = isd.numOperations();
+        if (numOps > MAX_RECORDED_OPERATIONS) {
+            return;
+        }
+
+        synchronized (recorded) {
+            final ISD previous = recorded.put(isd.supportedKPrime(), isd);
+            if (previous != null) {
+                recordedOperations -= previous.numOperations();
+            }
+            recordedOperations += numOps;
+
+            // evict the least recently used decoders
+            final Iterator<ISD> it = recorded.values().iterator();
+            while (recordedOperations > MAX_RECORDED_OPERATIONS) {
+                recordedOperations -= it.next().numOperations();
+                it.remove();
+            }
+        }
+    }
+
+
+    /**
+     * Returns the name of the resource with the serialized operations of the optimized decoder for the given value of
+     * K'.
+     * 
+     * @param Kprime
+     *            The number of source (and padding) symbols in an extended source block
+     * @return the name of a resource file
+     */
+    static String resourceName(int Kprime) {
+
+        return ISD_PREFIX + Kprime + ".dat";
     }
 
 
@@ -148,9 +226,15 @@ final class ISDManager {
             }
         }
 
-        private static String resourceName(int Kprime) {
+        ISD(int Kprime, List<ISDOperation> ops) {
+
+            this.Kprime = Kprime;
+            this.ops = Collections.unmodifiableList(ops);
+        }
+
+        int numOperations() {
 
-            return ISD_PREFIX + Kprime + ".dat";
+            return ops.size();
         }
 
         @Override
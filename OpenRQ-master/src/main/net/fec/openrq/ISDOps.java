@@ -51,11 +51,32 @@ final class ISDOps {
         return new ReduceMatrixToRowEchelon(A, fromRow, toRow, fromCol, toCol, d);
     }
 
+    static ISDOperation newPhase2Operation(byte beta, int row) {
+
+        return new SymbolBetaDivision(beta, row);
+    }
+
+    static ISDOperation newPhase2Operation(byte srcMult, int srcRow, int dstRow) {
+
+        return new SymbolAddition(srcMult, srcRow, dstRow);
+    }
+
     static ISDOperation newPhase3Operation(ByteMatrix X, int Xrows, int Xcols, int[] d) {
 
         return new MatrixVectorMultiplication(X, Xrows, Xcols, d);
     }
 
+    static ISDOperation newPhase3Operation(byte mult, int row) {
+
+        // multiplying by mult is the same as dividing by its inverse
+        return new SymbolBetaDivision(OctetOps.aDividedByB((byte)1, mult), row);
+    }
+
+    static ISDOperation newPhase3Operation(byte srcMult, int srcRow, int dstRow) {
+
+        return new SymbolAddition(srcMult, srcRow, dstRow);
+    }
+
     static ISDOperation newPhase4Operation(byte srcMult, int srcRow, int dstRow) {
 
         return new SymbolAddition(srcMult, srcRow, dstRow);
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.util.Arrays;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.math.OctetOps;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+
+/**
+ * A system of linear equations of a source block, in the L intermediate symbols, that is reduced as each equation is
+ * added to it (Gaussian elimination over GF(256)).
+ * <p>
+ * The system starts with the LDPC and HDPC constraints and the equations of the padding symbols, and each received
+ * encoding symbol adds the equation of its ISI. The system keeps its pivot rows in the order they were installed, and
+ * each pivot row has zeros in the pivot columns of the rows installed before it. An added row is reduced against the
+ * pivot rows in that order, which leaves zeros in all of their pivot columns, and if it is not redundant, its leading
+ * non-zero becomes the pivot of a new row installed after them. Installed rows are never changed, so the intermediate
+ * symbols are known by back substitution as soon as the L-th pivot row is installed.
+ * <p>
+ * Rows can be added concurrently by several threads. Each thread reduces its row, the {@code O(L * (L + T))} part,
+ * against the pivot rows installed so far without holding a lock, and only takes the lock of the system to install
+ * its row; if other rows were installed meanwhile, it first reduces its row against those, again without the lock. The
+ * back substitution is also done without the lock, by the thread that installs the last pivot row.
+ * <p>
+ * The system keeps an L x L matrix of coefficients and L symbols, so it is only suited to source blocks with a small
+ * number of symbols; decoders do not build one for source blocks with more than
+ * {@link net.fec.openrq.decoder.SourceBlockDecoder#MAX_INCREMENTAL_DECODING_SYMBOLS} extended source symbols.
+ */
+final class IncrementalLinearSystem {
+
+    private final int Kprime;
+    private final int L;
+    private final int T;
+
+    // the pivot rows, their symbols and their pivot columns, in installation order; the first "rank" entries are
+    // installed and never change afterwards
+    private final byte[][] coefficients;
+    private final byte[][] symbols;
+    private final int[] pivotColumns;
+    private volatile int rank;
+
+    // the intermediate symbols, non-null once the system is solved
+    private volatile byte[][] solution;
+
+    // serializes the installation of pivot rows
+    private final Lock installLock;
+
+
+    /**
+     * @param K
+     *            The number of source symbols of the source block
+     * @param T
+     *            The size of the symbols
+     */
+    IncrementalLinearSystem(int K, int T) {
+
+        this.Kprime = SystematicIndices.ceil(K);
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int S = SystematicIndices.S(Ki);
+        final int H = SystematicIndices.H(Ki);
+        this.L = Kprime + S + H;
+        this.T = T;
+
+        this.coefficients = new byte[L][];
+        this.symbols = new byte[L][];
+        this.pivotColumns = new int[L];
+        this.rank = 0;
+        this.solution = null;
+        this.installLock = new ReentrantLock(false); // non-fair lock
+
+        // the LDPC and HDPC constraints have zero symbols
+        final ByteMatrix A = LinearSystem.generateConstraintMatrix(Kprime);
+        for (int i = 0; i < S + H; i++) {
+            final byte[] row = new byte[L];
+            for (int j : A.nonZeroPositionsInRow(i)) {
+                row[j] = A.get(i, j);
+            }
+            addRow(row, new byte[T]);
+        }
+
+        // so do the padding symbols
+        for (int isi = K; isi < Kprime; isi++) {
+            addEncodingSymbol(isi, new byte[T]);
+        }
+    }
+
+    /**
+     * Adds the equation of an encoding symbol to the system. This method may be called concurrently.
+     * 
+     * @param isi
+     *            The internal symbol ID of the encoding symbol
+     * @param symbol
+     *            The code data of the encoding symbol, which becomes owned by this system
+     * @return {@code true} iff the equation was independent of the ones already in the system
+     */
+    boolean addEncodingSymbol(long isi, byte[] symbol) {
+
+        final int[] indexes = new int[LinearSystem.MAX_ENC_INDEXES];
+        final byte[] row = new byte[L];
+        final int numIndexes = LinearSystem.encIndexes(Kprime, isi, indexes);
+        for (int n = 0; n < numIndexes; n++) {
+            row[indexes[n]] ^= 1; // the symbol is the sum of the intermediate symbols
+        }
+
+        return addRow(row, symbol);
+    }
+
+    /**
+     * @return {@code true} iff the system has a single solution, and its intermediate symbols are available
+     */
+    boolean isSolved() {
+
+        return solution != null;
+    }
+
+    /**
+     * Returns the intermediate symbols, which must only be called if the system {@linkplain #isSolved() is solved}.
+     * 
+     * @return the intermediate symbols (owned by this system)
+     */
+    byte[][] intermediateSymbols() {
+
+        final byte[][] C = solution;
+        if (C == null) throw new IllegalStateException("the system is not solved yet");
+        return C;
+    }
+
+    private boolean addRow(byte[] row, byte[] symbol) {
+
+        int reduced = 0; // the number of pivot rows the row was reduced against
+        while (true) {
+            final int installed = rank;
+            if (installed == L) {
+                return false; // already full rank
+            }
+
+            // reduce the row against the pivot rows installed since the last pass, in installation order (a pivot row
+            // never adds non-zeros to the pivot columns of the rows installed before it)
+            for (int k = reduced; k < installed; k++) {
+                final byte beta = row[pivotColumns[k]];
+                if (beta != 0) {
+                    OctetOps.vectorVectorAddition(beta, coefficients[k], row, row);
+                    OctetOps.vectorVectorAddition(beta, symbols[k], 0, symbol, 0, symbol, 0, T);
+                }
+            }
+            reduced = installed;
+
+            // the leading non-zero of the reduced row is in a column without a pivot
+            int pivot = 0;
+            while (pivot < L && row[pivot] == 0) {
+                pivot++;
+            }
+            if (pivot == L) {
+                return false; // redundant row
+            }
+
+            final byte alpha = row[pivot];
+            if (alpha != 1) {
+                OctetOps.valueVectorDivision(alpha, row, row);
+                OctetOps.valueVectorDivision(alpha, symbol, symbol);
+            }
+
+            installLock.lock();
+            try {
+                if (rank != installed) {
+                    continue; // other rows were installed meanwhile, so reduce against them too
+                }
+
+                coefficients[installed] = row;
+                symbols[installed] = symbol;
+                pivotColumns[installed] = pivot;
+                rank = installed + 1; // publishes the new pivot row
+            }
+            finally {
+                installLock.unlock();
+            }
+
+            if (installed + 1 == L) {
+                solution = backSubstitution();
+            }
+            return true;
+        }
+    }
+
+    /*
+     * Each pivot row has non-zeros only in its own pivot column and in the pivot columns of the rows installed after
+     * it, so the intermediate symbols are solved for in reverse installation order.
+     */
+    private byte[][] backSubstitution() {
+
+        final byte[][] C = new byte[L][];
+        for (int k = L - 1; k >= 0; k--) {
+            final byte[] row = coefficients[k];
+            final byte[] c = Arrays.copyOf(symbols[k], T);
+            for (int j = k + 1; j < L; j++) {
+                final int col = pivotColumns[j];
+                final byte beta = row[col];
+                if (beta != 0) {
+                    OctetOps.vectorVectorAddition(beta, C[col], 0, c, 0, c, 0, T);
+                }
+            }
+            C[pivotColumns[k]] = c;
+        }
+
+        return C;
+    }
+}
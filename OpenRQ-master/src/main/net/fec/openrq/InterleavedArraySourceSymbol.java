@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+import net.fec.openrq.util.io.BufferOperation;
+import net.fec.openrq.util.io.ByteBuffers;
+
+
+/**
+ * Container of source symbol array data, for source blocks divided into multiple sub-blocks.
+ * <p>
+ * The symbol data is the concatenation of one sub-symbol per sub-block, each one in a different region of the array
+ * (see {@link SubBlockPartition}). The bytes of the sub-symbols that lie past the end of the array are padding, and
+ * are always zero. Unlike in {@link ArraySourceSymbol}, the transport data is never shorter than the symbol size,
+ * since the padding may be in the middle of the symbol.
+ */
+final class InterleavedArraySourceSymbol implements SourceSymbol {
+
+    /*
+     * Requires valid parameters.
+     */
+    static InterleavedArraySourceSymbol newSymbol(
+        byte[] srcDataArray,
+        int blockOff,
+        int K,
+        int esi,
+        SubBlockPartition subBlocks)
+    {
+
+        final int N = subBlocks.numSubBlocks();
+        final int[] subSymbolOffs = new int[N];
+        for (int j = 0; j < N; j++) {
+            subSymbolOffs[j] = blockOff + subBlocks.subSymbolOffset(j, K, esi);
+        }
+
+        return new InterleavedArraySourceSymbol(srcDataArray, subSymbolOffs, subBlocks);
+    }
+
+
+    private final byte[] srcDataArray;
+    private final int[] subSymbolOffs;
+    private final SubBlockPartition subBlocks;
+
+
+    private InterleavedArraySourceSymbol(byte[] srcDataArray, int[] subSymbolOffs, SubBlockPartition subBlocks) {
+
+        this.srcDataArray = Objects.requireNonNull(srcDataArray);
+        this.subSymbolOffs = subSymbolOffs;
+        this.subBlocks = Objects.requireNonNull(subBlocks);
+    }
+
+    // number of bytes of sub-symbol j that are inside the array
+    private int dataSize(int j) {
+
+        return Math.max(0, Math.min(subBlocks.subSymbolSize(j), srcDataArray.length - subSymbolOffs[j]));
+    }
+
+    @Override
+    public int codeSize() {
+
+        return subBlocks.symbolSize();
+    }
+
+    @Override
+    public void getCodeData(ByteBuffer dst) {
+
+        getCodeData(dst, BufferOperation.ADVANCE_POSITION);
+    }
+
+    @Override
+    public void getCodeData(ByteBuffer dst, BufferOperation op) {
+
+        final int pos = dst.position();
+        final int lim = dst.limit();
+        final int remaining = lim - pos;
+        if (remaining < codeSize()) throw new BufferOverflowException();
+
+        for (int j = 0; j < subSymbolOffs.length; j++) {
+            final int dataSize = dataSize(j);
+            if (dataSize > 0) {
+                dst.put(srcDataArray, subSymbolOffs[j], dataSize);
+            }
+            ByteBuffers.putZeros(dst, subBlocks.subSymbolSize(j) - dataSize);
+        }
+
+        op.apply(dst, pos, dst.position());
+    }
+
+    @Override
+    public void putCodeData(ByteBuffer src) {
+
+        putCodeData(src, BufferOperation.ADVANCE_POSITION);
+    }
+
+    @Override
+    public void putCodeData(ByteBuffer src, BufferOperation op) {
+
+        final int pos = src.position();
+        for (int j = 0; j < subSymbolOffs.length; j++) {
+            final int dataSize = dataSize(j);
+            if (dataSize > 0) {
+                src.position(pos + subBlocks.subSymbolPosition(j));
+                src.get(srcDataArray, subSymbolOffs[j], dataSize);
+            }
+        }
+        src.position(pos + codeSize()); // always advance by codeSize() bytes
+        op.apply(src, pos, src.position());
+    }
+
+    @Override
+    public int transportSize() {
+
+        return codeSize();
+    }
+
+    @Override
+    public ByteBuffer transportData() {
+
+        final ByteBuffer data = ByteBuffer.allocate(codeSize());
+        getCodeData(data);
+        data.flip();
+
+        return data.asReadOnlyBuffer();
+    }
+
+    @Override
+    public void putTransportData(ByteBuffer src) {
+
+        putTransportData(src, BufferOperation.ADVANCE_POSITION);
+    }
+
+    @Override
+    public void putTransportData(ByteBuffer src, BufferOperation op) {
+
+        putCodeData(src, op);
+    }
+}
@@ -18,22 +18,15 @@ package net.fec.openrq;
 
 import java.io.PrintStream;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import net.fec.openrq.util.array.ArrayUtils;
-import net.fec.openrq.util.linearalgebra.LinearAlgebra;
-import net.fec.openrq.util.linearalgebra.factory.Factory;
 import net.fec.openrq.util.linearalgebra.io.ByteVectorIterator;
 import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
-import net.fec.openrq.util.linearalgebra.matrix.dense.RowIndirected2DByteMatrix;
-import net.fec.openrq.util.linearalgebra.vector.dense.BasicByteVector;
+import net.fec.openrq.util.linearalgebra.matrix.hybrid.HybridByteMatrix;
 import net.fec.openrq.util.math.OctetOps;
 import net.fec.openrq.util.rq.Rand;
 import net.fec.openrq.util.rq.SystematicIndices;
@@ -45,12 +38,14 @@ import net.fec.openrq.util.time.TimerUtils;
  */
 final class LinearSystem {
 
-    private static final Factory DENSE_FACTORY = LinearAlgebra.BASIC2D_FACTORY;
-    private static final Factory SPARSE_FACTORY = LinearAlgebra.CRS_FACTORY;
+    // upper bound on the total (approximate) size in bytes of the cached constraint matrices
+    private static final long MAX_CACHED_MATRICES_BYTES = 64L << 20;
 
-    // there is no benefit for a dense matrix in all values of K
-    private static final long A_SPARSE_THRESHOLD = 0L;
-    private static final long MT_SPARSE_THRESHOLD = 0L;
+    // the constraint matrices without overhead rows, indexed by K';
+    // these are never modified, only copied on write (access ordered, guarded by itself)
+    private static final LinkedHashMap<Integer, HybridByteMatrix> CONSTRAINT_MATRICES =
+        new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedMatricesBytes = 0L;
 
     private static final boolean PRINTING_CODE_ENABLED = false; // DEBUG
     private static final PrintStream TIMER_PRINTABLE = System.out; // DEBUG
@@ -77,26 +72,6 @@ final class LinearSystem {
         }
     }
 
-    private static Factory getMatrixAfactory(int L, int overheadRows) {
-
-        if ((long)L * (L + overheadRows) < A_SPARSE_THRESHOLD) {
-            return DENSE_FACTORY;
-        }
-        else {
-            return SPARSE_FACTORY;
-        }
-    }
-
-    private static Factory getMatrixMTfactory(int H, int Kprime, int S) {
-
-        if ((long)H * (Kprime + S) < MT_SPARSE_THRESHOLD) {
-            return DENSE_FACTORY;
-        }
-        else {
-            return SPARSE_FACTORY;
-        }
-    }
-
     /**
      * Initializes the G_LDPC1 submatrix.
      * 
@@ -192,61 +167,63 @@ final class LinearSystem {
     }
 
     /**
-     * Generates the MT matrix that is used to generate G_HDPC submatrix.
+     * Initializes the G_HDPC submatrix, which is the product of the MT and GAMMA matrices of RFC 6330.
+     * <p>
+     * Instead of building both matrices, each row of the product is computed from the last column to the first, in
+     * O(H * (K' + S)) time and with O(K' + S) extra memory. Since GAMMA[i, j] = alpha^((i - j) mod 256) for i >= j (the
+     * exponent wraps around at 256, as in the previous implementation with an explicit GAMMA), each entry of the row
+     * is obtained from the next one as in the Horner method:
      * 
+     * <pre>
+     * G[j] = MT[j] + alpha * G[j + 1] + (1 + alpha) * (MT[j + 256] + MT[j + 512] + ...)
+     * </pre>
+     * 
+     * where the last term corrects the contributions of the columns whose distance from j is a multiple of 256, which
+     * have an exponent of 0 and not 256.
+     * 
+     * @param A
+     * @param S
      * @param H
      * @param Kprime
-     * @param S
-     * @return MT
      */
-    private static ByteMatrix generateMT(int H, int Kprime, int S)
-    {
+    private static void initializeG_HDPC(ByteMatrix A, int S, int H, int Kprime) {
 
-        ByteMatrix MT = getMatrixMTfactory(H, Kprime, S).createMatrix(H, Kprime + S);
+        final int n = Kprime + S;
 
-        for (int row = 0; row < H; row++)
-        {
-            for (int col = 0; col < Kprime + S - 1; col++)
-            {
-                if (row == (int)Rand.rand(col + 1, 6, H) ||
-                    row == (((int)Rand.rand(col + 1, 6, H) + (int)Rand.rand(col + 1, 7, H - 1) + 1) % H))
-                {
-                    MT.set(row, col, (byte)1);
-                }
-            }
+        // MT, with one byte array per row
+        final byte[][] MT = new byte[H][n];
+        for (int col = 0; col < n - 1; col++) {
+            final int row1 = (int)Rand.rand(col + 1, 6, H);
+            final int row2 = (row1 + (int)Rand.rand(col + 1, 7, H - 1) + 1) % H;
+            MT[row1][col] = 1;
+            MT[row2][col] = 1;
         }
-
         for (int row = 0; row < H; row++) {
-            MT.set(row, Kprime + S - 1, OctetOps.alphaPower(row));
+            MT[row][n - 1] = OctetOps.alphaPower(row);
         }
 
-        return MT;
-    }
+        final byte alpha = OctetOps.alphaPower(1);
+        final byte onePlusAlpha = OctetOps.aPlusB((byte)1, alpha);
 
-    /**
-     * Generates the GAMMA matrix that is used to generate G_HDPC submatrix.
-     * 
-     * @param Kprime
-     * @param S
-     * @return GAMMA
-     */
-    private static ByteMatrix generateGAMMA(int Kprime, int S)
-    {
+        // strideSum[j] = MT[j] + MT[j + 256] + MT[j + 512] + ...
+        final byte[] strideSum = new byte[n];
+        for (int row = 0; row < H; row++) {
+            final byte[] mt = MT[row];
 
-        // FIXME this needs a more efficient representation since it is a lower triangular matrix
-        ByteMatrix GAMMA = DENSE_FACTORY.createMatrix(Kprime + S, Kprime + S);
+            byte g = 0;
+            for (int col = n - 1; col >= 0; col--) {
+                strideSum[col] = (col + 256 < n) ? OctetOps.aPlusB(mt[col], strideSum[col + 256]) : mt[col];
 
-        for (int row = 0; row < Kprime + S; row++)
-        {
-            for (int col = 0; col < Kprime + S; col++)
-            {
-                if (row >= col) {
-                    GAMMA.set(row, col, OctetOps.alphaPower((row - col) % 256));
+                g = OctetOps.aPlusB(mt[col], OctetOps.aTimesB(alpha, g));
+                if (col + 256 < n) {
+                    g = OctetOps.aPlusB(g, OctetOps.aTimesB(onePlusAlpha, strideSum[col + 256]));
+                }
+
+                if (g != 0) {
+                    A.set(S + row, col, g);
                 }
             }
         }
-
-        return GAMMA;
     }
 
     /**
@@ -261,15 +238,14 @@ final class LinearSystem {
     private static void initializeG_ENC(ByteMatrix A, int S, int H, int L, int Kprime)
     {
 
+        final int[] indexes = new int[MAX_ENC_INDEXES];
         for (int row = S + H; row < L; row++)
         {
-            Tuple tuple = new Tuple(Kprime, row - S - H);
+            final int numIndexes = encIndexes(Kprime, row - S - H, indexes);
 
-            Set<Integer> indexes = encIndexes(Kprime, tuple);
-
-            for (Integer j : indexes)
+            for (int n = 0; n < numIndexes; n++)
             {
-                A.set(row, j, (byte)1);
+                A.set(row, indexes[n], (byte)1);
             }
         }
     }
@@ -286,7 +262,11 @@ final class LinearSystem {
     }
 
     /**
-     * Generates the constraint matrix.
+     * Generates the constraint matrix, with additional zero rows at the end.
+     * <p>
+     * The constraint matrix only depends on K', so the most recently used ones are cached, and the returned matrix is
+     * a copy-on-write copy of a cached one (see {@link HybridByteMatrix#copyOnWrite(int)}): only the rows that are
+     * modified in the returned matrix are actually copied.
      * 
      * @param Kprime
      * @param overheadRows
@@ -294,6 +274,67 @@ final class LinearSystem {
      */
     static ByteMatrix generateConstraintMatrix(int Kprime, int overheadRows) {
 
+        final HybridByteMatrix A = cachedConstraintMatrix(Kprime);
+        return A.copyOnWrite(A.rows() + overheadRows);
+    }
+
+    /**
+     * Generates the constraint matrix, with additional zero rows at the end, into the memory of a workspace.
+     * <p>
+     * The returned matrix is only valid until the next call to this method with the same workspace.
+     * 
+     * @param Kprime
+     * @param overheadRows
+     * @param workspace
+     *            The workspace that owns the returned matrix
+     * @return a constraint matrix
+     */
+    static ByteMatrix generateConstraintMatrix(int Kprime, int overheadRows, DecoderWorkspace workspace) {
+
+        return workspace.constraintMatrix(cachedConstraintMatrix(Kprime), overheadRows);
+    }
+
+    // returns a constraint matrix that must not be modified
+    private static HybridByteMatrix cachedConstraintMatrix(int Kprime) {
+
+        HybridByteMatrix A;
+        synchronized (CONSTRAINT_MATRICES) {
+            A = CONSTRAINT_MATRICES.get(Kprime);
+        }
+
+        if (A == null) {
+            A = buildConstraintMatrix(Kprime);
+
+            final long bytes = matrixBytes(A);
+            if (bytes <= MAX_CACHED_MATRICES_BYTES) {
+                synchronized (CONSTRAINT_MATRICES) {
+                    final HybridByteMatrix previous = CONSTRAINT_MATRICES.put(Kprime, A);
+                    if (previous != null) {
+                        cachedMatricesBytes -= matrixBytes(previous);
+                    }
+                    cachedMatricesBytes += bytes;
+
+                    // evict the least recently used matrices
+                    final Iterator<HybridByteMatrix> it = CONSTRAINT_MATRICES.values().iterator();
+                    while (cachedMatricesBytes > MAX_CACHED_MATRICES_BYTES) {
+                        cachedMatricesBytes -= matrixBytes(it.next());
+                        it.remove();
+                    }
+                }
+            }
+        }
+
+        return A;
+    }
+
+    // approximate size of a constraint matrix, with binary rows
+    private static long matrixBytes(ByteMatrix A) {
+
+        return (long)A.rows() * ((A.columns() + Long.SIZE - 1) / Long.SIZE) * (Long.SIZE / Byte.SIZE);
+    }
+
+    private static HybridByteMatrix buildConstraintMatrix(int Kprime) {
+
         // calculate necessary parameters
         final int Ki = SystematicIndices.getKIndex(Kprime);
         final int S = SystematicIndices.S(Ki);
@@ -307,7 +348,8 @@ final class LinearSystem {
         TimerUtils.beginTimer(); // DEBUG
 
         // allocate memory for the constraint matrix
-        ByteMatrix A = getMatrixAfactory(L, overheadRows).createMatrix(L + overheadRows, L);
+        // (only the HDPC rows are not binary, the remaining rows are kept as bitsets)
+        HybridByteMatrix A = new HybridByteMatrix(L, L);
 
         /*
          * upper half
@@ -330,22 +372,7 @@ final class LinearSystem {
         initializeIh(A, W, U, H, S);
 
         // initialize G_HDPC
-
-        // MT
-        ByteMatrix MT = generateMT(H, Kprime, S);
-
-        // GAMMA
-        ByteMatrix GAMMA = generateGAMMA(Kprime, S);
-
-        // G_HDPC = MT * GAMMA
-        ByteMatrix G_HDPC = MT.multiply(GAMMA);
-
-        // initialize G_HDPC
-        for (int row = S; row < S + H; row++) {
-            for (int col = 0; col < W + U; col++) {
-                A.set(row, col, G_HDPC.get(row - S, col));
-            }
-        }
+        initializeG_HDPC(A, S, H, Kprime);
 
         // initialize G_ENC
         initializeG_ENC(A, S, H, L, Kprime);
@@ -360,49 +387,71 @@ final class LinearSystem {
     }
 
     /**
-     * Returns the indexes of the intermediate symbols that should be XORed to encode
-     * the symbol for the given tuple.
+     * The maximum number of indexes returned by {@link #encIndexes(int, long, int[])} (the LT degree is at most 30 and
+     * the PI degree is at most 3).
+     */
+    static final int MAX_ENC_INDEXES = 30 + 3;
+
+    /**
+     * Writes the indexes of the intermediate symbols that should be XORed to encode
+     * the symbol with the given ISI.
      * 
      * @param Kprime
-     * @param tuple
-     * @return Set of indexes.
+     * @param isi
+     * @param indexes
+     *            An array with at least {@link #MAX_ENC_INDEXES} elements, where the indexes are written to
+     * @return the number of indexes written to the array
      */
-    static Set<Integer> encIndexes(int Kprime, Tuple tuple)
+    static int encIndexes(int Kprime, long isi, int[] indexes)
     {
 
-        // allocate memory for the indexes
-        final Set<Integer> indexes = new HashSet<>(Kprime);
+        return encIndexes(Kprime, isi, indexes, 0);
+    }
 
-        // parameters
-        final int Ki = SystematicIndices.getKIndex(Kprime);
-        final int S = SystematicIndices.S(Ki);
-        final int H = SystematicIndices.H(Ki);
-        final int W = SystematicIndices.W(Ki);
-        final long L = Kprime + S + H;
-        final long P = L - W;
-        final long P1 = MatrixUtilities.ceilPrime(P);
+    /**
+     * Writes the indexes of the intermediate symbols that should be XORed to encode
+     * the symbol with the given ISI, starting at an offset of the array.
+     * 
+     * @param Kprime
+     * @param isi
+     * @param indexes
+     *            An array with at least {@code off + }{@link #MAX_ENC_INDEXES} elements, where the indexes are
+     *            written to
+     * @param off
+     *            The index in the array of the first index written
+     * @return the number of indexes written to the array
+     */
+    static int encIndexes(int Kprime, long isi, int[] indexes, int off)
+    {
+
+        final TupleTable tuples = TupleTable.get(Kprime);
+        final int W = tuples.W();
+        final int P = tuples.P();
+        final int P1 = tuples.P1();
 
-        // tuple parameters
-        final long d = tuple.getD();
-        final long a = tuple.getA();
+        // tuple parameters, read through the beginning of the indexes array before it is written
+        tuples.getTuple(isi, indexes, off);
+        final int d = indexes[off];
+        final int a = indexes[off + 1];
 
-        long b = tuple.getB();
+        int b = indexes[off + 2];
 
-        final long d1 = tuple.getD1();
-        final long a1 = tuple.getA1();
+        final int d1 = indexes[off + 3];
+        final int a1 = indexes[off + 4];
 
-        long b1 = tuple.getB1();
+        int b1 = indexes[off + 5];
 
         /*
          * simulated encoding -- refer to section 5.3.3.3 of RFC 6330
          */
 
-        indexes.add((int)b);
+        int n = off;
+        indexes[n++] = b;
 
-        for (long j = 1; j < d; j++)
+        for (int j = 1; j < d; j++)
         {
             b = (b + a) % W;
-            indexes.add((int)b);
+            indexes[n++] = b;
         }
 
         while (b1 >= P)
@@ -410,18 +459,18 @@ final class LinearSystem {
             b1 = (b1 + a1) % P1;
         }
 
-        indexes.add((int)(W + b1));
+        indexes[n++] = W + b1;
 
-        for (long j = 1; j < d1; j++)
+        for (int j = 1; j < d1; j++)
         {
             do
                 b1 = (b1 + a1) % P1;
             while (b1 >= P);
 
-            indexes.add((int)(W + b1));
+            indexes[n++] = W + b1;
         }
 
-        return indexes;
+        return n - off;
     }
 
     /**
@@ -429,58 +478,195 @@ final class LinearSystem {
      * 
      * @param Kprime
      * @param C
-     * @param tuple
+     * @param isi
      * @param T
      * @return an encoding symbol
      */
-    static byte[] enc(int Kprime, byte[][] C, Tuple tuple, int T) {
-
-        // necessary parameters
-        final int Ki = SystematicIndices.getKIndex(Kprime);
-        final int S = SystematicIndices.S(Ki);
-        final int H = SystematicIndices.H(Ki);
-        final int W = SystematicIndices.W(Ki);
-        final long L = Kprime + S + H;
-        final long P = L - W;
-        final int P1 = (int)MatrixUtilities.ceilPrime(P);
-        final long d = tuple.getD();
-        final int a = (int)tuple.getA();
+    static byte[] enc(int Kprime, byte[][] C, long isi, int T) {
 
-        int b = (int)tuple.getB();
-
-        final long d1 = tuple.getD1();
-        final int a1 = (int)tuple.getA1();
+        final byte[] result = new byte[T];
+        enc(Kprime, C, isi, result, 0, T);
+        return result;
+    }
 
-        int b1 = (int)tuple.getB1();
+    /**
+     * Encodes a source symbol into a region of an array.
+     * 
+     * @param Kprime
+     * @param C
+     * @param isi
+     * @param dst
+     *            The array where the encoding symbol is written to
+     * @param off
+     *            The index in the array of the first byte of the encoding symbol
+     * @param T
+     */
+    static void enc(int Kprime, byte[][] C, long isi, byte[] dst, int off, int T) {
 
-        // allocate memory and initialize the encoding symbol
-        final byte[] result = Arrays.copyOf(C[b], T);
+        final int[] indexes = new int[MAX_ENC_INDEXES];
+        final int numIndexes = encIndexes(Kprime, isi, indexes, 0);
 
         /*
          * encoding -- refer to section 5.3.5.3 of RFC 6330
          */
 
-        for (long j = 1; j < d; j++)
-        {
-            b = (b + a) % W;
-            OctetOps.vectorVectorAddition(C[b], result, result);
+        System.arraycopy(C[indexes[0]], 0, dst, off, T);
+        for (int n = 1; n < numIndexes; n++) {
+            OctetOps.vectorVectorAddition(C[indexes[n]], 0, dst, off, dst, off, T);
         }
+    }
 
-        while (b1 >= P)
-            b1 = (b1 + a1) % P1;
+    /**
+     * Encodes the symbols with consecutive ISIs into consecutive regions of an array.
+     * <p>
+     * Instead of walking the intermediate symbols once per encoding symbol, the batch is transposed: every
+     * intermediate symbol is visited once, in increasing order, and added to all the encoding symbols that depend on
+     * it. Since an intermediate symbol is shared by many encoding symbols (all of them share the PI symbols), each one
+     * is brought to the cache once per batch instead of once per encoding symbol. Large batches are encoded in
+     * sub-batches of at most {@link #ENC_SUB_BATCH_SIZE} symbols, so the index arrays have a bounded size and are
+     * reused across sub-batches, and the encoding symbols of a sub-batch stay close together in the destination.
+     * 
+     * @param Kprime
+     * @param C
+     * @param firstISI
+     *            The ISI of the first encoding symbol
+     * @param numSymbols
+     *            The number of encoding symbols
+     * @param dst
+     *            The array where the encoding symbols are written to
+     * @param off
+     *            The index in the array of the first byte of the first encoding symbol
+     * @param T
+     */
+    static void encBatch(int Kprime, byte[][] C, long firstISI, int numSymbols, byte[] dst, int off, int T) {
 
-        OctetOps.vectorVectorAddition(C[W + b1], result, result);
+        encBatch(Kprime, C, firstISI, numSymbols, dst, off, T, T);
+    }
 
-        for (long j = 1; j < d1; j++)
-        {
-            do
-                b1 = (b1 + a1) % P1;
-            while (b1 >= P);
+    /**
+     * Encodes the symbols with consecutive ISIs into regions of an array that are a fixed number of bytes apart. This
+     * allows the encoding (sub-)symbols of one sub-block to be written directly into their positions inside whole
+     * encoding symbols.
+     * 
+     * @param Kprime
+     * @param C
+     * @param firstISI
+     *            The ISI of the first encoding symbol
+     * @param numSymbols
+     *            The number of encoding symbols
+     * @param dst
+     *            The array where the encoding symbols are written to
+     * @param off
+     *            The index in the array of the first byte of the first encoding symbol
+     * @param stride
+     *            The distance in the array between the first bytes of consecutive encoding symbols
+     * @param T
+     *            The size of the encoding symbols (at most {@code stride})
+     */
+    static void encBatch(
+        int Kprime,
+        byte[][] C,
+        long firstISI,
+        int numSymbols,
+        byte[] dst,
+        int off,
+        int stride,
+        int T)
+    {
 
-            OctetOps.vectorVectorAddition(C[W + b1], result, result);
+        final int batchSize = Math.min(numSymbols, ENC_SUB_BATCH_SIZE);
+        final EncBatchIndexes idx = new EncBatchIndexes(batchSize, C.length);
+        for (int s = 0; s < numSymbols; s += batchSize) {
+            encSubBatch(Kprime, C, firstISI + s, Math.min(batchSize, numSymbols - s), dst, off + s * stride, stride,
+                T, idx);
         }
+    }
 
-        return result;
+    /**
+     * The maximum number of encoding symbols transposed together by {@code encBatch}.
+     */
+    static final int ENC_SUB_BATCH_SIZE = 128;
+
+    // index arrays of encBatch, reused by all the sub-batches of a batch
+    private static final class EncBatchIndexes {
+
+        // indexes of every encoding symbol, MAX_ENC_INDEXES slots per symbol
+        final int[] indexes;
+        final int[] numIndexes;
+        // start[c + 1] counts the uses of intermediate symbol c, and then
+        // becomes the position of its first user after the prefix sums
+        final int[] start;
+        final int[] fill;
+        // users[start[c]..start[c + 1]) are the encoding symbols that depend on c
+        final int[] users;
+        final boolean[] initialized;
+
+        EncBatchIndexes(int batchSize, int numIntermediate) {
+
+            this.indexes = new int[batchSize * MAX_ENC_INDEXES];
+            this.numIndexes = new int[batchSize];
+            this.start = new int[numIntermediate + 1];
+            this.fill = new int[numIntermediate];
+            this.users = new int[batchSize * MAX_ENC_INDEXES];
+            this.initialized = new boolean[batchSize];
+        }
+    }
+
+    private static void encSubBatch(
+        int Kprime,
+        byte[][] C,
+        long firstISI,
+        int numSymbols,
+        byte[] dst,
+        int off,
+        int stride,
+        int T,
+        EncBatchIndexes idx)
+    {
+
+        final int[] indexes = idx.indexes;
+        final int[] numIndexes = idx.numIndexes;
+        final int[] start = idx.start;
+        final int[] users = idx.users;
+        final int[] fill = idx.fill;
+        final boolean[] initialized = idx.initialized;
+
+        Arrays.fill(start, 0);
+        for (int s = 0; s < numSymbols; s++) {
+            final int base = s * MAX_ENC_INDEXES;
+            numIndexes[s] = encIndexes(Kprime, firstISI + s, indexes, base);
+            for (int n = 0; n < numIndexes[s]; n++) {
+                start[indexes[base + n] + 1]++;
+            }
+        }
+        for (int c = 0; c < C.length; c++) {
+            start[c + 1] += start[c];
+        }
+
+        System.arraycopy(start, 0, fill, 0, C.length);
+        for (int s = 0; s < numSymbols; s++) {
+            final int base = s * MAX_ENC_INDEXES;
+            for (int n = 0; n < numIndexes[s]; n++) {
+                users[fill[indexes[base + n]]++] = s;
+            }
+        }
+
+        // the first intermediate symbol used by an encoding symbol initializes it
+        Arrays.fill(initialized, 0, numSymbols, false);
+        for (int c = 0; c < C.length; c++) {
+            final byte[] symbol = C[c];
+            for (int u = start[c]; u < start[c + 1]; u++) {
+                final int s = users[u];
+                final int pos = off + s * stride;
+                if (initialized[s]) {
+                    OctetOps.vectorVectorAddition(symbol, 0, dst, pos, dst, pos, T);
+                }
+                else {
+                    System.arraycopy(symbol, 0, dst, pos, T);
+                    initialized[s] = true;
+                }
+            }
+        }
     }
 
     /**
@@ -500,6 +686,84 @@ final class LinearSystem {
         throws SingularMatrixException
     {
 
+        return PInactivationDecoding(A, D, Kprime, null);
+    }
+
+    /**
+     * Replays a schedule recorded by {@link #PInactivationDecoding(ByteMatrix, byte[][], int, List)} on another vector
+     * D with the same number of rows (the symbols may have a different size).
+     * 
+     * @param schedule
+     *            The recorded operations
+     * @param D
+     *            The vector with available symbols (each row of the matrix contains one symbol)
+     * @return the intermediate symbols
+     */
+    static byte[][] replaySchedule(List<ISDOperation> schedule, byte[][] D) {
+
+        byte[][] symbols = D;
+        for (ISDOperation op : schedule) {
+            symbols = op.apply(symbols);
+        }
+        return symbols;
+    }
+
+    /**
+     * Solves the decoding system of linear equations using the permanent inactivation technique, and records the
+     * operations performed on the symbols.
+     * <p>
+     * The operations only depend on the constraint matrix, so replaying the recorded schedule (in order) on any vector
+     * D of the same size yields the same intermediate symbols as decoding it, without any matrix work.
+     * 
+     * @param A
+     *            The constraint matrix
+     * @param D
+     *            The vector with available symbols (each row of the matrix contains one symbol)
+     * @param Kprime
+     *            The total number of source symbols for decoding
+     * @param schedule
+     *            The list where the operations performed on the symbols are recorded, or {@code null}
+     * @return the intermediate symbols
+     * @throws SingularMatrixException
+     *             If the decoding fails
+     */
+    static byte[][] PInactivationDecoding(ByteMatrix A, byte[][] D, int Kprime, List<ISDOperation> schedule)
+        throws SingularMatrixException
+    {
+
+        return PInactivationDecoding(A, D, Kprime, schedule, new DecoderWorkspace());
+    }
+
+    /**
+     * Solves the decoding system of linear equations using the permanent inactivation technique, with the memory of
+     * a workspace, and records the operations performed on the symbols.
+     * <p>
+     * The returned array is owned by the workspace, and is only valid until the next decoding with the same
+     * workspace.
+     * 
+     * @param A
+     *            The constraint matrix
+     * @param D
+     *            The vector with available symbols (each row of the matrix contains one symbol)
+     * @param Kprime
+     *            The total number of source symbols for decoding
+     * @param schedule
+     *            The list where the operations performed on the symbols are recorded, or {@code null}
+     * @param workspace
+     *            The workspace whose memory is used by the decoding
+     * @return the intermediate symbols
+     * @throws SingularMatrixException
+     *             If the decoding fails
+     */
+    static byte[][] PInactivationDecoding(
+        ByteMatrix A,
+        byte[][] D,
+        int Kprime,
+        List<ISDOperation> schedule,
+        DecoderWorkspace workspace)
+        throws SingularMatrixException
+    {
+
         // decoding parameters
         int Ki = SystematicIndices.getKIndex(Kprime);
         int S = SystematicIndices.S(Ki);
@@ -509,10 +773,7 @@ final class LinearSystem {
         int P = L - W;
         int M = A.rows();
 
-        // ISDCodeWriter.instance().prepare(); // DEBUG
-        // ISDCodeWriter.instance().writeKprimeCode(Kprime); // DEBUG
-
-        return pidPhase1(A, D, Kprime, S, H, L, P, M);
+        return pidPhase1(A, D, Kprime, S, H, L, P, M, schedule, workspace);
     }
 
     private static byte[][] pidPhase1(
@@ -523,7 +784,9 @@ final class LinearSystem {
         final int H,
         final int L,
         final int P,
-        final int M)
+        final int M,
+        final List<ISDOperation> schedule,
+        final DecoderWorkspace workspace)
         throws SingularMatrixException
     {
 
@@ -540,8 +803,8 @@ final class LinearSystem {
         /*
          * initialize c and d vectors
          */
-        final int[] c = new int[L];
-        final int[] d = new int[M];
+        final int[] c = workspace.columnIndexes(L);
+        final int[] d = workspace.rowIndexes(M);
 
         for (int i = 0; i < L; i++) {
             c[i] = i;
@@ -552,7 +815,7 @@ final class LinearSystem {
             d[i] = i;
         }
 
-        final ByteMatrix X = A.copy();
+        final ByteMatrix X = workspace.copyOf(A);
 
         // initialize i and u parameters, for the submatrices sizes
         int i = 0, u = P;
@@ -564,38 +827,32 @@ final class LinearSystem {
         // (these should be chosen first)
         int nonHDPCRows = S + Kprime;
 
-        // maps the index of a row to an object Row (which stores that row's characteristics)
-        final Map<Integer, Row> rows = new HashMap<>(M + 1, 1.0f);
+        // the rows that still intersect V, in degree buckets
+        final Phase1Rows rows = workspace.phase1Rows(M, L, S, H);
+
+        // the current position of each row in A, indexed by the original row index
+        final int[] rowPos = workspace.rowPositions(M);
+
         for (int row = 0; row < M; row++) {
-            // retrieve the number of non-zeros in the row
-            final int nonZeros = A.nonZerosInRow(row, 0, L - u); // exclude last u columns
-            // is this a HDPC row?
-            final boolean isHDPC = (row >= S && row < S + H);
-
-            // this is an optimization
-            if (nonZeros == 2 && !isHDPC) {
-                int originalDegree = 0;
-                final Set<Integer> nodes = new HashSet<>(2 + 1, 1.0f); // we already know there are only 2 non zeros
-
-                ByteVectorIterator it = A.nonZeroRowIterator(row, 0, L - u);
-                while (it.hasNext()) {
-                    it.next();
-                    originalDegree += OctetOps.UNSIGN(it.get()); // add to the degree of this row
-                    nodes.add(it.index()); // add the column index to the nodes
-                }
+            rowPos[row] = row;
 
-                rows.put(row, new Row(row, nonZeros, originalDegree, isHDPC, nodes));
-            }
-            else {
-                int originalDegree = 0;
+            // retrieve the number of non-zeros in the row, and the original degree
+            int nonZeros = 0;
+            int originalDegree = 0;
+            int node1 = 0, node2 = 0;
 
-                ByteVectorIterator it = A.nonZeroRowIterator(row, 0, L - u);
-                while (it.hasNext()) {
-                    it.next();
-                    originalDegree += OctetOps.UNSIGN(it.get()); // add to the degree of this row
-                }
+            ByteVectorIterator it = A.nonZeroRowIterator(row, 0, L - u); // exclude last u columns
+            while (it.hasNext()) {
+                it.next();
+                originalDegree += OctetOps.UNSIGN(it.get()); // add to the degree of this row
+                if (nonZeros == 0) node1 = it.index();
+                else if (nonZeros == 1) node2 = it.index();
+                nonZeros++;
+            }
 
-                rows.put(row, new Row(row, nonZeros, originalDegree, isHDPC));
+            rows.add(row, nonZeros, originalDegree);
+            if (nonZeros == 2 && !rows.isHDPC(row)) {
+                rows.setEdge(row, node1, node2); // no columns were swapped yet
             }
         }
 
@@ -605,244 +862,51 @@ final class LinearSystem {
         // at most L steps
         while (i + u != L)
         {
-            // the degree of the 'currently chosen' row
-            int minDegree = 256 * L;
-
-            // number of non-zeros in the 'currently chosen' row
-            int r = L + 1;
-
-            // currently chosen row
-            Row chosenRow = null;
-
-            // decoding failure?
-            boolean allZeros = true;
-
-            // there is a row with exactly two ones
-            boolean two1s = false;
-
             /*
              * find r
              */
 
             TimerUtils.beginTimer(); // DEBUG
 
-            for (Row row : rows.values()) {
-                if (row.nonZeros != 0) allZeros = false;
-                if (row.isHDPC && chosenRowsCounter < nonHDPCRows) continue;
+            if (rows.allZeros()) {// DECODING FAILURE
+                throw new SingularMatrixException(
+                    "Decoding Failure - PI Decoding @ Phase 1: All entries in V are zero.");
+            }
 
-                // if it's an edge, then it must have exactly two 1's
-                if (row.nodes != null) two1s = true;
+            // HDPC rows are only chosen after the non-HDPC rows
+            boolean hdpcAllowed = chosenRowsCounter >= nonHDPCRows;
 
-                if (row.nonZeros < r && row.nonZeros > 0) {
-                    chosenRow = row;
-                    r = chosenRow.nonZeros;
-                    minDegree = chosenRow.originalDegree;
-                }
-                else if (row.nonZeros == r && row.originalDegree < minDegree) {
-                    chosenRow = row;
-                    minDegree = chosenRow.originalDegree;
-                }
+            // number of non-zeros in the 'currently chosen' row
+            int r = rows.minNonZeros(hdpcAllowed);
+            if (r == 0) { // only HDPC rows are left
+                hdpcAllowed = true;
+                r = rows.minNonZeros(hdpcAllowed);
             }
 
             TimerUtils.markTimestamp(); // DEBUG
             findRNanos += TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS);
 
-            if (allZeros) {// DECODING FAILURE
-                throw new SingularMatrixException(
-                    "Decoding Failure - PI Decoding @ Phase 1: All entries in V are zero.");
-            }
-
             /*
              * choose the row
              */
 
             TimerUtils.beginTimer(); // DEBUG
 
-            if (r == 2 && two1s) {
-
-                /*
-                 * create graph
-                 */
-
-                // allocate memory
-                Map<Integer, Set<Integer>> graph = new HashMap<>(L - u - i + 1, 1.0f);
-
-                // lets go through all the rows... (yet again!)
-                for (Row row : rows.values())
-                {
-                    // is this row an edge?
-                    if (row.nodes != null)
-                    {
-                        // get the nodes connected through this edge
-                        Integer[] edge = row.nodes.toArray(new Integer[2]);
-                        int node1 = edge[0];
-                        int node2 = edge[1];
-
-                        // node1 already in graph?
-                        if (graph.keySet().contains(node1))
-                        { // it is
-
-                            // then lets add node 2 to its neighbours
-                            graph.get(node1).add(node2);
-                        }
-                        else
-                        { // it isn't
-
-                            // allocate memory for its neighbours
-                            Set<Integer> edges = new HashSet<>(L - u - i + 1, 1.0f);
-
-                            // add node 2 to its neighbours
-                            edges.add(node2);
-
-                            // finally, add node 1 to the graph along with its neighbours
-                            graph.put(node1, edges);
-                        }
-
-                        // node2 already in graph?
-                        if (graph.keySet().contains(node2))
-                        { // it is
-
-                            // then lets add node 1 to its neighbours
-                            graph.get(node2).add(node1);
-                        }
-                        else
-                        { // it isn't
-
-                            // allocate memory for its neighbours
-                            Set<Integer> edges = new HashSet<>(L - u - i + 1, 1.0f);
-
-                            // add node 1 to its neighbours
-                            edges.add(node1);
-
-                            // finally, add node 2 to the graph along with its neighbours
-                            graph.put(node2, edges);
-                        }
-                    }
-                    else continue;
-                }
-
-                /*
-                 * the graph is complete, now we must
-                 * find the maximum size component
-                 */
-
-                // set of visited nodes
-                Set<Integer> visited = null;
-
-                /*
-                 * TODO Optimization: I already searched, and there are optimized algorithms to find connected
-                 * components. Then we just find and use the best one available...
-                 */
-
-                // what is the size of the largest component we've already found
-                int maximumSize = 0;
-
-                // the maximum size component
-                Set<Integer> greatestComponent = null;
-
-                // which nodes have already been used (either in visited or in toVisit)
-                Set<Integer> used = new HashSet<>(L - u - i + 1, 1.0f);
-
-                // iterates the nodes in the graph
-                Iterator<Map.Entry<Integer, Set<Integer>>> it = graph.entrySet().iterator();
-
-                // let's iterate through the nodes in the graph, looking for the maximum
-                // size component. we will be doing a breadth first search // TODO optimize this with a better
-                // algorithm?
-                while (it.hasNext())
-                {
-                    // get our initial node
-                    Map.Entry<Integer, Set<Integer>> node = it.next();
-                    int initialNode = node.getKey();
-
-                    // we can't have used it before!
-                    if (used.contains(initialNode)) continue;
-
-                    // what are the edges of our initial node?
-                    Integer[] edges = node.getValue().toArray(new Integer[node.getValue().size()]);
-
-                    // allocate memory for the set of visited nodes
-                    visited = new HashSet<>(L - u - i + 1, 1.0f);
-
-                    // the set of nodes we must still visit
-                    List<Integer> toVisit = new LinkedList<>();
-
-                    // add the initial node to the set of used and visited nodes
-                    visited.add(initialNode);
-                    used.add(initialNode);
-
-                    // add my edges to the set of nodes we must visit
-                    // and also put them in the used set
-                    for (Integer edge : edges)
-                    {
-                        toVisit.add(edge);
-                        used.add(edge);
-                    }
-
-                    // start the search!
-                    while (toVisit.size() != 0)
-                    {
-                        // the node we are visiting
-                        int no = toVisit.remove(0);
-
-                        // add node to visited set
-                        visited.add(no);
-
-                        // queue edges to be visited (if they haven't been already
-                        for (Integer edge : graph.get(no))
-                            if (!visited.contains(edge)) toVisit.add(edge);
-                    }
-
-                    // is the number of visited nodes, greater than the 'currently' largest component?
-                    if (visited.size() > maximumSize)
-                    { // it is! we've found a greater component then...
-
-                        // update the maximum size
-                        maximumSize = visited.size();
-
-                        // update our greatest component
-                        greatestComponent = visited;
-                    }
-                    else continue;
-                }
-
-                /*
-                 * we've found the maximum size connected component -- 'greatestComponent'
-                 */
-
-                // let's choose the row
-                for (Row row : rows.values())
-                {
-                    // is it a node in the graph?
-                    if (row.nodes != null)
-                    { // it is
-
-                        // get the nodes connected through this edge
-                        Integer[] edge = row.nodes.toArray(new Integer[2]);
-                        int node1 = edge[0];
-                        int node2 = edge[1];
-
-                        // is this row an edge in the maximum size component?
-                        if (greatestComponent.contains(node1) && greatestComponent.contains(node2))
-                        {
-                            chosenRow = row;
-                            break;
-                        }
-                        else continue;
-                    }
-                    else continue;
-                }
-
-                chosenRowsCounter++;
-
-                TimerUtils.markTimestamp(); // DEBUG
-                chooseRowNanos += TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS);
+            // currently chosen row (original index)
+            final int chosenRow;
+            if (r == 2 && rows.hasEdges()) {
+                // a row with exactly two non-zeros that is part of a maximum size component
+                chosenRow = rows.chooseEdgeInLargestComponent();
             }
             else {
-
-                // already chosen (in 'find r')
-                chosenRowsCounter++;
+                // a row with r non-zeros of minimum original degree
+                chosenRow = rows.chooseMinDegree(r, hdpcAllowed);
             }
+            rows.remove(chosenRow);
+            chosenRowsCounter++;
+
+            TimerUtils.markTimestamp(); // DEBUG
+            chooseRowNanos += TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS);
 
             /*
              * a row has been chosen! -- 'chosenRow'
@@ -853,7 +917,7 @@ final class LinearSystem {
              * with the chosen row so that the chosen row is the first row that intersects V."
              */
 
-            final int chosenRowPos = chosenRow.position;
+            final int chosenRowPos = rowPos[chosenRow];
 
             // if the chosen row is not 'i' already
             if (chosenRowPos != i) {
@@ -868,11 +932,9 @@ final class LinearSystem {
                 // decoding process - swap in d
                 ArrayUtils.swapInts(d, i, chosenRowPos);
 
-                // update values in 'rows' map
-                Row other = rows.remove(i);
-                rows.put(chosenRowPos, other);
-                other.position = chosenRowPos;
-                chosenRow.position = i;
+                // update the positions of the swapped rows
+                rowPos[d[chosenRowPos]] = chosenRowPos;
+                rowPos[chosenRow] = i;
 
                 TimerUtils.markTimestamp(); // DEBUG
                 swapRowsNanos += TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS);
@@ -925,6 +987,44 @@ final class LinearSystem {
             TimerUtils.markTimestamp(); // DEBUG
             swapColumnsNanos += TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS);
 
+            /*
+             * Update the number of non-zeros in V of the rows below the chosen one. The chosen row only has
+             * non-zeros in the columns that leave V in this step (the first column of V and the last r-1 columns
+             * of V), so adding it to the rows below does not change their non-zeros in the new V; only the
+             * non-zeros in the leaving columns must be discounted, which is done before they are changed.
+             */
+
+            TimerUtils.beginTimer(); // DEBUG
+
+            // the new V ranges from column i + 1 to column newVEnd (exclusive)
+            final int newVEnd = L - u - (r - 1);
+            for (int row = i + 1; row < M; row++) {
+                final int rowIndex = d[row];
+                final int nonZeros = rows.nonZeros(rowIndex);
+                if (nonZeros == 0) {
+                    continue; // no non-zeros in V
+                }
+
+                int leaving = (A.get(row, i) != 0) ? 1 : 0;
+                for (int col = newVEnd; col < L - u; col++) {
+                    if (A.get(row, col) != 0) leaving++;
+                }
+
+                if (leaving != 0) {
+                    final int newNonZeros = nonZeros - leaving;
+                    rows.setNonZeros(rowIndex, newNonZeros);
+
+                    if (newNonZeros == 2 && !rows.isHDPC(rowIndex)) {
+                        // this row is now an edge, the nodes are the original indices of its columns
+                        final int[] nodes = A.nonZeroPositionsInRow(row, i + 1, newVEnd);
+                        rows.setEdge(rowIndex, c[nodes[0]], c[nodes[1]]);
+                    }
+                }
+            }
+
+            TimerUtils.markTimestamp(); // DEBUG
+            countNonZerosNanos += TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS);
+
             /*
              * "... if a row below the chosen row has entry beta in the first column of V, and the chosen
              * row has entry alpha in the first column of V, then beta/alpha multiplied by the chosen
@@ -963,7 +1063,9 @@ final class LinearSystem {
                     // decoding process - D[d[row]] + (betaOverAlpha * D[d[i]])
                     OctetOps.vectorVectorAddition(betaOverAlpha, D[d[i]], D[d[row]], D[d[row]]);
 
-                    // ISDCodeWriter.instance().writePhase1Code(betaOverAlpha, d[i], d[row]); // DEBUG
+                    if (schedule != null) {
+                        schedule.add(ISDOps.newPhase1Operation(betaOverAlpha, d[i], d[row]));
+                    }
                 }
             }
 
@@ -975,31 +1077,6 @@ final class LinearSystem {
              */
             i++;
             u += r - 1;
-
-            TimerUtils.beginTimer(); // DEBUG
-
-            // update nonZeros
-            for (Row row : rows.values()) {
-                // update the non zero count
-                row.nonZeros = A.nonZerosInRow(row.position, i, L - u);
-
-                if (row.nonZeros != 2 || row.isHDPC) {
-                    row.nodes = null;
-                }
-                else {
-                    final Set<Integer> nodes = new HashSet<>(2 + 1, 1.0f); // we know there will only be two non zeros
-                    ByteVectorIterator it = A.nonZeroRowIterator(row.position, i, L - u);
-                    while (it.hasNext()) {
-                        it.next();
-                        nodes.add(it.index()); // add node to this edge (column index)
-                    }
-
-                    row.nodes = nodes;
-                }
-            }
-
-            TimerUtils.markTimestamp(); // DEBUG
-            countNonZerosNanos += TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS);
         }
 
         // DEBUG
@@ -1013,7 +1090,7 @@ final class LinearSystem {
         debugPrintlnMillis("  add/mult row", addMultiplyNanos);
         debugPrintlnMillis("  count nonzeros", countNonZerosNanos);
 
-        return pidPhase2(A, X, D, d, c, L, M, i, u);
+        return pidPhase2(A, X, D, d, c, L, M, i, u, schedule, workspace);
     }
 
     private static byte[][] pidPhase2(
@@ -1025,7 +1102,9 @@ final class LinearSystem {
         final int L,
         final int M,
         final int i,
-        final int u)
+        final int u,
+        final List<ISDOperation> schedule,
+        final DecoderWorkspace workspace)
         throws SingularMatrixException
     {
 
@@ -1037,8 +1116,6 @@ final class LinearSystem {
          * rows and i columns."
          */
 
-        // ISDCodeWriter.instance().writePhase2Code(A, i, M, L - u, L, d); // DEBUG MUST be called before decoding code!
-
         /*
          * "Gaussian elimination is performed in the second phase on U_lower either to determine that its rank is
          * less than u (decoding failure) or to convert it into a matrix where the first u rows is the identity
@@ -1046,7 +1123,7 @@ final class LinearSystem {
          */
 
         // reduce U_lower to row echelon form
-        MatrixUtilities.reduceToRowEchelonForm(A, i, M, L - u, L, d, D);
+        MatrixUtilities.reduceToRowEchelonForm(A, i, M, L - u, L, d, D, schedule);
 
         // check U_lower's rank, if it's less than 'u' we've got a decoding failure
         if (MatrixUtilities.nonZeroRows(A, i, M, i, L) < u) {
@@ -1062,17 +1139,19 @@ final class LinearSystem {
         TimerUtils.markTimestamp();
         debugPrintlnMillis("2nd", TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS));
 
-        return pidPhase3(A, X, D, d, c, L, i);
+        return pidPhase3(A, X, D, d, c, L, i, schedule, workspace);
     }
 
     private static byte[][] pidPhase3(
-        ByteMatrix A,
+        final ByteMatrix A,
         final ByteMatrix X,
         final byte[][] D,
         final int[] d,
         final int[] c,
         final int L,
-        final int i)
+        final int i,
+        final List<ISDOperation> schedule,
+        final DecoderWorkspace workspace)
     {
 
         TimerUtils.beginTimer(); // DEBUG
@@ -1081,33 +1160,46 @@ final class LinearSystem {
          * "... the matrix X is multiplied with the submatrix of A consisting of the first i rows of A."
          */
 
-        final int Arows = i;
-        final int Acols = L;
-        final int Xrows = Arows;
-        final int Xcols = Arows;
+        /*
+         * The first i rows and columns of X are lower triangular with a non-zero diagonal, so each row j of the
+         * product only depends on the rows of A (and D) up to j; computing the rows from last to first, each row can be
+         * replaced in place by a multiplication of itself followed by additions of the (still unchanged) rows before
+         * it.
+         */
+        for (int row = i - 1; row >= 0; row--) {
+            final byte diag = X.get(row, row);
+            if (diag != 1) {
+                final byte inverse = OctetOps.aDividedByB((byte)1, diag);
+                A.divideRowInPlace(row, inverse);
+
+                // decoding process - D[d[row]] * diag
+                OctetOps.valueVectorDivision(inverse, D[d[row]], D[d[row]]);
+                if (schedule != null) {
+                    schedule.add(ISDOps.newPhase3Operation(diag, d[row]));
+                }
+            }
 
-        // A can be safely re-assigned because the product matrix has the same dimensions of A
-        A = X.multiply(A, 0, Xrows, 0, Xcols, 0, Arows, 0, Acols);
+            ByteVectorIterator it = X.nonZeroRowIterator(row, 0, row);
+            while (it.hasNext()) {
+                it.next();
 
-        // decoding process
-        final int Drows = Xrows;
-        final int Dcols = (D.length == 0) ? 0 : D[0].length;
-        final byte[][] DShallowCopy = Arrays.copyOf(D, D.length);
-        final ByteMatrix DM = new RowIndirected2DByteMatrix(Drows, Dcols, DShallowCopy, d);
+                final int j = it.index();
+                final byte beta = it.get();
+                A.addRowsInPlace(beta, j, row);
 
-        for (int row = 0; row < Xrows; row++) {
-            // multiply X[row] by D
-            BasicByteVector prod = (BasicByteVector)X.multiplyRow(row, DM, 0, Xcols, LinearAlgebra.BASIC2D_FACTORY);
-            D[d[row]] = prod.getInternalArray();
+                // decoding process - (beta * D[d[j]]) + D[d[row]]
+                OctetOps.vectorVectorAddition(beta, D[d[j]], D[d[row]], D[d[row]]);
+                if (schedule != null) {
+                    schedule.add(ISDOps.newPhase3Operation(beta, d[j], d[row]));
+                }
+            }
         }
 
-        // ISDCodeWriter.instance().writePhase3Code(X, Xrows, Xcols, d); // DEBUG
-
         // DEBUG
         TimerUtils.markTimestamp();
         debugPrintlnMillis("3rd", TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS));
 
-        return pidPhase4(A, D, d, c, L, i);
+        return pidPhase4(A, D, d, c, L, i, schedule, workspace);
     }
 
     private static byte[][] pidPhase4(
@@ -1116,7 +1208,9 @@ final class LinearSystem {
         final int[] d,
         final int[] c,
         final int L,
-        final int i)
+        final int i,
+        final List<ISDOperation> schedule,
+        final DecoderWorkspace workspace)
     {
 
         TimerUtils.beginTimer(); // DEBUG
@@ -1142,10 +1236,11 @@ final class LinearSystem {
                 // (no need to actually "zerofy" it, since this part of the matrix will not be used again)
                 // it.set((byte)0);
 
-                // ISDCodeWriter.instance().writePhase4Code(b, d[j], d[row]); // DEBUG
-
                 // decoding process - (beta * D[d[j]]) + D[d[row]]
                 OctetOps.vectorVectorAddition(b, D[d[j]], D[d[row]], D[d[row]]);
+                if (schedule != null) {
+                    schedule.add(ISDOps.newPhase4Operation(b, d[j], d[row]));
+                }
             }
         }
 
@@ -1153,7 +1248,7 @@ final class LinearSystem {
         TimerUtils.markTimestamp();
         debugPrintlnMillis("4th", TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS));
 
-        return pidPhase5(A, D, d, c, L, i);
+        return pidPhase5(A, D, d, c, L, i, schedule, workspace);
     }
 
     private static byte[][] pidPhase5(
@@ -1162,7 +1257,9 @@ final class LinearSystem {
         final int[] d,
         final int[] c,
         final int L,
-        final int i)
+        final int i,
+        final List<ISDOperation> schedule,
+        final DecoderWorkspace workspace)
     {
 
         TimerUtils.beginTimer(); // DEBUG
@@ -1175,10 +1272,11 @@ final class LinearSystem {
                 // "then divide row j of A by A[j,j]."
                 A.divideRowInPlace(j, beta);
 
-                // ISDCodeWriter.instance().writePhase5Code_1(beta, d[j]); // DEBUG
-
                 // decoding process - D[d[j]] / beta
                 OctetOps.valueVectorDivision(beta, D[d[j]], D[d[j]]); // in place division
+                if (schedule != null) {
+                    schedule.add(ISDOps.newPhase5_1Operation(beta, d[j]));
+                }
             }
 
             // "For eL from 1 to j-1"
@@ -1194,10 +1292,11 @@ final class LinearSystem {
                 // because it will not be used again.
                 // A.addRowsInPlace(beta, eL, j);
 
-                // ISDCodeWriter.instance().writePhase5Code_2(beta, d[eL], d[j]); // DEBUG
-
                 // decoding process - (beta * D[d[eL]]) + D[d[j]]
                 OctetOps.vectorVectorAddition(beta, D[d[eL]], D[d[j]], D[d[j]]);
+                if (schedule != null) {
+                    schedule.add(ISDOps.newPhase5_2Operation(beta, d[eL], d[j]));
+                }
             }
         }
 
@@ -1205,15 +1304,16 @@ final class LinearSystem {
         TimerUtils.markTimestamp();
         debugPrintlnMillis("5th", TimerUtils.getEllapsedTimeLong(TimeUnit.NANOSECONDS));
 
-        final byte[][] C = new byte[L][];
+        final byte[][] C = workspace.intermediateSymbols(L);
 
         // reorder C
         for (int index = 0; index < L; index++) {
             C[c[index]] = D[d[index]];
         }
 
-        // ISDCodeWriter.instance().writeReorderCode(L, c, d); // DEBUG
-        // ISDCodeWriter.instance().generateCode(); // DEBUG
+        if (schedule != null) {
+            schedule.add(ISDOps.newReorderOperation(L, Arrays.copyOf(c, L), Arrays.copyOf(d, L)));
+        }
 
         return C;
     }
@@ -17,6 +17,8 @@
 package net.fec.openrq;
 
 
+import java.util.List;
+
 import net.fec.openrq.util.array.ArrayUtils;
 import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
 import net.fec.openrq.util.math.OctetOps;
@@ -219,6 +221,34 @@ final class MatrixUtilities {
         int[] d,
         byte[][] D) {
 
+        reduceToRowEchelonForm(A, fromRow, toRow, fromCol, toCol, d, D, null);
+    }
+
+    /**
+     * Performs Gaussian elimination on a region of a matrix A and reduces the matrix region to a reduced row echelon
+     * form. The operations are also performed in matrix D, with indices in d, and are appended to a schedule if one is
+     * provided.
+     * 
+     * @param A
+     * @param fromRow
+     * @param toRow
+     * @param fromCol
+     * @param toCol
+     * @param d
+     * @param D
+     * @param schedule
+     *            The list where the operations performed in D are recorded, or {@code null}
+     */
+    static void reduceToRowEchelonForm(
+        ByteMatrix A,
+        final int fromRow,
+        final int toRow,
+        final int fromCol,
+        final int toCol,
+        int[] d,
+        byte[][] D,
+        List<ISDOperation> schedule) {
+
         int lead = fromCol;
         for (int r = fromRow; r < toRow; r++) {
             if (lead >= toCol) {
@@ -250,6 +280,9 @@ final class MatrixUtilities {
                 // byte[] / beta
                 final int dIndex = d[r];
                 OctetOps.valueVectorDivision(beta, D[dIndex], D[dIndex]); // in place division
+                if (schedule != null) {
+                    schedule.add(ISDOps.newPhase2Operation(beta, dIndex));
+                }
             }
 
             for (i = fromRow; i < toRow; i++) {
@@ -261,6 +294,9 @@ final class MatrixUtilities {
                     A.addRowsInPlace(beta, r, i);
                     // decoding process - D[d[i]] - (U_lower[i][lead] * D[d[r]])
                     OctetOps.vectorVectorAddition(beta, D[d[r]], D[d[i]], D[d[i]]);
+                    if (schedule != null && beta != 0) {
+                        schedule.add(ISDOps.newPhase2Operation(beta, d[r], d[i]));
+                    }
                 }
             }
 
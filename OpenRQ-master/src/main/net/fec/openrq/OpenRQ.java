@@ -17,6 +17,9 @@
 package net.fec.openrq;
 
 
+import java.util.Objects;
+import java.util.concurrent.Executor;
+
 import net.fec.openrq.decoder.DataDecoder;
 import net.fec.openrq.decoder.SourceBlockDecoder;
 import net.fec.openrq.encoder.DataEncoder;
@@ -110,6 +113,111 @@ public final class OpenRQ {
         return ArrayDataDecoder.newDecoder(fecParams, symbolOverhead);
     }
 
+    /**
+     * Returns a {@link DataDecoder} object that decodes source data into an array of bytes, configured according to the
+     * provided FEC parameters and symbol overhead, and that decodes source blocks using the provided executor. All
+     * source block decoders will initially be configured with the provided symbol overhead value.
+     * <p>
+     * When a source block decoder receives enough encoding symbols for a decoding operation, the operation is
+     * submitted to the executor instead of running in the thread that put the encoding packet, so that multiple source
+     * blocks can be decoded concurrently while encoding packets keep arriving. Method
+     * {@link ArrayDataDecoder#awaitDecodings(long, java.util.concurrent.TimeUnit)} waits for the submitted operations.
+     * <p>
+     * For information on the symbol overhead value, refer to the section on
+     * <a href="decoder/SourceBlockDecoder.html#symbol-overhead"><em>Symbol overhead</em></a> in the
+     * {@link SourceBlockDecoder} class header.
+     * <p>
+     * Note that the maximum supported data length is {@link Integer#MAX_VALUE}.
+     * 
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbolOverhead
+     *            Symbol overhead (must be non-negative)
+     * @param executor
+     *            The executor that runs the decoding operations
+     * @return a data decoder object that decodes source data into an array of bytes
+     * @exception NullPointerException
+     *                If {@code fecParams} or {@code executor} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || symbolOverhead < 0}
+     */
+    public static ArrayDataDecoder newDecoder(FECParameters fecParams, int symbolOverhead, Executor executor) {
+
+        // exceptions are checked inside the invoked method
+        return ArrayDataDecoder.newDecoder(fecParams, symbolOverhead, Objects.requireNonNull(executor));
+    }
+
+    /**
+     * Returns a {@link DataDecoder} object that decodes source data into an array of bytes, configured according to the
+     * provided FEC parameters and symbol overhead, and that decodes source blocks with the memory of the provided
+     * workspace. All source block decoders will initially be configured with the provided symbol overhead value.
+     * <p>
+     * The workspace keeps the memory used by a decoding operation for the next ones, so that decoding many source
+     * blocks with the same dimensions, by this decoder or by other decoders that share the workspace, does not
+     * allocate that memory again. Refer to the {@link DecoderWorkspace} class header for details.
+     * <p>
+     * For information on the symbol overhead value, refer to the section on
+     * <a href="decoder/SourceBlockDecoder.html#symbol-overhead"><em>Symbol overhead</em></a> in the
+     * {@link SourceBlockDecoder} class header.
+     * <p>
+     * Note that the maximum supported data length is {@link Integer#MAX_VALUE}.
+     * 
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbolOverhead
+     *            Symbol overhead (must be non-negative)
+     * @param workspace
+     *            The workspace whose memory is reused by the decoding operations
+     * @return a data decoder object that decodes source data into an array of bytes
+     * @exception NullPointerException
+     *                If {@code fecParams} or {@code workspace} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || symbolOverhead < 0}
+     */
+    public static ArrayDataDecoder newDecoder(FECParameters fecParams, int symbolOverhead, DecoderWorkspace workspace) {
+
+        // exceptions are checked inside the invoked method
+        return ArrayDataDecoder.newDecoder(fecParams, symbolOverhead, null, Objects.requireNonNull(workspace));
+    }
+
+    /**
+     * Returns a {@link DataDecoder} object that decodes source data into an array of bytes, configured according to the
+     * provided FEC parameters and symbol overhead, and that decodes source blocks using the provided executor and the
+     * memory of the provided workspace. All source block decoders will initially be configured with the provided
+     * symbol overhead value.
+     * <p>
+     * This is a combination of {@link #newDecoder(FECParameters, int, Executor)} and
+     * {@link #newDecoder(FECParameters, int, DecoderWorkspace)}. Since a workspace is only used by one decoding
+     * operation at a time, the operations that run concurrently with another one allocate their own memory.
+     * <p>
+     * Note that the maximum supported data length is {@link Integer#MAX_VALUE}.
+     * 
+     * @param fecParams
+     *            FEC parameters that configure the returned data decoder object
+     * @param symbolOverhead
+     *            Symbol overhead (must be non-negative)
+     * @param executor
+     *            The executor that runs the decoding operations
+     * @param workspace
+     *            The workspace whose memory is reused by the decoding operations
+     * @return a data decoder object that decodes source data into an array of bytes
+     * @exception NullPointerException
+     *                If {@code fecParams}, {@code executor} or {@code workspace} are {@code null}
+     * @exception IllegalArgumentException
+     *                If {@code fecParams.dataLength() > Integer.MAX_VALUE || symbolOverhead < 0}
+     */
+    public static ArrayDataDecoder newDecoder(
+        FECParameters fecParams,
+        int symbolOverhead,
+        Executor executor,
+        DecoderWorkspace workspace)
+    {
+
+        // exceptions are checked inside the invoked method
+        return ArrayDataDecoder.newDecoder(fecParams, symbolOverhead,
+            Objects.requireNonNull(executor), Objects.requireNonNull(workspace));
+    }
+
     /**
      * Returns a {@link DataDecoder} object that decodes source data into an array of bytes, configured according to the
      * provided FEC parameters. The symbol overhead value will be set to {@code 0}, and all source block decoders will
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.util.Arrays;
+
+
+/**
+ * The rows of the constraint matrix that still intersect V, during the first phase of the permanent inactivation
+ * decoding (section 5.4.2.2 of RFC 6330).
+ * <p>
+ * Rows are identified by their original index in the constraint matrix, and are kept in degree buckets, i.e.,
+ * intrusive doubly-linked lists indexed by the number of non-zeros in V, so that the rows with the minimum number of
+ * non-zeros are found without iterating over all rows. HDPC rows are kept in separate buckets since they may only be
+ * chosen after the non-HDPC rows.
+ * <p>
+ * Rows with exactly two non-zeros in V (that are not HDPC rows) are edges of a graph whose nodes are the columns of V,
+ * identified by their original column index. The connected components of this graph are found with a union-find
+ * structure over primitive arrays.
+ * <p>
+ * No objects are allocated after construction, and the same object can be {@linkplain #reset() reset} and reused for
+ * every decoding with the same constraint matrix dimensions.
+ */
+final class Phase1Rows {
+
+    private static final int NONE = -1;
+
+    private final int firstHDPC;
+    private final int endHDPC;
+
+    // per row, indexed by the original row index
+    private final int[] nonZeros;
+    private final int[] originalDegree;
+    private final int[] node1;
+    private final int[] node2;
+    private final int[] next;
+    private final int[] prev;
+
+    // bucket heads, indexed by the number of non-zeros
+    private final int[] heads;
+    private final int[] hdpcHeads;
+
+    // number of rows in the buckets
+    private int size;
+
+    // union-find over the nodes, indexed by the original column index;
+    // an entry is only valid if its epoch is the current one
+    private final int[] parent;
+    private final int[] componentSize;
+    private final int[] nodeEpoch;
+    private int epoch;
+
+
+    /**
+     * @param M
+     *            The number of rows
+     * @param L
+     *            The number of columns
+     * @param S
+     *            The number of LDPC rows
+     * @param H
+     *            The number of HDPC rows
+     */
+    Phase1Rows(int M, int L, int S, int H) {
+
+        this.firstHDPC = S;
+        this.endHDPC = S + H;
+
+        this.nonZeros = new int[M];
+        this.originalDegree = new int[M];
+        this.node1 = new int[M];
+        this.node2 = new int[M];
+        this.next = new int[M];
+        this.prev = new int[M];
+
+        this.heads = new int[L + 1];
+        this.hdpcHeads = new int[L + 1];
+
+        this.parent = new int[L];
+        this.componentSize = new int[L];
+        this.nodeEpoch = new int[L];
+        this.epoch = 0;
+
+        reset();
+    }
+
+    /**
+     * Removes all rows (the per-row data is overwritten when the rows are added again).
+     */
+    void reset() {
+
+        Arrays.fill(heads, NONE);
+        Arrays.fill(hdpcHeads, NONE);
+        size = 0;
+
+        // the epoch keeps increasing, so the union-find entries of a previous decoding are never valid
+    }
+
+    boolean hasDimensions(int M, int L, int S, int H) {
+
+        return nonZeros.length == M && parent.length == L && firstHDPC == S && endHDPC == S + H;
+    }
+
+    boolean isHDPC(int row) {
+
+        return row >= firstHDPC && row < endHDPC;
+    }
+
+    /**
+     * Adds a row that has not been chosen yet.
+     *
+     * @param row
+     *            The original row index
+     * @param r
+     *            The number of non-zeros of the row in V
+     * @param degree
+     *            The original degree of the row
+     */
+    void add(int row, int r, int degree) {
+
+        nonZeros[row] = r;
+        originalDegree[row] = degree;
+        link(row);
+    }
+
+    /**
+     * Sets the nodes of a row that is an edge (must be called whenever a non-HDPC row gets exactly two non-zeros).
+     *
+     * @param row
+     *            The original row index
+     * @param n1
+     *            The original column index of the first non-zero
+     * @param n2
+     *            The original column index of the second non-zero
+     */
+    void setEdge(int row, int n1, int n2) {
+
+        node1[row] = n1;
+        node2[row] = n2;
+    }
+
+    int nonZeros(int row) {
+
+        return nonZeros[row];
+    }
+
+    /**
+     * Updates the number of non-zeros of a row in V, moving it to the right bucket.
+     *
+     * @param row
+     *            The original row index
+     * @param r
+     *            The new number of non-zeros
+     */
+    void setNonZeros(int row, int r) {
+
+        unlink(row);
+        nonZeros[row] = r;
+        link(row);
+    }
+
+    /**
+     * Removes a chosen row.
+     *
+     * @param row
+     *            The original row index
+     */
+    void remove(int row) {
+
+        unlink(row);
+        nonZeros[row] = 0;
+    }
+
+    /**
+     * @return {@code true} iff no row has a non-zero in V
+     */
+    boolean allZeros() {
+
+        return size == 0;
+    }
+
+    /**
+     * @return {@code true} iff there is at least one edge
+     */
+    boolean hasEdges() {
+
+        return heads[2] != NONE;
+    }
+
+    /**
+     * Returns the minimum number of non-zeros in V of the rows that can be chosen.
+     *
+     * @param hdpcAllowed
+     *            Whether HDPC rows can be chosen
+     * @return the minimum number of non-zeros, or 0 if no row can be chosen
+     */
+    int minNonZeros(boolean hdpcAllowed) {
+
+        for (int r = 1; r < heads.length; r++) {
+            if (heads[r] != NONE || (hdpcAllowed && hdpcHeads[r] != NONE)) {
+                return r;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the row with minimum original degree among the rows with {@code r} non-zeros in V that can be chosen.
+     *
+     * @param r
+     *            A number of non-zeros returned by {@link #minNonZeros(boolean)}
+     * @param hdpcAllowed
+     *            Whether HDPC rows can be chosen
+     * @return the original row index
+     */
+    int chooseMinDegree(int r, boolean hdpcAllowed) {
+
+        int chosen = NONE;
+        int minDegree = Integer.MAX_VALUE;
+        for (int row = heads[r]; row != NONE; row = next[row]) {
+            if (originalDegree[row] < minDegree) {
+                chosen = row;
+                minDegree = originalDegree[row];
+            }
+        }
+        if (hdpcAllowed) {
+            for (int row = hdpcHeads[r]; row != NONE; row = next[row]) {
+                if (originalDegree[row] < minDegree) {
+                    chosen = row;
+                    minDegree = originalDegree[row];
+                }
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Returns an edge that is part of a maximum size component of the graph (must only be called if
+     * {@link #hasEdges()}).
+     *
+     * @return the original row index
+     */
+    int chooseEdgeInLargestComponent() {
+
+        epoch++;
+        int largestRoot = NONE;
+        int largestSize = 0;
+        for (int row = heads[2]; row != NONE; row = next[row]) {
+            final int root = union(node1[row], node2[row]);
+            if (componentSize[root] > largestSize) {
+                largestRoot = root;
+                largestSize = componentSize[root];
+            }
+        }
+
+        // the root of a component can change with later unions, so look it up again
+        largestRoot = find(largestRoot);
+        for (int row = heads[2]; row != NONE; row = next[row]) {
+            if (find(node1[row]) == largestRoot) {
+                return row;
+            }
+        }
+        throw new AssertionError("no edge in the largest component");
+    }
+
+    private int union(int n1, int n2) {
+
+        final int root1 = find(n1);
+        final int root2 = find(n2);
+        if (root1 == root2) {
+            return root1;
+        }
+
+        // union by size
+        if (componentSize[root1] < componentSize[root2]) {
+            parent[root1] = root2;
+            componentSize[root2] += componentSize[root1];
+            return root2;
+        }
+        else {
+            parent[root2] = root1;
+            componentSize[root1] += componentSize[root2];
+            return root1;
+        }
+    }
+
+    private int find(int node) {
+
+        if (nodeEpoch[node] != epoch) { // first time this node is seen in this epoch
+            nodeEpoch[node] = epoch;
+            parent[node] = node;
+            componentSize[node] = 1;
+            return node;
+        }
+
+        // path halving
+        while (parent[node] != node) {
+            parent[node] = parent[parent[node]];
+            node = parent[node];
+        }
+        return node;
+    }
+
+    private void link(int row) {
+
+        final int r = nonZeros[row];
+        if (r == 0) {
+            prev[row] = next[row] = NONE;
+            return;
+        }
+
+        final int[] h = isHDPC(row) ? hdpcHeads : heads;
+        prev[row] = NONE;
+        next[row] = h[r];
+        if (h[r] != NONE) {
+            prev[h[r]] = row;
+        }
+        h[r] = row;
+        size++;
+    }
+
+    private void unlink(int row) {
+
+        final int r = nonZeros[row];
+        if (r == 0) {
+            return;
+        }
+
+        if (prev[row] != NONE) {
+            next[prev[row]] = next[row];
+        }
+        else {
+            (isHDPC(row) ? hdpcHeads : heads)[r] = next[row];
+        }
+        if (next[row] != NONE) {
+            prev[next[row]] = prev[row];
+        }
+        size--;
+    }
+}
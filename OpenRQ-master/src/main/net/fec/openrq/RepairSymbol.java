@@ -41,6 +41,22 @@ final class RepairSymbol {
         return new RepairSymbol(dataBuf);
     }
 
+    /**
+     * Returns a new repair symbol containing the next {@code size} bytes of the provided data (no data copies are
+     * performed, and the position of the buffer is advanced by {@code size} bytes).
+     * 
+     * @param dataBuf
+     *            A buffer containing symbol data (the new repair symbol will contain a reference to a slice of this
+     *            buffer)
+     * @param size
+     *            The size of the symbol data
+     * @return a new repair symbol containing the provided data
+     */
+    static RepairSymbol wrapData(ByteBuffer dataBuf, int size) {
+
+        return new RepairSymbol(ByteBuffers.getSlice(dataBuf, size, BufferOperation.ADVANCE_POSITION));
+    }
+
     /**
      * Returns a new repair symbol containing a copy of the provided data.
      * 
@@ -53,6 +69,21 @@ final class RepairSymbol {
         return new RepairSymbol(ByteBuffers.getCopy(dataBuf));
     }
 
+    /**
+     * Returns a new repair symbol containing a copy of the next {@code size} bytes of the provided data (the position
+     * of the buffer is advanced by {@code size} bytes).
+     * 
+     * @param dataBuf
+     *            A buffer containing symbol data
+     * @param size
+     *            The size of the symbol data
+     * @return a new repair symbol containing a copy of the provided data
+     */
+    static RepairSymbol copyData(ByteBuffer dataBuf, int size) {
+
+        return new RepairSymbol(ByteBuffers.getCopy(dataBuf, size));
+    }
+
 
     private final ByteBuffer dataBuf;
 
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import net.fec.openrq.parameters.FECParameters;
+
+
+/**
+ * The partition of the symbols of a source block into sub-symbols (section 4.4.1.2 of RFC 6330).
+ * <p>
+ * A source block with K source symbols is divided into N contiguous sub-blocks, the first NL sub-blocks each consisting
+ * of K contiguous sub-symbols of size TL*Al, and the remaining NS sub-blocks each consisting of K contiguous
+ * sub-symbols of size TS*Al, where (TL, TS, NL, NS) = Partition[T/Al, N]. The m-th symbol of the source block is the
+ * concatenation of the m-th sub-symbol from each of the N sub-blocks. Repair symbols are likewise the concatenation of
+ * the repair sub-symbols of each sub-block, which are encoded independently.
+ */
+final class SubBlockPartition {
+
+    static SubBlockPartition of(FECParameters fecParams) {
+
+        return new SubBlockPartition(
+            fecParams.symbolSize(), fecParams.interleaverLength(), fecParams.symbolAlignment());
+    }
+
+
+    private final int T;
+    private final int N;
+    private final int NL;
+    private final int TL; // in bytes
+    private final int TS; // in bytes
+
+
+    private SubBlockPartition(int T, int N, int Al) {
+
+        // (TL, TS, NL, NS) = Partition[T/Al, N]
+        final Partition TN = new Partition(T / Al, N);
+
+        this.T = T;
+        this.N = N;
+        this.NL = TN.get(3);
+        this.TL = TN.get(1) * Al;
+        this.TS = TN.get(2) * Al;
+    }
+
+    /**
+     * @return the symbol size T
+     */
+    int symbolSize() {
+
+        return T;
+    }
+
+    /**
+     * @return the number of sub-blocks N
+     */
+    int numSubBlocks() {
+
+        return N;
+    }
+
+    /**
+     * @param j
+     *            A sub-block index
+     * @return the size of the sub-symbols of sub-block {@code j}
+     */
+    int subSymbolSize(int j) {
+
+        return (j < NL) ? TL : TS;
+    }
+
+    /**
+     * @param j
+     *            A sub-block index
+     * @return the index in a symbol of the first byte of its sub-symbol from sub-block {@code j}
+     */
+    int subSymbolPosition(int j) {
+
+        return (j < NL) ? j * TL : NL * TL + (j - NL) * TS;
+    }
+
+    /**
+     * @param j
+     *            A sub-block index
+     * @param K
+     *            The number of source symbols of the source block
+     * @param esi
+     *            A source symbol identifier
+     * @return the index in the source block of the first byte of sub-symbol {@code esi} from sub-block {@code j}
+     */
+    int subSymbolOffset(int j, int K, int esi) {
+
+        // sub-blocks are contiguous, so the ones before j take K times the
+        // bytes that their sub-symbols take in a symbol
+        return K * subSymbolPosition(j) + esi * subSymbolSize(j);
+    }
+}
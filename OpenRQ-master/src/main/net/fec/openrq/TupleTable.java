@@ -0,0 +1,213 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.fec.openrq.util.rq.Deg;
+import net.fec.openrq.util.rq.Rand;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+
+/**
+ * The tuples (d, a, b, d1, a1, b1) of the ISIs of an extended source block with a given K' (see section 5.3.5.4 of
+ * RFC 6330).
+ * <p>
+ * The parameters that only depend on K' (W, P, P1 and the constants derived from J) are computed once per table. The
+ * tuples of the dense range of ISIs, the source and padding symbols and the first repair symbols, are computed on
+ * first use in chunks of consecutive ISIs and then kept in primitive arrays, so that looking up a tuple does not
+ * allocate any objects. The tuples of ISIs above the dense range, which received repair symbols may have anywhere up
+ * to 2^24, are computed on every lookup, so that the memory held by a table stays bounded. The tables of the most
+ * recently used values of K' are cached.
+ */
+final class TupleTable {
+
+    // number of values in a tuple, and their offsets in a chunk
+    private static final int TUPLE_SIZE = 6;
+    private static final int D = 0, A = 1, B = 2, D1 = 3, A1 = 4, B1 = 5;
+
+    private static final int CHUNK_SHIFT = 10;
+    private static final int CHUNK_MASK = (1 << CHUNK_SHIFT) - 1;
+
+    private static final int MAX_CACHED_TABLES = 16;
+
+    // repair symbols in the dense range besides the K' first ones
+    private static final int MIN_REPAIR_WINDOW = 1024;
+
+    // access ordered, guarded by itself
+    private static final Map<Integer, TupleTable> TABLES = new LinkedHashMap<Integer, TupleTable>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, TupleTable> eldest) {
+
+            return size() > MAX_CACHED_TABLES;
+        }
+    };
+
+
+    /**
+     * Returns the table of tuples for the given value of K'.
+     * 
+     * @param Kprime
+     *            The number of source (and padding) symbols in an extended source block
+     * @return the table of tuples for the given value of K'
+     */
+    static TupleTable get(int Kprime) {
+
+        synchronized (TABLES) {
+            TupleTable table = TABLES.get(Kprime);
+            if (table == null) {
+                table = new TupleTable(Kprime);
+                TABLES.put(Kprime, table);
+            }
+            return table;
+        }
+    }
+
+
+    private final int W;
+    private final int P;
+    private final int P1;
+    private final long Aconst;
+    private final long Bconst;
+
+    // the tuples of ISIs [n * 2^CHUNK_SHIFT, (n + 1) * 2^CHUNK_SHIFT) are in chunk n, created on first use; the
+    // chunks cover the dense range [0, 2 * K' + MIN_REPAIR_WINDOW), rounded up to whole chunks
+    private final AtomicReferenceArray<int[]> chunks;
+    private final long denseISIs;
+
+
+    private TupleTable(int Kprime) {
+
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int S = SystematicIndices.S(Ki);
+        final int H = SystematicIndices.H(Ki);
+        final int J = SystematicIndices.J(Ki);
+        final int L = Kprime + S + H;
+
+        this.W = SystematicIndices.W(Ki);
+        this.P = L - W;
+        this.P1 = (int)MatrixUtilities.ceilPrime(P);
+
+        long A = 53591 + J * 997;
+        if (A % 2 == 0) A++;
+        this.Aconst = A;
+        this.Bconst = 10267 * (J + 1);
+
+        final int numChunks = ((2 * Kprime + MIN_REPAIR_WINDOW - 1) >>> CHUNK_SHIFT) + 1;
+        this.chunks = new AtomicReferenceArray<>(numChunks);
+        this.denseISIs = (long)numChunks << CHUNK_SHIFT;
+    }
+
+    int W() {
+
+        return W;
+    }
+
+    int P() {
+
+        return P;
+    }
+
+    int P1() {
+
+        return P1;
+    }
+
+    /**
+     * Writes the tuple (d, a, b, d1, a1, b1) of an ISI to an array.
+     * 
+     * @param isi
+     *            The ISI of an encoding symbol
+     * @param tuple
+     *            The array where the tuple is written to
+     * @param off
+     *            The index in the array of the first value of the tuple
+     */
+    void getTuple(long isi, int[] tuple, int off) {
+
+        if (isi >= denseISIs) {
+            computeTuple(isi, tuple, off);
+            return;
+        }
+
+        final int n = (int)(isi >>> CHUNK_SHIFT);
+        int[] chunk = chunks.get(n);
+        if (chunk == null) {
+            chunk = newChunk(n);
+            if (!chunks.compareAndSet(n, null, chunk)) {
+                chunk = chunks.get(n); // another thread created the chunk first
+            }
+        }
+
+        System.arraycopy(chunk, ((int)isi & CHUNK_MASK) * TUPLE_SIZE, tuple, off, TUPLE_SIZE);
+    }
+
+    /**
+     * Returns the number of tuples kept by this table, for testing.
+     * 
+     * @return the number of tuples kept by this table
+     */
+    int numKeptTuples() {
+
+        int numChunks = 0;
+        for (int n = 0; n < chunks.length(); n++) {
+            if (chunks.get(n) != null) numChunks++;
+        }
+        return numChunks << CHUNK_SHIFT;
+    }
+
+    /**
+     * Returns the upper bound of the dense range of ISIs, whose tuples are kept after their first use.
+     * 
+     * @return the upper bound (exclusive) of the dense range of ISIs
+     */
+    long denseISIs() {
+
+        return denseISIs;
+    }
+
+    private int[] newChunk(int n) {
+
+        final int[] chunk = new int[TUPLE_SIZE << CHUNK_SHIFT];
+        final long firstISI = (long)n << CHUNK_SHIFT;
+        for (int i = 0, off = 0; i <= CHUNK_MASK; i++, off += TUPLE_SIZE) {
+            computeTuple(firstISI + i, chunk, off);
+        }
+
+        return chunk;
+    }
+
+    private void computeTuple(long X, int[] tuple, int off) {
+
+        final long y = (Bconst + X * Aconst) % 4294967296L; // 2^^32
+        final long v = Rand.rand(y, 0, 1048576L); // 2^^20
+
+        final int d = (int)Deg.deg(v, W);
+        tuple[off + D] = d;
+        tuple[off + A] = (int)(1 + Rand.rand(y, 1, W - 1));
+        tuple[off + B] = (int)Rand.rand(y, 2, W);
+        tuple[off + D1] = (d < 4) ? (int)(2 + Rand.rand(X, 3, 2L)) : 2;
+        tuple[off + A1] = (int)(1 + Rand.rand(X, 4, P1 - 1));
+        tuple[off + B1] = (int)Rand.rand(X, 5, P1);
+    }
+}
@@ -90,9 +90,32 @@ import net.fec.openrq.parameters.ParameterChecker;
  * <td><code>2</code></td>
  * <td><code>K + 2</code></td>
  * <td>99.9999% <em>(one in a million chance of failure)</em> </td> </tr> </table> </blockquote>
+ * <p>
+ * <a name="incremental-decoding">
+ * <h5>Incremental decoding</h5></a>
+ * <p>
+ * By default, encoding symbols are only stored when they are received, and all the decoding work takes place once
+ * enough symbols are available. When <em>incremental decoding</em> is enabled, each received symbol is instead
+ * eliminated right away against the symbols received before it, so that the source block is decoded as soon as the
+ * received symbols allow it, with little work left after the last symbol. In this mode the symbol overhead is
+ * ignored, and decoding failures are never reported, since the decoder simply waits for more symbols.
+ * <p>
+ * Incremental decoding trades throughput for latency: it requires memory and work per received symbol that grow with
+ * the square of the number of source symbols, so it is best suited to source blocks with a few hundred symbols or
+ * less. It is not available for source blocks with more than {@link #MAX_INCREMENTAL_DECODING_SYMBOLS} extended
+ * source symbols (K' in RFC 6330, the smallest supported number of source symbols that is at least {@code K}), which
+ * are always decoded in batch. The method {@link #isIncrementalDecodingEnabled()} tells whether this mode is enabled,
+ * and the method {@link #setIncrementalDecodingEnabled(boolean)} enables or disables it.
  */
 public interface SourceBlockDecoder {
 
+    /**
+     * The maximum number of extended source symbols (K') of a source block for which incremental decoding can be
+     * enabled. For information on this mode, refer to the section on <a href="#incremental-decoding"><em>Incremental
+     * decoding</em></a> in the class header.
+     */
+    public static final int MAX_INCREMENTAL_DECODING_SYMBOLS = 2048;
+
     /**
      * Returns the data decoder object from which this source block decoder was retrieved.
      * 
@@ -265,4 +288,32 @@ public interface SourceBlockDecoder {
      * @see #symbolOverhead()
      */
     public void setSymbolOverhead(int symbOver);
+
+    /**
+     * Returns {@code true} if, and only if, incremental decoding is enabled. For information on this mode, refer to the
+     * section on <a href="#incremental-decoding"><em>Incremental decoding</em></a> in the class header.
+     * <p>
+     * Incremental decoding is disabled in a newly created decoder.
+     * 
+     * @return {@code true} if, and only if, incremental decoding is enabled
+     */
+    public boolean isIncrementalDecodingEnabled();
+
+    /**
+     * Enables or disables incremental decoding. For information on this mode, refer to the section on
+     * <a href="#incremental-decoding"><em>Incremental decoding</em></a> in the class header.
+     * <p>
+     * When this mode is enabled, the symbols that were already received are eliminated by this method, which may
+     * decode the source block. When it is disabled, the symbols that were received are kept for a later decoding
+     * operation.
+     * <p>
+     * Enabling this mode has no effect if the source block has more than {@link #MAX_INCREMENTAL_DECODING_SYMBOLS}
+     * extended source symbols: the source block keeps being decoded in batch, and
+     * {@link #isIncrementalDecodingEnabled()} keeps returning {@code false}.
+     * 
+     * @param enabled
+     *            Whether incremental decoding should be enabled
+     * @see #isIncrementalDecodingEnabled()
+     */
+    public void setIncrementalDecodingEnabled(boolean enabled);
 }
@@ -17,7 +17,13 @@
 package net.fec.openrq.encoder;
 
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.concurrent.ForkJoinPool;
+
 import net.fec.openrq.EncodingPacket;
+import net.fec.openrq.parameters.FECParameters;
 import net.fec.openrq.parameters.ParameterChecker;
 
 
@@ -40,6 +46,11 @@ import net.fec.openrq.parameters.ParameterChecker;
  * {@link #sourcePacketsIterable()} and {@link #repairPacketsIterable(int)} return iterable objects that iterate over
  * all source packets (encoding packets with a source symbol each) and over some repair packets (encoding packets with a
  * repair symbol each). More customizable iterable objects can be created using the {@link IterableBuilder} class.
+ * <p>
+ * Encoding packets can be retrieved concurrently by multiple threads. The intermediate symbols of the source block,
+ * from which all repair symbols are generated, are computed only once, by the first thread that needs them. Many repair
+ * symbols can be generated in parallel with {@link #writeRepairSymbols(int, int, byte[], int, ForkJoinPool)} and
+ * {@link #repairPacketsIterable(int, ForkJoinPool)}.
  */
 public interface SourceBlockEncoder {
 
@@ -293,6 +304,111 @@ public interface SourceBlockEncoder {
      */
     public EncodingPacket repairPacket(int esi, int numSymbols);
 
+    /**
+     * Writes multiple repair symbols from the source block being encoded into an array.
+     * <p>
+     * The repair symbols identified by {@code esi}, {@code esi+1}, {@code esi+2}, etc., are written consecutively,
+     * starting at the index {@code offset} of the array, each one taking exactly {@code T} bytes, where {@code T} is
+     * the {@linkplain FECParameters#symbolSize() symbol size}. The symbols are generated
+     * together and no memory is allocated per symbol, so this method is preferable to multiple calls to
+     * {@link #repairPacket(int)} when the caller already owns a buffer for the repair data.
+     * <p>
+     * <b><em>Bounds checking</em></b> - If we have {@code K} as the number of source symbols into which is divided the
+     * source block being encoded, and {@code max_esi} as the {@linkplain ParameterChecker#maxEncodingSymbolID() maximum
+     * value for the encoding symbol identifier}, then the following must be true, otherwise an
+     * {@code IllegalArgumentException} is thrown:
+     * <ul>
+     * <li>{@code esi} &ge; {@code K} <li>{@code esi} &le; {@code max_esi} <li>{@code numSymbols} &gt; 0
+     * <li>{@code numSymbols} &le; ({@code 1 + max_esi - esi})
+     * </ul>
+     * 
+     * @param esi
+     *            The encoding symbol identifier of the first repair symbol to be written
+     * @param numSymbols
+     *            The number of repair symbols to be written
+     * @param array
+     *            The array where the repair symbols are written to
+     * @param offset
+     *            The index in the array of the first byte of the first repair symbol
+     * @exception IllegalArgumentException
+     *                If the provided encoding symbol identifier or the number of symbols are invalid
+     * @exception NullPointerException
+     *                If {@code array} is {@code null}
+     * @exception IndexOutOfBoundsException
+     *                If {@code offset} is negative or if there are less than {@code numSymbols * T} bytes in the array
+     *                starting at {@code offset}
+     * @see #repairPacket(int, int)
+     */
+    public void writeRepairSymbols(int esi, int numSymbols, byte[] array, int offset);
+
+    /**
+     * Writes multiple repair symbols from the source block being encoded into a buffer.
+     * <p>
+     * The repair symbols identified by {@code esi}, {@code esi+1}, {@code esi+2}, etc., are written consecutively,
+     * starting at the current position of the buffer, each one taking exactly {@code T} bytes, where {@code T} is the
+     * {@linkplain FECParameters#symbolSize() symbol size}. The position of the buffer is
+     * advanced by {@code numSymbols * T} bytes. Buffers backed by an accessible array are written directly, other
+     * buffers are written through a bounded intermediate array that is allocated once per call.
+     * <p>
+     * <b><em>Bounds checking</em></b> - If we have {@code K} as the number of source symbols into which is divided the
+     * source block being encoded, and {@code max_esi} as the {@linkplain ParameterChecker#maxEncodingSymbolID() maximum
+     * value for the encoding symbol identifier}, then the following must be true, otherwise an
+     * {@code IllegalArgumentException} is thrown:
+     * <ul>
+     * <li>{@code esi} &ge; {@code K} <li>{@code esi} &le; {@code max_esi} <li>{@code numSymbols} &gt; 0
+     * <li>{@code numSymbols} &le; ({@code 1 + max_esi - esi})
+     * </ul>
+     * 
+     * @param esi
+     *            The encoding symbol identifier of the first repair symbol to be written
+     * @param numSymbols
+     *            The number of repair symbols to be written
+     * @param buffer
+     *            The buffer where the repair symbols are written to
+     * @exception IllegalArgumentException
+     *                If the provided encoding symbol identifier or the number of symbols are invalid
+     * @exception NullPointerException
+     *                If {@code buffer} is {@code null}
+     * @exception ReadOnlyBufferException
+     *                If the buffer is read-only
+     * @exception BufferOverflowException
+     *                If the buffer has less than {@code numSymbols * T} bytes remaining
+     * @see #repairPacket(int, int)
+     */
+    public void writeRepairSymbols(int esi, int numSymbols, ByteBuffer buffer);
+
+    /**
+     * Writes multiple repair symbols from the source block being encoded into an array, splitting the work across the
+     * threads of a pool.
+     * <p>
+     * The result is the same as the one of {@link #writeRepairSymbols(int, int, byte[], int)}, but the range of repair
+     * symbols is divided into sub-ranges that are generated concurrently by the given pool. The calling thread waits
+     * until all repair symbols are written.
+     * <p>
+     * <b><em>Bounds checking</em></b> - The same bounds as in {@link #writeRepairSymbols(int, int, byte[], int)} are
+     * checked.
+     * 
+     * @param esi
+     *            The encoding symbol identifier of the first repair symbol to be written
+     * @param numSymbols
+     *            The number of repair symbols to be written
+     * @param array
+     *            The array where the repair symbols are written to
+     * @param offset
+     *            The index in the array of the first byte of the first repair symbol
+     * @param pool
+     *            The pool that generates the repair symbols
+     * @exception IllegalArgumentException
+     *                If the provided encoding symbol identifier or the number of symbols are invalid
+     * @exception NullPointerException
+     *                If {@code array} or {@code pool} are {@code null}
+     * @exception IndexOutOfBoundsException
+     *                If {@code offset} is negative or if there are less than {@code numSymbols * T} bytes in the array
+     *                starting at {@code offset}
+     * @see #writeRepairSymbols(int, int, byte[], int)
+     */
+    public void writeRepairSymbols(int esi, int numSymbols, byte[] array, int offset, ForkJoinPool pool);
+
     /**
      * Returns a new builder object for an iterable over encoding packets.
      * <p>
@@ -366,4 +482,30 @@ public interface SourceBlockEncoder {
      * @see #newIterableBuilder()
      */
     public Iterable<EncodingPacket> repairPacketsIterable(int numRepairPackets);
+
+    /**
+     * Returns an iterable over a number of repair packets, each packet containing one repair symbol, whose repair
+     * symbols are generated in parallel by the threads of a pool.
+     * <p>
+     * The packets are the same as the ones returned by {@link #repairPacketsIterable(int)}, but all repair symbols are
+     * generated before this method returns, with the range of repair symbols divided into sub-ranges that are
+     * generated concurrently by the given pool. The packets share arrays of repair symbols of at most 16 MiB each, so
+     * the returned iterable holds {@code numRepairPackets * T} bytes in total, where {@code T} is the
+     * {@linkplain FECParameters#symbolSize() symbol size}. The returned iterable can be iterated multiple times and by
+     * multiple threads.
+     * <p>
+     * <b><em>Bounds checking</em></b> - The same bounds as in {@link #repairPacketsIterable(int)} are checked.
+     * 
+     * @param numRepairPackets
+     *            The number of repair packets to iterate
+     * @param pool
+     *            The pool that generates the repair symbols
+     * @return an iterable over a number of repair packets
+     * @exception IllegalArgumentException
+     *                If the number of repair packets is invalid
+     * @exception NullPointerException
+     *                If {@code pool} is {@code null}
+     * @see #repairPacketsIterable(int)
+     */
+    public Iterable<EncodingPacket> repairPacketsIterable(int numRepairPackets, ForkJoinPool pool);
 }
@@ -56,7 +56,8 @@ import net.fec.openrq.util.io.ExtraChannels;
  * <dd>The number of sub-blocks per source block into which the source data is interleaved. This value influences the
  * level of <em>uniform interleaving</em> used before encoding a source block. A value of 1 means no interleaving is
  * used, and a higher value means more interleaving per source block. Interleaving refers to a burst-error correction
- * technique in FEC codes.</dd>
+ * technique in FEC codes. Each symbol is divided into one sub-symbol per sub-block, and sub-blocks are encoded/decoded
+ * independently, so that large symbols are processed in smaller (cache-resident) pieces.</dd>
  * <dt><b>Symbol alignment</b></dt>
  * <dd>This value has no relevance to the user of OpenRQ, since it is fixed to a value of 1. This parameter exists here
  * only for compliance to the RFC 6330.</dd>
@@ -27,8 +27,8 @@ final class InternalConstants {
     static final int Kt_max = K_max * Z_max;         // "maximum number of symbols"
     static final int T_max = (65_535 / Al) * Al;     // "maximum symbol size, in octets"
     static final long F_max = (long)Kt_max * T_max;  // "maximum transfer length of the object, in octets"
-    static final int N_max = 1/* K_max */;           // "maximum interleaver length, in number of sub-blocks"
-    // TODO enable interleaving
+    static final int N_max = K_max;                  // "maximum interleaver length, in number of sub-blocks"
+    static final int SS = 32;                        // "the desired lower bound on the sub-symbol size is SS*Al"
 
     static final int K_min = 1;
     static final int K_prime_min = 10;  // the first K' value in the systematic indices table
@@ -16,7 +16,9 @@
 package net.fec.openrq.parameters;
 
 
+import static net.fec.openrq.parameters.InternalConstants.Al;
 import static net.fec.openrq.parameters.InternalConstants.K_max;
+import static net.fec.openrq.parameters.InternalConstants.SS;
 import static net.fec.openrq.util.math.ExtraMath.ceilDiv;
 import net.fec.openrq.util.math.ExtraMath;
 import net.fec.openrq.util.rq.SystematicIndices;
@@ -39,14 +41,11 @@ final class InternalFunctions {
     }
 
     // requires bounded argument
-    // since interleaving is disabled, this should always return 1
     static int topInterleaverLength(int T) {
 
-        // interleaving is disabled for now
-        final int SStimesAl = T;
-
-        // the maximum allowed interleaver length
-        return T / SStimesAl;
+        // N_max = floor(T/(SS*Al)), or 1 if the symbols are smaller than the
+        // desired lower bound on the sub-symbol size
+        return Math.max(1, T / (SS * Al));
     }
 
     // requires valid arguments
@@ -64,7 +63,6 @@ final class InternalFunctions {
         return (long)SystematicIndices.ceil(Kprime) * subSymbolSize(T, Al, n);
     }
 
-    // since interleaving is disabled, this should always return T
     private static int subSymbolSize(int T, int Al, int n) {
 
         return Al * ExtraMath.ceilDiv(T, Al * n);
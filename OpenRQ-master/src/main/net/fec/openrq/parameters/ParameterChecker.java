@@ -316,9 +316,10 @@ public final class ParameterChecker {
     }
 
     /**
-     * Returns the maximum interleaver length, in number of sub-blocks per source block (1).
+     * Returns the maximum interleaver length, in number of sub-blocks per source block (56403).
      * <p>
-     * <b>Note:</b> <em>For now, interleaving is disabled.</em>
+     * <b>Note:</b> <em>The interleaver length is further bounded by the symbol size, since every sub-symbol must have at
+     * least one byte (see {@link #maxAllowedInterleaverLength(int)}).</em>
      * 
      * @return the maximum interleaver length, in number of sub-blocks per source block
      */
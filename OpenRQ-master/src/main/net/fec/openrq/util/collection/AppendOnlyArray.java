@@ -0,0 +1,141 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq.util.collection;
+
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * An array to which multiple threads can add elements without locking, and that keeps the order by which the elements
+ * were added.
+ * <p>
+ * Each added element is stored in a slot whose index is claimed atomically, so the slots are filled in the order of
+ * their claims, but not necessarily in the order of their indexes: a slot with a valid index may still be empty while
+ * the thread that claimed it is adding its element. The slots are stored in segments that double in size and are
+ * only allocated when needed, so elements are never copied.
+ * 
+ * @param <E>
+ *            The element type of the array
+ */
+public final class AppendOnlyArray<E> {
+
+    private static final int FIRST_SEGMENT_SHIFT = 5; // the first segment has 32 slots
+    private static final int NUM_SEGMENTS = Integer.SIZE - FIRST_SEGMENT_SHIFT;
+    private static final int MAX_SIZE = Integer.MAX_VALUE - (1 << FIRST_SEGMENT_SHIFT);
+
+    private final AtomicReferenceArray<AtomicReferenceArray<E>> segments;
+    private final AtomicInteger size;
+
+
+    /**
+     * Creates a new empty array.
+     */
+    public AppendOnlyArray() {
+
+        this.segments = new AtomicReferenceArray<>(NUM_SEGMENTS);
+        this.size = new AtomicInteger(0);
+    }
+
+    /**
+     * Adds an element to the end of this array.
+     * 
+     * @param element
+     *            The element to be added
+     * @return the index of the slot of the added element
+     * @exception NullPointerException
+     *                If {@code element} is {@code null}
+     * @exception IllegalStateException
+     *                If this array is full
+     */
+    public int add(E element) {
+
+        Objects.requireNonNull(element);
+
+        final int index = size.getAndIncrement();
+        if (index >= MAX_SIZE || index < 0) {
+            throw new IllegalStateException("array is full");
+        }
+
+        final int j = index + (1 << FIRST_SEGMENT_SHIFT);
+        getOrAllocateSegment(segmentOf(j)).set(slotOf(j), element);
+
+        return index;
+    }
+
+    /**
+     * Returns the number of claimed slots in this array, some of which may still be empty.
+     * 
+     * @return the number of claimed slots in this array
+     */
+    public int size() {
+
+        final int claimed = size.get();
+        return (claimed < 0) ? MAX_SIZE : Math.min(claimed, MAX_SIZE);
+    }
+
+    /**
+     * Returns the element in the slot with the specified index.
+     * 
+     * @param index
+     *            The index of a slot
+     * @return the element in the slot, or {@code null} if the slot is still empty
+     * @exception IndexOutOfBoundsException
+     *                If {@code index} is negative or not less than {@code size()}
+     */
+    public E get(int index) {
+
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size());
+        }
+
+        final int j = index + (1 << FIRST_SEGMENT_SHIFT);
+        final AtomicReferenceArray<E> segment = segments.get(segmentOf(j));
+        return (segment == null) ? null : segment.get(slotOf(j));
+    }
+
+    private AtomicReferenceArray<E> getOrAllocateSegment(int s) {
+
+        AtomicReferenceArray<E> segment = segments.get(s);
+        if (segment == null) {
+            final AtomicReferenceArray<E> newSegment = new AtomicReferenceArray<>(1 << (s + FIRST_SEGMENT_SHIFT));
+            if (segments.compareAndSet(s, null, newSegment)) {
+                segment = newSegment;
+            }
+            else { // another thread allocated the segment first
+                segment = segments.get(s);
+            }
+        }
+
+        return segment;
+    }
+
+    /*
+     * Segment s holds the slots with indexes [2^(s+5) - 32, 2^(s+6) - 32), so the slot with index i is found through
+     * the highest bit of j = i + 32.
+     */
+    private static int segmentOf(int j) {
+
+        return (Integer.SIZE - 1 - Integer.numberOfLeadingZeros(j)) - FIRST_SEGMENT_SHIFT;
+    }
+
+    private static int slotOf(int j) {
+
+        return j - Integer.highestOneBit(j);
+    }
+}
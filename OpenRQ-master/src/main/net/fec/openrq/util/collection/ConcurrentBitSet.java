@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq.util.collection;
+
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * A fixed size set of bits that can be read and set by multiple threads without locking.
+ * <p>
+ * Bits are stored in pages of 65536 bits that are only allocated when the first bit in them is set, so a large bit
+ * set with few bits set takes little memory. Bits can only be set, never cleared.
+ */
+public final class ConcurrentBitSet {
+
+    private static final int PAGE_SHIFT = 16; // 65536 bits per page
+    private static final int WORDS_PER_PAGE = (1 << PAGE_SHIFT) / Long.SIZE;
+    private static final int WORD_SHIFT = 6; // 64 bits per word
+
+    private final int size;
+    private final AtomicReferenceArray<AtomicLongArray> pages;
+
+
+    /**
+     * Creates a new bit set with all bits clear.
+     * 
+     * @param size
+     *            The number of bits in the bit set
+     * @exception IllegalArgumentException
+     *                If {@code size} is negative
+     */
+    public ConcurrentBitSet(int size) {
+
+        if (size < 0) throw new IllegalArgumentException("negative size");
+
+        this.size = size;
+        this.pages = new AtomicReferenceArray<>((int)(((long)size + (1 << PAGE_SHIFT) - 1) >>> PAGE_SHIFT));
+    }
+
+    /**
+     * Returns the number of bits in this bit set.
+     * 
+     * @return the number of bits in this bit set
+     */
+    public int size() {
+
+        return size;
+    }
+
+    /**
+     * Returns the value of the bit with the specified index.
+     * 
+     * @param index
+     *            The bit index
+     * @return the value of the bit with the specified index
+     * @exception IndexOutOfBoundsException
+     *                If {@code index} is negative or not less than {@code size()}
+     */
+    public boolean get(int index) {
+
+        checkIndex(index);
+        final AtomicLongArray page = pages.get(index >>> PAGE_SHIFT);
+        return page != null && (page.get(wordInPage(index)) & bitMask(index)) != 0;
+    }
+
+    /**
+     * Sets the bit with the specified index. If multiple threads set the same bit concurrently, exactly one of them
+     * sees this method return {@code true}.
+     * 
+     * @param index
+     *            The bit index
+     * @return {@code true} if the bit was clear before this call, {@code false} otherwise
+     * @exception IndexOutOfBoundsException
+     *                If {@code index} is negative or not less than {@code size()}
+     */
+    public boolean set(int index) {
+
+        checkIndex(index);
+        final AtomicLongArray page = getOrAllocatePage(index >>> PAGE_SHIFT);
+        final int word = wordInPage(index);
+        final long mask = bitMask(index);
+
+        long current;
+        do {
+            current = page.get(word);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        }
+        while (!page.compareAndSet(word, current, current | mask));
+
+        return true;
+    }
+
+    /**
+     * Returns a copy of this bit set. Bits set before this method is called are set in the copy, and bits set
+     * concurrently with this method may or may not be.
+     * 
+     * @return a copy of this bit set
+     */
+    public BitSet snapshot() {
+
+        final BitSet bitSet = new BitSet(size);
+        for (int p = 0; p < pages.length(); p++) {
+            final AtomicLongArray page = pages.get(p);
+            if (page != null) {
+                final int firstBit = p << PAGE_SHIFT;
+                for (int w = 0; w < page.length(); w++) {
+                    long word = page.get(w);
+                    while (word != 0) {
+                        bitSet.set(firstBit + (w << WORD_SHIFT) + Long.numberOfTrailingZeros(word));
+                        word &= word - 1; // clear the lowest set bit
+                    }
+                }
+            }
+        }
+
+        return bitSet;
+    }
+
+    private AtomicLongArray getOrAllocatePage(int p) {
+
+        AtomicLongArray page = pages.get(p);
+        if (page == null) {
+            // the last page only needs enough words for the remaining bits
+            final int pageBits = Math.min(1 << PAGE_SHIFT, size - (p << PAGE_SHIFT));
+            final AtomicLongArray newPage = new AtomicLongArray(Math.min(WORDS_PER_PAGE,
+                (pageBits + Long.SIZE - 1) >>> WORD_SHIFT));
+
+            if (pages.compareAndSet(p, null, newPage)) {
+                page = newPage;
+            }
+            else { // another thread allocated the page first
+                page = pages.get(p);
+            }
+        }
+
+        return page;
+    }
+
+    private void checkIndex(int index) {
+
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        }
+    }
+
+    private static int wordInPage(int index) {
+
+        return (index >>> WORD_SHIFT) & (WORDS_PER_PAGE - 1);
+    }
+
+    private static long bitMask(int index) {
+
+        return 1L << index; // only the lowest 6 bits of the index are used
+    }
+}
@@ -41,6 +41,7 @@ import net.fec.openrq.util.linearalgebra.factory.Basic2DFactory;
 import net.fec.openrq.util.linearalgebra.factory.CCSFactory;
 import net.fec.openrq.util.linearalgebra.factory.CRSFactory;
 import net.fec.openrq.util.linearalgebra.factory.Factory;
+import net.fec.openrq.util.linearalgebra.factory.HybridFactory;
 
 
 /**
@@ -88,6 +89,11 @@ public final class LinearAlgebra {
      */
     public static final Factory CCS_FACTORY = new CCSFactory();
 
+    /**
+     * The {@link net.fec.openrq.util.linearalgebra.factory.HybridFactory} singleton instance.
+     */
+    public static final Factory HYBRID_FACTORY = new HybridFactory();
+
     /**
      * The default dense factory singleton instance. References the {@link LinearAlgebra#BASIC2D_FACTORY}.
      */
@@ -109,5 +115,6 @@ public final class LinearAlgebra {
     public static final Factory FACTORIES[] = {BASIC1D_FACTORY,
                                                BASIC2D_FACTORY,
                                                CRS_FACTORY,
-                                               CCS_FACTORY};
+                                               CCS_FACTORY,
+                                               HYBRID_FACTORY};
 }
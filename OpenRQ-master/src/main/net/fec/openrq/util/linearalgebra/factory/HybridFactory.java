@@ -0,0 +1,258 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq.util.linearalgebra.factory;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+
+import net.fec.openrq.util.linearalgebra.io.ByteVectorIterator;
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.linearalgebra.matrix.hybrid.HybridByteMatrix;
+import net.fec.openrq.util.linearalgebra.matrix.source.MatrixSource;
+import net.fec.openrq.util.linearalgebra.serialize.DeserializationException;
+import net.fec.openrq.util.linearalgebra.serialize.Serialization;
+
+
+/**
+ * Factory of {@link HybridByteMatrix} matrices; vectors are compressed.
+ */
+public class HybridFactory extends CompressedFactory {
+
+    @Override
+    public ByteMatrix createMatrix() {
+
+        return new HybridByteMatrix(0, 0);
+    }
+
+    @Override
+    public ByteMatrix createMatrix(int rows, int columns) {
+
+        return new HybridByteMatrix(rows, columns);
+    }
+
+    @Override
+    public ByteMatrix createMatrix(int rows, int columns, byte[] array) {
+
+        ByteMatrix matrix = new HybridByteMatrix(rows, columns);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                final byte value = array[i * columns + j];
+                if (value != 0) {
+                    matrix.set(i, j, value);
+                }
+            }
+        }
+
+        return matrix;
+    }
+
+    @Override
+    public ByteMatrix createMatrix(byte[][] array) {
+
+        final int rows = array.length;
+        final int columns = (rows == 0) ? 0 : array[0].length;
+
+        ByteMatrix matrix = new HybridByteMatrix(rows, columns);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                if (array[i][j] != 0) {
+                    matrix.set(i, j, array[i][j]);
+                }
+            }
+        }
+
+        return matrix;
+    }
+
+    @Override
+    public ByteMatrix createMatrix(ByteMatrix matrix) {
+
+        ByteMatrix result = new HybridByteMatrix(matrix.rows(), matrix.columns());
+        for (int i = 0; i < matrix.rows(); i++) {
+            ByteVectorIterator it = matrix.nonZeroRowIterator(i);
+            while (it.hasNext()) {
+                it.next();
+                result.set(i, it.index(), it.get());
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public ByteMatrix createMatrix(MatrixSource source) {
+
+        ByteMatrix matrix = new HybridByteMatrix(source.rows(), source.columns());
+        for (int i = 0; i < source.rows(); i++) {
+            for (int j = 0; j < source.columns(); j++) {
+                final byte value = source.get(i, j);
+                if (value != 0) {
+                    matrix.set(i, j, value);
+                }
+            }
+        }
+
+        return matrix;
+    }
+
+    @Override
+    public ByteMatrix createConstantMatrix(int rows, int columns, byte value) {
+
+        ByteMatrix matrix = new HybridByteMatrix(rows, columns);
+        if (value != 0) {
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    matrix.set(i, j, value);
+                }
+            }
+        }
+
+        return matrix;
+    }
+
+    @Override
+    public ByteMatrix createRandomMatrix(int rows, int columns, Random random) {
+
+        int cardinality = (rows * columns) / DENSITY;
+
+        ByteMatrix matrix = new HybridByteMatrix(rows, columns);
+        for (; cardinality > 0; cardinality--) {
+            final int i = random.nextInt(rows);
+            final int j = random.nextInt(columns);
+            matrix.set(i, j, (byte)random.nextInt());
+        }
+
+        return matrix;
+    }
+
+    @Override
+    public ByteMatrix createRandomSymmetricMatrix(int size, Random random) {
+
+        int cardinality = (size * size) / DENSITY;
+
+        ByteMatrix matrix = new HybridByteMatrix(size, size);
+        for (int k = 0; k < cardinality / 2; k++) {
+            final int i = random.nextInt(size);
+            final int j = random.nextInt(size);
+            final byte value = (byte)random.nextInt();
+
+            matrix.set(i, j, value);
+            matrix.set(j, i, value);
+        }
+
+        return matrix;
+    }
+
+    @Override
+    public ByteMatrix createSquareMatrix(int size) {
+
+        return createMatrix(size, size);
+    }
+
+    @Override
+    public ByteMatrix createIdentityMatrix(int size) {
+
+        ByteMatrix matrix = new HybridByteMatrix(size, size);
+        for (int i = 0; i < size; i++) {
+            matrix.set(i, i, (byte)1);
+        }
+
+        return matrix;
+    }
+
+    @Override
+    public ByteMatrix createBlockMatrix(ByteMatrix a, ByteMatrix b, ByteMatrix c, ByteMatrix d) {
+
+        if ((a.rows() != b.rows()) || (a.columns() != c.columns()) ||
+            (c.rows() != d.rows()) || (b.columns() != d.columns())) {
+            throw new IllegalArgumentException("Sides of blocks are incompatible!");
+        }
+
+        final int rows = a.rows() + c.rows();
+        final int cols = a.columns() + b.columns();
+        ByteMatrix matrix = new HybridByteMatrix(rows, cols);
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if ((i < a.rows()) && (j < a.columns())) {
+                    matrix.set(i, j, a.get(i, j));
+                }
+                if ((i < a.rows()) && (j > a.columns())) {
+                    matrix.set(i, j, b.get(i, j));
+                }
+                if ((i > a.rows()) && (j < a.columns())) {
+                    matrix.set(i, j, c.get(i, j));
+                }
+                if ((i > a.rows()) && (j > a.columns())) {
+                    matrix.set(i, j, d.get(i, j));
+                }
+            }
+        }
+
+        return matrix;
+    }
+
+    @Override
+    public ByteMatrix createDiagonalMatrix(byte[] diagonal) {
+
+        final int size = diagonal.length;
+
+        ByteMatrix matrix = new HybridByteMatrix(size, size);
+        for (int i = 0; i < size; i++) {
+            matrix.set(i, i, diagonal[i]);
+        }
+
+        return matrix;
+    }
+
+    @Override
+    public ByteMatrix deserializeMatrix(ByteBuffer buffer) throws DeserializationException {
+
+        final int rows = Serialization.readMatrixRows(buffer);
+        final int cols = Serialization.readMatrixColumns(buffer);
+
+        ByteMatrix matrix = new HybridByteMatrix(rows, cols);
+        for (int i = 0; i < rows; i++) {
+            final int rowCard = Serialization.readMatrixRowCardinality(buffer);
+            for (int n = 0; n < rowCard; n++) {
+                final int j = Serialization.readMatrixColumnIndex(buffer);
+                matrix.set(i, j, Serialization.readMatrixValue(buffer));
+            }
+        }
+
+        return matrix;
+    }
+
+    @Override
+    public ByteMatrix deserializeMatrix(ReadableByteChannel ch) throws IOException, DeserializationException {
+
+        final int rows = Serialization.readMatrixRows(ch);
+        final int cols = Serialization.readMatrixColumns(ch);
+
+        ByteMatrix matrix = new HybridByteMatrix(rows, cols);
+        for (int i = 0; i < rows; i++) {
+            final int rowCard = Serialization.readMatrixRowCardinality(ch);
+            for (int n = 0; n < rowCard; n++) {
+                final int j = Serialization.readMatrixColumnIndex(ch);
+                matrix.set(i, j, Serialization.readMatrixValue(ch));
+            }
+        }
+
+        return matrix;
+    }
+}
@@ -0,0 +1,819 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq.util.linearalgebra.matrix.hybrid;
+
+
+import static net.fec.openrq.util.math.OctetOps.aDividedByB;
+import static net.fec.openrq.util.math.OctetOps.aPlusB;
+import static net.fec.openrq.util.math.OctetOps.aTimesB;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import net.fec.openrq.util.checking.Indexables;
+import net.fec.openrq.util.linearalgebra.LinearAlgebra;
+import net.fec.openrq.util.linearalgebra.factory.Factory;
+import net.fec.openrq.util.linearalgebra.io.ByteVectorIterator;
+import net.fec.openrq.util.linearalgebra.matrix.AbstractByteMatrix;
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+import net.fec.openrq.util.linearalgebra.serialize.Serialization;
+import net.fec.openrq.util.linearalgebra.vector.ByteVector;
+import net.fec.openrq.util.math.OctetOps;
+
+
+/**
+ * A matrix whose rows are stored either as GF(2) bitsets or as GF(256) bytes.
+ * <p>
+ * Every row starts out binary, packed into {@code long} words, so that adding one binary row to another is a
+ * word-wide XOR and counting non-zeros is a population count. A row is converted to a byte array the first time a
+ * value other than 0 or 1 is written to it (directly or by a row operation), and is converted back when cleared.
+ * <p>
+ * This matches the RaptorQ constraint matrix, where only the HDPC rows hold values other than 0 and 1. Matrices
+ * derived from this one (products, transposes, blanks) are created by the {@link LinearAlgebra#CRS_FACTORY}.
+ * <p>
+ * A copy obtained from {@link #copyOnWrite(int)} shares the rows with the original matrix, and each matrix only copies
+ * a shared row before writing to it for the first time.
+ */
+public class HybridByteMatrix extends AbstractByteMatrix {
+
+    private static final int WORD_SHIFT = 6;
+    private static final long ALL_ONES = -1L;
+
+    // row i is binary iff bytes[i] is null, in which case bits[i] holds it;
+    // otherwise bits[i] is null
+    private final long[][] bits;
+    private final byte[][] bytes;
+    private final int words;
+
+    // shared[i] is true iff the arrays of row i may also be referenced by another matrix
+    private final boolean[] shared;
+
+
+    public HybridByteMatrix(int rows, int columns) {
+
+        super(LinearAlgebra.CRS_FACTORY, rows, columns);
+
+        this.words = numWords(columns);
+        this.bits = new long[rows][];
+        this.bytes = new byte[rows][];
+        this.shared = new boolean[rows];
+        for (int i = 0; i < rows; i++) {
+            bits[i] = new long[words];
+        }
+    }
+
+    private HybridByteMatrix(HybridByteMatrix other) {
+
+        super(LinearAlgebra.CRS_FACTORY, other.rows(), other.columns());
+
+        this.words = other.words;
+        this.bits = new long[other.rows()][];
+        this.bytes = new byte[other.rows()][];
+        this.shared = new boolean[other.rows()];
+        for (int i = 0; i < other.rows(); i++) {
+            if (other.bytes[i] == null) {
+                bits[i] = other.bits[i].clone();
+            }
+            else {
+                bytes[i] = other.bytes[i].clone();
+            }
+        }
+    }
+
+    // shares the rows of other, and appends zero rows
+    private HybridByteMatrix(HybridByteMatrix other, int rows) {
+
+        super(LinearAlgebra.CRS_FACTORY, rows, other.columns());
+
+        this.words = other.words;
+        this.bits = new long[rows][];
+        this.bytes = new byte[rows][];
+        this.shared = new boolean[rows];
+
+        final int sharedRows = Math.min(rows, other.rows());
+        for (int i = 0; i < sharedRows; i++) {
+            bits[i] = other.bits[i];
+            bytes[i] = other.bytes[i];
+            shared[i] = true;
+            if (!other.shared[i]) { // avoid writing to the original matrix if possible
+                other.shared[i] = true;
+            }
+        }
+        for (int i = sharedRows; i < rows; i++) {
+            bits[i] = new long[words];
+        }
+    }
+
+    private static int numWords(int columns) {
+
+        return (columns + Long.SIZE - 1) >>> WORD_SHIFT;
+    }
+
+    private static int word(int j) {
+
+        return j >>> WORD_SHIFT;
+    }
+
+    // mask of the bits at or above column 'from' in its word
+    private static long fromMask(int from) {
+
+        return ALL_ONES << from;
+    }
+
+    // mask of the bits below column 'to' in the word of column 'to - 1'
+    private static long toMask(int to) {
+
+        return ALL_ONES >>> -to;
+    }
+
+    /**
+     * Returns a copy of this matrix with the given number of rows, that shares its rows with this matrix until they
+     * are written. If the copy has more rows than this matrix, the extra rows are zero.
+     * <p>
+     * The copy is cheap to create (no row data is copied), so a matrix that is the starting point of many
+     * computations can be kept unmodified and copied with this method for each of them. Note that sharing a row is
+     * not thread-safe with concurrent writes to the same row of this matrix.
+     *
+     * @param rows
+     *            The number of rows of the copy
+     * @return a copy of this matrix with the given number of rows
+     * @exception IllegalArgumentException
+     *                If {@code rows} is negative
+     */
+    public HybridByteMatrix copyOnWrite(int rows) {
+
+        if (rows < 0) {
+            throw new IllegalArgumentException("negative number of rows");
+        }
+        return new HybridByteMatrix(this, rows);
+    }
+
+    /**
+     * Overwrites the rows of this matrix with the rows of another matrix with the same number of columns, and clears
+     * the remaining rows of this matrix.
+     * <p>
+     * The arrays of this matrix are reused whenever a row keeps its storage type, so a matrix that is repeatedly
+     * reset to the same starting point (as with {@link #copyOnWrite(int)}) does not need to be reallocated.
+     *
+     * @param other
+     *            The matrix whose rows are copied
+     * @exception IllegalArgumentException
+     *                If the other matrix has a different number of columns, or more rows than this matrix
+     */
+    public void copyRowsFrom(HybridByteMatrix other) {
+
+        if (other.columns() != columns() || other.rows() > rows()) {
+            throw new IllegalArgumentException("incompatible matrix dimensions");
+        }
+
+        for (int i = 0; i < other.rows(); i++) {
+            if (other.bytes[i] == null) {
+                System.arraycopy(other.bits[i], 0, overwriteBits(i), 0, words);
+            }
+            else {
+                System.arraycopy(other.bytes[i], 0, overwriteBytes(i), 0, columns());
+            }
+        }
+        for (int i = other.rows(); i < rows(); i++) {
+            clearRow(i);
+        }
+    }
+
+    /**
+     * Returns {@code true} iff the row is stored as a bitset.
+     *
+     * @param i
+     *            A row index
+     * @return {@code true} iff the row is stored as a bitset
+     */
+    public boolean isBinaryRow(int i) {
+
+        Indexables.checkIndexBounds(i, rows());
+        return bytes[i] == null;
+    }
+
+    // returns a binary row that can be written to (must only be called for binary rows)
+    private long[] ownBits(int i) {
+
+        if (shared[i]) {
+            bits[i] = bits[i].clone();
+            shared[i] = false;
+        }
+        return bits[i];
+    }
+
+    // returns a binary row whose previous contents are discarded
+    private long[] overwriteBits(int i) {
+
+        if (bytes[i] != null || shared[i]) {
+            bits[i] = new long[words];
+            bytes[i] = null;
+            shared[i] = false;
+        }
+        return bits[i];
+    }
+
+    // returns a byte row whose previous contents are discarded
+    private byte[] overwriteBytes(int i) {
+
+        if (bytes[i] == null || shared[i]) {
+            bytes[i] = new byte[columns()];
+            bits[i] = null;
+            shared[i] = false;
+        }
+        return bytes[i];
+    }
+
+    // returns a byte row that can be written to, converting a binary row into a byte row
+    private byte[] promote(int i) {
+
+        byte[] row = bytes[i];
+        if (row != null) {
+            if (shared[i]) {
+                row = row.clone();
+                bytes[i] = row;
+                shared[i] = false;
+            }
+        }
+        else {
+            row = new byte[columns()];
+            final long[] b = bits[i];
+            for (int w = 0; w < words; w++) {
+                long word = b[w];
+                while (word != 0) {
+                    row[(w << WORD_SHIFT) + Long.numberOfTrailingZeros(word)] = 1;
+                    word &= word - 1;
+                }
+            }
+
+            bytes[i] = row;
+            bits[i] = null;
+            shared[i] = false;
+        }
+        return row;
+    }
+
+    @Override
+    protected byte safeGet(int i, int j) {
+
+        final byte[] row = bytes[i];
+        if (row == null) {
+            return (byte)((bits[i][word(j)] >>> j) & 1L);
+        }
+        else {
+            return row[j];
+        }
+    }
+
+    @Override
+    protected void safeSet(int i, int j, byte value) {
+
+        if (bytes[i] != null || (value != 0 && value != 1)) {
+            promote(i)[j] = value;
+        }
+        else if (value == 0) {
+            ownBits(i)[word(j)] &= ~(1L << j);
+        }
+        else {
+            ownBits(i)[word(j)] |= 1L << j;
+        }
+    }
+
+    @Override
+    public void clear() {
+
+        for (int i = 0; i < rows(); i++) {
+            clearRow(i);
+        }
+    }
+
+    @Override
+    public void clearRow(int i) {
+
+        Indexables.checkIndexBounds(i, rows());
+
+        if (bytes[i] == null && !shared[i]) {
+            Arrays.fill(bits[i], 0L);
+        }
+        else {
+            bits[i] = new long[words];
+            bytes[i] = null;
+            shared[i] = false;
+        }
+    }
+
+    @Override
+    public boolean nonZeroAt(int i, int j) {
+
+        checkBounds(i, j);
+        return safeGet(i, j) != 0;
+    }
+
+    @Override
+    public boolean isZeroAt(int i, int j) {
+
+        return !nonZeroAt(i, j);
+    }
+
+    @Override
+    public int nonZeros() {
+
+        int nonZeros = 0;
+        for (int i = 0; i < rows(); i++) {
+            nonZeros += rowNonZeros(i, 0, columns());
+        }
+
+        return nonZeros;
+    }
+
+    @Override
+    public int nonZerosInRow(int i) {
+
+        Indexables.checkIndexBounds(i, rows());
+
+        return rowNonZeros(i, 0, columns());
+    }
+
+    @Override
+    public int nonZerosInRow(int i, int fromColumn, int toColumn) {
+
+        Indexables.checkIndexBounds(i, rows());
+        Indexables.checkFromToBounds(fromColumn, toColumn, columns());
+
+        return rowNonZeros(i, fromColumn, toColumn);
+    }
+
+    private int rowNonZeros(int i, int from, int to) {
+
+        if (from >= to) {
+            return 0;
+        }
+
+        final byte[] row = bytes[i];
+        if (row == null) {
+            final long[] b = bits[i];
+            final int first = word(from);
+            final int last = word(to - 1);
+            if (first == last) {
+                return Long.bitCount(b[first] & fromMask(from) & toMask(to));
+            }
+
+            int count = Long.bitCount(b[first] & fromMask(from));
+            for (int w = first + 1; w < last; w++) {
+                count += Long.bitCount(b[w]);
+            }
+            return count + Long.bitCount(b[last] & toMask(to));
+        }
+        else {
+            int count = 0;
+            for (int j = from; j < to; j++) {
+                if (row[j] != 0) count++;
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public int[] nonZeroPositionsInRow(int i) {
+
+        return nonZeroPositionsInRow(i, 0, columns());
+    }
+
+    @Override
+    public int[] nonZeroPositionsInRow(int i, int fromColumn, int toColumn) {
+
+        Indexables.checkIndexBounds(i, rows());
+        Indexables.checkFromToBounds(fromColumn, toColumn, columns());
+
+        final int[] positions = new int[rowNonZeros(i, fromColumn, toColumn)];
+        int n = 0;
+        for (int j = nextNonZero(i, fromColumn, toColumn); j < toColumn; j = nextNonZero(i, j + 1, toColumn)) {
+            positions[n++] = j;
+        }
+
+        return positions;
+    }
+
+    // returns the first column at or after 'from' and before 'to' with a non-zero, or 'to' if there is none
+    private int nextNonZero(int i, int from, int to) {
+
+        if (from >= to) {
+            return to;
+        }
+
+        final byte[] row = bytes[i];
+        if (row == null) {
+            final long[] b = bits[i];
+            int w = word(from);
+            long word = b[w] & fromMask(from);
+            final int last = word(to - 1);
+            while (word == 0) {
+                if (++w > last) {
+                    return to;
+                }
+                word = b[w];
+            }
+
+            final int j = (w << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+            return (j < to) ? j : to;
+        }
+        else {
+            for (int j = from; j < to; j++) {
+                if (row[j] != 0) return j;
+            }
+            return to;
+        }
+    }
+
+    @Override
+    public void swapRows(int i, int j) {
+
+        Indexables.checkIndexBounds(i, rows());
+        Indexables.checkIndexBounds(j, rows());
+
+        if (i != j) {
+            final long[] b = bits[i];
+            bits[i] = bits[j];
+            bits[j] = b;
+
+            final byte[] r = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = r;
+
+            final boolean s = shared[i];
+            shared[i] = shared[j];
+            shared[j] = s;
+        }
+    }
+
+    @Override
+    public void swapColumns(int i, int j) {
+
+        Indexables.checkIndexBounds(i, columns());
+        Indexables.checkIndexBounds(j, columns());
+
+        if (i != j) {
+            final int wi = word(i);
+            final int wj = word(j);
+            for (int row = 0; row < rows(); row++) {
+                final byte[] r = bytes[row];
+                if (r == null) {
+                    final long[] b = bits[row];
+                    if ((((b[wi] >>> i) ^ (b[wj] >>> j)) & 1L) != 0) { // the bits differ, so flip both
+                        final long[] ob = ownBits(row);
+                        ob[wi] ^= 1L << i;
+                        ob[wj] ^= 1L << j;
+                    }
+                }
+                else if (r[i] != r[j]) {
+                    final byte[] or = promote(row);
+                    final byte aux = or[i];
+                    or[i] = or[j];
+                    or[j] = aux;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addRowsInPlace(int srcRow, int destRow) {
+
+        addRowsInPlace((byte)1, srcRow, destRow, 0, columns());
+    }
+
+    @Override
+    public void addRowsInPlace(int srcRow, int destRow, int fromColumn, int toColumn) {
+
+        addRowsInPlace((byte)1, srcRow, destRow, fromColumn, toColumn);
+    }
+
+    @Override
+    public void addRowsInPlace(byte srcMultiplier, int srcRow, int destRow) {
+
+        addRowsInPlace(srcMultiplier, srcRow, destRow, 0, columns());
+    }
+
+    @Override
+    public void addRowsInPlace(byte srcMultiplier, int srcRow, int destRow, int fromColumn, int toColumn) {
+
+        Indexables.checkIndexBounds(srcRow, rows());
+        Indexables.checkIndexBounds(destRow, rows());
+        Indexables.checkFromToBounds(fromColumn, toColumn, columns());
+
+        if (srcMultiplier == 0 || fromColumn >= toColumn) {
+            return; // nothing to add
+        }
+
+        final byte[] src = bytes[srcRow];
+        if (src == null) {
+            final long[] srcBits = bits[srcRow];
+            if (srcMultiplier == 1 && bytes[destRow] == null) {
+                xorBits(srcBits, ownBits(destRow), fromColumn, toColumn);
+            }
+            else {
+                // add the multiplier to every column where the source has a one
+                final byte[] dest = promote(destRow);
+                for (int j = nextNonZero(srcRow, fromColumn, toColumn); j < toColumn; j =
+                    nextNonZero(srcRow, j + 1, toColumn)) {
+                    dest[j] = aPlusB(dest[j], srcMultiplier);
+                }
+            }
+        }
+        else {
+            final byte[] dest = promote(destRow);
+            OctetOps.vectorVectorAddition(
+                srcMultiplier, src, fromColumn, dest, fromColumn, dest, fromColumn, toColumn - fromColumn);
+        }
+    }
+
+    private static void xorBits(long[] src, long[] dest, int from, int to) {
+
+        final int first = word(from);
+        final int last = word(to - 1);
+        if (first == last) {
+            dest[first] ^= src[first] & fromMask(from) & toMask(to);
+        }
+        else {
+            dest[first] ^= src[first] & fromMask(from);
+            for (int w = first + 1; w < last; w++) {
+                dest[w] ^= src[w];
+            }
+            dest[last] ^= src[last] & toMask(to);
+        }
+    }
+
+    @Override
+    public void divideRowInPlace(int i, byte value) {
+
+        divideRowInPlace(i, value, 0, columns());
+    }
+
+    @Override
+    public void divideRowInPlace(int i, byte value, int fromColumn, int toColumn) {
+
+        Indexables.checkIndexBounds(i, rows());
+        Indexables.checkFromToBounds(fromColumn, toColumn, columns());
+
+        if (value != 1) { // dividing by one leaves the row as is
+            final byte[] row = promote(i);
+            for (int j = fromColumn; j < toColumn; j++) {
+                if (row[j] != 0) {
+                    row[j] = aDividedByB(row[j], value);
+                }
+            }
+        }
+    }
+
+    @Override
+    public ByteMatrix multiply(
+        ByteMatrix matrix,
+        int fromThisRow,
+        int toThisRow,
+        int fromThisColumn,
+        int toThisColumn,
+        int fromOtherRow,
+        int toOtherRow,
+        int fromOtherColumn,
+        int toOtherColumn,
+        Factory factory)
+    {
+
+        ensureFactoryIsNotNull(factory);
+        ensureArgumentIsNotNull(matrix, "matrix");
+        Indexables.checkFromToBounds(fromThisRow, toThisRow, rows());
+        Indexables.checkFromToBounds(fromThisColumn, toThisColumn, columns());
+        Indexables.checkFromToBounds(fromOtherRow, toOtherRow, matrix.rows());
+        Indexables.checkFromToBounds(fromOtherColumn, toOtherColumn, matrix.columns());
+
+        if ((toThisColumn - fromThisColumn) != (toOtherRow - fromOtherRow)) {
+            fail("Wrong matrix dimensions: " +
+                 (toOtherRow - fromOtherRow) + "x" + (toOtherColumn - fromOtherColumn) +
+                 ". Should be: " + (toThisColumn - fromThisColumn) + "x_.");
+        }
+
+        ByteMatrix result = factory.createMatrix(toThisRow - fromThisRow, toOtherColumn - fromOtherColumn);
+
+        // each row of the result is a linear combination of rows of the other matrix
+        final byte[] acc = new byte[toOtherColumn - fromOtherColumn];
+        for (int i = fromThisRow; i < toThisRow; i++) {
+            Arrays.fill(acc, (byte)0);
+            for (int k = nextNonZero(i, fromThisColumn, toThisColumn); k < toThisColumn; k =
+                nextNonZero(i, k + 1, toThisColumn)) {
+                final byte value = safeGet(i, k);
+                ByteVectorIterator it =
+                    matrix.nonZeroRowIterator(k - fromThisColumn + fromOtherRow, fromOtherColumn, toOtherColumn);
+                while (it.hasNext()) {
+                    it.next();
+                    final int j = it.index() - fromOtherColumn;
+                    acc[j] = aPlusB(acc[j], aTimesB(value, it.get()));
+                }
+            }
+
+            for (int j = 0; j < acc.length; j++) {
+                if (acc[j] != 0) {
+                    result.set(i - fromThisRow, j, acc[j]);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public ByteVector multiplyRow(int i, ByteMatrix matrix, Factory factory) {
+
+        ensureArgumentIsNotNull(matrix, "matrix");
+
+        if (columns() != matrix.rows()) {
+            fail("Wrong matrix dimensions: " + matrix.rows() + "x" + matrix.columns() +
+                 ". Should be: " + columns() + "x_.");
+        }
+
+        return multiplyRow(i, matrix, 0, columns(), factory);
+    }
+
+    @Override
+    public ByteVector multiplyRow(int i, ByteMatrix matrix, int fromColumn, int toColumn, Factory factory) {
+
+        ensureFactoryIsNotNull(factory);
+        ensureArgumentIsNotNull(matrix, "matrix");
+        Indexables.checkIndexBounds(i, rows());
+        Indexables.checkFromToBounds(fromColumn, toColumn, columns());
+
+        if ((toColumn - fromColumn) != matrix.rows()) {
+            fail("Wrong matrix dimensions: " + matrix.rows() + "x" + matrix.columns() +
+                 ". Should be: " + (toColumn - fromColumn) + "x_.");
+        }
+
+        final byte[] acc = new byte[matrix.columns()];
+        for (int k = nextNonZero(i, fromColumn, toColumn); k < toColumn; k = nextNonZero(i, k + 1, toColumn)) {
+            final byte value = safeGet(i, k);
+            for (int j = 0; j < acc.length; j++) {
+                acc[j] = aPlusB(acc[j], aTimesB(value, matrix.get(k - fromColumn, j)));
+            }
+        }
+
+        ByteVector result = factory.createVector(acc.length);
+        for (int j = 0; j < acc.length; j++) {
+            if (acc[j] != 0) {
+                result.set(j, acc[j]);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public ByteMatrix copy() {
+
+        return new HybridByteMatrix(this);
+    }
+
+    @Override
+    public ByteVectorIterator nonZeroRowIterator(int i) {
+
+        Indexables.checkIndexBounds(i, rows());
+        return new NonZeroRowIterator(i, 0, columns());
+    }
+
+    @Override
+    public ByteVectorIterator nonZeroRowIterator(int i, int fromColumn, int toColumn) {
+
+        Indexables.checkIndexBounds(i, rows());
+        Indexables.checkFromToBounds(fromColumn, toColumn, columns());
+        return new NonZeroRowIterator(i, fromColumn, toColumn);
+    }
+
+
+    private final class NonZeroRowIterator extends ByteVectorIterator {
+
+        private final int i;
+        private final int end;
+        private int cursor;
+        private int nextCursor;
+
+
+        /*
+         * Requires valid indices.
+         */
+        NonZeroRowIterator(int i, int fromColumn, int toColumn) {
+
+            super(toColumn - fromColumn);
+
+            this.i = i;
+            this.end = toColumn;
+            this.cursor = -1;
+            this.nextCursor = nextNonZero(i, fromColumn, toColumn);
+        }
+
+        @Override
+        public int index() {
+
+            return cursor;
+        }
+
+        @Override
+        public byte get() {
+
+            return safeGet(i, cursor);
+        }
+
+        @Override
+        public void set(byte value) {
+
+            safeSet(i, cursor, value);
+        }
+
+        @Override
+        public boolean hasNext() {
+
+            return nextCursor < end;
+        }
+
+        @Override
+        public Byte next() {
+
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            cursor = nextCursor;
+            nextCursor = nextNonZero(i, cursor + 1, end);
+            return get();
+        }
+    }
+
+
+    @Override
+    public ByteBuffer serializeToBuffer() {
+
+        final ByteBuffer buffer = ByteBuffer.allocate(getSerializedDataSize());
+        Serialization.writeType(buffer, Serialization.Type.SPARSE_ROW_MATRIX);
+        Serialization.writeMatrixRows(buffer, rows());
+        Serialization.writeMatrixColumns(buffer, columns());
+
+        for (int i = 0; i < rows(); i++) {
+            Serialization.writeMatrixRowCardinality(buffer, nonZerosInRow(i));
+            ByteVectorIterator it = nonZeroRowIterator(i);
+            while (it.hasNext()) {
+                it.next();
+                Serialization.writeMatrixColumnIndex(buffer, it.index());
+                Serialization.writeMatrixValue(buffer, it.get());
+            }
+        }
+
+        buffer.rewind();
+        return buffer;
+    }
+
+    @Override
+    public void serializeToChannel(WritableByteChannel ch) throws IOException {
+
+        Serialization.writeType(ch, Serialization.Type.SPARSE_ROW_MATRIX);
+        Serialization.writeMatrixRows(ch, rows());
+        Serialization.writeMatrixColumns(ch, columns());
+
+        for (int i = 0; i < rows(); i++) {
+            Serialization.writeMatrixRowCardinality(ch, nonZerosInRow(i));
+            ByteVectorIterator it = nonZeroRowIterator(i);
+            while (it.hasNext()) {
+                it.next();
+                Serialization.writeMatrixColumnIndex(ch, it.index());
+                Serialization.writeMatrixValue(ch, it.get());
+            }
+        }
+    }
+
+    private int getSerializedDataSize() {
+
+        final long nonZeros = nonZeros();
+        final long dataSize = Serialization.SERIALIZATION_TYPE_NUMBYTES +
+                              Serialization.MATRIX_ROWS_NUMBYTES +
+                              Serialization.MATRIX_COLUMNS_NUMBYTES +
+                              Serialization.MATRIX_ROW_CARDINALITY_NUMBYTES * (long)rows() +
+                              Serialization.MATRIX_COLUMN_INDEX_NUMBYTES * nonZeros +
+                              nonZeros;
+
+        if (dataSize > Integer.MAX_VALUE) {
+            throw new UnsupportedOperationException("matrix is too large to be serialized");
+        }
+
+        return (int)dataSize;
+    }
+}
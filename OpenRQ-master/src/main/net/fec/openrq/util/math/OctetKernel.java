@@ -0,0 +1,61 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fec.openrq.util.math;
+
+
+/**
+ * An alternative implementation of the array kernels of {@link OctetOps}, picked at runtime by {@code OctetOps} when
+ * available. Implementations have the same contract as the scalar kernels: they write exactly {@code length} bytes of
+ * the result from the given positions, and the result may be one of the input arrays at the same position.
+ * <p>
+ * Products are computed from split-nibble tables: for a multiplier {@code m}, the table of index {@code m} holds the 16
+ * products of {@code m} with every low nibble, followed by the 16 products with every high nibble, so that the product
+ * of {@code m} and a byte {@code x} is {@code table[x & 15] ^ table[16 + (x >>> 4)]}.
+ */
+interface OctetKernel {
+
+    /**
+     * Receives the 256 split-nibble tables, indexed by unsigned multiplier, before any other method is called.
+     * 
+     * @param nibbleTables
+     *            The split-nibble tables of every multiplier
+     */
+    void init(byte[][] nibbleTables);
+
+    /**
+     * {@code result[i] = vector1[i] + vector2[i]}
+     */
+    void add(byte[] vector1, int vecPos1, byte[] vector2, int vecPos2, byte[] result, int resPos, int length);
+
+    /**
+     * {@code result[i] = multiplier * vector[i]}
+     */
+    void multiply(int multiplier, byte[] vector, int vecPos, byte[] result, int resPos, int length);
+
+    /**
+     * {@code result[i] = multiplier * vector1[i] + vector2[i]}
+     */
+    void multiplyAdd(
+        int multiplier,
+        byte[] vector1,
+        int vecPos1,
+        byte[] vector2,
+        int vecPos2,
+        byte[] result,
+        int resPos,
+        int length);
+}
@@ -18,8 +18,8 @@ package net.fec.openrq.util.math;
 
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.Random;
 
 import net.fec.openrq.util.datatype.SizeOf;
 import net.fec.openrq.util.datatype.UnsignedTypes;
@@ -31,6 +31,24 @@ import net.fec.openrq.util.io.ByteBuffers;
  */
 public final class OctetOps {
 
+    /**
+     * System property to turn off the Vector API kernels, e.g. for comparison.
+     */
+    public static final String VECTOR_KERNEL_ENABLED_PROPERTY = "net.fec.openrq.vector.kernel.enabled";
+
+
+    /**
+     * Returns {@code true} if the array kernels run on the Vector API implementation, which is only the case if it is
+     * on the classpath, the running JVM offers {@code jdk.incubator.vector} and the implementation passed its self
+     * test.
+     * 
+     * @return {@code true} if the array kernels run on the Vector API implementation
+     */
+    public static boolean isVectorKernelLoaded() {
+
+        return VECTOR_KERNEL != null;
+    }
+
     public static int UNSIGN(int b) {
 
         return UnsignedTypes.getUnsignedByte(b);
@@ -129,16 +147,11 @@ public final class OctetOps {
                 System.arraycopy(vector, vecPos, result, resPos, length); // uses offset and length
             }
         }
+        else if (value == 0) { // if multiplied by zero, simply fill the result with zeros and return
+            Arrays.fill(result, resPos, resPos + length, (byte)0); // uses from and to indexes
+        }
         else {
-            final int resEnd = resPos + length;
-            if (value == 0) { // if multiplied by zero, simply fill the result with zeros and return
-                Arrays.fill(result, resPos, resEnd, (byte)0); // uses from and to indexes
-            }
-            else {
-                for (int rr = resPos, vv = vecPos; rr < resEnd; rr++, vv++) {
-                    result[rr] = aTimesB(value, vector[vv]);
-                }
-            }
+            productKernel(value, vector, vecPos, result, resPos, length);
         }
     }
 
@@ -159,12 +172,7 @@ public final class OctetOps {
             ByteBuffers.putZeros(result, length, BufferOperation.RESTORE_POSITION);
         }
         else {
-            final int vPos = vector.position();
-            final int rPos = result.position();
-            final int rEnd = rPos + length;
-            for (int vv = vPos, rr = rPos; rr < rEnd; vv++, rr++) {
-                result.put(rr, aTimesB(value, vector.get(vv))); // absolute access to buffer
-            }
+            productKernel(value, vector, result, length);
         }
     }
 
@@ -191,10 +199,8 @@ public final class OctetOps {
             }
         }
         else {
-            final int resEnd = resPos + length;
-            for (int rr = resPos, vv = vecPos; rr < resEnd; rr++, vv++) {
-                result[rr] = aDividedByB(vector[vv], value);
-            }
+            // dividing by the value is the same as multiplying by its inverse
+            productKernel(inverse(value), vector, vecPos, result, resPos, length);
         }
     }
 
@@ -212,24 +218,8 @@ public final class OctetOps {
             }
         }
         else {
-            final int sol = SizeOf.LONG;
-            final int vPos = vector.position();
-            final int rPos = result.position();
-
-            final int rEnd = rPos + length;
-            final int rLongEnd = rPos + ((length / sol) * sol);
-
-            int vv = vPos;
-            int rr = rPos;
-            for (; rr < rLongEnd; vv += sol, rr += sol) {
-                final long quot = divisionAsLong(value, vector, vv);
-                result.putLong(rr, quot);
-            }
-
-            for (; rr < rEnd; vv++, rr++) {
-                final byte quot = aDividedByB(vector.get(vv), value);
-                result.put(rr, quot);
-            }
+            // dividing by the value is the same as multiplying by its inverse
+            productKernel(inverse(value), vector, result, length);
         }
     }
 
@@ -248,9 +238,14 @@ public final class OctetOps {
         int length)
     {
 
-        final int resEnd = resPos + length;
-        for (int v1 = vecPos1, v2 = vecPos2, r = resPos; r < resEnd; v1++, v2++, r++) {
-            result[r] = aPlusB(vector1[v1], vector2[v2]);
+        if (VECTOR_KERNEL != null) {
+            VECTOR_KERNEL.add(vector1, vecPos1, vector2, vecPos2, result, resPos, length);
+            return;
+        }
+
+        // a single counted index keeps this loop in the shape that the JIT compiles into SIMD instructions
+        for (int i = 0; i < length; i++) {
+            result[resPos + i] = (byte)(vector1[vecPos1 + i] ^ vector2[vecPos2 + i]);
         }
     }
 
@@ -261,18 +256,31 @@ public final class OctetOps {
 
     public static void vectorVectorAddition(ByteBuffer vector1, ByteBuffer vector2, ByteBuffer result, int length) {
 
-        final int sol = SizeOf.LONG;
+        if (vector1.hasArray() && vector2.hasArray() && result.hasArray()) {
+            vectorVectorAddition(
+                vector1.array(), arrayPosition(vector1),
+                vector2.array(), arrayPosition(vector2),
+                result.array(), arrayPosition(result),
+                length);
+            return;
+        }
+
+        if (VECTOR_KERNEL != null) {
+            stagedKernel((byte)1, vector1, vector2, result, length);
+            return;
+        }
+
         final int v1Pos = vector1.position();
         final int v2Pos = vector2.position();
         final int rPos = result.position();
 
         final int rEnd = rPos + length;
-        final int rLongEnd = rPos + ((length / sol) * sol);
+        final int rLongEnd = sameOrder(vector1, vector2, result) ? longEnd(rPos, length) : rPos;
 
         int v1 = v1Pos;
         int v2 = v2Pos;
         int rr = rPos;
-        for (; rr < rLongEnd; v1 += sol, v2 += sol, rr += sol) {
+        for (; rr < rLongEnd; v1 += SizeOf.LONG, v2 += SizeOf.LONG, rr += SizeOf.LONG) {
             final long sum = aLongPlusBLong(vector1.getLong(v1), vector2.getLong(v2));
             result.putLong(rr, sum);
         }
@@ -302,10 +310,18 @@ public final class OctetOps {
         if (vec1Multiplier == 1) {
             vectorVectorAddition(vector1, vecPos1, vector2, vecPos2, result, resPos, length);
         }
+        else if (vec1Multiplier == 0) { // the product is zero, so the sum is the second vector
+            if (vector2 != result || vecPos2 != resPos) {
+                System.arraycopy(vector2, vecPos2, result, resPos, length);
+            }
+        }
+        else if (VECTOR_KERNEL != null) {
+            VECTOR_KERNEL.multiplyAdd(UNSIGN(vec1Multiplier), vector1, vecPos1, vector2, vecPos2, result, resPos, length);
+        }
         else {
-            final int resEnd = resPos + length;
-            for (int v1 = vecPos1, v2 = vecPos2, r = resPos; r < resEnd; v1++, v2++, r++) {
-                result[r] = aPlusB(aTimesB(vec1Multiplier, vector1[v1]), vector2[v2]);
+            final byte[] row = multRow(vec1Multiplier);
+            for (int i = 0; i < length; i++) {
+                result[resPos + i] = (byte)(row[vector1[vecPos1 + i] & 0xFF] ^ vector2[vecPos2 + i]);
             }
         }
     }
@@ -331,26 +347,36 @@ public final class OctetOps {
         if (vec1Multiplier == 1) { // no need to multiply, just add
             vectorVectorAddition(vector1, vector2, result, length);
         }
+        else if (vector1.hasArray() && vector2.hasArray() && result.hasArray()) {
+            vectorVectorAddition(vec1Multiplier,
+                vector1.array(), arrayPosition(vector1),
+                vector2.array(), arrayPosition(vector2),
+                result.array(), arrayPosition(result),
+                length);
+        }
+        else if (VECTOR_KERNEL != null) {
+            stagedKernel(vec1Multiplier, vector1, vector2, result, length);
+        }
         else {
-            final int sol = SizeOf.LONG;
+            final byte[] row = multRow(vec1Multiplier);
             final int v1Pos = vector1.position();
             final int v2Pos = vector2.position();
             final int rPos = result.position();
 
             final int rEnd = rPos + length;
-            final int rLongEnd = rPos + ((length / sol) * sol);
+            final int rLongEnd = sameOrder(vector1, vector2, result) ? longEnd(rPos, length) : rPos;
 
             int v1 = v1Pos;
             int v2 = v2Pos;
             int rr = rPos;
-            for (; rr < rLongEnd; v1 += sol, v2 += sol, rr += sol) {
-                final long prod = productAsLong(vec1Multiplier, vector1, v1);
+            for (; rr < rLongEnd; v1 += SizeOf.LONG, v2 += SizeOf.LONG, rr += SizeOf.LONG) {
+                final long prod = productAsLong(row, vector1.getLong(v1));
                 final long sum = aLongPlusBLong(prod, vector2.getLong(v2));
                 result.putLong(rr, sum);
             }
 
             for (; rr < rEnd; v1++, v2++, rr++) {
-                final byte prod = aTimesB(vec1Multiplier, vector1.get(v1));
+                final byte prod = row[vector1.get(v1) & 0xFF];
                 final byte sum = aPlusB(prod, vector2.get(v2));
                 result.put(rr, sum);
             }
@@ -358,47 +384,137 @@ public final class OctetOps {
     }
 
     /*
-     * Reads 8 bytes, multiplying each one by the multiplier,
-     * and stores the products inside one long value.
+     * The row of the multiplication table for a fixed multiplier; indexing it with an unsigned byte
+     * gives the product. Hoisting the row out of a loop leaves a single table lookup per byte.
      */
-    private static long productAsLong(byte multiplier, ByteBuffer vector, int vecPos) {
+    private static byte[] multRow(byte multiplier) {
 
-        long ret = 0L;
-        if (vector.order() == ByteOrder.BIG_ENDIAN) {
-            for (int n = SizeOf.LONG - 1, vv = vecPos; n >= 0; n--, vv++) {
-                ret |= (aTimesB(multiplier, vector.get(vv)) & 0xFFL) << (n * Byte.SIZE);
-            }
+        return MULT_TABLE[UNSIGN(multiplier)];
+    }
+
+    private static byte inverse(byte divisor) {
+
+        if (divisor == 0) throw new ArithmeticException("cannot divide by zero");
+        return DIV_TABLE[1][UNSIGN(divisor)];
+    }
+
+    private static void productKernel(byte multiplier, byte[] vector, int vecPos, byte[] result, int resPos, int length) {
+
+        if (VECTOR_KERNEL != null) {
+            VECTOR_KERNEL.multiply(UNSIGN(multiplier), vector, vecPos, result, resPos, length);
+            return;
         }
-        else {
-            for (int n = 0, vv = vecPos; n < SizeOf.LONG; n++, vv++) {
-                ret |= (aTimesB(multiplier, vector.get(vv)) & 0xFFL) << (n * Byte.SIZE);
-            }
+
+        final byte[] row = multRow(multiplier);
+        for (int i = 0; i < length; i++) {
+            result[resPos + i] = row[vector[vecPos + i] & 0xFF];
         }
+    }
 
-        return ret;
+    private static void productKernel(byte multiplier, ByteBuffer vector, ByteBuffer result, int length) {
+
+        if (vector.hasArray() && result.hasArray()) {
+            productKernel(multiplier, vector.array(), arrayPosition(vector), result.array(), arrayPosition(result), length);
+            return;
+        }
+
+        if (VECTOR_KERNEL != null) {
+            stagedKernel(multiplier, vector, null, result, length);
+            return;
+        }
+
+        final byte[] row = multRow(multiplier);
+        final int vPos = vector.position();
+        final int rPos = result.position();
+
+        final int rEnd = rPos + length;
+        final int rLongEnd = vector.order() == result.order() ? longEnd(rPos, length) : rPos;
+
+        int vv = vPos;
+        int rr = rPos;
+        for (; rr < rLongEnd; vv += SizeOf.LONG, rr += SizeOf.LONG) {
+            result.putLong(rr, productAsLong(row, vector.getLong(vv)));
+        }
+
+        for (; rr < rEnd; vv++, rr++) {
+            result.put(rr, row[vector.get(vv) & 0xFF]);
+        }
     }
 
     /*
-     * Reads 8 bytes, dividing each one by the divisor,
-     * and stores the quotients inside one long value.
+     * Runs the Vector API kernels over buffers without accessible arrays by copying them, one tile at a time, into
+     * per-thread heap arrays. Computes the product of the multiplier and the first vector if there is no second vector,
+     * and otherwise adds the second vector to it. Buffer positions are not changed.
      */
-    private static long divisionAsLong(byte divisor, ByteBuffer vector, int vecPos) {
+    private static void stagedKernel(
+        byte multiplier,
+        ByteBuffer vector1,
+        ByteBuffer vector2,
+        ByteBuffer result,
+        int length)
+    {
 
-        long ret = 0L;
-        if (vector.order() == ByteOrder.BIG_ENDIAN) {
-            for (int n = SizeOf.LONG - 1, vv = vecPos; n >= 0; n--, vv++) {
-                ret |= (aDividedByB(vector.get(vv), divisor) & 0xFFL) << (n * Byte.SIZE);
+        final byte[][] tiles = STAGING_TILES.get();
+        final byte[] tile1 = tiles[0];
+        final byte[] tile2 = tiles[1];
+
+        final ByteBuffer v1 = vector1.duplicate();
+        final ByteBuffer v2 = (vector2 == null) ? null : vector2.duplicate();
+        final ByteBuffer rr = result.duplicate();
+        final int m = UNSIGN(multiplier);
+
+        for (int done = 0; done < length;) {
+            final int len = Math.min(STAGING_TILE_SIZE, length - done);
+            v1.get(tile1, 0, len);
+            if (v2 == null) {
+                VECTOR_KERNEL.multiply(m, tile1, 0, tile1, 0, len);
             }
-        }
-        else {
-            for (int n = 0, vv = vecPos; n < SizeOf.LONG; n++, vv++) {
-                ret |= (aDividedByB(vector.get(vv), divisor) & 0xFFL) << (n * Byte.SIZE);
+            else {
+                v2.get(tile2, 0, len);
+                if (m == 1) {
+                    VECTOR_KERNEL.add(tile1, 0, tile2, 0, tile1, 0, len);
+                }
+                else {
+                    VECTOR_KERNEL.multiplyAdd(m, tile1, 0, tile2, 0, tile1, 0, len);
+                }
             }
+            rr.put(tile1, 0, len);
+            done += len;
+        }
+    }
+
+    /*
+     * Multiplies each of the 8 bytes inside a long value using a row of the multiplication table.
+     * Each byte keeps its lane, so the result is stored in the same byte order as the value was read.
+     */
+    private static long productAsLong(byte[] row, long value) {
+
+        long ret = 0L;
+        for (int shift = 0; shift < Long.SIZE; shift += Byte.SIZE) {
+            ret |= (row[(int)(value >>> shift) & 0xFF] & 0xFFL) << shift;
         }
 
         return ret;
     }
 
+    private static int arrayPosition(ByteBuffer buffer) {
+
+        return buffer.arrayOffset() + buffer.position();
+    }
+
+    private static int longEnd(int pos, int length) {
+
+        return pos + ((length / SizeOf.LONG) * SizeOf.LONG);
+    }
+
+    /*
+     * Long values can only be combined lane by lane if every buffer reads and writes them in the same byte order.
+     */
+    private static boolean sameOrder(ByteBuffer vector1, ByteBuffer vector2, ByteBuffer result) {
+
+        return vector1.order() == vector2.order() && vector2.order() == result.order();
+    }
+
     private static int getExp(int i) {
 
         return EXP_TABLE[i];
@@ -491,6 +607,95 @@ public final class OctetOps {
     }
 
 
+    // the Vector API kernels if available and correct, otherwise null and the scalar kernels above are used; this must
+    // be initialized after the tables
+    private static final OctetKernel VECTOR_KERNEL = loadVectorKernel();
+
+    // direct buffers are staged through heap tiles of this size to use the Vector API kernels
+    private static final int STAGING_TILE_SIZE = 4096;
+    private static final ThreadLocal<byte[][]> STAGING_TILES = new ThreadLocal<byte[][]>() {
+
+        @Override
+        protected byte[][] initialValue() {
+
+            return new byte[2][STAGING_TILE_SIZE];
+        }
+    };
+
+
+    private static OctetKernel loadVectorKernel() {
+
+        if (!Boolean.parseBoolean(System.getProperty(VECTOR_KERNEL_ENABLED_PROPERTY, "true"))) {
+            return null;
+        }
+
+        try {
+            final Class<?> clazz = Class.forName(OctetOps.class.getPackage().getName() + ".OctetVectorKernel");
+            final OctetKernel kernel = (OctetKernel)clazz.getDeclaredConstructor().newInstance();
+            kernel.init(nibbleTables());
+            return selfTest(kernel) ? kernel : null;
+        }
+        catch (Throwable t) {
+            // not on the classpath, the module is missing or the JVM is too old
+            return null;
+        }
+    }
+
+    /*
+     * For each multiplier, its products with the 16 low nibbles followed by its products with the 16 high nibbles.
+     */
+    private static byte[][] nibbleTables() {
+
+        final byte[][] tables = new byte[MULT_TABLE.length][32];
+        for (int m = 0; m < tables.length; m++) {
+            for (int i = 0; i < 16; i++) {
+                tables[m][i] = MULT_TABLE[m][i];
+                tables[m][16 + i] = MULT_TABLE[m][i << 4];
+            }
+        }
+
+        return tables;
+    }
+
+    /*
+     * Runs every kernel on random data, at unaligned positions and with a tail, and compares it with the scalar code.
+     * Any error the kernel hits with the running JDK, e.g. a missing method, is thrown here rather than on first use.
+     */
+    private static boolean selfTest(OctetKernel kernel) {
+
+        final int length = 1000;
+        final Random rand = new Random(length);
+        final byte[] v1 = new byte[length + 3];
+        final byte[] v2 = new byte[length + 5];
+        rand.nextBytes(v1);
+        rand.nextBytes(v2);
+
+        final byte[] expected = new byte[length];
+        final byte[] actual = new byte[length];
+
+        for (int i = 0; i < length; i++) {
+            expected[i] = (byte)(v1[3 + i] ^ v2[5 + i]);
+        }
+        kernel.add(v1, 3, v2, 5, actual, 0, length);
+        if (!Arrays.equals(expected, actual)) return false;
+
+        for (int m : new int[] {2, 29, 142, 255, 1 + rand.nextInt(255)}) {
+            for (int i = 0; i < length; i++) {
+                expected[i] = MULT_TABLE[m][v1[3 + i] & 0xFF];
+            }
+            kernel.multiply(m, v1, 3, actual, 0, length);
+            if (!Arrays.equals(expected, actual)) return false;
+
+            for (int i = 0; i < length; i++) {
+                expected[i] ^= v2[5 + i];
+            }
+            kernel.multiplyAdd(m, v1, 3, v2, 5, actual, 0, length);
+            if (!Arrays.equals(expected, actual)) return false;
+        }
+
+        return true;
+    }
+
     private static byte expLogATimesB(byte u, byte v) {
 
         if (u == 0 || v == 0) return 0;
@@ -59,11 +59,15 @@ public class BufferedVectorOperationTest {
     private final ByteBuffer dstDirBuf = ByteBuffers.allocate(SYMBOL_SIZE, DIRECT);
 
     private final byte divisor = (byte)TestingCommon.newSeededRandom().nextInt();
+    private final byte multiplier = (byte)(TestingCommon.newSeededRandom().nextInt() | 2); // never 0 or 1
 
 
     @Setup(Level.Trial)
     public void setup() {
 
+        // the kernels are picked once per JVM, so compare runs with and without the Vector API kernels on the classpath
+        System.out.println("# Octet kernels: " + (OctetOps.isVectorKernelLoaded() ? "Vector API" : "scalar"));
+
         TestingCommon.newSeededRandom().nextBytes(srcArray);
         TestingCommon.newSeededRandom().nextBytes(dstArray);
 
@@ -95,6 +99,12 @@ public class BufferedVectorOperationTest {
         OctetOps.valueVectorDivision(divisor, srcArray, dstArray);
     }
 
+    @Benchmark
+    public void testArrayMultiplyAddition() {
+
+        OctetOps.vectorVectorAddition(multiplier, srcArray, dstArray, dstArray);
+    }
+
     @Benchmark
     public void testArrayBufferAddition() {
 
@@ -107,6 +117,12 @@ public class BufferedVectorOperationTest {
         OctetOps.valueVectorDivision(divisor, srcArrBuf, dstArrBuf);
     }
 
+    @Benchmark
+    public void testArrayBufferMultiplyAddition() {
+
+        OctetOps.vectorVectorAddition(multiplier, srcArrBuf, dstArrBuf, dstArrBuf);
+    }
+
     @Benchmark
     public void testDirectBufferAddition() {
 
@@ -118,4 +134,10 @@ public class BufferedVectorOperationTest {
 
         OctetOps.valueVectorDivision(divisor, srcDirBuf, dstDirBuf);
     }
+
+    @Benchmark
+    public void testDirectBufferMultiplyAddition() {
+
+        OctetOps.vectorVectorAddition(multiplier, srcDirBuf, dstDirBuf, dstDirBuf);
+    }
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+import net.fec.openrq.util.io.SafeStandardStreams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.format.OutputFormatFactory;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+
+/**
+ * Measures the encoding and decoding of all source blocks of a large data object with a varying number of threads
+ * (the time should decrease almost linearly with the number of threads, up to the number of cores).
+ * <p>
+ * Method {@link #main(String[])} runs the benchmark and prints the speedup of each thread count over one thread,
+ * together with the number of available processors; thread counts above that number cannot scale.
+ */
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(0)
+@State(Scope.Benchmark)
+public class ParallelDataCodingTest {
+
+    // default parameter values
+    private static final int DEF_DATA_LEN = 256 * 1024 * 1024;
+    private static final int DEF_SYMBOL_SIZE = 1500;
+    private static final int DEF_NUM_SOURCE_BLOCKS = 64;
+
+
+    @Param({"" + DEF_DATA_LEN})
+    private int datalen;
+
+    @Param({"" + DEF_SYMBOL_SIZE})
+    private int symbsize;
+
+    @Param({"" + DEF_NUM_SOURCE_BLOCKS})
+    private int srcblocks;
+
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    private FECParameters fecParams;
+    private ArrayDataEncoder enc;
+    private EncodingPacket[] repairPackets; // one per source block
+    private ExecutorService executor;
+
+
+    public ParallelDataCodingTest() {
+
+        this.datalen = DEF_DATA_LEN;
+        this.symbsize = DEF_SYMBOL_SIZE;
+        this.srcblocks = DEF_NUM_SOURCE_BLOCKS;
+        this.threads = 1;
+
+        this.fecParams = null;
+        this.enc = null;
+        this.repairPackets = null;
+        this.executor = null;
+    }
+
+    @Setup
+    public void setup() throws InterruptedException {
+
+        fecParams = FECParameters.newParameters(datalen, symbsize, srcblocks);
+        final Random rand = TestingCommon.newSeededRandom();
+        final byte[] data = TestingCommon.randomBytes(datalen, rand);
+
+        executor = Executors.newFixedThreadPool(threads);
+        enc = OpenRQ.newEncoder(data, fecParams);
+        enc.generateIntermediateSymbols(executor);
+
+        repairPackets = new EncodingPacket[fecParams.numberOfSourceBlocks()];
+        for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+            repairPackets[sbEnc.sourceBlockNumber()] = sbEnc.repairPacket(sbEnc.numberOfSourceSymbols());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public ArrayDataEncoder encode() throws InterruptedException {
+
+        final ArrayDataEncoder newEnc = OpenRQ.newEncoder(enc.dataArray(), fecParams);
+        newEnc.generateIntermediateSymbols(executor);
+        return newEnc;
+    }
+
+    @Benchmark
+    public ArrayDataDecoder decode() throws InterruptedException {
+
+        // every source block misses its first source symbol and needs a decoding operation
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 0, executor);
+        for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+            final SourceBlockDecoder sbDec = dec.sourceBlock(sbEnc.sourceBlockNumber());
+            sbDec.putEncodingPacket(sbEnc.sourcePacket(1, sbEnc.numberOfSourceSymbols() - 1));
+            sbDec.putEncodingPacket(repairPackets[sbEnc.sourceBlockNumber()]);
+        }
+
+        dec.awaitDecodings(1, TimeUnit.HOURS);
+        return dec;
+    }
+
+    /**
+     * Runs the benchmark and prints a table of the speedup of each thread count over one thread.
+     * 
+     * @param args
+     *            Optional data length and number of source blocks, to override the default parameter values
+     * @throws RunnerException
+     *             If the benchmark fails to run
+     */
+    public static void main(String[] args) throws RunnerException {
+
+        final PrintStream stdout = SafeStandardStreams.safeSTDOUT(); // the runner closes its output stream
+        final String dataLen = args.length > 0 ? args[0] : "" + DEF_DATA_LEN;
+        final String srcBlocks = args.length > 1 ? args[1] : "" + DEF_NUM_SOURCE_BLOCKS;
+        final Options opt = new OptionsBuilder()
+            .include(".*" + ParallelDataCodingTest.class.getSimpleName() + ".*")
+            .param("datalen", dataLen)
+            .param("srcblocks", srcBlocks)
+            .build();
+        final Runner runner = new Runner(opt, OutputFormatFactory.createFormatInstance(stdout, VerboseMode.NORMAL));
+
+        // average time per benchmark method and thread count, sorted by thread count
+        final Map<String, SortedMap<Integer, Double>> times = new TreeMap<>();
+        for (RunResult result : runner.run()) {
+            final String method = result.getParams().getBenchmark();
+            final String name = method.substring(method.lastIndexOf('.') + 1);
+            SortedMap<Integer, Double> byThreads = times.get(name);
+            if (byThreads == null) {
+                byThreads = new TreeMap<>();
+                times.put(name, byThreads);
+            }
+            final int threads = Integer.parseInt(result.getParams().getParam("threads"));
+            byThreads.put(threads, result.getPrimaryResult().getScore());
+        }
+
+        final int cores = Runtime.getRuntime().availableProcessors();
+        stdout.println();
+        stdout.printf("Scaling over one thread (%d available processors, datalen = %s, srcblocks = %s):%n",
+            cores, dataLen, srcBlocks);
+        stdout.printf("%-8s %8s %12s %9s %11s%n", "method", "threads", "time (ms)", "speedup", "efficiency");
+        for (Map.Entry<String, SortedMap<Integer, Double>> entry : times.entrySet()) {
+            final SortedMap<Integer, Double> byThreads = entry.getValue();
+            final double base = byThreads.get(1); // the default thread counts start at one thread
+            for (Map.Entry<Integer, Double> run : byThreads.entrySet()) {
+                final int threads = run.getKey();
+                final double speedup = base / run.getValue();
+                stdout.printf("%-8s %8d %12.1f %8.2fx %10.0f%%%s%n",
+                    entry.getKey(), threads, run.getValue(), speedup, 100 * speedup / threads,
+                    threads > cores ? "  (more threads than processors)" : "");
+            }
+        }
+        stdout.flush();
+    }
+}
@@ -60,6 +60,9 @@ public class XorTest {
     })
     public int size;
 
+    private byte[] srcArray;
+    private byte[] dstArray;
+
     private ByteBuffer srcBuf;
     private ByteBuffer dstBuf;
 
@@ -70,6 +73,14 @@ public class XorTest {
     @Setup
     public void setup() {
 
+        // the kernels are picked once per JVM, so compare runs with and without the Vector API kernels on the classpath
+        System.out.println("# Octet kernels: " + (OctetOps.isVectorKernelLoaded() ? "Vector API" : "scalar"));
+
+        srcArray = new byte[size];
+        dstArray = new byte[size];
+        TestingCommon.newSeededRandom().nextBytes(srcArray);
+        TestingCommon.newSeededRandom().nextBytes(dstArray);
+
         srcBuf = ByteBuffers.allocate(size, ARRAY_BACKED);
         dstBuf = ByteBuffers.allocate(size, ARRAY_BACKED);
         randomBytes(srcBuf, TestingCommon.newSeededRandom());
@@ -135,4 +146,26 @@ public class XorTest {
             dstDirBuf.putLong(OctetOps.aLongPlusBLong(eL, dstDirBuf.getLong(dstDirBuf.position())));
         }
     }
+
+    @Benchmark
+    public void testArrayKernel() {
+
+        OctetOps.vectorVectorAddition(srcArray, dstArray, dstArray);
+    }
+
+    @Benchmark
+    public void testArrayBufferKernel() {
+
+        srcBuf.rewind();
+        dstBuf.rewind();
+        OctetOps.vectorVectorAddition(srcBuf, dstBuf, dstBuf);
+    }
+
+    @Benchmark
+    public void testDirectKernel() {
+
+        srcDirBuf.rewind();
+        dstDirBuf.rewind();
+        OctetOps.vectorVectorAddition(srcDirBuf, dstDirBuf, dstDirBuf);
+    }
 }
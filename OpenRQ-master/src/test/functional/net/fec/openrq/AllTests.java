@@ -19,6 +19,7 @@ package net.fec.openrq;
 import net.fec.openrq.suites.LinearAlgebraSuite;
 import net.fec.openrq.suites.ParametersBoundsSuite;
 import net.fec.openrq.suites.ReadWriteSuite;
+import net.fec.openrq.util.math.OctetOpsTest;
 
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -28,9 +29,20 @@ import org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
                LinearAlgebraSuite.class,
+               OctetOpsTest.class,
                ParametersBoundsSuite.class,
                OpenRQClassTest.class,
                DataIntegrityCheckTest.class,
+               ISDManagerTest.class,
+               RepairSymbolsWriteTest.class,
+               ParallelCodingTest.class,
+               SubBlockCodingTest.class,
+               IncrementalDecodingTest.class,
+               IncrementalDecodingLimitTest.class,
+               TupleTableTest.class,
+               ConcurrentIngestionTest.class,
+               PacketSymbolsReferenceTest.class,
+               DecoderWorkspaceTest.class,
                ReadWriteSuite.class
 })
 public class AllTests {
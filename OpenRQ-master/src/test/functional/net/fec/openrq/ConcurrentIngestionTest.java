@@ -0,0 +1,267 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Test;
+
+
+/**
+ * Tests a source block decoder receiving encoding packets from multiple threads at the same time.
+ */
+public class ConcurrentIngestionTest {
+
+    private static final int K = 200;
+    private static final int SYMBOL_SIZE = 64;
+    private static final int NUM_THREADS = 4;
+
+
+    @Test
+    public void testConcurrentPackets() throws Exception {
+
+        final byte[] data = TestingCommon.randomBytes(K * SYMBOL_SIZE, TestingCommon.newSeededRandom());
+        final FECParameters fecParams = FECParameters.newParameters(data.length, SYMBOL_SIZE, 1);
+        final SourceBlockEncoder sbEnc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+
+        // decoding operations are only run after every thread put its packets
+        final List<Runnable> decodings = new ArrayList<>();
+        final Executor deferringExecutor = new Executor() {
+
+            @Override
+            public synchronized void execute(Runnable command) {
+
+                decodings.add(command);
+            }
+        };
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 0, deferringExecutor);
+        final SourceBlockDecoder sbDec = dec.sourceBlock(0);
+
+        // every thread puts every other source symbol and the same repair symbols
+        putConcurrently(sbDec, sbEnc, new PacketsSupplier() {
+
+            @Override
+            public List<EncodingPacket> packets(int thread) {
+
+                final List<EncodingPacket> packets = new ArrayList<>();
+                for (int esi = thread % 2; esi < K; esi += 2) {
+                    if (esi % 10 != 0) {
+                        packets.add(sbEnc.sourcePacket(esi));
+                    }
+                }
+                for (int esi = K; esi < K + K / 10 + 2; esi++) {
+                    packets.add(sbEnc.repairPacket(esi));
+                }
+                return packets;
+            }
+        });
+
+        assertEquals(K - K / 10, K - sbDec.missingSourceSymbols().size());
+        assertEquals(K / 10 + 2, sbDec.availableRepairSymbols().size());
+        assertFalse(sbDec.isSourceBlockDecoded());
+
+        // the thread that completed the decoding threshold submitted the only decoding operation
+        assertEquals(1, decodings.size());
+        decodings.get(0).run();
+
+        assertTrue(sbDec.isSourceBlockDecoded());
+        assertTrue(sbDec.availableRepairSymbols().isEmpty());
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    @Test
+    public void testConcurrentPacketsWithIncrementalDecoding() throws Exception {
+
+        final byte[] data = TestingCommon.randomBytes(K * SYMBOL_SIZE, TestingCommon.newSeededRandom());
+        final FECParameters fecParams = FECParameters.newParameters(data.length, SYMBOL_SIZE, 1);
+        final SourceBlockEncoder sbEnc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 0);
+        final SourceBlockDecoder sbDec = dec.sourceBlock(0);
+        sbDec.setIncrementalDecodingEnabled(true);
+
+        // the threads put disjoint repair symbols only
+        putConcurrently(sbDec, sbEnc, new PacketsSupplier() {
+
+            @Override
+            public List<EncodingPacket> packets(int thread) {
+
+                final List<EncodingPacket> packets = new ArrayList<>();
+                for (int esi = K + thread; esi < 2 * K; esi += NUM_THREADS) {
+                    packets.add(sbEnc.repairPacket(esi));
+                }
+                return packets;
+            }
+        });
+
+        assertEquals(SourceBlockState.DECODED, sbDec.latestState());
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    @Test
+    public void testConcurrentRedundantPacketsWithIncrementalDecoding() throws Exception {
+
+        final byte[] data = TestingCommon.randomBytes(K * SYMBOL_SIZE, TestingCommon.newSeededRandom());
+        final FECParameters fecParams = FECParameters.newParameters(data.length, SYMBOL_SIZE, 1);
+        final SourceBlockEncoder sbEnc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 0);
+        final SourceBlockDecoder sbDec = dec.sourceBlock(0);
+        sbDec.setIncrementalDecodingEnabled(true);
+
+        // every thread puts the same repair symbols, so rows race to be installed and most of them are redundant
+        putConcurrently(sbDec, sbEnc, new PacketsSupplier() {
+
+            @Override
+            public List<EncodingPacket> packets(int thread) {
+
+                final List<EncodingPacket> packets = new ArrayList<>();
+                for (int esi = K; esi < 2 * K; esi++) {
+                    packets.add(sbEnc.repairPacket(esi));
+                }
+                return packets;
+            }
+        });
+
+        assertEquals(SourceBlockState.DECODED, sbDec.latestState());
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    @Test
+    public void testIncrementalSymbolsAreAddedWithoutDecodingLock() throws Exception {
+
+        final byte[] data = TestingCommon.randomBytes(K * SYMBOL_SIZE, TestingCommon.newSeededRandom());
+        final FECParameters fecParams = FECParameters.newParameters(data.length, SYMBOL_SIZE, 1);
+        final SourceBlockEncoder sbEnc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 0);
+        final ArraySourceBlockDecoder sbDec = (ArraySourceBlockDecoder)dec.sourceBlock(0);
+        sbDec.setIncrementalDecodingEnabled(true);
+
+        // while the decoding lock is held, another thread still adds symbols that do not solve the system
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        ArraySourceBlockDecoder.runWithDecodingLock(sbDec, new Runnable() {
+
+            @Override
+            public void run() {
+
+                final Thread receiver = new Thread(new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        for (int esi = K; esi < K + K / 2; esi++) {
+                            sbDec.putEncodingPacket(sbEnc.repairPacket(esi));
+                        }
+                    }
+                });
+                receiver.start();
+                try {
+                    receiver.join(TimeUnit.SECONDS.toMillis(30));
+                    if (receiver.isAlive()) {
+                        failure.set(new AssertionError("adding symbols waited for the decoding lock"));
+                    }
+                }
+                catch (InterruptedException e) {
+                    failure.set(e);
+                }
+            }
+        });
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+
+        for (int esi = K + K / 2; esi < 2 * K; esi++) {
+            sbDec.putEncodingPacket(sbEnc.repairPacket(esi));
+        }
+        assertEquals(SourceBlockState.DECODED, sbDec.latestState());
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    @Test
+    public void testMultipleRepairSymbolsPerPacket() {
+
+        final byte[] data = TestingCommon.randomBytes(K * SYMBOL_SIZE, TestingCommon.newSeededRandom());
+        final FECParameters fecParams = FECParameters.newParameters(data.length, SYMBOL_SIZE, 1);
+        final SourceBlockEncoder sbEnc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 2);
+        final SourceBlockDecoder sbDec = dec.sourceBlock(0);
+
+        sbDec.putEncodingPacket(sbEnc.sourcePacket(0, K / 2));
+        sbDec.putEncodingPacket(sbEnc.repairPacket(K, K / 2 + 2));
+
+        assertEquals(SourceBlockState.DECODED, sbDec.latestState());
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    private static void putConcurrently(
+        final SourceBlockDecoder sbDec,
+        SourceBlockEncoder sbEnc,
+        PacketsSupplier supplier)
+        throws Exception
+    {
+
+        final CyclicBarrier barrier = new CyclicBarrier(NUM_THREADS);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final Thread[] threads = new Thread[NUM_THREADS];
+        for (int t = 0; t < NUM_THREADS; t++) {
+            final List<EncodingPacket> packets = supplier.packets(t);
+            threads[t] = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    try {
+                        barrier.await();
+                        for (EncodingPacket packet : packets) {
+                            sbDec.putEncodingPacket(packet);
+                        }
+                    }
+                    catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+
+    private static interface PacketsSupplier {
+
+        List<EncodingPacket> packets(int thread);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests decoders that reuse the memory of a workspace between decoding operations.
+ */
+@RunWith(Parameterized.class)
+public class DecoderWorkspaceTest {
+
+    @Parameters(name = "F={0}, T={1}, Z={2}, N={3}")
+    public static Iterable<Object[]> getFECParams() {
+
+        return Arrays.asList(new Object[][] {
+                                             {20000, 100, 4, 1},
+                                             {19999, 100, 4, 1}, // source blocks with different K
+                                             {20000, 100, 4, 5},
+                                             {30000, 1024, 3, 7}
+        });
+    }
+
+
+    @Parameter(0)
+    public int F;
+
+    @Parameter(1)
+    public int T;
+
+    @Parameter(2)
+    public int Z;
+
+    @Parameter(3)
+    public int N;
+
+
+    @Test
+    public void testSharedWorkspace() {
+
+        final FECParameters fecParams = FECParameters.newParameters(F, T, Z, N);
+        final DecoderWorkspace workspace = new DecoderWorkspace();
+
+        // each decoder decodes every source block with the memory left by the previous decodings
+        final Random rand = TestingCommon.newSeededRandom();
+        for (int n = 0; n < 3; n++) {
+            final byte[] data = TestingCommon.randomBytes(F, rand);
+            final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, n, workspace);
+            putPackets(OpenRQ.newEncoder(data, fecParams), dec);
+
+            assertArrayEquals(data, dec.dataArray());
+        }
+    }
+
+    @Test
+    public void testSharedWorkspaceWithExecutor() throws InterruptedException {
+
+        final FECParameters fecParams = FECParameters.newParameters(F, T, Z, N);
+        final byte[] data = TestingCommon.randomBytes(F, TestingCommon.newSeededRandom());
+
+        // source blocks that are decoded concurrently do not share the workspace
+        final ExecutorService executor = Executors.newFixedThreadPool(Z);
+        try {
+            final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 0, executor, new DecoderWorkspace());
+            putPackets(OpenRQ.newEncoder(data, fecParams), dec);
+
+            assertTrue(dec.awaitDecodings(1, TimeUnit.MINUTES));
+            assertArrayEquals(data, dec.dataArray());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullWorkspace() {
+
+        OpenRQ.newDecoder(FECParameters.newParameters(F, T, Z, N), 0, (DecoderWorkspace)null);
+    }
+
+    // puts every other source symbol, and two more repair symbols than the missing source symbols
+    private static void putPackets(ArrayDataEncoder enc, ArrayDataDecoder dec) {
+
+        for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+            final SourceBlockDecoder sbDec = dec.sourceBlock(sbEnc.sourceBlockNumber());
+            final int K = sbEnc.numberOfSourceSymbols();
+            for (int esi = 0; esi < K; esi += 2) {
+                sbDec.putEncodingPacket(sbEnc.sourcePacket(esi));
+            }
+            sbDec.putEncodingPacket(sbEnc.repairPacket(K, K / 2 + 2));
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import net.fec.openrq.util.rq.IntermediateSymbolsDecoder;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that the shipped and recorded decoders of intermediate symbols are equivalent to the permanent inactivation
+ * decoding.
+ */
+@RunWith(Parameterized.class)
+public class ISDManagerTest {
+
+    private static final int SYMBOL_SIZE = 16;
+
+
+    @Parameters(name = "K' = {0}")
+    public static Iterable<Object[]> getKprimes() {
+
+        return Arrays.asList(new Object[][] {{10}, {12}, {18}, {20}, {26}, {101}, {511}});
+    }
+
+
+    @Parameter(0)
+    public int Kprime;
+
+
+    @Test
+    public void testShippedDecoder() {
+
+        final IntermediateSymbolsDecoder isd = ISDManager.get(Kprime);
+        if (Kprime <= 20) {
+            assertNotNull(isd);
+            assertArrayEquals(PIDecode(randomVectorD(), null), isd.decode(randomVectorD()));
+        }
+    }
+
+    @Test
+    public void testGeneratedSchedule() {
+
+        final List<ISDOperation> schedule = ISDGenerator.generateSchedule(Kprime);
+        assertArrayEquals(PIDecode(randomVectorD(), null), replay(schedule, randomVectorD()));
+    }
+
+    @Test
+    public void testRecordedDecoder() {
+
+        final List<ISDOperation> schedule = new ArrayList<>();
+        final byte[][] C = PIDecode(randomVectorD(), schedule);
+        assertArrayEquals(C, replay(schedule, randomVectorD()));
+
+        ISDManager.record(Kprime, schedule);
+        final IntermediateSymbolsDecoder isd = ISDManager.get(Kprime);
+        assertNotNull(isd);
+        assertArrayEquals(C, isd.decode(randomVectorD()));
+    }
+
+    @Test
+    public void testUnknownKprime() {
+
+        assertNull(ISDManager.get(Kprime + 1)); // no K' is followed by another one
+    }
+
+    // same source symbols for every call
+    private byte[][] randomVectorD() {
+
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int S = SystematicIndices.S(Ki);
+        final int H = SystematicIndices.H(Ki);
+        final int L = Kprime + S + H;
+
+        final Random rand = new Random(Kprime);
+        final byte[][] D = new byte[L][SYMBOL_SIZE];
+        for (int row = S + H; row < L; row++) {
+            rand.nextBytes(D[row]);
+        }
+
+        return D;
+    }
+
+    private byte[][] PIDecode(byte[][] D, List<ISDOperation> schedule) {
+
+        try {
+            return LinearSystem.PInactivationDecoding(LinearSystem.generateConstraintMatrix(Kprime), D, Kprime, schedule);
+        }
+        catch (SingularMatrixException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static byte[][] replay(List<ISDOperation> schedule, byte[][] D) {
+
+        byte[][] symbols = D;
+        for (ISDOperation op : schedule) {
+            symbols = op.apply(symbols);
+        }
+        return symbols;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static net.fec.openrq.decoder.SourceBlockDecoder.MAX_INCREMENTAL_DECODING_SYMBOLS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+import org.junit.Test;
+
+
+/**
+ * Tests that incremental decoding is only enabled for source blocks with at most
+ * {@link SourceBlockDecoder#MAX_INCREMENTAL_DECODING_SYMBOLS} extended source symbols.
+ */
+public class IncrementalDecodingLimitTest {
+
+    private static final int T = 4;
+
+
+    @Test
+    public void testEnabledAtLimit() {
+
+        // the largest K whose K' is within the limit
+        int K = MAX_INCREMENTAL_DECODING_SYMBOLS;
+        while (SystematicIndices.ceil(K) > MAX_INCREMENTAL_DECODING_SYMBOLS) {
+            K--;
+        }
+
+        final SourceBlockDecoder sbDec = newDecoder(K).sourceBlock(0);
+        sbDec.setIncrementalDecodingEnabled(true);
+        assertTrue(sbDec.isIncrementalDecodingEnabled());
+    }
+
+    @Test
+    public void testBatchDecodingAboveLimit() {
+
+        // the smallest K whose K' is above the limit
+        int K = MAX_INCREMENTAL_DECODING_SYMBOLS;
+        while (SystematicIndices.ceil(K) <= MAX_INCREMENTAL_DECODING_SYMBOLS) {
+            K++;
+        }
+
+        final byte[] data = new byte[K * T];
+        new Random(K).nextBytes(data);
+        final SourceBlockEncoder sbEnc = OpenRQ.newEncoder(data, fecParameters(K)).sourceBlock(0);
+        final ArrayDataDecoder dec = newDecoder(K);
+        final SourceBlockDecoder sbDec = dec.sourceBlock(0);
+
+        sbDec.setIncrementalDecodingEnabled(true);
+        assertFalse(sbDec.isIncrementalDecodingEnabled());
+
+        // still decoded in batch, with a missing source symbol
+        for (int esi = 1; esi <= K; esi++) {
+            sbDec.putEncodingPacket(sbEnc.encodingPacket(esi));
+        }
+        assertEquals(SourceBlockState.DECODED, sbDec.latestState());
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    private static FECParameters fecParameters(int K) {
+
+        return FECParameters.newParameters(K * T, T, 1);
+    }
+
+    private static ArrayDataDecoder newDecoder(int K) {
+
+        return OpenRQ.newDecoder(fecParameters(K), 0);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests the incremental decoding mode of source block decoders.
+ */
+@RunWith(Parameterized.class)
+public class IncrementalDecodingTest {
+
+    @Parameters(name = "F={0}, T={1}, Z={2}, N={3}")
+    public static Iterable<Object[]> getFECParams() {
+
+        return Arrays.asList(new Object[][] {
+                                             {10, 10, 1, 1}, // a single source symbol
+                                             {1000, 100, 1, 1},
+                                             {9999, 64, 1, 1}, // padding symbols
+                                             {20000, 100, 4, 1},
+                                             {5000, 64, 1, 4}
+        });
+    }
+
+
+    @Parameter(0)
+    public int F;
+
+    @Parameter(1)
+    public int T;
+
+    @Parameter(2)
+    public int Z;
+
+    @Parameter(3)
+    public int N;
+
+
+    @Test
+    public void testDecodesNoLaterThanBatchDecoding() {
+
+        final FECParameters fecParams = FECParameters.newParameters(F, T, Z, N);
+        final byte[] data = randomData();
+        final ArrayDataEncoder enc = OpenRQ.newEncoder(data, fecParams);
+        final ArrayDataDecoder incDec = OpenRQ.newDecoder(fecParams, 0);
+        final ArrayDataDecoder batchDec = OpenRQ.newDecoder(fecParams, 0);
+        final Random rand = new Random(F);
+
+        for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+            final SourceBlockDecoder incSbDec = incDec.sourceBlock(sbEnc.sourceBlockNumber());
+            final SourceBlockDecoder batchSbDec = batchDec.sourceBlock(sbEnc.sourceBlockNumber());
+            incSbDec.setIncrementalDecodingEnabled(true);
+            assertTrue(incSbDec.isIncrementalDecodingEnabled());
+
+            // lose a third of the source symbols, then send repair symbols (some of them twice)
+            final int K = sbEnc.numberOfSourceSymbols();
+            int esi = 0;
+            while (batchSbDec.latestState() != SourceBlockState.DECODED) {
+                if (esi >= K || rand.nextInt(3) != 0) {
+                    final EncodingPacket packet = sbEnc.encodingPacket(esi);
+                    final SourceBlockState batchState = batchSbDec.putEncodingPacket(packet);
+                    final SourceBlockState incState = incSbDec.putEncodingPacket(packet);
+
+                    assertFalse(incState == SourceBlockState.DECODING_FAILURE);
+                    if (batchState == SourceBlockState.DECODED) {
+                        assertEquals("ESI " + esi, SourceBlockState.DECODED, incState);
+                    }
+                    if (esi % 5 == 0) {
+                        incSbDec.putEncodingPacket(packet);
+                    }
+                }
+                esi++;
+            }
+        }
+
+        assertArrayEquals(data, incDec.dataArray());
+        assertArrayEquals(data, batchDec.dataArray());
+    }
+
+    @Test
+    public void testEnableAfterReceivingSymbols() {
+
+        final FECParameters fecParams = FECParameters.newParameters(F, T, Z, N);
+        final byte[] data = randomData();
+        final ArrayDataEncoder enc = OpenRQ.newEncoder(data, fecParams);
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, Integer.MAX_VALUE); // never decodes by itself
+
+        for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+            final SourceBlockDecoder sbDec = dec.sourceBlock(sbEnc.sourceBlockNumber());
+            final int K = sbEnc.numberOfSourceSymbols();
+
+            // the first source symbol is missing, and every other symbol is received
+            for (int esi = 1; esi < K + 3; esi++) {
+                sbDec.putEncodingPacket(sbEnc.encodingPacket(esi));
+            }
+            assertEquals(SourceBlockState.INCOMPLETE, sbDec.latestState());
+
+            // switching the mode off and on again must not lose any symbol
+            sbDec.setIncrementalDecodingEnabled(true);
+            sbDec.setIncrementalDecodingEnabled(false);
+            sbDec.setIncrementalDecodingEnabled(true);
+            assertEquals(SourceBlockState.DECODED, sbDec.latestState());
+        }
+
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    private byte[] randomData() {
+
+        final byte[] data = new byte[F];
+        new Random(F).nextBytes(data);
+        return data;
+    }
+}
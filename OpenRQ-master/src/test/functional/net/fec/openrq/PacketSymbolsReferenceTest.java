@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests that source block decoders only reference the symbols of encoding packets that are not shared with the
+ * caller, and copy the others.
+ */
+@RunWith(Parameterized.class)
+public class PacketSymbolsReferenceTest {
+
+    private static final int K = 100;
+    private static final int SYMBOL_SIZE = 64;
+    private static final int SYMBOLS_PER_PACKET = 3;
+
+
+    @Parameters(name = "N={0}")
+    public static Iterable<Object[]> getNumSubBlocks() {
+
+        return Arrays.asList(new Object[][] {{1}, {4}});
+    }
+
+
+    @Parameter(0)
+    public int N;
+
+
+    @Test
+    public void testReusedBufferWithoutCopies() {
+
+        testReusedBuffer(false);
+    }
+
+    @Test
+    public void testReusedBufferWithCopies() {
+
+        testReusedBuffer(true);
+    }
+
+    // repair packets are parsed from the same buffer, which is overwritten after each packet is put
+    private void testReusedBuffer(boolean copySymbols) {
+
+        final byte[] data = TestingCommon.randomBytes(K * SYMBOL_SIZE, TestingCommon.newSeededRandom());
+        final FECParameters fecParams = FECParameters.newParameters(data.length, SYMBOL_SIZE, 1, N);
+        final SourceBlockEncoder sbEnc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 0);
+        final SourceBlockDecoder sbDec = dec.sourceBlock(0);
+
+        final byte[] buffer = new byte[SYMBOLS_PER_PACKET * SYMBOL_SIZE];
+        for (int esi = K; sbDec.latestState() != SourceBlockState.DECODED; esi += SYMBOLS_PER_PACKET) {
+            sbEnc.writeRepairSymbols(esi, SYMBOLS_PER_PACKET, buffer, 0);
+            final Parsed<EncodingPacket> parsed = dec.parsePacket(0, esi, buffer, copySymbols);
+            assertEquals(SYMBOLS_PER_PACKET, parsed.value().numberOfSymbols());
+
+            sbDec.putEncodingPacket(parsed.value());
+            Arrays.fill(buffer, (byte)0xFF);
+        }
+
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    @Test
+    public void testEncoderRepairPackets() {
+
+        final byte[] data = TestingCommon.randomBytes(K * SYMBOL_SIZE, TestingCommon.newSeededRandom());
+        final FECParameters fecParams = FECParameters.newParameters(data.length, SYMBOL_SIZE, 1, N);
+        final SourceBlockEncoder sbEnc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 0);
+        final SourceBlockDecoder sbDec = dec.sourceBlock(0);
+
+        // single and multiple symbol packets, with every other source symbol
+        for (int esi = 0; esi < K; esi += 2) {
+            sbDec.putEncodingPacket(sbEnc.sourcePacket(esi));
+        }
+        sbDec.putEncodingPacket(sbEnc.repairPacket(K));
+        for (int esi = K + 1; sbDec.latestState() != SourceBlockState.DECODED; esi += SYMBOLS_PER_PACKET) {
+            sbDec.putEncodingPacket(sbEnc.repairPacket(esi, SYMBOLS_PER_PACKET));
+        }
+
+        assertArrayEquals(data, dec.dataArray());
+    }
+}
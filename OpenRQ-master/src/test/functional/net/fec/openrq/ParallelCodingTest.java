@@ -0,0 +1,170 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * Tests the encoding and decoding of source blocks by the threads of an executor.
+ */
+public class ParallelCodingTest {
+
+    private static final int Z = 8;
+    private static final int K = 60;
+    private static final int SYMBOL_SIZE = 32;
+
+    private ExecutorService executor;
+
+
+    @Before
+    public void startExecutor() {
+
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void stopExecutor() {
+
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testGenerateIntermediateSymbols() throws InterruptedException {
+
+        final byte[] data = TestingCommon.randomBytes(Z * K * SYMBOL_SIZE, TestingCommon.newSeededRandom());
+        final ArrayDataEncoder parallelEnc = OpenRQ.newEncoder(data, fecParameters());
+        parallelEnc.generateIntermediateSymbols(executor);
+        parallelEnc.generateIntermediateSymbols(executor); // no-op
+
+        final ArrayDataEncoder enc = OpenRQ.newEncoder(data, fecParameters());
+        for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+            final SourceBlockEncoder parallelSBEnc = parallelEnc.sourceBlock(sbEnc.sourceBlockNumber());
+            assertEquals(sbEnc.repairPacket(K, 5).symbols(), parallelSBEnc.repairPacket(K, 5).symbols());
+        }
+    }
+
+    @Test
+    public void testGenerateIntermediateSymbolsCancelsTasks() {
+
+        final byte[] data = TestingCommon.randomBytes(Z * K * SYMBOL_SIZE, TestingCommon.newSeededRandom());
+        final ArrayDataEncoder enc = OpenRQ.newEncoder(data, fecParameters());
+
+        // an executor that never runs its tasks, so that the caller is interrupted while waiting for them
+        final List<Runnable> queued = new ArrayList<>();
+        Thread.currentThread().interrupt();
+        try {
+            enc.generateIntermediateSymbols(new Executor() {
+
+                @Override
+                public void execute(Runnable command) {
+
+                    queued.add(command);
+                }
+            });
+            fail("expected an interruption");
+        }
+        catch (InterruptedException e) {
+            // expected
+        }
+
+        // the cancelled tasks do nothing when the executor finally runs them
+        assertEquals(Z, queued.size());
+        for (Runnable task : queued) {
+            task.run();
+        }
+        for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+            assertFalse(ArraySourceBlockEncoder.hasIntermediateSymbols((ArraySourceBlockEncoder)sbEnc));
+        }
+    }
+
+    @Test
+    public void testDecodeInExecutor() throws InterruptedException {
+
+        final byte[] data = TestingCommon.randomBytes(Z * K * SYMBOL_SIZE, TestingCommon.newSeededRandom());
+        final ArrayDataEncoder enc = OpenRQ.newEncoder(data, fecParameters());
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParameters(), 1, executor);
+
+        // only repair symbols, interleaved between source blocks, so that every source block needs a decoding
+        for (int esi = K; esi <= 2 * K + 1; esi++) {
+            for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+                final SourceBlockState state = dec.sourceBlock(sbEnc.sourceBlockNumber())
+                    .putEncodingPacket(sbEnc.repairPacket(esi));
+                if (esi < 2 * K) {
+                    assertEquals(SourceBlockState.INCOMPLETE, state);
+                }
+            }
+        }
+
+        assertTrue(dec.awaitDecodings(1, TimeUnit.MINUTES));
+        assertTrue(dec.isDataDecoded());
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    @Test
+    public void testAwaitWithoutExecutor() throws InterruptedException {
+
+        assertTrue(OpenRQ.newDecoder(fecParameters(), 0).awaitDecodings(0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testAwaitRethrowsDecodingFailure() throws InterruptedException {
+
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParameters(), 0, executor);
+        final IllegalStateException failure = new IllegalStateException("decoding failed");
+
+        // what the decoding operation of a source block reports when it throws in the executor
+        dec.decodingSubmitted();
+        dec.decodingFailed(failure);
+        dec.decodingFailed(new IllegalStateException("later failure"));
+        dec.decodingFinished();
+
+        try {
+            dec.awaitDecodings(1, TimeUnit.MINUTES);
+            fail("expected the decoding failure to be rethrown");
+        }
+        catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        assertTrue(dec.awaitDecodings(0, TimeUnit.SECONDS)); // the failure is only thrown once
+    }
+
+    private static FECParameters fecParameters() {
+
+        return FECParameters.newParameters(Z * K * SYMBOL_SIZE, SYMBOL_SIZE, Z);
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+import net.fec.openrq.parameters.ParameterChecker;
+
+import org.junit.Test;
+
+
+/**
+ * Tests that the repair symbols written in batches, sequentially or in parallel, are equal to the ones in individual
+ * repair packets.
+ */
+public class RepairSymbolsWriteTest {
+
+    private static final int K = 25;
+    private static final int SYMBOL_SIZE = 48;
+    private static final int NUM_SYMBOLS = 40;
+    private static final int PARALLEL_SYMBOLS = 500;
+
+
+    @Test
+    public void testWriteToArray() {
+
+        final SourceBlockEncoder sbe = newEncoder();
+        final byte[] array = new byte[3 + NUM_SYMBOLS * SYMBOL_SIZE];
+        sbe.writeRepairSymbols(K + 5, NUM_SYMBOLS, array, 3);
+
+        assertArrayEquals(expectedSymbols(sbe, K + 5, NUM_SYMBOLS), Arrays.copyOfRange(array, 3, array.length));
+        assertEquals(0, array[0] | array[1] | array[2]);
+    }
+
+    @Test
+    public void testWriteToHeapBuffer() {
+
+        final SourceBlockEncoder sbe = newEncoder();
+        final ByteBuffer buffer = ByteBuffer.allocate(1 + NUM_SYMBOLS * SYMBOL_SIZE);
+        buffer.position(1);
+        sbe.writeRepairSymbols(K, NUM_SYMBOLS, buffer.slice());
+        sbe.writeRepairSymbols(K, NUM_SYMBOLS, buffer);
+        assertEquals(buffer.capacity(), buffer.position());
+
+        assertArrayEquals(expectedSymbols(sbe, K, NUM_SYMBOLS), Arrays.copyOfRange(buffer.array(), 1, buffer.capacity()));
+    }
+
+    @Test
+    public void testWriteToDirectBuffer() {
+
+        final SourceBlockEncoder sbe = newEncoder();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(NUM_SYMBOLS * SYMBOL_SIZE);
+        sbe.writeRepairSymbols(K + 1, NUM_SYMBOLS, buffer);
+        assertEquals(buffer.capacity(), buffer.position());
+
+        final byte[] actual = new byte[buffer.capacity()];
+        buffer.flip();
+        buffer.get(actual);
+        assertArrayEquals(expectedSymbols(sbe, K + 1, NUM_SYMBOLS), actual);
+    }
+
+    @Test
+    public void testMultipleSymbolsRepairPacket() {
+
+        final SourceBlockEncoder sbe = newEncoder();
+        final ByteBuffer symbols = sbe.repairPacket(K + 2, NUM_SYMBOLS).symbols();
+
+        final byte[] actual = new byte[symbols.remaining()];
+        symbols.get(actual);
+        assertArrayEquals(expectedSymbols(sbe, K + 2, NUM_SYMBOLS), actual);
+    }
+
+    @Test
+    public void testWriteManySubBatches() {
+
+        // spans several encoding sub-batches, the last one partial
+        final int numSymbols = 2 * LinearSystem.ENC_SUB_BATCH_SIZE + 37;
+        final SourceBlockEncoder sbe = newEncoder();
+        final byte[] array = new byte[numSymbols * SYMBOL_SIZE];
+        sbe.writeRepairSymbols(K + 3, numSymbols, array, 0);
+        assertArrayEquals(expectedSymbols(sbe, K + 3, numSymbols), array);
+
+        final ByteBuffer symbols = sbe.repairPacket(K + 3, numSymbols).symbols();
+        final byte[] actual = new byte[symbols.remaining()];
+        symbols.get(actual);
+        assertArrayEquals(array, actual);
+    }
+
+    @Test
+    public void testParallelWriteToArray() {
+
+        final SourceBlockEncoder sbe = newEncoder();
+        final byte[] array = new byte[PARALLEL_SYMBOLS * SYMBOL_SIZE];
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            sbe.writeRepairSymbols(K + 7, PARALLEL_SYMBOLS, array, 0, pool);
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        assertArrayEquals(expectedSymbols(sbe, K + 7, PARALLEL_SYMBOLS), array);
+    }
+
+    @Test
+    public void testParallelRepairPacketsIterable() {
+
+        final SourceBlockEncoder sbe = newEncoder();
+        final Iterable<EncodingPacket> packets;
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            packets = sbe.repairPacketsIterable(PARALLEL_SYMBOLS, pool);
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        int esi = K;
+        for (EncodingPacket packet : packets) {
+            assertEquals(esi, packet.encodingSymbolID());
+            assertEquals(sbe.repairPacket(esi).symbols(), packet.symbols());
+            esi++;
+        }
+        assertEquals(K + PARALLEL_SYMBOLS, esi);
+    }
+
+    @Test
+    public void testParallelRepairPacketsIterableInChunks() {
+
+        // with the largest symbol size, the packets span several chunk arrays
+        final int T = ParameterChecker.maxSymbolSize();
+        final int numPackets = 2 * ArraySourceBlockEncoder.repairChunkSymbols(T) + 3;
+        final SourceBlockEncoder sbe = newEncoder(2, T);
+        final Iterable<EncodingPacket> packets;
+        final ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            packets = sbe.repairPacketsIterable(numPackets, pool);
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        int esi = 2;
+        for (EncodingPacket packet : packets) {
+            assertEquals(esi, packet.encodingSymbolID());
+            assertEquals(sbe.repairPacket(esi).symbols(), packet.symbols());
+            esi++;
+        }
+        assertEquals(2 + numPackets, esi);
+    }
+
+    @Test
+    public void testRepairChunksFitInArrays() {
+
+        // the largest iterables hold more repair symbol bytes than an array can
+        final int T = ParameterChecker.maxSymbolSize();
+        final long maxBytes = (long)ParameterChecker.numRepairSymbolsPerBlock(1) * T;
+        assertTrue(maxBytes > Integer.MAX_VALUE);
+
+        for (int t : new int[] {1, 48, T}) {
+            final int chunkSymbols = ArraySourceBlockEncoder.repairChunkSymbols(t);
+            assertTrue(chunkSymbols >= 1);
+            assertTrue((long)chunkSymbols * t <= ArraySourceBlockEncoder.MAX_REPAIR_CHUNK_BYTES);
+        }
+    }
+
+    @Test
+    public void testConcurrentRepairPackets() throws Exception {
+
+        final byte[] expected = expectedSymbols(newEncoder(), K, NUM_SYMBOLS);
+
+        // all threads start together on an encoder without intermediate symbols
+        final SourceBlockEncoder sbe = newEncoder();
+        final int numThreads = 8;
+        final CyclicBarrier barrier = new CyclicBarrier(numThreads);
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            final List<Future<byte[]>> results = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                results.add(executor.submit(new Callable<byte[]>() {
+
+                    @Override
+                    public byte[] call() throws Exception {
+
+                        barrier.await();
+                        return expectedSymbols(sbe, K, NUM_SYMBOLS);
+                    }
+                }));
+            }
+            for (Future<byte[]> result : results) {
+                assertArrayEquals(expected, result.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testArrayTooSmall() {
+
+        newEncoder().writeRepairSymbols(K, NUM_SYMBOLS, new byte[NUM_SYMBOLS * SYMBOL_SIZE], 1);
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testBufferTooSmall() {
+
+        newEncoder().writeRepairSymbols(K, NUM_SYMBOLS, ByteBuffer.allocate(NUM_SYMBOLS * SYMBOL_SIZE - 1));
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void testReadOnlyBuffer() {
+
+        newEncoder().writeRepairSymbols(K, 1, ByteBuffer.allocate(SYMBOL_SIZE).asReadOnlyBuffer());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSourceSymbolESI() {
+
+        newEncoder().writeRepairSymbols(K - 1, 1, new byte[SYMBOL_SIZE], 0);
+    }
+
+    private static SourceBlockEncoder newEncoder() {
+
+        return newEncoder(K, SYMBOL_SIZE);
+    }
+
+    private static SourceBlockEncoder newEncoder(int numSymbols, int symbolSize) {
+
+        final byte[] data = new byte[numSymbols * symbolSize];
+        new Random(numSymbols).nextBytes(data);
+
+        final FECParameters fecParams = FECParameters.newParameters(data.length, symbolSize, 1);
+        return OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+    }
+
+    private static byte[] expectedSymbols(SourceBlockEncoder sbe, int esi, int numSymbols) {
+
+        final ByteBuffer expected = ByteBuffer.allocate(numSymbols * SYMBOL_SIZE);
+        for (int n = 0; n < numSymbols; n++) {
+            expected.put(sbe.repairPacket(esi + n).symbols());
+        }
+        return expected.array();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.fec.openrq.decoder.SourceBlockDecoder;
+import net.fec.openrq.decoder.SourceBlockState;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+
+/**
+ * Tests the encoding and decoding of source blocks divided into multiple sub-blocks.
+ */
+@RunWith(Parameterized.class)
+public class SubBlockCodingTest {
+
+    @Parameters(name = "F={0}, T={1}, Z={2}, N={3}")
+    public static Iterable<Object[]> getFECParams() {
+
+        return Arrays.asList(new Object[][] {
+                                             {1000, 100, 1, 2},
+                                             {997, 100, 1, 3}, // padding in the middle of the last symbols
+                                             {5000, 64, 1, 64},
+                                             {12345, 101, 3, 7},
+                                             {30000, 1024, 2, 5}
+        });
+    }
+
+
+    @Parameter(0)
+    public int F;
+
+    @Parameter(1)
+    public int T;
+
+    @Parameter(2)
+    public int Z;
+
+    @Parameter(3)
+    public int N;
+
+
+    @Test
+    public void testDecodeFromRepairSymbols() {
+
+        final FECParameters fecParams = FECParameters.newParameters(F, T, Z, N);
+        final byte[] data = randomData();
+        final ArrayDataEncoder enc = OpenRQ.newEncoder(data, fecParams);
+        final ArrayDataDecoder dec = OpenRQ.newDecoder(fecParams, 0);
+
+        // every other source symbol, then repair symbols until decoded
+        for (SourceBlockEncoder sbEnc : enc.sourceBlockIterable()) {
+            final SourceBlockDecoder sbDec = dec.sourceBlock(sbEnc.sourceBlockNumber());
+            final int K = sbEnc.numberOfSourceSymbols();
+            for (int esi = 0; esi < K; esi += 2) {
+                sbDec.putEncodingPacket(sbEnc.sourcePacket(esi));
+            }
+            for (int esi = K; sbDec.latestState() != SourceBlockState.DECODED; esi++) {
+                sbDec.putEncodingPacket(sbEnc.repairPacket(esi));
+            }
+        }
+
+        assertArrayEquals(data, dec.dataArray());
+    }
+
+    @Test
+    public void testSubBlocksAreEncodedIndependently() {
+
+        // with a single source block, sub-block j is the (padded) region of the data from K * pos(j), with K
+        // sub-symbols, and must be encoded exactly like a source block of its own
+        if (Z != 1) return;
+
+        final FECParameters fecParams = FECParameters.newParameters(F, T, Z, N);
+        final byte[] data = randomData();
+        final SourceBlockEncoder sbEnc = OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+        final int K = sbEnc.numberOfSourceSymbols();
+        final byte[] padded = Arrays.copyOf(data, K * T);
+        final SubBlockPartition subBlocks = SubBlockPartition.of(fecParams);
+
+        for (int j = 0; j < N; j++) {
+            final int Tj = subBlocks.subSymbolSize(j);
+            final int pos = subBlocks.subSymbolPosition(j);
+            final byte[] subBlock = Arrays.copyOfRange(padded, K * pos, K * (pos + Tj));
+            final SourceBlockEncoder subBlockEnc = OpenRQ.newEncoder(subBlock,
+                FECParameters.newParameters(subBlock.length, Tj, 1)).sourceBlock(0);
+            assertEquals(K, subBlockEnc.numberOfSourceSymbols());
+
+            for (int esi = 0; esi < K + 10; esi++) {
+                final ByteBuffer symbol = sbEnc.encodingPacket(esi).symbols();
+                symbol.position(pos).limit(pos + Tj);
+                assertEquals("ESI " + esi, subBlockEnc.encodingPacket(esi).symbols(), symbol);
+            }
+        }
+    }
+
+    private byte[] randomData() {
+
+        final byte[] data = new byte[F];
+        new Random(F).nextBytes(data);
+        return data;
+    }
+}
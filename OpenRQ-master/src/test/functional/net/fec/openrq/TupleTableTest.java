@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq;
+
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.fec.openrq.parameters.ParameterChecker;
+import net.fec.openrq.util.rq.Deg;
+import net.fec.openrq.util.rq.Rand;
+import net.fec.openrq.util.rq.SystematicIndices;
+
+import org.junit.Test;
+
+
+/**
+ * Tests the tuples of {@link TupleTable} against section 5.3.5.4 of RFC 6330, and that a table only keeps the tuples
+ * of its dense range of ISIs.
+ */
+public class TupleTableTest {
+
+    private static final int[] KPRIMES = {10, 1002, 56403};
+
+
+    @Test
+    public void testTuplesMatchRFC() {
+
+        final Random rand = TestingCommon.newSeededRandom();
+        for (int Kprime : KPRIMES) {
+            // the ISI of an ESI is at most maxESI + K' - K
+            final long maxISI = (long)ParameterChecker.maxEncodingSymbolID() + Kprime;
+            final TupleTable table = TupleTable.get(Kprime);
+            final long dense = table.denseISIs();
+            final long[] isis = {0, Kprime - 1, Kprime, dense - 1, dense, dense + 1, maxISI,
+                                 dense + rand.nextInt((int)(maxISI - dense))};
+
+            final int[] actual = new int[8];
+            for (long isi : isis) {
+                table.getTuple(isi, actual, 1);
+                final int[] expected = new int[8];
+                System.arraycopy(rfcTuple(Kprime, isi), 0, expected, 1, 6);
+                actual[0] = actual[7] = 0;
+                assertArrayEquals("K'=" + Kprime + ", ISI=" + isi, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testSparseLookupsKeepBoundedTuples() {
+
+        final int Kprime = 1002;
+        final TupleTable table = TupleTable.get(Kprime);
+        assertTrue(table.denseISIs() <= 2 * Kprime + 2048);
+
+        // repair symbols received from anywhere in the ESI range
+        final int[] tuple = new int[6];
+        for (long isi = 0; isi < 16000L * 1024; isi += 1024) {
+            table.getTuple(isi, tuple, 0);
+        }
+        assertTrue(table.numKeptTuples() <= table.denseISIs());
+    }
+
+    // the tuple of an ISI as specified in section 5.3.5.4 of RFC 6330
+    private static int[] rfcTuple(int Kprime, long X) {
+
+        final int Ki = SystematicIndices.getKIndex(Kprime);
+        final int W = SystematicIndices.W(Ki);
+        final int J = SystematicIndices.J(Ki);
+        final int P = Kprime + SystematicIndices.S(Ki) + SystematicIndices.H(Ki) - W;
+        final long P1 = MatrixUtilities.ceilPrime(P);
+
+        long A = 53591 + J * 997;
+        if (A % 2 == 0) A++;
+        final long B = 10267 * (J + 1);
+        final long y = (B + X * A) % 4294967296L; // 2^^32
+        final long v = Rand.rand(y, 0, 1048576L); // 2^^20
+
+        final long d = Deg.deg(v, W);
+        return new int[] {(int)d,
+                          (int)(1 + Rand.rand(y, 1, W - 1)),
+                          (int)Rand.rand(y, 2, W),
+                          (int)((d < 4) ? 2 + Rand.rand(X, 3, 2L) : 2),
+                          (int)(1 + Rand.rand(X, 4, P1 - 1)),
+                          (int)Rand.rand(X, 5, P1)};
+    }
+}
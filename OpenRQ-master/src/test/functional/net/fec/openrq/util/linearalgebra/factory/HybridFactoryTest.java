@@ -13,38 +13,13 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
+package net.fec.openrq.util.linearalgebra.factory;
 
-package net.fec.openrq;
+public class HybridFactoryTest extends AbstractFactoryTest {
 
+    @Override
+    public Factory factory() {
 
-import java.util.Set;
-
-
-/**
- */
-final class Row {
-
-    int position;
-    int nonZeros;
-    final int originalDegree;
-    Set<Integer> nodes = null;
-    final boolean isHDPC;
-
-
-    Row(int i, int r, int d, boolean hdpc) {
-
-        position = i;
-        nonZeros = r;
-        originalDegree = d;
-        isHDPC = hdpc;
-    }
-
-    Row(int i, int r, int d, boolean hdpc, Set<Integer> e) {
-
-        position = i;
-        nonZeros = r;
-        originalDegree = d;
-        nodes = e;
-        isHDPC = hdpc;
+        return new HybridFactory();
     }
 }
@@ -26,7 +26,8 @@ import org.junit.runners.Suite.SuiteClasses;
                Basic1DFactoryTest.class,
                Basic2DFactoryTest.class,
                CCSFactoryTest.class,
-               CRSFactoryTest.class
+               CRSFactoryTest.class,
+               HybridFactoryTest.class
 })
 public class LinearAlgebraFactorySuite {
 
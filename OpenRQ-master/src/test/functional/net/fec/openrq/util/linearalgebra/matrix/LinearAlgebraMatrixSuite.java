@@ -18,6 +18,7 @@ package net.fec.openrq.util.linearalgebra.matrix;
 
 import net.fec.openrq.util.linearalgebra.matrix.dense.Basic1DByteMatrixTest;
 import net.fec.openrq.util.linearalgebra.matrix.dense.Basic2DByteMatrixTest;
+import net.fec.openrq.util.linearalgebra.matrix.hybrid.HybridByteMatrixTest;
 import net.fec.openrq.util.linearalgebra.matrix.source.MatrixSourcesTest;
 import net.fec.openrq.util.linearalgebra.matrix.sparse.CCSByteMatrixTest;
 import net.fec.openrq.util.linearalgebra.matrix.sparse.CRSByteMatrixTest;
@@ -33,7 +34,8 @@ import org.junit.runners.Suite.SuiteClasses;
                Basic2DByteMatrixTest.class,
                MatrixSourcesTest.class,
                CCSByteMatrixTest.class,
-               CRSByteMatrixTest.class
+               CRSByteMatrixTest.class,
+               HybridByteMatrixTest.class
 })
 public class LinearAlgebraMatrixSuite {
 
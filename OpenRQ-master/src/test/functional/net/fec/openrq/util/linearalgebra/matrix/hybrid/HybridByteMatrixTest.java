@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq.util.linearalgebra.matrix.hybrid;
+
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import net.fec.openrq.util.linearalgebra.factory.Factory;
+import net.fec.openrq.util.linearalgebra.factory.HybridFactory;
+import net.fec.openrq.util.linearalgebra.matrix.AbstractByteMatrixTest;
+import net.fec.openrq.util.linearalgebra.matrix.ByteMatrix;
+
+import org.junit.Test;
+
+
+public class HybridByteMatrixTest extends AbstractByteMatrixTest {
+
+    @Override
+    public Factory factory() {
+
+        return new HybridFactory();
+    }
+
+    @Test
+    public void testRowPromotion_3x70() {
+
+        HybridByteMatrix a = new HybridByteMatrix(3, 70);
+        a.set(0, 1, (byte)1);
+        a.set(0, 65, (byte)1);
+        assertTrue(a.isBinaryRow(0));
+
+        a.set(0, 2, (byte)7);
+        assertFalse(a.isBinaryRow(0));
+        assertEquals(1, a.get(0, 1));
+        assertEquals(7, a.get(0, 2));
+        assertEquals(1, a.get(0, 65));
+        assertEquals(3, a.nonZerosInRow(0));
+
+        a.clearRow(0);
+        assertTrue(a.isBinaryRow(0));
+        assertEquals(0, a.nonZerosInRow(0));
+    }
+
+    @Test
+    public void testAddBinaryRows_2x130() {
+
+        HybridByteMatrix a = new HybridByteMatrix(2, 130);
+        a.set(0, 0, (byte)1);
+        a.set(0, 64, (byte)1);
+        a.set(0, 129, (byte)1);
+        a.set(1, 64, (byte)1);
+        a.set(1, 100, (byte)1);
+
+        a.addRowsInPlace(0, 1);
+        assertTrue(a.isBinaryRow(1));
+        assertEquals(3, a.nonZerosInRow(1));
+        assertEquals(1, a.get(1, 0));
+        assertEquals(0, a.get(1, 64));
+        assertEquals(1, a.get(1, 100));
+        assertEquals(1, a.get(1, 129));
+        assertEquals(2, a.nonZerosInRow(1, 64, 130));
+    }
+
+    @Test
+    public void testAddScaledBinaryRow_2x5() {
+
+        HybridByteMatrix a = new HybridByteMatrix(2, 5);
+        a.set(0, 1, (byte)1);
+        a.set(0, 3, (byte)1);
+        a.set(1, 3, (byte)1);
+
+        a.addRowsInPlace((byte)2, 0, 1);
+        assertFalse(a.isBinaryRow(1));
+
+        ByteMatrix b = factory().createMatrix(new byte[][] {
+                                                            {0, 1, 0, 1, 0},
+                                                            {0, 2, 0, 3, 0}
+        });
+        assertEquals(b, a);
+    }
+
+    @Test
+    public void testCopyOnWrite_3x70() {
+
+        HybridByteMatrix a = new HybridByteMatrix(3, 70);
+        a.set(0, 1, (byte)1);
+        a.set(1, 2, (byte)5);
+        a.set(2, 69, (byte)1);
+
+        HybridByteMatrix b = a.copyOnWrite(4);
+        assertEquals(4, b.rows());
+        assertEquals(0, b.nonZerosInRow(3));
+
+        b.set(0, 3, (byte)1);
+        b.addRowsInPlace((byte)2, 0, 1);
+        b.swapColumns(1, 69);
+        b.clearRow(2);
+        b.set(3, 0, (byte)7);
+
+        ByteMatrix expectedA = factory().createMatrix(3, 70);
+        expectedA.set(0, 1, (byte)1);
+        expectedA.set(1, 2, (byte)5);
+        expectedA.set(2, 69, (byte)1);
+        assertEquals(expectedA, a);
+
+        assertEquals(1, b.get(0, 3));
+        assertEquals(1, b.get(0, 69));
+        assertEquals(0, b.get(0, 1));
+        assertEquals(2, b.get(1, 3));
+        assertEquals(2, b.get(1, 69));
+        assertEquals(5, b.get(1, 2));
+        assertEquals(0, b.nonZerosInRow(2));
+        assertEquals(7, b.get(3, 0));
+
+        // writing to the original matrix does not change the copy either
+        a.set(1, 2, (byte)0);
+        assertEquals(5, b.get(1, 2));
+    }
+
+    @Test
+    public void testCopyRowsFrom_3x70() {
+
+        HybridByteMatrix a = new HybridByteMatrix(3, 70);
+        a.set(0, 1, (byte)1);
+        a.set(1, 2, (byte)5);
+        a.set(2, 69, (byte)1);
+
+        // rows of every storage type, a shared row, and an extra row
+        HybridByteMatrix b = new HybridByteMatrix(4, 70);
+        b.set(0, 3, (byte)9);
+        b.set(1, 4, (byte)1);
+        b.set(3, 5, (byte)1);
+        HybridByteMatrix c = b.copyOnWrite(4);
+
+        b.copyRowsFrom(a);
+        assertTrue(b.isBinaryRow(0));
+        assertFalse(b.isBinaryRow(1));
+        assertTrue(b.isBinaryRow(2));
+
+        ByteMatrix expectedB = factory().createMatrix(4, 70);
+        expectedB.set(0, 1, (byte)1);
+        expectedB.set(1, 2, (byte)5);
+        expectedB.set(2, 69, (byte)1);
+        assertEquals(expectedB, b);
+
+        // the copies do not share rows with the original matrix, or with previous copies
+        b.set(1, 2, (byte)0);
+        assertEquals(5, a.get(1, 2));
+        assertEquals(9, c.get(0, 3));
+        assertEquals(1, c.get(1, 4));
+        assertEquals(1, c.get(3, 5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCopyRowsFromLargerMatrix() {
+
+        new HybridByteMatrix(2, 70).copyRowsFrom(new HybridByteMatrix(3, 70));
+    }
+}
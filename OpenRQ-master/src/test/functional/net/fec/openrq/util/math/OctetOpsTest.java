@@ -0,0 +1,243 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.fec.openrq.util.math;
+
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import net.fec.openrq.TestingCommon;
+
+import org.junit.Test;
+
+
+/**
+ * Checks the vector kernels of {@link OctetOps} against the scalar operations, for arrays and for every kind of
+ * buffer, including buffers with different byte orders.
+ */
+public class OctetOpsTest {
+
+    // not a multiple of 8, so the kernels also have to handle a tail
+    private static final int LENGTH = 1003;
+    private static final int OFFSET = 5;
+
+    private final Random rand = TestingCommon.newSeededRandom();
+
+
+    @Test
+    public void testArrayKernels() {
+
+        final byte[] v1 = randomBytes(OFFSET + LENGTH);
+        final byte[] v2 = randomBytes(OFFSET + LENGTH);
+
+        for (int value = 0; value < 256; value++) {
+            final byte b = (byte)value;
+
+            byte[] result = new byte[OFFSET + LENGTH];
+            OctetOps.vectorVectorAddition(v1, OFFSET, v2, OFFSET, result, OFFSET, LENGTH);
+            assertArrayEquals(expectedSum((byte)1, v1, v2), result);
+
+            result = new byte[OFFSET + LENGTH];
+            OctetOps.vectorVectorAddition(b, v1, OFFSET, v2, OFFSET, result, OFFSET, LENGTH);
+            assertArrayEquals(expectedSum(b, v1, v2), result);
+
+            result = new byte[OFFSET + LENGTH];
+            OctetOps.valueVectorProduct(b, v1, OFFSET, result, OFFSET, LENGTH);
+            assertArrayEquals(expectedProduct(b, v1), result);
+
+            if (b != 0) {
+                result = new byte[OFFSET + LENGTH];
+                OctetOps.valueVectorDivision(b, v1, OFFSET, result, OFFSET, LENGTH);
+                assertArrayEquals(expectedQuotient(b, v1), result);
+            }
+        }
+    }
+
+    @Test
+    public void testBufferKernels() {
+
+        final byte[] v1 = randomBytes(OFFSET + LENGTH);
+        final byte[] v2 = randomBytes(OFFSET + LENGTH);
+        final byte b = (byte)(2 + rand.nextInt(254));
+
+        for (BufferKind k1 : BufferKind.values()) {
+            for (BufferKind k2 : BufferKind.values()) {
+                for (BufferKind kr : BufferKind.values()) {
+                    ByteBuffer result = kr.wrap(new byte[OFFSET + LENGTH]);
+                    OctetOps.vectorVectorAddition(k1.wrap(v1), k2.wrap(v2), result, LENGTH);
+                    assertArrayEquals(expectedSum((byte)1, v1, v2), contents(result));
+
+                    result = kr.wrap(new byte[OFFSET + LENGTH]);
+                    OctetOps.vectorVectorAddition(b, k1.wrap(v1), k2.wrap(v2), result, LENGTH);
+                    assertArrayEquals(expectedSum(b, v1, v2), contents(result));
+                }
+
+                ByteBuffer result = k2.wrap(new byte[OFFSET + LENGTH]);
+                OctetOps.valueVectorProduct(b, k1.wrap(v1), result, LENGTH);
+                assertArrayEquals(expectedProduct(b, v1), contents(result));
+
+                result = k2.wrap(new byte[OFFSET + LENGTH]);
+                OctetOps.valueVectorDivision(b, k1.wrap(v1), result, LENGTH);
+                assertArrayEquals(expectedQuotient(b, v1), contents(result));
+            }
+        }
+    }
+
+    @Test
+    public void testInPlaceKernels() {
+
+        final byte[] v1 = randomBytes(OFFSET + LENGTH);
+        final byte[] v2 = randomBytes(OFFSET + LENGTH);
+        final byte b = (byte)(2 + rand.nextInt(254));
+
+        byte[] result = v2.clone();
+        OctetOps.vectorVectorAddition(b, v1, OFFSET, result, OFFSET, result, OFFSET, LENGTH);
+        assertArrayEquals(expectedSum(b, v1, v2), withHead(result, v2));
+
+        result = v1.clone();
+        OctetOps.valueVectorProduct(b, result, OFFSET, result, OFFSET, LENGTH);
+        assertArrayEquals(expectedProduct(b, v1), withHead(result, v1));
+
+        for (BufferKind k : BufferKind.values()) {
+            ByteBuffer buffer = k.wrap(v2);
+            OctetOps.vectorVectorAddition(b, k.wrap(v1), buffer, buffer, LENGTH);
+            assertArrayEquals(expectedSum(b, v1, v2), withHead(contents(buffer), v2));
+
+            buffer = k.wrap(v1);
+            OctetOps.valueVectorDivision(b, buffer, buffer, LENGTH);
+            assertArrayEquals(expectedQuotient(b, v1), withHead(contents(buffer), v1));
+        }
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testDivisionByZero() {
+
+        final byte[] v = randomBytes(LENGTH);
+        OctetOps.valueVectorDivision((byte)0, v, v);
+    }
+
+    private byte[] randomBytes(int length) {
+
+        final byte[] array = new byte[length];
+        rand.nextBytes(array);
+        return array;
+    }
+
+    private static byte[] expectedSum(byte multiplier, byte[] v1, byte[] v2) {
+
+        final byte[] expected = new byte[v1.length];
+        for (int i = OFFSET; i < expected.length; i++) {
+            expected[i] = OctetOps.aPlusB(OctetOps.aTimesB(multiplier, v1[i]), v2[i]);
+        }
+        return expected;
+    }
+
+    private static byte[] expectedProduct(byte value, byte[] v) {
+
+        final byte[] expected = new byte[v.length];
+        for (int i = OFFSET; i < expected.length; i++) {
+            expected[i] = OctetOps.aTimesB(value, v[i]);
+        }
+        return expected;
+    }
+
+    private static byte[] expectedQuotient(byte value, byte[] v) {
+
+        final byte[] expected = new byte[v.length];
+        for (int i = OFFSET; i < expected.length; i++) {
+            expected[i] = OctetOps.aDividedByB(v[i], value);
+        }
+        return expected;
+    }
+
+    /*
+     * The expected arrays are zero before the offset, so clear the bytes that the operations left untouched.
+     */
+    private static byte[] withHead(byte[] result, byte[] original) {
+
+        for (int i = 0; i < OFFSET; i++) {
+            if (result[i] != original[i]) throw new AssertionError("byte before the offset changed: " + i);
+            result[i] = 0;
+        }
+        return result;
+    }
+
+    private static byte[] contents(ByteBuffer buffer) {
+
+        final byte[] array = new byte[OFFSET + LENGTH];
+        ((ByteBuffer)buffer.duplicate().clear()).get(array);
+        return array;
+    }
+
+
+    private static enum BufferKind {
+
+        HEAP_BIG_ENDIAN {
+
+            @Override
+            ByteBuffer allocate(int length) {
+
+                return ByteBuffer.allocate(length);
+            }
+        },
+
+        HEAP_SLICED { // has a non-zero array offset
+
+            @Override
+            ByteBuffer allocate(int length) {
+
+                final ByteBuffer buffer = ByteBuffer.allocate(length + 3);
+                buffer.position(3);
+                return buffer.slice();
+            }
+        },
+
+        DIRECT_BIG_ENDIAN {
+
+            @Override
+            ByteBuffer allocate(int length) {
+
+                return ByteBuffer.allocateDirect(length);
+            }
+        },
+
+        DIRECT_LITTLE_ENDIAN {
+
+            @Override
+            ByteBuffer allocate(int length) {
+
+                return ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        };
+
+
+        abstract ByteBuffer allocate(int length);
+
+        /*
+         * Returns a buffer with the array contents, positioned at the offset.
+         */
+        ByteBuffer wrap(byte[] array) {
+
+            final ByteBuffer buffer = allocate(array.length);
+            buffer.put(array);
+            buffer.position(OFFSET);
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2014 OpenRQ Team
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.fec.openrq.util.math;
+
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * The array kernels of {@link OctetOps} written with the Java Vector API. Sums are XORs at the full preferred vector
+ * width (32 bytes with AVX2, 64 with AVX-512). Products split every byte into nibbles, which index the low and high
+ * halves of the multiplier's nibble table with a shuffle, like PSHUFB-based GF(256) code does.
+ * <p>
+ * This class lives in its own source root, {@code src/vector}, compiled by the {@code buildvector} target with JDK 17+
+ * and {@code --add-modules jdk.incubator.vector}, so that the main classes still build for Java 7. Only the array loads
+ * and stores of the incubator API are used, which it has kept since JDK 16. {@code OctetOps} loads the kernel
+ * reflectively, checks it against the scalar kernels and falls back to these on any failure, so the module must also be
+ * added at run time to use it.
+ */
+final class OctetVectorKernel implements OctetKernel {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+    private static final int LANES = SPECIES.length();
+
+    private byte[][] nibbleTables;
+    private ByteVector[] lowTables;
+    private ByteVector[] highTables;
+
+
+    OctetVectorKernel() {
+
+        // a nibble table must fit in one vector for the shuffle lookup
+        if (LANES < 16) {
+            throw new UnsupportedOperationException("preferred vector too small: " + SPECIES);
+        }
+    }
+
+    @Override
+    public void init(byte[][] nibbleTables) {
+
+        final int size = nibbleTables.length;
+        final ByteVector[] low = new ByteVector[size];
+        final ByteVector[] high = new ByteVector[size];
+        for (int m = 0; m < size; m++) {
+            low[m] = tableVector(nibbleTables[m], 0);
+            high[m] = tableVector(nibbleTables[m], 16);
+        }
+
+        this.nibbleTables = nibbleTables;
+        this.lowTables = low;
+        this.highTables = high;
+    }
+
+    /*
+     * Loads 16 bytes of a nibble table repeated over all lanes, so any lane can look it up with an index in 0..15.
+     */
+    private static ByteVector tableVector(byte[] table, int off) {
+
+        final byte[] lanes = new byte[LANES];
+        for (int i = 0; i < LANES; i++) {
+            lanes[i] = table[off + (i & 15)];
+        }
+        return ByteVector.fromArray(SPECIES, lanes, 0);
+    }
+
+    @Override
+    public void add(byte[] vector1, int vecPos1, byte[] vector2, int vecPos2, byte[] result, int resPos, int length) {
+
+        final int vecEnd = SPECIES.loopBound(length);
+
+        int i = 0;
+        for (; i < vecEnd; i += LANES) {
+            final ByteVector v1 = ByteVector.fromArray(SPECIES, vector1, vecPos1 + i);
+            final ByteVector v2 = ByteVector.fromArray(SPECIES, vector2, vecPos2 + i);
+            v1.lanewise(VectorOperators.XOR, v2).intoArray(result, resPos + i);
+        }
+
+        for (; i < length; i++) {
+            result[resPos + i] = (byte)(vector1[vecPos1 + i] ^ vector2[vecPos2 + i]);
+        }
+    }
+
+    @Override
+    public void multiply(int multiplier, byte[] vector, int vecPos, byte[] result, int resPos, int length) {
+
+        final ByteVector low = lowTables[multiplier];
+        final ByteVector high = highTables[multiplier];
+        final int vecEnd = SPECIES.loopBound(length);
+
+        int i = 0;
+        for (; i < vecEnd; i += LANES) {
+            final ByteVector v = ByteVector.fromArray(SPECIES, vector, vecPos + i);
+            product(v, low, high).intoArray(result, resPos + i);
+        }
+
+        final byte[] table = nibbleTables[multiplier];
+        for (; i < length; i++) {
+            result[resPos + i] = product(table, vector[vecPos + i]);
+        }
+    }
+
+    @Override
+    public void multiplyAdd(
+        int multiplier,
+        byte[] vector1,
+        int vecPos1,
+        byte[] vector2,
+        int vecPos2,
+        byte[] result,
+        int resPos,
+        int length)
+    {
+
+        final ByteVector low = lowTables[multiplier];
+        final ByteVector high = highTables[multiplier];
+        final int vecEnd = SPECIES.loopBound(length);
+
+        int i = 0;
+        for (; i < vecEnd; i += LANES) {
+            final ByteVector v1 = ByteVector.fromArray(SPECIES, vector1, vecPos1 + i);
+            final ByteVector v2 = ByteVector.fromArray(SPECIES, vector2, vecPos2 + i);
+            product(v1, low, high).lanewise(VectorOperators.XOR, v2).intoArray(result, resPos + i);
+        }
+
+        final byte[] table = nibbleTables[multiplier];
+        for (; i < length; i++) {
+            result[resPos + i] = (byte)(product(table, vector1[vecPos1 + i]) ^ vector2[vecPos2 + i]);
+        }
+    }
+
+    private static ByteVector product(ByteVector v, ByteVector low, ByteVector high) {
+
+        final ByteVector lo = v.and((byte)0x0F);
+        final ByteVector hi = v.lanewise(VectorOperators.LSHR, 4).and((byte)0x0F);
+        return lo.selectFrom(low).lanewise(VectorOperators.XOR, hi.selectFrom(high));
+    }
+
+    private static byte product(byte[] table, byte x) {
+
+        return (byte)(table[x & 0x0F] ^ table[16 + ((x >>> 4) & 0x0F)]);
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder.util;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+
+/**
+ * GF(256) multiply-accumulate with the Java Vector API, the same way ISA-L
+ * does it with PSHUFB: every input byte is split into nibbles, which index
+ * the 16-entry low and high product tables built by
+ * {@link GF256#gfVectMulInit}, and the two lookups are XOR-ed into the output.
+ * A whole vector of bytes (32 with AVX2, 64 with AVX-512) is processed per
+ * table shuffle.
+ *
+ * This class lives in its own source root, erasurecode-vector, compiled
+ * separately with JDK 17+ and --add-modules jdk.incubator.vector, so the
+ * main tree still builds for Java 8. Only the array loads and stores of the
+ * incubator API are used, which it has kept since JDK 16; ByteBuffers are
+ * coded through their backing arrays, and direct buffers are staged through
+ * heap arrays a tile at a time. {@link RSUtil} loads the kernel reflectively,
+ * checks it against the scalar kernels and falls back to these on any
+ * failure, so the module must also be added at run time to use it.
+ */
+@InterfaceAudience.Private
+final class RSVectorKernel implements RSKernel {
+  private static final VectorSpecies<Byte> SPECIES =
+      ByteVector.SPECIES_PREFERRED;
+  private static final int LANES = SPECIES.length();
+
+  RSVectorKernel() {
+    // A nibble table must fit in one vector for the shuffle lookup
+    if (LANES < 16) {
+      throw new UnsupportedOperationException(
+          "Preferred vector too small: " + SPECIES);
+    }
+  }
+
+  /**
+   * Load a 16-byte nibble table repeated over all lanes, so any lane can
+   * look it up with a shuffle index in 0..15.
+   */
+  private static ByteVector tableVector(byte[] gfTables, int offset) {
+    byte[] tbl = new byte[LANES];
+    for (int i = 0; i < LANES; i++) {
+      tbl[i] = gfTables[offset + (i & 15)];
+    }
+    return ByteVector.fromArray(SPECIES, tbl, 0);
+  }
+
+  private static ByteVector mulAdd(ByteVector acc, ByteVector in,
+      ByteVector low, ByteVector high) {
+    ByteVector lo = in.and((byte) 0x0f);
+    ByteVector hi = in.lanewise(VectorOperators.LSHR, 4).and((byte) 0x0f);
+    return acc.lanewise(VectorOperators.XOR, lo.selectFrom(low))
+        .lanewise(VectorOperators.XOR, hi.selectFrom(high));
+  }
+
+  private static ByteVector[] tableVectors(byte[] gfTables, int numTables,
+      int half) {
+    ByteVector[] tables = new ByteVector[numTables];
+    for (int t = 0; t < numTables; t++) {
+      tables[t] = tableVector(gfTables, t * 32 + half);
+    }
+    return tables;
+  }
+
+  @Override
+  public void encodeData(byte[] gfTables, int dataLen, byte[][] inputs,
+      int[] inputOffsets, byte[][] outputs, int[] outputOffsets,
+      int tileSize) {
+    int numInputs = inputs.length;
+    int numOutputs = outputs.length;
+    ByteVector[] lows = tableVectors(gfTables, numInputs * numOutputs, 0);
+    ByteVector[] highs = tableVectors(gfTables, numInputs * numOutputs, 16);
+
+    for (int tile = 0; tile < dataLen; tile += tileSize) {
+      int tileEnd = Math.min(tile + tileSize, dataLen);
+      int bound = tile + SPECIES.loopBound(tileEnd - tile);
+
+      for (int l = 0; l < numOutputs; l++) {
+        byte[] output = outputs[l];
+        int oPos = outputOffsets[l];
+        int t0 = l * numInputs;
+
+        for (int i = tile; i < bound; i += LANES) {
+          ByteVector acc = ByteVector.fromArray(SPECIES, output, oPos + i);
+          for (int j = 0; j < numInputs; j++) {
+            acc = mulAdd(acc,
+                ByteVector.fromArray(SPECIES, inputs[j], inputOffsets[j] + i),
+                lows[t0 + j], highs[t0 + j]);
+          }
+          acc.intoArray(output, oPos + i);
+        }
+
+        for (int j = 0; j < numInputs && bound < tileEnd; j++) {
+          byte[] tableLine =
+              GF256.gfMulTab()[gfTables[(t0 + j) * 32 + 1] & 0xff];
+          byte[] input = inputs[j];
+          for (int i = bound, iPos = inputOffsets[j] + bound; i < tileEnd;
+               i++, iPos++) {
+            output[oPos + i] ^= tableLine[0xff & input[iPos]];
+          }
+        }
+      }
+    }
+  }
+
+  @Override
+  public void encodeData(byte[] gfTables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs, int tileSize) {
+    int dataLen = inputs[0].remaining();
+    if (hasArrays(inputs) && hasArrays(outputs)) {
+      encodeData(gfTables, dataLen, arrays(inputs), arrayOffsets(inputs),
+          arrays(outputs), arrayOffsets(outputs), tileSize);
+      return;
+    }
+
+    // Stage a tile of every unit in heap arrays, coded as a single tile
+    int stageLen = Math.min(tileSize, dataLen);
+    byte[][] stagedInputs = new byte[inputs.length][stageLen];
+    byte[][] stagedOutputs = new byte[outputs.length][stageLen];
+    int[] inputOffsets = new int[inputs.length];
+    int[] outputOffsets = new int[outputs.length];
+
+    for (int tile = 0; tile < dataLen; tile += tileSize) {
+      int tileLen = Math.min(tileSize, dataLen - tile);
+      for (int j = 0; j < inputs.length; j++) {
+        stage(inputs[j], tile).get(stagedInputs[j], 0, tileLen);
+      }
+      for (int l = 0; l < outputs.length; l++) {
+        stage(outputs[l], tile).get(stagedOutputs[l], 0, tileLen);
+      }
+      encodeData(gfTables, tileLen, stagedInputs, inputOffsets,
+          stagedOutputs, outputOffsets, tileSize);
+      for (int l = 0; l < outputs.length; l++) {
+        stage(outputs[l], tile).put(stagedOutputs[l], 0, tileLen);
+      }
+    }
+  }
+
+  private static ByteBuffer stage(ByteBuffer buffer, int tile) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(buffer.position() + tile);
+    return view;
+  }
+
+  private static boolean hasArrays(ByteBuffer[] buffers) {
+    for (ByteBuffer buffer : buffers) {
+      if (!buffer.hasArray()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[][] arrays(ByteBuffer[] buffers) {
+    byte[][] arrays = new byte[buffers.length][];
+    for (int i = 0; i < buffers.length; i++) {
+      arrays[i] = buffers[i].array();
+    }
+    return arrays;
+  }
+
+  private static int[] arrayOffsets(ByteBuffer[] buffers) {
+    int[] offsets = new int[buffers.length];
+    for (int i = 0; i < buffers.length; i++) {
+      offsets[i] = buffers[i].arrayOffset() + buffers[i].position();
+    }
+    return offsets;
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.hadoop.io.erasurecode;
 
 import org.apache.hadoop.util.Preconditions;
 import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.erasurecode.codec.ErasureCodec;
 import org.apache.hadoop.io.erasurecode.codec.HHXORErasureCodec;
@@ -34,6 +35,8 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * A codec &amp; coder utility to help create coders conveniently.
@@ -88,6 +91,16 @@ public final class CodecUtil {
 
   public static final boolean IO_ERASURECODE_CODEC_NATIVE_ENABLED_DEFAULT = true;
 
+  // Pools of ready raw coders, see borrowRawEncoder/borrowRawDecoder.
+  private static final int RAW_CODER_POOL_MAX_KEYS = 64;
+  private static final int RAW_CODER_POOL_MAX_IDLE_PER_KEY = 8;
+  private static final RawErasureCoderPool<RawErasureEncoder>
+      RAW_ENCODER_POOL = new RawErasureCoderPool<>(RAW_CODER_POOL_MAX_KEYS,
+          RAW_CODER_POOL_MAX_IDLE_PER_KEY, RawErasureEncoder::release);
+  private static final RawErasureCoderPool<RawErasureDecoder>
+      RAW_DECODER_POOL = new RawErasureCoderPool<>(RAW_CODER_POOL_MAX_KEYS,
+          RAW_CODER_POOL_MAX_IDLE_PER_KEY, RawErasureDecoder::release);
+
   private CodecUtil() { }
 
   /**
@@ -156,6 +169,92 @@ public final class CodecUtil {
     return createRawDecoderWithFallback(conf, codec, coderOptions);
   }
 
+  /**
+   * Borrow a raw encoder from the shared pool, creating one if no idle
+   * encoder of the same codec, coder and options is available. The coder is
+   * chosen the same way as {@link #createRawEncoder}. Hand it back with
+   * {@link #returnRawEncoder} once done instead of releasing it. The erasure
+   * coders of the coder package borrow one per coder on their first step and
+   * return it in their release(), see
+   * {@link org.apache.hadoop.io.erasurecode.coder.ErasureCoder#release}.
+   * @param conf configuration
+   * @param codec the codec to use
+   * @param coderOptions coder options that's used to create the coder
+   * @return raw encoder owned by the caller until returned
+   */
+  public static RawErasureEncoder borrowRawEncoder(
+      Configuration conf, String codec, ErasureCoderOptions coderOptions) {
+    Preconditions.checkNotNull(conf);
+    Preconditions.checkNotNull(codec);
+    Preconditions.checkNotNull(coderOptions);
+
+    return createRawCoderWithFallback(conf, codec, "encoder",
+        rawCoderName -> borrowOrCreate(RAW_ENCODER_POOL,
+            new RawErasureCoderPool.Key(codec, rawCoderName, coderOptions),
+            () -> createRawCoderFactory(rawCoderName, codec)
+                .createEncoder(coderOptions)));
+  }
+
+  /**
+   * Return a raw encoder got from {@link #borrowRawEncoder} to the pool. The
+   * caller must not use it afterwards. Encoders not from the pool are
+   * ignored.
+   * @param encoder the encoder
+   */
+  public static void returnRawEncoder(RawErasureEncoder encoder) {
+    if (encoder != null) {
+      RAW_ENCODER_POOL.giveBack(encoder);
+    }
+  }
+
+  /**
+   * Borrow a raw decoder from the shared pool, creating one if no idle
+   * decoder of the same codec, coder and options is available. The coder is
+   * chosen the same way as {@link #createRawDecoder}. Hand it back with
+   * {@link #returnRawDecoder} once done instead of releasing it. The erasure
+   * coders of the coder package borrow one per coder on their first step and
+   * return it in their release(), see
+   * {@link org.apache.hadoop.io.erasurecode.coder.ErasureCoder#release}.
+   * @param conf configuration
+   * @param codec the codec to use
+   * @param coderOptions coder options that's used to create the coder
+   * @return raw decoder owned by the caller until returned
+   */
+  public static RawErasureDecoder borrowRawDecoder(
+      Configuration conf, String codec, ErasureCoderOptions coderOptions) {
+    Preconditions.checkNotNull(conf);
+    Preconditions.checkNotNull(codec);
+    Preconditions.checkNotNull(coderOptions);
+
+    return createRawCoderWithFallback(conf, codec, "decoder",
+        rawCoderName -> borrowOrCreate(RAW_DECODER_POOL,
+            new RawErasureCoderPool.Key(codec, rawCoderName, coderOptions),
+            () -> createRawCoderFactory(rawCoderName, codec)
+                .createDecoder(coderOptions)));
+  }
+
+  /**
+   * Return a raw decoder got from {@link #borrowRawDecoder} to the pool. The
+   * caller must not use it afterwards. Decoders not from the pool are
+   * ignored.
+   * @param decoder the decoder
+   */
+  public static void returnRawDecoder(RawErasureDecoder decoder) {
+    if (decoder != null) {
+      RAW_DECODER_POOL.giveBack(decoder);
+    }
+  }
+
+  @VisibleForTesting
+  static RawErasureCoderPool<RawErasureEncoder> getRawEncoderPool() {
+    return RAW_ENCODER_POOL;
+  }
+
+  @VisibleForTesting
+  static RawErasureCoderPool<RawErasureDecoder> getRawDecoderPool() {
+    return RAW_DECODER_POOL;
+  }
+
   private static RawErasureCoderFactory createRawCoderFactory(
       String coderName, String codecName) {
     RawErasureCoderFactory fact;
@@ -180,58 +279,68 @@ public final class CodecUtil {
 
   private static RawErasureEncoder createRawEncoderWithFallback(
       Configuration conf, String codecName, ErasureCoderOptions coderOptions) {
-    boolean nativeEncoderEnabled = conf.getBoolean(IO_ERASURECODE_CODEC_NATIVE_ENABLED_KEY,
-        IO_ERASURECODE_CODEC_NATIVE_ENABLED_DEFAULT);
-    String[] rawCoderNames = getRawCoderNames(conf, codecName);
-    for (String rawCoderName : rawCoderNames) {
-      if (!nativeEncoderEnabled && rawCoderName.contains("native")) {
-        LOG.debug("Disable the encoder with ISA-L.");
-        continue;
-      }
-      try {
-        if (rawCoderName != null) {
-          RawErasureCoderFactory fact = createRawCoderFactory(
-              rawCoderName, codecName);
-          return fact.createEncoder(coderOptions);
-        }
-      } catch (LinkageError | Exception e) {
-        // Fallback to next coder if possible
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Failed to create raw erasure encoder " + rawCoderName +
-              ", fallback to next codec if possible", e);
-        }
-      }
-    }
-    throw new IllegalArgumentException("Fail to create raw erasure " +
-       "encoder with given codec: " + codecName);
+    return createRawCoderWithFallback(conf, codecName, "encoder",
+        rawCoderName -> createRawCoderFactory(rawCoderName, codecName)
+            .createEncoder(coderOptions));
   }
 
   private static RawErasureDecoder createRawDecoderWithFallback(
       Configuration conf, String codecName, ErasureCoderOptions coderOptions) {
-    boolean nativeDecoderEnabled = conf.getBoolean(IO_ERASURECODE_CODEC_NATIVE_ENABLED_KEY,
+    return createRawCoderWithFallback(conf, codecName, "decoder",
+        rawCoderName -> createRawCoderFactory(rawCoderName, codecName)
+            .createDecoder(coderOptions));
+  }
+
+  /**
+   * Try the raw coders configured for the codec in order, skipping native
+   * ones if disabled, and return the first coder the given function gets
+   * without failing. Creating raw coders and borrowing them from the pool
+   * both go through here, so they choose coders the same way.
+   * @param conf configuration
+   * @param codecName the codec to use
+   * @param coderKind "encoder" or "decoder", for messages
+   * @param create gets a coder given a raw coder name
+   * @return the coder
+   */
+  private static <T> T createRawCoderWithFallback(Configuration conf,
+      String codecName, String coderKind, Function<String, T> create) {
+    boolean nativeCoderEnabled = conf.getBoolean(
+        IO_ERASURECODE_CODEC_NATIVE_ENABLED_KEY,
         IO_ERASURECODE_CODEC_NATIVE_ENABLED_DEFAULT);
-    String[] coders = getRawCoderNames(conf, codecName);
-    for (String rawCoderName : coders) {
-      if (!nativeDecoderEnabled && rawCoderName.contains("native")) {
-        LOG.debug("Disable the decoder with ISA-L.");
+    for (String rawCoderName : getRawCoderNames(conf, codecName)) {
+      if (rawCoderName == null) {
+        continue;
+      }
+      if (!nativeCoderEnabled && rawCoderName.contains("native")) {
+        LOG.debug("Disable the {} with ISA-L.", coderKind);
         continue;
       }
       try {
-        if (rawCoderName != null) {
-          RawErasureCoderFactory fact = createRawCoderFactory(
-              rawCoderName, codecName);
-          return fact.createDecoder(coderOptions);
-        }
+        return create.apply(rawCoderName);
       } catch (LinkageError | Exception e) {
         // Fallback to next coder if possible
         if (LOG.isDebugEnabled()) {
-          LOG.debug("Failed to create raw erasure decoder " + rawCoderName +
-                  ", fallback to next codec if possible", e);
+          LOG.debug("Failed to create raw erasure " + coderKind + " " +
+              rawCoderName + ", fallback to next codec if possible", e);
         }
       }
     }
     throw new IllegalArgumentException("Fail to create raw erasure " +
-        "decoder with given codec: " + codecName);
+        coderKind + " with given codec: " + codecName);
+  }
+
+  /**
+   * Borrow an idle coder of the key from the pool, or create one and track
+   * it in the pool.
+   */
+  private static <T> T borrowOrCreate(RawErasureCoderPool<T> pool,
+      RawErasureCoderPool.Key key, Supplier<T> create) {
+    T coder = pool.borrow(key);
+    if (coder == null) {
+      coder = create.get();
+      pool.track(key, coder);
+    }
+    return coder;
   }
 
   private static ErasureCodec createCodec(Configuration conf,
@@ -0,0 +1,246 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A keyed pool of ready raw coders, so that coding steps can reuse a coder
+ * of the same (codec, coder name, coder options) instead of building one
+ * (and its tables) per step.
+ *
+ * Coders are borrowed with {@link #borrow} and handed back with
+ * {@link #giveBack}; a coder is only ever used by one borrower at a time.
+ * At most {@code maxIdlePerKey} idle coders are kept per key and at most
+ * {@code maxKeys} keys, least recently used first out. Coders dropped from
+ * the pool, either on return to a full key or on eviction of their key, are
+ * released. Borrowed coders are tracked weakly, so a coder that is never
+ * returned is simply garbage collected.
+ *
+ * @param <T> raw encoder or raw decoder
+ */
+@InterfaceAudience.Private
+final class RawErasureCoderPool<T> {
+
+  private final int maxIdlePerKey;
+  private final Consumer<T> releaser;
+  private final IdleCoders idle;
+  // Keyed by identity since raw coders don't override equals/hashCode.
+  private final Map<T, Key> borrowed =
+      Collections.synchronizedMap(new WeakHashMap<T, Key>());
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  RawErasureCoderPool(int maxKeys, int maxIdlePerKey, Consumer<T> releaser) {
+    if (maxKeys <= 0 || maxIdlePerKey <= 0) {
+      throw new IllegalArgumentException("Invalid maxKeys " + maxKeys +
+          " or maxIdlePerKey " + maxIdlePerKey);
+    }
+    this.maxIdlePerKey = maxIdlePerKey;
+    this.releaser = releaser;
+    this.idle = new IdleCoders(maxKeys);
+  }
+
+  /**
+   * Take an idle coder of the given key, counting a hit or a miss.
+   * @param key the key
+   * @return an idle coder now borrowed by the caller, or null if none
+   */
+  T borrow(Key key) {
+    T coder = null;
+    synchronized (idle) {
+      Deque<T> coders = idle.get(key);
+      if (coders != null) {
+        coder = coders.pollFirst();
+      }
+    }
+    if (coder == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    borrowed.put(coder, key);
+    return coder;
+  }
+
+  /**
+   * Record a coder freshly created for the given key as borrowed, so that it
+   * can be returned to the pool later.
+   * @param key the key
+   * @param coder the new coder
+   */
+  void track(Key key, T coder) {
+    borrowed.put(coder, key);
+  }
+
+  /**
+   * Hand a borrowed coder back to the pool. Coders not borrowed from this
+   * pool, or already returned, are ignored.
+   * @param coder the coder
+   */
+  void giveBack(T coder) {
+    Key key = borrowed.remove(coder);
+    if (key == null) {
+      return;
+    }
+    boolean pooled = false;
+    Deque<T> evicted;
+    synchronized (idle) {
+      Deque<T> coders = idle.get(key);
+      if (coders == null) {
+        coders = new ArrayDeque<>(maxIdlePerKey);
+        idle.put(key, coders);
+      }
+      if (coders.size() < maxIdlePerKey) {
+        coders.addFirst(coder);
+        pooled = true;
+      }
+      evicted = idle.takeEvicted();
+    }
+    if (!pooled) {
+      releaser.accept(coder);
+    }
+    if (evicted != null) {
+      evicted.forEach(releaser);
+    }
+  }
+
+  long getHits() {
+    return hits.sum();
+  }
+
+  long getMisses() {
+    return misses.sum();
+  }
+
+  int getNumIdle() {
+    int numIdle = 0;
+    synchronized (idle) {
+      for (Deque<T> coders : idle.values()) {
+        numIdle += coders.size();
+      }
+    }
+    return numIdle;
+  }
+
+  /**
+   * Release and drop all idle coders. Borrowed coders are not affected and
+   * may still be returned.
+   */
+  void clear() {
+    Deque<T> dropped = new ArrayDeque<>();
+    synchronized (idle) {
+      for (Iterator<Deque<T>> it = idle.values().iterator(); it.hasNext();) {
+        dropped.addAll(it.next());
+        it.remove();
+      }
+    }
+    dropped.forEach(releaser);
+  }
+
+  private final class IdleCoders extends LinkedHashMap<Key, Deque<T>> {
+    private static final long serialVersionUID = 0L;
+    private final int capacity;
+    // Coders of evicted keys, released by the caller once the pool unlocked
+    private Deque<T> evicted;
+
+    IdleCoders(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Deque<T>> eldest) {
+      if (size() > capacity) {
+        if (evicted == null) {
+          evicted = new ArrayDeque<>();
+        }
+        evicted.addAll(eldest.getValue());
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * @return the coders evicted since the last call, or null if none
+     */
+    Deque<T> takeEvicted() {
+      Deque<T> coders = evicted;
+      evicted = null;
+      return coders;
+    }
+  }
+
+  /**
+   * What makes raw coders interchangeable: codec, coder name and options.
+   */
+  static final class Key {
+    private final String codecName;
+    private final String coderName;
+    private final int numDataUnits;
+    private final int numParityUnits;
+    private final boolean allowChangeInputs;
+    private final boolean allowVerboseDump;
+
+    Key(String codecName, String coderName, ErasureCoderOptions options) {
+      this.codecName = codecName;
+      this.coderName = coderName;
+      this.numDataUnits = options.getNumDataUnits();
+      this.numParityUnits = options.getNumParityUnits();
+      this.allowChangeInputs = options.allowChangeInputs();
+      this.allowVerboseDump = options.allowVerboseDump();
+    }
+
+    @Override
+    public int hashCode() {
+      int h = codecName.hashCode();
+      h = 31 * h + coderName.hashCode();
+      h = 31 * h + numDataUnits;
+      h = 31 * h + numParityUnits;
+      h = 31 * h + (allowChangeInputs ? 1 : 0);
+      return 31 * h + (allowVerboseDump ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key that = (Key) o;
+      return numDataUnits == that.numDataUnits &&
+          numParityUnits == that.numParityUnits &&
+          allowChangeInputs == that.allowChangeInputs &&
+          allowVerboseDump == that.allowVerboseDump &&
+          codecName.equals(that.codecName) &&
+          coderName.equals(that.coderName);
+    }
+  }
+}
@@ -84,6 +84,12 @@ public interface ErasureCoder extends Configurable {
   /**
    * Release the resources if any. Good chance to invoke
    * RawErasureCoder#release.
+   *
+   * Coders borrow their raw coders from the pool in {@link
+   * org.apache.hadoop.io.erasurecode.CodecUtil} when they prepare their first
+   * coding step, share them among all their steps, and give them back here;
+   * finishing a step doesn't return anything. Call it once done with all the
+   * steps of the coder.
    */
   void release();
 }
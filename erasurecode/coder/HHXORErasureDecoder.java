@@ -66,7 +66,7 @@ public class HHXORErasureDecoder extends ErasureDecoder {
 
   private RawErasureDecoder checkCreateRSRawDecoder() {
     if (rsRawDecoder == null) {
-      rsRawDecoder = CodecUtil.createRawDecoder(getConf(),
+      rsRawDecoder = CodecUtil.borrowRawDecoder(getConf(),
               ErasureCodeConstants.RS_CODEC_NAME, getOptions());
     }
     return rsRawDecoder;
@@ -74,7 +74,7 @@ public class HHXORErasureDecoder extends ErasureDecoder {
 
   private RawErasureEncoder checkCreateXorRawEncoder() {
     if (xorRawEncoder == null) {
-      xorRawEncoder = CodecUtil.createRawEncoder(getConf(),
+      xorRawEncoder = CodecUtil.borrowRawEncoder(getConf(),
           ErasureCodeConstants.XOR_CODEC_NAME, getOptions());
     }
     return xorRawEncoder;
@@ -88,10 +88,12 @@ public class HHXORErasureDecoder extends ErasureDecoder {
   @Override
   public void release() {
     if (rsRawDecoder != null) {
-      rsRawDecoder.release();
+      CodecUtil.returnRawDecoder(rsRawDecoder);
+      rsRawDecoder = null;
     }
     if (xorRawEncoder != null) {
-      xorRawEncoder.release();
+      CodecUtil.returnRawEncoder(xorRawEncoder);
+      xorRawEncoder = null;
     }
   }
 }
@@ -26,6 +26,7 @@ import org.apache.hadoop.io.erasurecode.ECChunk;
 import org.apache.hadoop.io.erasurecode.coder.util.HHUtil;
 import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureEncoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.XORUtil;
 
 /**
  * Hitchhiker-XOR Erasure decoding step, a wrapper of all the necessary
@@ -231,16 +232,14 @@ public class HHXORErasureDecodingStep extends HHErasureCodingStep {
 
     // recover first sub-stripe data by XOR piggyback
     int bufSize = piggyBack.remaining();
-    for (int i = piggyBack.position();
-         i < piggyBack.position() + bufSize; i++) {
-      for (int j = startIndex; j < endIndex; j++) {
-        if (inputs[j] != null) {
-          piggyBack.put(i, (byte)
-                  (piggyBack.get(i) ^ inputs[j].get(inputs[j].position() + i)));
-        }
+    for (int j = startIndex; j < endIndex; j++) {
+      if (inputs[j] != null) {
+        XORUtil.xorInto(inputs[j], piggyBack, bufSize);
       }
-      outputs.put(outputs.position() + i, piggyBack.get(i));
     }
+    ByteBuffer dup = piggyBack.duplicate();
+    dup.limit(dup.position() + bufSize);
+    outputs.duplicate().put(dup);
   }
 
   private void doDecodeByPiggyBack(byte[][] inputs, int[] inputOffsets,
@@ -252,14 +251,12 @@ public class HHXORErasureDecodingStep extends HHErasureCodingStep {
     final int endIndex = piggyBackIndex[thisPiggyBackSetIdx];
 
     // recover first sub-stripe data by XOR piggyback
-    for (int i = 0; i < bufSize; i++) {
-      for (int j = startIndex; j < endIndex; j++) {
-        if (inputs[j] != null) {
-          piggyBack[i] = (byte) (piggyBack[i] ^ inputs[j][i + inputOffsets[j]]);
-        }
+    for (int j = startIndex; j < endIndex; j++) {
+      if (inputs[j] != null) {
+        XORUtil.xorInto(inputs[j], inputOffsets[j], piggyBack, 0, bufSize);
       }
-      outputs[i + outOffset] = piggyBack[i];
     }
+    System.arraycopy(piggyBack, 0, outputs, outOffset, bufSize);
   }
 
   private void doDecodeMultiAndParity(ByteBuffer[][] inputs,
@@ -315,13 +312,8 @@ public class HHXORErasureDecodingStep extends HHErasureCodingStep {
     for (int j = numDataUnits + 1; j < numTotalUnits; ++j) {
       if (parityToFixFlag[j] == 0 && inputs[1][j] != null) {
         // f(b) + f(a1,a2,a3....)
-        for (int k = inputs[1][j].position(),
-             m = piggyBack[j - numDataUnits - 1].position();
-             k < inputs[1][j].limit(); ++k, ++m) {
-          inputs[1][j].put(k, (byte)
-                  (inputs[1][j].get(k) ^
-                          piggyBack[j - numDataUnits - 1].get(m)));
-        }
+        XORUtil.xorInto(piggyBack[j - numDataUnits - 1], inputs[1][j],
+            inputs[1][j].remaining());
       }
     }
 
@@ -333,12 +325,8 @@ public class HHXORErasureDecodingStep extends HHErasureCodingStep {
       if (erasedLocationToFix[j] < numTotalUnits
               && erasedLocationToFix[j] > numDataUnits) {
         int parityIndex = erasedLocationToFix[j] - numDataUnits - 1;
-        for (int k = outputs[1][j].position(),
-             m = piggyBack[parityIndex].position();
-             k < outputs[1][j].limit(); ++k, ++m) {
-          outputs[1][j].put(k, (byte)
-                  (outputs[1][j].get(k) ^ piggyBack[parityIndex].get(m)));
-        }
+        XORUtil.xorInto(piggyBack[parityIndex], outputs[1][j],
+            outputs[1][j].remaining());
       }
     }
 
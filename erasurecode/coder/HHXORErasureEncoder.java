@@ -60,7 +60,7 @@ public class HHXORErasureEncoder extends ErasureEncoder {
 
   private RawErasureEncoder checkCreateRSRawEncoder() {
     if (rsRawEncoder == null) {
-      rsRawEncoder = CodecUtil.createRawEncoder(getConf(),
+      rsRawEncoder = CodecUtil.borrowRawEncoder(getConf(),
           ErasureCodeConstants.RS_CODEC_NAME, getOptions());
     }
     return rsRawEncoder;
@@ -68,7 +68,7 @@ public class HHXORErasureEncoder extends ErasureEncoder {
 
   private RawErasureEncoder checkCreateXorRawEncoder() {
     if (xorRawEncoder == null) {
-      xorRawEncoder = CodecUtil.createRawEncoder(getConf(),
+      xorRawEncoder = CodecUtil.borrowRawEncoder(getConf(),
           ErasureCodeConstants.XOR_CODEC_NAME,
           getOptions());
     }
@@ -78,10 +78,12 @@ public class HHXORErasureEncoder extends ErasureEncoder {
   @Override
   public void release() {
     if (rsRawEncoder != null) {
-      rsRawEncoder.release();
+      CodecUtil.returnRawEncoder(rsRawEncoder);
+      rsRawEncoder = null;
     }
     if (xorRawEncoder != null) {
-      xorRawEncoder.release();
+      CodecUtil.returnRawEncoder(xorRawEncoder);
+      xorRawEncoder = null;
     }
   }
 
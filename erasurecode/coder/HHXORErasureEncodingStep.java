@@ -25,6 +25,7 @@ import org.apache.hadoop.io.erasurecode.ECBlock;
 import org.apache.hadoop.io.erasurecode.ECChunk;
 import org.apache.hadoop.io.erasurecode.coder.util.HHUtil;
 import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureEncoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.XORUtil;
 
 /**
  * Hitchhiker-XOR Erasure encoding step, a wrapper of all the necessary
@@ -113,37 +114,16 @@ public class HHXORErasureEncodingStep extends HHErasureCodingStep {
 
     // Step2: Adding piggybacks to the parities
     // Only second sub-packet is added with a piggyback.
-    encodeWithPiggyBacks(piggyBacks, outputs, numParityUnits,
-            inputs[0][0].isDirect());
+    encodeWithPiggyBacks(piggyBacks, outputs, numParityUnits);
   }
 
   private void encodeWithPiggyBacks(ByteBuffer[] piggyBacks,
                                     ByteBuffer[][] outputs,
-                                    int numParityUnits,
-                                    boolean bIsDirect) {
-    if (!bIsDirect) {
-      for (int i = 0; i < numParityUnits - 1; i++) {
-        int parityIndex = i + 1;
-        int bufSize = piggyBacks[i].remaining();
-        byte[] newOut = outputs[1][parityIndex].array();
-        int offset = outputs[1][parityIndex].arrayOffset()
-                + outputs[1][parityIndex].position();
-
-        for (int k = offset, j = 0; j < bufSize; k++, j++) {
-          newOut[k] = (byte) (newOut[k] ^ piggyBacks[i].get(j));
-        }
-      }
-      return;
-    }
-
+                                    int numParityUnits) {
     for (int i = 0; i < numParityUnits - 1; i++) {
       int parityIndex = i + 1;
-      for (int k = piggyBacks[i].position(),
-           m = outputs[1][parityIndex].position();
-           k < piggyBacks[i].limit(); k++, m++) {
-        outputs[1][parityIndex].put(m,
-                (byte) (outputs[1][parityIndex].get(m) ^ piggyBacks[i].get(k)));
-      }
+      XORUtil.xorInto(piggyBacks[i], outputs[1][parityIndex],
+          piggyBacks[i].remaining());
     }
   }
 
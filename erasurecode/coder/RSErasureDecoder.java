@@ -51,7 +51,7 @@ public class RSErasureDecoder extends ErasureDecoder {
 
   private RawErasureDecoder checkCreateRSRawDecoder() {
     if (rsRawDecoder == null) {
-      rsRawDecoder = CodecUtil.createRawDecoder(getConf(),
+      rsRawDecoder = CodecUtil.borrowRawDecoder(getConf(),
           ErasureCodeConstants.RS_CODEC_NAME, getOptions());
     }
     return rsRawDecoder;
@@ -60,7 +60,8 @@ public class RSErasureDecoder extends ErasureDecoder {
   @Override
   public void release() {
     if (rsRawDecoder != null) {
-      rsRawDecoder.release();
+      CodecUtil.returnRawDecoder(rsRawDecoder);
+      rsRawDecoder = null;
     }
   }
 }
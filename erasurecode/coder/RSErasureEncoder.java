@@ -52,7 +52,7 @@ public class RSErasureEncoder extends ErasureEncoder {
   private RawErasureEncoder checkCreateRSRawEncoder() {
     if (rawEncoder == null) {
       // TODO: we should create the raw coder according to codec.
-      rawEncoder = CodecUtil.createRawEncoder(getConf(),
+      rawEncoder = CodecUtil.borrowRawEncoder(getConf(),
           ErasureCodeConstants.RS_CODEC_NAME, getOptions());
     }
     return rawEncoder;
@@ -61,7 +61,8 @@ public class RSErasureEncoder extends ErasureEncoder {
   @Override
   public void release() {
     if (rawEncoder != null) {
-      rawEncoder.release();
+      CodecUtil.returnRawEncoder(rawEncoder);
+      rawEncoder = null;
     }
   }
 
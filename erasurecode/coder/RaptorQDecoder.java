@@ -27,6 +27,7 @@ import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
 
 @InterfaceAudience.Private
 public class RaptorQDecoder extends ErasureDecoder {
+  private RawErasureDecoder rawDecoder;
 
   public RaptorQDecoder(ErasureCoderOptions options) {
     super(options);
@@ -34,8 +35,7 @@ public class RaptorQDecoder extends ErasureDecoder {
 
   @Override
   protected ErasureCodingStep prepareDecodingStep(final ECBlockGroup blockGroup) {
-    RawErasureDecoder rawDecoder = CodecUtil.createRawDecoder(getConf(),
-        ErasureCodeConstants.RAPTORQ_CODEC_NAME, getOptions());
+    RawErasureDecoder rawDecoder = checkCreateRawDecoder();
 
     ECBlock[] inputBlocks = getInputBlocks(blockGroup);
 
@@ -44,4 +44,20 @@ public class RaptorQDecoder extends ErasureDecoder {
             getOutputBlocks(blockGroup), rawDecoder);
 
   }
+
+  private RawErasureDecoder checkCreateRawDecoder() {
+    if (rawDecoder == null) {
+      rawDecoder = CodecUtil.borrowRawDecoder(getConf(),
+          ErasureCodeConstants.RAPTORQ_CODEC_NAME, getOptions());
+    }
+    return rawDecoder;
+  }
+
+  @Override
+  public void release() {
+    if (rawDecoder != null) {
+      CodecUtil.returnRawDecoder(rawDecoder);
+      rawDecoder = null;
+    }
+  }
 }
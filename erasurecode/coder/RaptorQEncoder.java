@@ -27,6 +27,7 @@ import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureEncoder;
 
 @InterfaceAudience.Private
 public class RaptorQEncoder extends ErasureEncoder {
+  private RawErasureEncoder rawEncoder;
 
   public RaptorQEncoder(ErasureCoderOptions options) {
     super(options);
@@ -34,12 +35,27 @@ public class RaptorQEncoder extends ErasureEncoder {
 
   @Override
   protected ErasureCodingStep prepareEncodingStep(final ECBlockGroup blockGroup) {
-    RawErasureEncoder rawEncoder = CodecUtil.createRawEncoder(getConf(),
-        ErasureCodeConstants.RAPTORQ_CODEC_NAME, getOptions());
+    RawErasureEncoder rawEncoder = checkCreateRawEncoder();
 
     ECBlock[] inputBlocks = getInputBlocks(blockGroup);
 
     return new ErasureEncodingStep(inputBlocks,
         getOutputBlocks(blockGroup), rawEncoder);
   }
+
+  private RawErasureEncoder checkCreateRawEncoder() {
+    if (rawEncoder == null) {
+      rawEncoder = CodecUtil.borrowRawEncoder(getConf(),
+          ErasureCodeConstants.RAPTORQ_CODEC_NAME, getOptions());
+    }
+    return rawEncoder;
+  }
+
+  @Override
+  public void release() {
+    if (rawEncoder != null) {
+      CodecUtil.returnRawEncoder(rawEncoder);
+      rawEncoder = null;
+    }
+  }
 }
@@ -32,6 +32,7 @@ import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
  */
 @InterfaceAudience.Private
 public class XORErasureDecoder extends ErasureDecoder {
+  private RawErasureDecoder rawDecoder;
 
   public XORErasureDecoder(ErasureCoderOptions options) {
     super(options);
@@ -40,8 +41,7 @@ public class XORErasureDecoder extends ErasureDecoder {
   @Override
   protected ErasureCodingStep prepareDecodingStep(
       final ECBlockGroup blockGroup) {
-    RawErasureDecoder rawDecoder = CodecUtil.createRawDecoder(getConf(),
-        ErasureCodeConstants.XOR_CODEC_NAME, getOptions());
+    RawErasureDecoder rawDecoder = checkCreateRawDecoder();
 
     ECBlock[] inputBlocks = getInputBlocks(blockGroup);
 
@@ -50,6 +50,22 @@ public class XORErasureDecoder extends ErasureDecoder {
         getOutputBlocks(blockGroup), rawDecoder);
   }
 
+  private RawErasureDecoder checkCreateRawDecoder() {
+    if (rawDecoder == null) {
+      rawDecoder = CodecUtil.borrowRawDecoder(getConf(),
+          ErasureCodeConstants.XOR_CODEC_NAME, getOptions());
+    }
+    return rawDecoder;
+  }
+
+  @Override
+  public void release() {
+    if (rawDecoder != null) {
+      CodecUtil.returnRawDecoder(rawDecoder);
+      rawDecoder = null;
+    }
+  }
+
   /**
    * Which blocks were erased ? For XOR it's simple we only allow and return one
    * erased block, either data or parity.
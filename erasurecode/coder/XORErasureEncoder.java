@@ -32,6 +32,7 @@ import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureEncoder;
  */
 @InterfaceAudience.Private
 public class XORErasureEncoder extends ErasureEncoder {
+  private RawErasureEncoder rawEncoder;
 
   public XORErasureEncoder(ErasureCoderOptions options) {
     super(options);
@@ -40,12 +41,27 @@ public class XORErasureEncoder extends ErasureEncoder {
   @Override
   protected ErasureCodingStep prepareEncodingStep(
       final ECBlockGroup blockGroup) {
-    RawErasureEncoder rawEncoder = CodecUtil.createRawEncoder(getConf(),
-        ErasureCodeConstants.XOR_CODEC_NAME, getOptions());
+    RawErasureEncoder rawEncoder = checkCreateRawEncoder();
 
     ECBlock[] inputBlocks = getInputBlocks(blockGroup);
 
     return new ErasureEncodingStep(inputBlocks,
         getOutputBlocks(blockGroup), rawEncoder);
   }
+
+  private RawErasureEncoder checkCreateRawEncoder() {
+    if (rawEncoder == null) {
+      rawEncoder = CodecUtil.borrowRawEncoder(getConf(),
+          ErasureCodeConstants.XOR_CODEC_NAME, getOptions());
+    }
+    return rawEncoder;
+  }
+
+  @Override
+  public void release() {
+    if (rawEncoder != null) {
+      CodecUtil.returnRawEncoder(rawEncoder);
+      rawEncoder = null;
+    }
+  }
 }
@@ -36,7 +36,9 @@ abstract class AbstractNativeRawDecoder extends RawErasureDecoder {
       LoggerFactory.getLogger(AbstractNativeRawDecoder.class);
 
   // Protect ISA-L coder data structure in native layer from being accessed and
-  // updated concurrently by the init, release and decode functions.
+  // updated concurrently by the init, release and decode functions. The native
+  // decoder keeps the last erasure pattern in that structure, so decode calls
+  // need exclusive access as well now decode() itself isn't synchronized.
   protected final ReentrantReadWriteLock decoderLock =
       new ReentrantReadWriteLock();
 
@@ -47,7 +49,7 @@ abstract class AbstractNativeRawDecoder extends RawErasureDecoder {
   @Override
   protected void doDecode(ByteBufferDecodingState decodingState)
       throws IOException {
-    decoderLock.readLock().lock();
+    decoderLock.writeLock().lock();
     try {
       if (nativeCoder == 0) {
         throw new IOException(String.format("%s closed",
@@ -73,7 +75,7 @@ abstract class AbstractNativeRawDecoder extends RawErasureDecoder {
           decodingState.decodeLength, decodingState.erasedIndexes,
           decodingState.outputs, outputOffsets);
     } finally {
-      decoderLock.readLock().unlock();
+      decoderLock.writeLock().unlock();
     }
   }
 
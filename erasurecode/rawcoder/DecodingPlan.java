@@ -0,0 +1,55 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+/**
+ * An immutable decode plan for one erasure pattern: the indexes of the k
+ * input units the erased units are recovered from, and the split-nibble
+ * tables of the recovery rows ready for
+ * {@link org.apache.hadoop.io.erasurecode.rawcoder.util.RSUtil#encodeData}.
+ * A plan depends only on the schema and the pattern, so once built it can
+ * be reused for every stripe with the same pattern.
+ */
+@InterfaceAudience.Private
+class DecodingPlan {
+  private final int[] inputIndexes;
+  private final byte[] gfTables;
+
+  DecodingPlan(int[] inputIndexes, byte[] gfTables) {
+    this.inputIndexes = inputIndexes;
+    this.gfTables = gfTables;
+  }
+
+  /**
+   * @return indexes of the units to feed to the kernel, in order. Must not
+   * be modified.
+   */
+  int[] getInputIndexes() {
+    return inputIndexes;
+  }
+
+  /**
+   * @return the tables of the recovery rows, one per erased unit in the
+   * order of the erased indexes. Must not be modified.
+   */
+  byte[] getGfTables() {
+    return gfTables;
+  }
+}
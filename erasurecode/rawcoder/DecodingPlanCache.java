@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A size-bounded cache of {@link DecodingPlan}s keyed by
+ * (k, m, validIndexes, erasedIndexes), shared by all decoders of one coder
+ * type. Entries are spread over independently locked LRU segments so
+ * concurrent decoders rarely contend; plans are built outside any lock, and
+ * if two threads race on a miss the first plan stored wins.
+ *
+ * Hit, miss and eviction counts are kept to help sizing the cache.
+ */
+@InterfaceAudience.Private
+public final class DecodingPlanCache {
+  private static final int DEFAULT_SEGMENTS = 16;
+
+  private final Segment[] segments;
+  private final int maxPlans;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  DecodingPlanCache(int maxPlans) {
+    this(maxPlans, DEFAULT_SEGMENTS);
+  }
+
+  DecodingPlanCache(int maxPlans, int numSegments) {
+    if (maxPlans < numSegments || Integer.bitCount(numSegments) != 1) {
+      throw new IllegalArgumentException("Invalid maxPlans " + maxPlans +
+          " or numSegments " + numSegments);
+    }
+    this.maxPlans = maxPlans;
+    this.segments = new Segment[numSegments];
+    for (int i = 0; i < numSegments; i++) {
+      segments[i] = new Segment(maxPlans / numSegments);
+    }
+  }
+
+  /**
+   * Get the cached plan of a pattern, counting a hit or a miss.
+   * @param key the pattern
+   * @return the plan, or null if not cached
+   */
+  DecodingPlan get(Key key) {
+    Segment segment = segmentFor(key);
+    DecodingPlan plan;
+    synchronized (segment) {
+      plan = segment.get(key);
+    }
+    if (plan != null) {
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return plan;
+  }
+
+  /**
+   * Cache the plan of a pattern unless another one was cached meanwhile.
+   * @param key the pattern
+   * @param plan the plan built for it
+   * @return the plan now cached for the pattern
+   */
+  DecodingPlan put(Key key, DecodingPlan plan) {
+    Segment segment = segmentFor(key);
+    synchronized (segment) {
+      DecodingPlan existing = segment.get(key);
+      if (existing != null) {
+        return existing;
+      }
+      segment.put(key, plan);
+    }
+    return plan;
+  }
+
+  private Segment segmentFor(Key key) {
+    int h = key.hashCode();
+    h ^= h >>> 16;
+    return segments[h & (segments.length - 1)];
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  public int getMaxPlans() {
+    return maxPlans;
+  }
+
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Drop all cached plans. Counters are left untouched.
+   */
+  public void clear() {
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  private final class Segment extends LinkedHashMap<Key, DecodingPlan> {
+    private static final long serialVersionUID = 0L;
+    private final int capacity;
+
+    Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, DecodingPlan> eldest) {
+      if (size() > capacity) {
+        evictions.increment();
+        return true;
+      }
+      return false;
+    }
+  }
+
+  /**
+   * An erasure pattern of a schema. The arrays are owned by the key.
+   */
+  static final class Key {
+    private final int numDataUnits;
+    private final int numParityUnits;
+    private final int[] validIndexes;
+    private final int[] erasedIndexes;
+    private final int hash;
+
+    Key(int numDataUnits, int numParityUnits, int[] validIndexes,
+        int[] erasedIndexes) {
+      this.numDataUnits = numDataUnits;
+      this.numParityUnits = numParityUnits;
+      this.validIndexes = validIndexes;
+      this.erasedIndexes = erasedIndexes;
+      int h = 31 * numDataUnits + numParityUnits;
+      h = 31 * h + Arrays.hashCode(validIndexes);
+      this.hash = 31 * h + Arrays.hashCode(erasedIndexes);
+    }
+
+    static <T> Key of(RawErasureDecoder decoder, T[] inputs,
+        int[] erasedIndexes) {
+      return new Key(decoder.getNumDataUnits(), decoder.getNumParityUnits(),
+          CoderUtil.getValidIndexes(inputs),
+          Arrays.copyOf(erasedIndexes, erasedIndexes.length));
+    }
+
+    int[] getValidIndexes() {
+      return validIndexes;
+    }
+
+    int[] getErasedIndexes() {
+      return erasedIndexes;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return numDataUnits == other.numDataUnits &&
+          numParityUnits == other.numParityUnits &&
+          Arrays.equals(validIndexes, other.validIndexes) &&
+          Arrays.equals(erasedIndexes, other.erasedIndexes);
+    }
+  }
+}
@@ -37,8 +37,7 @@ import java.nio.ByteBuffer;
 @InterfaceAudience.Private
 public class RSLegacyRawDecoder extends RawErasureDecoder {
   // To describe and calculate the needed Vandermonde matrix
-  private int[] errSignature;
-  private int[] primitivePower;
+  private final int[] primitivePower;
 
   public RSLegacyRawDecoder(ErasureCoderOptions coderOptions) {
     super(coderOptions);
@@ -47,7 +46,6 @@ public class RSLegacyRawDecoder extends RawErasureDecoder {
               "Invalid numDataUnits and numParityUnits");
     }
 
-    this.errSignature = new int[getNumParityUnits()];
     this.primitivePower = RSUtil.getPrimitivePower(getNumDataUnits(),
         getNumParityUnits());
   }
@@ -86,6 +84,7 @@ public class RSLegacyRawDecoder extends RawErasureDecoder {
                           ByteBuffer[] outputs) {
     ByteBuffer valid = CoderUtil.findFirstValidInput(inputs);
     int dataLen = valid.remaining();
+    int[] errSignature = new int[erasedIndexes.length];
     for (int i = 0; i < erasedIndexes.length; i++) {
       errSignature[i] = primitivePower[erasedIndexes[i]];
       RSUtil.GF.substitute(inputs, dataLen, outputs[i], primitivePower[i]);
@@ -98,6 +97,7 @@ public class RSLegacyRawDecoder extends RawErasureDecoder {
   private void doDecodeImpl(byte[][] inputs, int[] inputOffsets,
                           int dataLen, int[] erasedIndexes,
                           byte[][] outputs, int[] outputOffsets) {
+    int[] errSignature = new int[erasedIndexes.length];
     for (int i = 0; i < erasedIndexes.length; i++) {
       errSignature[i] = primitivePower[erasedIndexes[i]];
       RSUtil.GF.substitute(inputs, inputOffsets, dataLen, outputs[i],
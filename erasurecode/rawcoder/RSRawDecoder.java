@@ -21,7 +21,6 @@ import org.apache.hadoop.HadoopIllegalArgumentException;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
 import org.apache.hadoop.io.erasurecode.rawcoder.util.DumpUtil;
-import org.apache.hadoop.io.erasurecode.rawcoder.util.GF256;
 import org.apache.hadoop.io.erasurecode.rawcoder.util.RSUtil;
 
 import java.nio.ByteBuffer;
@@ -35,25 +34,15 @@ import java.util.Arrays;
  */
 @InterfaceAudience.Private
 public class RSRawDecoder extends RawErasureDecoder {
+  private static final int MAX_CACHED_PLANS = 1024;
+
+  // Decode plans shared by all RS decoders
+  private static final DecodingPlanCache PLANS =
+      new DecodingPlanCache(MAX_CACHED_PLANS);
+
   //relevant to schema and won't change during decode calls
   private byte[] encodeMatrix;
 
-  /**
-   * Below are relevant to schema and erased indexes, thus may change during
-   * decode calls.
-   */
-  private byte[] decodeMatrix;
-  private byte[] invertMatrix;
-  /**
-   * Array of input tables generated from coding coefficients previously.
-   * Must be of size 32*k*rows
-   */
-  private byte[] gfTables;
-  private int[] cachedErasedIndexes;
-  private int[] validIndexes;
-  private int numErasedDataUnits;
-  private boolean[] erasureFlags;
-
   public RSRawDecoder(ErasureCoderOptions coderOptions) {
     super(coderOptions);
 
@@ -70,17 +59,26 @@ public class RSRawDecoder extends RawErasureDecoder {
     }
   }
 
+  /**
+   * @return the decode plan cache shared by all RS decoders.
+   */
+  public static DecodingPlanCache getDecodingPlanCache() {
+    return PLANS;
+  }
+
   @Override
   protected void doDecode(ByteBufferDecodingState decodingState) {
     CoderUtil.resetOutputBuffers(decodingState.outputs,
         decodingState.decodeLength);
-    prepareDecoding(decodingState.inputs, decodingState.erasedIndexes);
+    DecodingPlan plan = prepareDecoding(decodingState.inputs,
+        decodingState.erasedIndexes);
 
+    int[] inputIndexes = plan.getInputIndexes();
     ByteBuffer[] realInputs = new ByteBuffer[getNumDataUnits()];
     for (int i = 0; i < getNumDataUnits(); i++) {
-      realInputs[i] = decodingState.inputs[validIndexes[i]];
+      realInputs[i] = decodingState.inputs[inputIndexes[i]];
     }
-    RSUtil.encodeData(gfTables, realInputs, decodingState.outputs);
+    RSUtil.encodeData(plan.getGfTables(), realInputs, decodingState.outputs);
   }
 
   @Override
@@ -88,90 +86,45 @@ public class RSRawDecoder extends RawErasureDecoder {
     int dataLen = decodingState.decodeLength;
     CoderUtil.resetOutputBuffers(decodingState.outputs,
         decodingState.outputOffsets, dataLen);
-    prepareDecoding(decodingState.inputs, decodingState.erasedIndexes);
+    DecodingPlan plan = prepareDecoding(decodingState.inputs,
+        decodingState.erasedIndexes);
 
+    int[] inputIndexes = plan.getInputIndexes();
     byte[][] realInputs = new byte[getNumDataUnits()][];
     int[] realInputOffsets = new int[getNumDataUnits()];
     for (int i = 0; i < getNumDataUnits(); i++) {
-      realInputs[i] = decodingState.inputs[validIndexes[i]];
-      realInputOffsets[i] = decodingState.inputOffsets[validIndexes[i]];
+      realInputs[i] = decodingState.inputs[inputIndexes[i]];
+      realInputOffsets[i] = decodingState.inputOffsets[inputIndexes[i]];
     }
-    RSUtil.encodeData(gfTables, dataLen, realInputs, realInputOffsets,
-        decodingState.outputs, decodingState.outputOffsets);
+    RSUtil.encodeData(plan.getGfTables(), dataLen, realInputs,
+        realInputOffsets, decodingState.outputs, decodingState.outputOffsets);
   }
 
-  private <T> void prepareDecoding(T[] inputs, int[] erasedIndexes) {
-    int[] tmpValidIndexes = CoderUtil.getValidIndexes(inputs);
-    if (Arrays.equals(this.cachedErasedIndexes, erasedIndexes) &&
-        Arrays.equals(this.validIndexes, tmpValidIndexes)) {
-      return; // Optimization. Nothing to do
+  private <T> DecodingPlan prepareDecoding(T[] inputs, int[] erasedIndexes) {
+    DecodingPlanCache.Key key =
+        DecodingPlanCache.Key.of(this, inputs, erasedIndexes);
+    DecodingPlan plan = PLANS.get(key);
+    if (plan == null) {
+      plan = PLANS.put(key, processErasures(key.getValidIndexes(),
+          key.getErasedIndexes()));
     }
-    this.cachedErasedIndexes =
-            Arrays.copyOf(erasedIndexes, erasedIndexes.length);
-    this.validIndexes =
-            Arrays.copyOf(tmpValidIndexes, tmpValidIndexes.length);
-
-    processErasures(erasedIndexes);
+    return plan;
   }
 
-  private void processErasures(int[] erasedIndexes) {
-    this.decodeMatrix = new byte[getNumAllUnits() * getNumDataUnits()];
-    this.invertMatrix = new byte[getNumAllUnits() * getNumDataUnits()];
-    this.gfTables = new byte[getNumAllUnits() * getNumDataUnits() * 32];
-
-    this.erasureFlags = new boolean[getNumAllUnits()];
-    this.numErasedDataUnits = 0;
-
-    for (int i = 0; i < erasedIndexes.length; i++) {
-      int index = erasedIndexes[i];
-      erasureFlags[index] = true;
-      if (index < getNumDataUnits()) {
-        numErasedDataUnits++;
-      }
-    }
-
-    generateDecodeMatrix(erasedIndexes);
+  private DecodingPlan processErasures(int[] validIndexes,
+      int[] erasedIndexes) {
+    // RS is MDS, any k valid units will do
+    int[] inputIndexes = Arrays.copyOf(validIndexes, getNumDataUnits());
+    byte[] decodeMatrix = RSUtil.genDecodeMatrix(encodeMatrix,
+        getNumDataUnits(), inputIndexes, erasedIndexes);
 
+    byte[] gfTables = new byte[erasedIndexes.length * getNumDataUnits() * 32];
     RSUtil.initTables(getNumDataUnits(), erasedIndexes.length,
         decodeMatrix, 0, gfTables);
     if (allowVerboseDump()) {
       System.out.println(DumpUtil.bytesToHex(gfTables, -1));
     }
-  }
 
-  // Generate decode matrix from encode matrix
-  private void generateDecodeMatrix(int[] erasedIndexes) {
-    int i, j, r, p;
-    byte s;
-    byte[] tmpMatrix = new byte[getNumAllUnits() * getNumDataUnits()];
-
-    // Construct matrix tmpMatrix by removing error rows
-    for (i = 0; i < getNumDataUnits(); i++) {
-      r = validIndexes[i];
-      for (j = 0; j < getNumDataUnits(); j++) {
-        tmpMatrix[getNumDataUnits() * i + j] =
-                encodeMatrix[getNumDataUnits() * r + j];
-      }
-    }
-
-    GF256.gfInvertMatrix(tmpMatrix, invertMatrix, getNumDataUnits());
-
-    for (i = 0; i < numErasedDataUnits; i++) {
-      for (j = 0; j < getNumDataUnits(); j++) {
-        decodeMatrix[getNumDataUnits() * i + j] =
-                invertMatrix[getNumDataUnits() * erasedIndexes[i] + j];
-      }
-    }
-
-    for (p = numErasedDataUnits; p < erasedIndexes.length; p++) {
-      for (i = 0; i < getNumDataUnits(); i++) {
-        s = 0;
-        for (j = 0; j < getNumDataUnits(); j++) {
-          s ^= GF256.gfMul(invertMatrix[j * getNumDataUnits() + i],
-                  encodeMatrix[getNumDataUnits() * erasedIndexes[p] + j]);
-        }
-        decodeMatrix[getNumDataUnits() * p + i] = s;
-      }
-    }
+    return new DecodingPlan(inputIndexes, gfTables);
   }
 }
@@ -23,6 +23,8 @@ import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
 import org.apache.hadoop.io.erasurecode.rawcoder.util.DumpUtil;
 import org.apache.hadoop.io.erasurecode.rawcoder.util.RSUtil;
 
+import java.nio.ByteBuffer;
+
 /**
  * A raw erasure encoder in RS code scheme in pure Java in case native one
  * isn't available in some environment. Please always use native implementations
@@ -38,6 +40,9 @@ public class RSRawEncoder extends RawErasureEncoder {
    * Must be of size 32*k*rows
    */
   private byte[] gfTables;
+  // Per data unit tables to update the parities from a delta, see
+  // RSUtil#genUpdateTables.
+  private byte[][] updateTables;
 
   public RSRawEncoder(ErasureCoderOptions coderOptions) {
     super(coderOptions);
@@ -58,6 +63,11 @@ public class RSRawEncoder extends RawErasureEncoder {
     if (allowVerboseDump()) {
       System.out.println(DumpUtil.bytesToHex(gfTables, -1));
     }
+    updateTables = new byte[getNumDataUnits()][];
+    for (int i = 0; i < getNumDataUnits(); i++) {
+      updateTables[i] = RSUtil.genUpdateTables(encodeMatrix,
+          getNumDataUnits(), getNumParityUnits(), i);
+    }
   }
 
   @Override
@@ -77,4 +87,25 @@ public class RSRawEncoder extends RawErasureEncoder {
         encodingState.inputOffsets, encodingState.outputs,
         encodingState.outputOffsets);
   }
+
+  @Override
+  public boolean supportsParityUpdate() {
+    return true;
+  }
+
+  @Override
+  protected void doUpdateParity(int dataIndex, ByteBuffer oldData,
+      ByteBuffer newData, ByteBuffer[] parities) {
+    RSUtil.encodeData(updateTables[dataIndex],
+        new ByteBuffer[] {oldData, newData}, parities);
+  }
+
+  @Override
+  protected void doUpdateParity(int dataIndex, byte[] oldData, int oldOffset,
+      byte[] newData, int newOffset, int len, byte[][] parities,
+      int[] parityOffsets) {
+    RSUtil.encodeData(updateTables[dataIndex], len,
+        new byte[][] {oldData, newData}, new int[] {oldOffset, newOffset},
+        parities, parityOffsets);
+  }
 }
@@ -19,136 +19,257 @@ package org.apache.hadoop.io.erasurecode.rawcoder;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.DumpUtil;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.GF256;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.RSUtil;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.RaptorQUtil;
 
-import net.fec.openrq.OpenRQ;
 import net.fec.openrq.ArrayDataDecoder;
-import net.fec.openrq.EncodingPacket;
-import net.fec.openrq.Parsed;
-
-import net.fec.openrq.encoder.DataEncoder;
-import net.fec.openrq.encoder.SourceBlockEncoder;
-
-import net.fec.openrq.decoder.DataDecoder;
 import net.fec.openrq.decoder.SourceBlockDecoder;
-import net.fec.openrq.parameters.FECParameters;
+import net.fec.openrq.encoder.SourceBlockEncoder;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
+/**
+ * A raw erasure decoder in RaptorQ code scheme in pure Java.
+ *
+ * Decoding works on the compiled encode matrix of the schema (see
+ * {@link RaptorQUtil}). For an erasure pattern, k linearly independent rows
+ * are picked among the valid units and inverted, giving a recovery row per
+ * erased unit; the result is kept as a {@link DecodingPlan} in a bounded
+ * cache shared by all RaptorQ decoders, so stripes with a repeated pattern
+ * are decoded with a single table-driven multiply. As RaptorQ isn't MDS,
+ * some patterns with at most m erasures may still not be recoverable.
+ *
+ * Schemas with {@link RaptorQUtil#MAX_COMPILED_UNITS} units or more aren't
+ * compiled, and OpenRQ decodes each of their stripes from the valid units
+ * instead; erased parity is then encoded again from the recovered data.
+ */
 @InterfaceAudience.Private
 public class RaptorQRawDecoder extends RawErasureDecoder {
+  private static final int MAX_CACHED_PLANS = 256;
+
+  // Decode plans shared by all RaptorQ decoders
+  private static final DecodingPlanCache PLANS =
+      new DecodingPlanCache(MAX_CACHED_PLANS);
+
+  //relevant to schema and won't change during decode calls, null if the
+  //schema isn't compiled
+  private final byte[] encodeMatrix;
 
   public RaptorQRawDecoder(ErasureCoderOptions coderOptions) {
     super(coderOptions);
+
+    if (!RaptorQUtil.isCompiled(getNumDataUnits(), getNumParityUnits())) {
+      encodeMatrix = null;
+      return;
+    }
+
+    encodeMatrix = RaptorQUtil.getEncodeMatrix(getNumDataUnits(),
+        getNumParityUnits());
+    if (allowVerboseDump()) {
+      DumpUtil.dumpMatrix(encodeMatrix, getNumDataUnits(), getNumAllUnits());
+    }
   }
 
   @Override
-  protected void doDecode(ByteBufferDecodingState decodingState) throws IOException {
-    int k = getNumDataUnits();
-    int m = getNumParityUnits();
-    int T = decodingState.decodeLength;
-    if (T == 0) {
+  protected void doDecode(ByteBufferDecodingState decodingState)
+      throws IOException {
+    CoderUtil.resetOutputBuffers(decodingState.outputs,
+        decodingState.decodeLength);
+    if (encodeMatrix == null) {
+      decodeStripe(decodingState);
+      return;
+    }
+    DecodingPlan plan = getDecodingPlan(decodingState.inputs,
+        decodingState.erasedIndexes);
+
+    int[] inputIndexes = plan.getInputIndexes();
+    ByteBuffer[] realInputs = new ByteBuffer[getNumDataUnits()];
+    for (int i = 0; i < getNumDataUnits(); i++) {
+      realInputs[i] = decodingState.inputs[inputIndexes[i]];
+    }
+    RSUtil.encodeData(plan.getGfTables(), realInputs, decodingState.outputs);
+  }
+
+  @Override
+  protected void doDecode(ByteArrayDecodingState decodingState)
+      throws IOException {
+    int dataLen = decodingState.decodeLength;
+    CoderUtil.resetOutputBuffers(decodingState.outputs,
+        decodingState.outputOffsets, dataLen);
+    if (encodeMatrix == null) {
+      decodeStripe(decodingState);
       return;
     }
+    DecodingPlan plan = getDecodingPlan(decodingState.inputs,
+        decodingState.erasedIndexes);
+
+    int[] inputIndexes = plan.getInputIndexes();
+    byte[][] realInputs = new byte[getNumDataUnits()][];
+    int[] realInputOffsets = new int[getNumDataUnits()];
+    for (int i = 0; i < getNumDataUnits(); i++) {
+      realInputs[i] = decodingState.inputs[inputIndexes[i]];
+      realInputOffsets[i] = decodingState.inputOffsets[inputIndexes[i]];
+    }
+    RSUtil.encodeData(plan.getGfTables(), dataLen, realInputs,
+        realInputOffsets, decodingState.outputs, decodingState.outputOffsets);
+  }
 
-    // Build concatenated buffer for available symbols (exactly k symbols suffice)
-    byte[] data = new byte[k * T];
-    int sbn = 0; // single block
-
-    // Prepare OpenRQ decoder
-    FECParameters fecParams = FECParameters.newParameters((long) data.length, T, 1);
-    DataDecoder dec = OpenRQ.newDecoderWithZeroOverhead(fecParams);
-    SourceBlockDecoder sbd = dec.sourceBlock(sbn);
-
-    // Feed available source symbols and repair symbols
-    for (int i = 0; i < k + m; i++) {
-      ByteBuffer buf = decodingState.inputs[i];
-      if (buf == null) continue;
-      int esi = (i < k) ? i : i; // data ESIs 0..K-1, repair ESIs K..K+M-1
-      int oldPos = buf.position();
-      ByteBuffer slice = buf.slice();
-      slice.limit(T);
-      Parsed<EncodingPacket> parsed = (i < k)
-          ? dec.parsePacket(sbn, esi, slice, false)
-          : dec.parsePacket(sbn, esi, slice, false);
-      if (parsed.isValid()) {
-        sbd.putEncodingPacket(parsed.value());
+  // Decode a stripe of a schema that isn't compiled with OpenRQ.
+  private void decodeStripe(ByteBufferDecodingState decodingState)
+      throws IOException {
+    int len = decodingState.decodeLength;
+    ArrayDataDecoder dec =
+        RaptorQUtil.newStripeDecoder(getNumDataUnits(), len);
+    SourceBlockDecoder sbd = dec.sourceBlock(0);
+    for (int i = 0; i < getNumAllUnits(); i++) {
+      ByteBuffer input = decodingState.inputs[i];
+      if (input != null && !sbd.isSourceBlockDecoded()) {
+        ByteBuffer symbol = input.slice();
+        symbol.limit(len);
+        sbd.putEncodingPacket(
+            dec.parsePacket(0, i, symbol, false).value());
       }
-      buf.position(oldPos);
     }
+    byte[] data = getRecoveredData(sbd, dec);
 
-    // Reconstruct erased outputs: after successful decode, fetch source symbols
-    if (sbd.isSourceBlockDecoded()) {
-      // Recovered data is internally in ArrayDataDecoder's data array
-      byte[] recovered = ((ArrayDataDecoder) dec).dataArray();
-      // Write only requested erased indexes
-      for (int j = 0; j < decodingState.erasedIndexes.length; j++) {
-        int erased = decodingState.erasedIndexes[j];
-        ByteBuffer out = decodingState.outputs[j];
-        int outPos = out.position();
-        if (erased < k) {
-          out.put(recovered, erased * T, T);
-        } else {
-          // For parity erasures, regenerate by re-encoding via encoder semantics is non-trivial here;
-          // shortcut: parity reconstruction can be done by re-encoding recovered data
-          ByteBuffer parity = regenerateParity(erased - k, recovered, T, k, m);
-          out.put(parity);
+    SourceBlockEncoder sbe = null;
+    for (int j = 0; j < decodingState.erasedIndexes.length; j++) {
+      int erased = decodingState.erasedIndexes[j];
+      ByteBuffer output = decodingState.outputs[j].duplicate();
+      if (erased < getNumDataUnits()) {
+        output.put(data, erased * len, len);
+      } else {
+        if (sbe == null) {
+          sbe = RaptorQUtil.newStripeEncoder(data, len);
         }
-        out.position(outPos);
+        output.put(sbe.repairPacket(erased).symbols());
       }
-    } else {
-      throw new IOException("RaptorQ decoding failed: insufficient symbols");
     }
   }
 
-  @Override
-  protected void doDecode(ByteArrayDecodingState decodingState) throws IOException {
-    int k = getNumDataUnits();
-    int m = getNumParityUnits();
-    int T = decodingState.decodeLength;
-    if (T == 0) {
-      return;
-    }
-
-    byte[] data = new byte[k * T];
-    int sbn = 0;
-
-    FECParameters fecParams = FECParameters.newParameters((long) data.length, T, 1);
-    DataDecoder dec = OpenRQ.newDecoderWithZeroOverhead(fecParams);
-    SourceBlockDecoder sbd = dec.sourceBlock(sbn);
-
-    for (int i = 0; i < k + m; i++) {
-      byte[] in = decodingState.inputs[i];
-      if (in == null) continue;
-      int off = decodingState.inputOffsets[i];
-      int esi = i; // same mapping as above
-      Parsed<EncodingPacket> parsed = dec.parsePacket(sbn, esi, in, off, T, false);
-      if (parsed.isValid()) {
-        sbd.putEncodingPacket(parsed.value());
+  private void decodeStripe(ByteArrayDecodingState decodingState)
+      throws IOException {
+    int len = decodingState.decodeLength;
+    ArrayDataDecoder dec =
+        RaptorQUtil.newStripeDecoder(getNumDataUnits(), len);
+    SourceBlockDecoder sbd = dec.sourceBlock(0);
+    for (int i = 0; i < getNumAllUnits(); i++) {
+      byte[] input = decodingState.inputs[i];
+      if (input != null && !sbd.isSourceBlockDecoded()) {
+        sbd.putEncodingPacket(dec.parsePacket(0, i, input,
+            decodingState.inputOffsets[i], len, false).value());
       }
     }
+    byte[] data = getRecoveredData(sbd, dec);
 
-    if (sbd.isSourceBlockDecoded()) {
-      byte[] recovered = ((ArrayDataDecoder) dec).dataArray();
-      for (int j = 0; j < decodingState.erasedIndexes.length; j++) {
-        int erased = decodingState.erasedIndexes[j];
-        if (erased < k) {
-          System.arraycopy(recovered, erased * T, decodingState.outputs[j], decodingState.outputOffsets[j], T);
-        } else {
-          ByteBuffer parity = regenerateParity(erased - k, recovered, T, k, m);
-          parity.get(decodingState.outputs[j], decodingState.outputOffsets[j], T);
+    SourceBlockEncoder sbe = null;
+    for (int j = 0; j < decodingState.erasedIndexes.length; j++) {
+      int erased = decodingState.erasedIndexes[j];
+      if (erased < getNumDataUnits()) {
+        System.arraycopy(data, erased * len, decodingState.outputs[j],
+            decodingState.outputOffsets[j], len);
+      } else {
+        if (sbe == null) {
+          sbe = RaptorQUtil.newStripeEncoder(data, len);
         }
+        sbe.repairPacket(erased).symbols().get(decodingState.outputs[j],
+            decodingState.outputOffsets[j], len);
       }
-    } else {
+    }
+  }
+
+  private static byte[] getRecoveredData(SourceBlockDecoder sbd,
+      ArrayDataDecoder dec) throws IOException {
+    if (!sbd.isSourceBlockDecoded()) {
       throw new IOException("RaptorQ decoding failed: insufficient symbols");
     }
+    return dec.dataArray();
+  }
+
+  /**
+   * @return the decode plan cache shared by all RaptorQ decoders.
+   */
+  public static DecodingPlanCache getDecodingPlanCache() {
+    return PLANS;
   }
 
-  private ByteBuffer regenerateParity(int parityIndex, byte[] recoveredData, int T, int k, int m) {
-    FECParameters fecParams = FECParameters.newParameters((long) recoveredData.length, T, 1);
-    DataEncoder enc = OpenRQ.newEncoder(recoveredData, fecParams);
-    SourceBlockEncoder sbe = enc.sourceBlock(0);
-    int esi = k + parityIndex;
-    return sbe.repairPacket(esi).symbols();
+  private <T> DecodingPlan getDecodingPlan(T[] inputs, int[] erasedIndexes)
+      throws IOException {
+    DecodingPlanCache.Key key =
+        DecodingPlanCache.Key.of(this, inputs, erasedIndexes);
+    DecodingPlan plan = PLANS.get(key);
+    if (plan == null) {
+      plan = PLANS.put(key, generateDecodingPlan(key.getValidIndexes(),
+          key.getErasedIndexes()));
+    }
+    return plan;
+  }
+
+  private DecodingPlan generateDecodingPlan(int[] validIndexes,
+      int[] erasedIndexes) throws IOException {
+    int[] inputIndexes = selectIndependentRows(validIndexes);
+    byte[] decodeMatrix = RSUtil.genDecodeMatrix(encodeMatrix,
+        getNumDataUnits(), inputIndexes, erasedIndexes);
+
+    byte[] gfTables = new byte[erasedIndexes.length * getNumDataUnits() * 32];
+    RSUtil.initTables(getNumDataUnits(), erasedIndexes.length,
+        decodeMatrix, 0, gfTables);
+    if (allowVerboseDump()) {
+      System.out.println(DumpUtil.bytesToHex(gfTables, -1));
+    }
+
+    return new DecodingPlan(inputIndexes, gfTables);
+  }
+
+  /**
+   * Pick the first k valid units whose encode rows are linearly independent,
+   * by reducing each candidate row against the rows already picked. Data
+   * units come first, so with only parity erased the inverse is the identity.
+   */
+  private int[] selectIndependentRows(int[] validIndexes) throws IOException {
+    int k = getNumDataUnits();
+    int[] inputIndexes = new int[k];
+    // Picked rows reduced to echelon form, normalized at their pivot
+    byte[][] basis = new byte[k][];
+    int[] pivots = new int[k];
+    int rank = 0;
+
+    for (int i = 0; i < validIndexes.length && rank < k; i++) {
+      byte[] row = Arrays.copyOfRange(encodeMatrix, k * validIndexes[i],
+          k * validIndexes[i] + k);
+      for (int b = 0; b < rank; b++) {
+        byte c = row[pivots[b]];
+        if (c != 0) {
+          for (int j = 0; j < k; j++) {
+            row[j] ^= GF256.gfMul(c, basis[b][j]);
+          }
+        }
+      }
+
+      int pivot = 0;
+      while (pivot < k && row[pivot] == 0) {
+        pivot++;
+      }
+      if (pivot == k) {
+        continue; // dependent on the rows picked so far
+      }
+      byte inv = GF256.gfInv(row[pivot]);
+      for (int j = 0; j < k; j++) {
+        row[j] = GF256.gfMul(row[j], inv);
+      }
+
+      basis[rank] = row;
+      pivots[rank] = pivot;
+      inputIndexes[rank++] = validIndexes[i];
+    }
+
+    if (rank < k) {
+      throw new IOException("RaptorQ decoding failed: insufficient symbols");
+    }
+    return inputIndexes;
   }
 }
@@ -19,86 +19,138 @@ package org.apache.hadoop.io.erasurecode.rawcoder;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.DumpUtil;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.RSUtil;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.RaptorQUtil;
 
-import net.fec.openrq.OpenRQ;
-import net.fec.openrq.encoder.DataEncoder;
 import net.fec.openrq.encoder.SourceBlockEncoder;
-import net.fec.openrq.parameters.FECParameters;
 
-import java.io.IOException;
 import java.nio.ByteBuffer;
 
+/**
+ * A raw erasure encoder in RaptorQ code scheme in pure Java. Instead of
+ * running OpenRQ for every stripe, the RaptorQ generator matrix of the schema
+ * is compiled once (see {@link RaptorQUtil}) and applied with the same
+ * table-driven kernel as the RS coder. The parity is bit-exact with OpenRQ's
+ * repair symbols k..k+m-1.
+ *
+ * Schemas with {@link RaptorQUtil#MAX_COMPILED_UNITS} units or more aren't
+ * compiled, and OpenRQ encodes each of their stripes instead. Parity update
+ * is only supported for compiled schemas.
+ */
 @InterfaceAudience.Private
 public class RaptorQRawEncoder extends RawErasureEncoder {
+  // relevant to schema and won't change during encode calls, all null if
+  // the schema isn't compiled.
+  private byte[] encodeMatrix;
+  /**
+   * Array of input tables generated from coding coefficients previously.
+   * Must be of size 32*k*rows
+   */
+  private byte[] gfTables;
+  // Per data unit tables to update the parities from a delta, see
+  // RSUtil#genUpdateTables.
+  private byte[][] updateTables;
 
   public RaptorQRawEncoder(ErasureCoderOptions coderOptions) {
     super(coderOptions);
-  }
 
-  @Override
-  protected void doEncode(ByteBufferEncodingState encodingState) throws IOException {
-    int k = getNumDataUnits();
-    int m = getNumParityUnits();
-    int T = encodingState.encodeLength;
-    if (T == 0) {
+    if (!RaptorQUtil.isCompiled(getNumDataUnits(), getNumParityUnits())) {
       return;
     }
 
-    // Ensure outputs are initialized
-    CoderUtil.resetOutputBuffers(encodingState.outputs, T);
-
-    // Gather input into a contiguous byte[] for OpenRQ
-    byte[] data = new byte[k * T];
-    int pos = 0;
-    for (int i = 0; i < k; i++) {
-      ByteBuffer in = encodingState.inputs[i];
-      int oldPos = in.position();
-      in.get(data, pos, T);
-      in.position(oldPos);
-      pos += T;
+    encodeMatrix = RaptorQUtil.getEncodeMatrix(getNumDataUnits(),
+        getNumParityUnits());
+    if (allowVerboseDump()) {
+      DumpUtil.dumpMatrix(encodeMatrix, getNumDataUnits(), getNumAllUnits());
     }
+    gfTables = new byte[getNumAllUnits() * getNumDataUnits() * 32];
+    RSUtil.initTables(getNumDataUnits(), getNumParityUnits(), encodeMatrix,
+        getNumDataUnits() * getNumDataUnits(), gfTables);
+    if (allowVerboseDump()) {
+      System.out.println(DumpUtil.bytesToHex(gfTables, -1));
+    }
+    updateTables = new byte[getNumDataUnits()][];
+    for (int i = 0; i < getNumDataUnits(); i++) {
+      updateTables[i] = RSUtil.genUpdateTables(encodeMatrix,
+          getNumDataUnits(), getNumParityUnits(), i);
+    }
+  }
 
-    FECParameters fecParams = FECParameters.newParameters((long) data.length, T, 1);
-    DataEncoder enc = OpenRQ.newEncoder(data, fecParams);
-    SourceBlockEncoder sbe = enc.sourceBlock(0);
-
-    for (int p = 0; p < m; p++) {
-      int esi = k + p;
-      ByteBuffer sym = sbe.repairPacket(esi).symbols();
-      ByteBuffer out = encodingState.outputs[p];
-      int outPos = out.position();
-      out.put(sym);
-      out.position(outPos);
+  @Override
+  protected void doEncode(ByteBufferEncodingState encodingState) {
+    CoderUtil.resetOutputBuffers(encodingState.outputs,
+        encodingState.encodeLength);
+    if (gfTables == null) {
+      encodeStripe(encodingState.inputs, encodingState.outputs,
+          encodingState.encodeLength);
+      return;
     }
+    RSUtil.encodeData(gfTables, encodingState.inputs, encodingState.outputs);
   }
 
   @Override
-  protected void doEncode(ByteArrayEncodingState encodingState) throws IOException {
-    int k = getNumDataUnits();
-    int m = getNumParityUnits();
-    int T = encodingState.encodeLength;
-    if (T == 0) {
+  protected void doEncode(ByteArrayEncodingState encodingState) {
+    CoderUtil.resetOutputBuffers(encodingState.outputs,
+        encodingState.outputOffsets,
+        encodingState.encodeLength);
+    if (gfTables == null) {
+      encodeStripe(encodingState.inputs, encodingState.inputOffsets,
+          encodingState.outputs, encodingState.outputOffsets,
+          encodingState.encodeLength);
       return;
     }
+    RSUtil.encodeData(gfTables, encodingState.encodeLength,
+        encodingState.inputs,
+        encodingState.inputOffsets, encodingState.outputs,
+        encodingState.outputOffsets);
+  }
 
-    // Ensure outputs are initialized
-    CoderUtil.resetOutputBuffers(encodingState.outputs, encodingState.outputOffsets, T);
+  // Encode a stripe of a schema that isn't compiled with OpenRQ.
+  private void encodeStripe(ByteBuffer[] inputs, ByteBuffer[] outputs,
+      int len) {
+    byte[] data = new byte[getNumDataUnits() * len];
+    for (int i = 0; i < getNumDataUnits(); i++) {
+      inputs[i].duplicate().get(data, i * len, len);
+    }
+    SourceBlockEncoder sbe = RaptorQUtil.newStripeEncoder(data, len);
+    for (int p = 0; p < outputs.length; p++) {
+      outputs[p].duplicate().put(
+          sbe.repairPacket(getNumDataUnits() + p).symbols());
+    }
+  }
 
-    byte[] data = new byte[k * T];
-    int pos = 0;
-    for (int i = 0; i < k; i++) {
-      System.arraycopy(encodingState.inputs[i], encodingState.inputOffsets[i], data, pos, T);
-      pos += T;
+  private void encodeStripe(byte[][] inputs, int[] inputOffsets,
+      byte[][] outputs, int[] outputOffsets, int len) {
+    byte[] data = new byte[getNumDataUnits() * len];
+    for (int i = 0; i < getNumDataUnits(); i++) {
+      System.arraycopy(inputs[i], inputOffsets[i], data, i * len, len);
     }
+    SourceBlockEncoder sbe = RaptorQUtil.newStripeEncoder(data, len);
+    for (int p = 0; p < outputs.length; p++) {
+      sbe.repairPacket(getNumDataUnits() + p).symbols()
+          .get(outputs[p], outputOffsets[p], len);
+    }
+  }
+
+  @Override
+  public boolean supportsParityUpdate() {
+    return updateTables != null;
+  }
 
-    FECParameters fecParams = FECParameters.newParameters((long) data.length, T, 1);
-    DataEncoder enc = OpenRQ.newEncoder(data, fecParams);
-    SourceBlockEncoder sbe = enc.sourceBlock(0);
+  @Override
+  protected void doUpdateParity(int dataIndex, ByteBuffer oldData,
+      ByteBuffer newData, ByteBuffer[] parities) {
+    RSUtil.encodeData(updateTables[dataIndex],
+        new ByteBuffer[] {oldData, newData}, parities);
+  }
 
-    for (int p = 0; p < m; p++) {
-      int esi = k + p;
-      ByteBuffer sym = sbe.repairPacket(esi).symbols();
-      sym.get(encodingState.outputs[p], encodingState.outputOffsets[p], T);
-    }
+  @Override
+  protected void doUpdateParity(int dataIndex, byte[] oldData, int oldOffset,
+      byte[] newData, int newOffset, int len, byte[][] parities,
+      int[] parityOffsets) {
+    RSUtil.encodeData(updateTables[dataIndex], len,
+        new byte[][] {oldData, newData}, new int[] {oldOffset, newOffset},
+        parities, parityOffsets);
   }
 }
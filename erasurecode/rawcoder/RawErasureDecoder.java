@@ -37,8 +37,11 @@ import java.nio.ByteBuffer;
  * low level constructs, since it only takes care of the math calculation with
  * a group of byte buffers.
  *
- * Note it mainly provides decode() calls, which should be stateless and may be
- * made thread-safe in future.
+ * Note it mainly provides decode() calls, which are stateless and thread-safe:
+ * one decoder instance can be shared by any number of threads. Per erasure
+ * pattern data must either be immutable (see {@link DecodingPlan}) or be
+ * local to the call, and implementations that can't avoid shared mutable state
+ * have to guard it themselves.
  */
 @InterfaceAudience.Private
 public abstract class RawErasureDecoder {
@@ -82,7 +85,7 @@ public abstract class RawErasureDecoder {
    *                erasedIndexes, ready for read after the call
    * @throws IOException raised on errors performing I/O.
    */
-  public synchronized void decode(ByteBuffer[] inputs, int[] erasedIndexes,
+  public void decode(ByteBuffer[] inputs, int[] erasedIndexes,
                      ByteBuffer[] outputs) throws IOException {
     ByteBufferDecodingState decodingState = new ByteBufferDecodingState(this,
         inputs, erasedIndexes, outputs);
@@ -132,7 +135,7 @@ public abstract class RawErasureDecoder {
    *                erasedIndexes, ready for read after the call
    * @throws IOException if the decoder is closed.
    */
-  public synchronized void decode(byte[][] inputs, int[] erasedIndexes, byte[][] outputs)
+  public void decode(byte[][] inputs, int[] erasedIndexes, byte[][] outputs)
       throws IOException {
     ByteArrayDecodingState decodingState = new ByteArrayDecodingState(this,
         inputs, erasedIndexes, outputs);
@@ -165,7 +168,7 @@ public abstract class RawErasureDecoder {
    *                erasedIndexes, ready for read after the call
    * @throws IOException if the decoder is closed
    */
-  public synchronized void decode(ECChunk[] inputs, int[] erasedIndexes,
+  public void decode(ECChunk[] inputs, int[] erasedIndexes,
                      ECChunk[] outputs) throws IOException {
     ByteBuffer[] newInputs = CoderUtil.toBuffers(inputs);
     ByteBuffer[] newOutputs = CoderUtil.toBuffers(outputs);
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.io.erasurecode.rawcoder;
 
+import org.apache.hadoop.HadoopIllegalArgumentException;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.io.erasurecode.ECChunk;
 import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
@@ -149,6 +150,163 @@ public abstract class RawErasureEncoder {
     encode(newInputs, newOutputs);
   }
 
+  /**
+   * Tell if the encoder can update parities from the change of a single data
+   * unit, see {@link #updateParity(int, ByteBuffer, ByteBuffer, ByteBuffer[])}.
+   * It will return false by default.
+   * @return true if parity update is supported, otherwise false.
+   */
+  public boolean supportsParityUpdate() {
+    return false;
+  }
+
+  /**
+   * Update parities after a range of data unit dataIndex changed from
+   * oldData to newData (read-modify-write), without reading the other data
+   * units. As the codes are linear, the delta oldData ^ newData multiplied by
+   * the coefficients of the unit is applied to each parity, so a partial
+   * stripe update costs O(m) instead of O(k) I/O.
+   *
+   * The range is the remaining bytes of oldData, and newData must have the
+   * same remaining. Each parity is updated over the same number of bytes
+   * from its position. Like encode(), the positions of oldData and newData
+   * move forward, the parities are ready to read after the call. No mixing
+   * of on-heap buffers and direct buffers are allowed.
+   *
+   * @param dataIndex index of the changed data unit, in [0, numDataUnits)
+   * @param oldData previous content of the range
+   * @param newData new content of the range
+   * @param parities all parity units, updated in place
+   * @throws IOException raised on errors performing I/O.
+   * @throws UnsupportedOperationException if the encoder doesn't support it,
+   * see {@link #supportsParityUpdate()}
+   */
+  public void updateParity(int dataIndex, ByteBuffer oldData,
+      ByteBuffer newData, ByteBuffer[] parities) throws IOException {
+    int dataLen = oldData.remaining();
+    if (newData.remaining() != dataLen) {
+      throw new HadoopIllegalArgumentException(
+          "oldData and newData mismatch in length");
+    }
+    checkParityUpdate(dataIndex, parities);
+    boolean usingDirectBuffer = oldData.isDirect();
+    if (newData.isDirect() != usingDirectBuffer) {
+      throw new HadoopIllegalArgumentException(
+          "Invalid buffer, isDirect should be " + usingDirectBuffer);
+    }
+    for (ByteBuffer parity : parities) {
+      if (parity.isDirect() != usingDirectBuffer) {
+        throw new HadoopIllegalArgumentException(
+            "Invalid parity buffer, isDirect should be " + usingDirectBuffer);
+      }
+      if (parity.remaining() < dataLen) {
+        throw new HadoopIllegalArgumentException("Invalid parity buffer, " +
+            "remaining " + parity.remaining() + " < " + dataLen);
+      }
+    }
+    if (dataLen == 0) {
+      return;
+    }
+
+    int oldPosition = oldData.position();
+    int newPosition = newData.position();
+    doUpdateParity(dataIndex, oldData, newData, parities);
+    oldData.position(oldPosition + dataLen);
+    newData.position(newPosition + dataLen);
+  }
+
+  /**
+   * Update parities after a byte range of a data unit changed. More see
+   * above.
+   *
+   * @param dataIndex index of the changed data unit, in [0, numDataUnits)
+   * @param oldData array holding the previous content of the range
+   * @param oldOffset offset of the range in oldData
+   * @param newData array holding the new content of the range
+   * @param newOffset offset of the range in newData
+   * @param len length of the range
+   * @param parities all parity units, updated in place
+   * @param parityOffsets offsets of the range in the parities
+   * @throws IOException raised on errors performing I/O.
+   */
+  public void updateParity(int dataIndex, byte[] oldData, int oldOffset,
+      byte[] newData, int newOffset, int len, byte[][] parities,
+      int[] parityOffsets) throws IOException {
+    checkParityUpdate(dataIndex, parities);
+    if (len < 0 || oldOffset < 0 || newOffset < 0 ||
+        oldOffset > oldData.length - len || newOffset > newData.length - len) {
+      throw new HadoopIllegalArgumentException("Invalid data range");
+    }
+    if (parityOffsets.length != parities.length) {
+      throw new HadoopIllegalArgumentException("Invalid parityOffsets length");
+    }
+    for (int i = 0; i < parities.length; i++) {
+      if (parityOffsets[i] < 0 ||
+          parityOffsets[i] > parities[i].length - len) {
+        throw new HadoopIllegalArgumentException("Invalid parity range");
+      }
+    }
+    if (len == 0) {
+      return;
+    }
+
+    doUpdateParity(dataIndex, oldData, oldOffset, newData, newOffset, len,
+        parities, parityOffsets);
+  }
+
+  private <T> void checkParityUpdate(int dataIndex, T[] parities) {
+    if (!supportsParityUpdate()) {
+      throw new UnsupportedOperationException(
+          getClass().getSimpleName() + " doesn't support parity update");
+    }
+    if (dataIndex < 0 || dataIndex >= getNumDataUnits()) {
+      throw new HadoopIllegalArgumentException(
+          "Invalid dataIndex " + dataIndex);
+    }
+    if (parities.length != getNumParityUnits()) {
+      throw new HadoopIllegalArgumentException("Invalid parities length");
+    }
+    for (T parity : parities) {
+      if (parity == null) {
+        throw new HadoopIllegalArgumentException(
+            "Invalid parity, being null");
+      }
+    }
+  }
+
+  /**
+   * Perform the real parity update using ByteBuffer. Only called when
+   * {@link #supportsParityUpdate()} is true.
+   * @param dataIndex index of the changed data unit
+   * @param oldData previous content, from position to limit
+   * @param newData new content, of the same length
+   * @param parities parity buffers, updated from their positions
+   * @throws IOException raised on errors performing I/O.
+   */
+  protected void doUpdateParity(int dataIndex, ByteBuffer oldData,
+      ByteBuffer newData, ByteBuffer[] parities) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Perform the real parity update using bytes array. Only called when
+   * {@link #supportsParityUpdate()} is true.
+   * @param dataIndex index of the changed data unit
+   * @param oldData previous content
+   * @param oldOffset offset in oldData
+   * @param newData new content
+   * @param newOffset offset in newData
+   * @param len length of the range
+   * @param parities parity arrays, updated in place
+   * @param parityOffsets offsets in the parities
+   * @throws IOException raised on errors performing I/O.
+   */
+  protected void doUpdateParity(int dataIndex, byte[] oldData, int oldOffset,
+      byte[] newData, int newOffset, int len, byte[][] parities,
+      int[] parityOffsets) throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
   public int getNumDataUnits() {
     return coderOptions.getNumDataUnits();
   }
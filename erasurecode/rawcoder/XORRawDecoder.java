@@ -19,6 +19,7 @@ package org.apache.hadoop.io.erasurecode.rawcoder;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.XORUtil;
 
 import java.nio.ByteBuffer;
 
@@ -38,51 +39,22 @@ public class XORRawDecoder extends RawErasureDecoder {
 
   @Override
   protected void doDecode(ByteBufferDecodingState decodingState) {
-    CoderUtil.resetOutputBuffers(decodingState.outputs,
-        decodingState.decodeLength);
-    ByteBuffer output = decodingState.outputs[0];
+    // Skip the erased location.
+    ByteBuffer[] inputs = decodingState.inputs.clone();
+    inputs[decodingState.erasedIndexes[0]] = null;
 
-    int erasedIdx = decodingState.erasedIndexes[0];
-
-    // Process the inputs.
-    int iIdx, oIdx;
-    for (int i = 0; i < decodingState.inputs.length; i++) {
-      // Skip the erased location.
-      if (i == erasedIdx) {
-        continue;
-      }
-
-      for (iIdx = decodingState.inputs[i].position(), oIdx = output.position();
-           iIdx < decodingState.inputs[i].limit();
-           iIdx++, oIdx++) {
-        output.put(oIdx, (byte) (output.get(oIdx) ^
-            decodingState.inputs[i].get(iIdx)));
-      }
-    }
+    XORUtil.xorData(inputs, decodingState.decodeLength,
+        decodingState.outputs[0]);
   }
 
   @Override
   protected void doDecode(ByteArrayDecodingState decodingState) {
-    byte[] output = decodingState.outputs[0];
-    int dataLen = decodingState.decodeLength;
-    CoderUtil.resetOutputBuffers(decodingState.outputs,
-        decodingState.outputOffsets, dataLen);
-    int erasedIdx = decodingState.erasedIndexes[0];
+    // Skip the erased location.
+    byte[][] inputs = decodingState.inputs.clone();
+    inputs[decodingState.erasedIndexes[0]] = null;
 
-    // Process the inputs.
-    int iIdx, oIdx;
-    for (int i = 0; i < decodingState.inputs.length; i++) {
-      // Skip the erased location.
-      if (i == erasedIdx) {
-        continue;
-      }
-
-      for (iIdx = decodingState.inputOffsets[i],
-               oIdx = decodingState.outputOffsets[0];
-           iIdx < decodingState.inputOffsets[i] + dataLen; iIdx++, oIdx++) {
-        output[oIdx] ^= decodingState.inputs[i][iIdx];
-      }
-    }
+    XORUtil.xorData(inputs, decodingState.inputOffsets,
+        decodingState.decodeLength, decodingState.outputs[0],
+        decodingState.outputOffsets[0]);
   }
-
 }
@@ -19,6 +19,7 @@ package org.apache.hadoop.io.erasurecode.rawcoder;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.XORUtil;
 
 import java.nio.ByteBuffer;
 
@@ -37,50 +38,35 @@ public class XORRawEncoder extends RawErasureEncoder {
   }
 
   protected void doEncode(ByteBufferEncodingState encodingState) {
-    CoderUtil.resetOutputBuffers(encodingState.outputs,
-        encodingState.encodeLength);
-    ByteBuffer output = encodingState.outputs[0];
-
-    // Get the first buffer's data.
-    int iIdx, oIdx;
-    for (iIdx = encodingState.inputs[0].position(), oIdx = output.position();
-         iIdx < encodingState.inputs[0].limit(); iIdx++, oIdx++) {
-      output.put(oIdx, encodingState.inputs[0].get(iIdx));
-    }
-
-    // XOR with everything else.
-    for (int i = 1; i < encodingState.inputs.length; i++) {
-      for (iIdx = encodingState.inputs[i].position(), oIdx = output.position();
-           iIdx < encodingState.inputs[i].limit();
-           iIdx++, oIdx++) {
-        output.put(oIdx, (byte) (output.get(oIdx) ^
-            encodingState.inputs[i].get(iIdx)));
-      }
-    }
+    XORUtil.xorData(encodingState.inputs, encodingState.encodeLength,
+        encodingState.outputs[0]);
   }
 
   @Override
   protected void doEncode(ByteArrayEncodingState encodingState) {
-    int dataLen = encodingState.encodeLength;
-    CoderUtil.resetOutputBuffers(encodingState.outputs,
-        encodingState.outputOffsets, dataLen);
-    byte[] output = encodingState.outputs[0];
+    XORUtil.xorData(encodingState.inputs, encodingState.inputOffsets,
+        encodingState.encodeLength, encodingState.outputs[0],
+        encodingState.outputOffsets[0]);
+  }
 
-    // Get the first buffer's data.
-    int iIdx, oIdx;
-    for (iIdx = encodingState.inputOffsets[0],
-             oIdx = encodingState.outputOffsets[0];
-         iIdx < encodingState.inputOffsets[0] + dataLen; iIdx++, oIdx++) {
-      output[oIdx] = encodingState.inputs[0][iIdx];
-    }
+  @Override
+  public boolean supportsParityUpdate() {
+    return true;
+  }
 
-    // XOR with everything else.
-    for (int i = 1; i < encodingState.inputs.length; i++) {
-      for (iIdx = encodingState.inputOffsets[i],
-               oIdx = encodingState.outputOffsets[0];
-           iIdx < encodingState.inputOffsets[i] + dataLen; iIdx++, oIdx++) {
-        output[oIdx] ^= encodingState.inputs[i][iIdx];
-      }
-    }
+  @Override
+  protected void doUpdateParity(int dataIndex, ByteBuffer oldData,
+      ByteBuffer newData, ByteBuffer[] parities) {
+    int dataLen = oldData.remaining();
+    XORUtil.xorInto(oldData, parities[0], dataLen);
+    XORUtil.xorInto(newData, parities[0], dataLen);
+  }
+
+  @Override
+  protected void doUpdateParity(int dataIndex, byte[] oldData, int oldOffset,
+      byte[] newData, int newOffset, int len, byte[][] parities,
+      int[] parityOffsets) {
+    XORUtil.xorInto(oldData, oldOffset, parities[0], parityOffsets[0], len);
+    XORUtil.xorInto(newData, newOffset, parities[0], parityOffsets[0], len);
   }
 }
@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder.util;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An alternative implementation of the {@link RSUtil#encodeData} kernels,
+ * picked at runtime by {@link RSUtil} when available. Implementations have
+ * the same contract as the RSUtil methods: outputs are XOR-accumulated into,
+ * buffer positions are left untouched, and the data is processed tile by
+ * tile against all outputs.
+ */
+@InterfaceAudience.Private
+interface RSKernel {
+
+  void encodeData(byte[] gfTables, int dataLen, byte[][] inputs,
+      int[] inputOffsets, byte[][] outputs, int[] outputOffsets,
+      int tileSize);
+
+  void encodeData(byte[] gfTables, ByteBuffer[] inputs, ByteBuffer[] outputs,
+      int tileSize);
+}
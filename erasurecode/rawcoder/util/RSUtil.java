@@ -18,8 +18,12 @@
 package org.apache.hadoop.io.erasurecode.rawcoder.util;
 
 import org.apache.hadoop.classification.InterfaceAudience;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * Utilities for implementing Reed-Solomon code, used by RS coder. Some of the
@@ -30,11 +34,149 @@ public final class RSUtil {
 
   private RSUtil(){}
 
+  private static final Logger LOG = LoggerFactory.getLogger(RSUtil.class);
+
+  /**
+   * System property to turn off the Vector API kernel, e.g. for comparison.
+   */
+  public static final String VECTOR_KERNEL_ENABLED_KEY =
+      "io.erasurecode.rs.vector.kernel.enabled";
+
+  /**
+   * System property to set the tile size in bytes of the encode kernels. By
+   * default it is derived from the number of units, see {@link #getTileSize}.
+   */
+  public static final String TILE_SIZE_KEY = "io.erasurecode.rs.tile.size";
+
+  // Cache budget the tiles of all inputs and outputs should fit in, about a
+  // typical per-core L2.
+  private static final int TILE_CACHE_BUDGET = 256 * 1024;
+  private static final int MIN_TILE_SIZE = 4 * 1024;
+  private static final int MAX_TILE_SIZE = 64 * 1024;
+  // Tiles are multiples of the widest vector so kernels only have a tail in
+  // the last tile.
+  private static final int TILE_ALIGNMENT = 64;
+  private static final int CONFIGURED_TILE_SIZE =
+      Integer.getInteger(TILE_SIZE_KEY, 0);
+
+  // The Vector API kernel if it is on the classpath, the running JVM offers
+  // jdk.incubator.vector and it passes the self test, otherwise null and the
+  // scalar kernels below are used.
+  private static final RSKernel VECTOR_KERNEL = loadVectorKernel();
+
+  // Per-thread heap scratch the scalar kernel stages direct buffers through,
+  // at most a tile of every unit, i.e. about the tile cache budget.
+  private static final ThreadLocal<byte[]> SCRATCH =
+      ThreadLocal.withInitial(() -> new byte[0]);
+
   // We always use the byte system (with symbol size 8, field size 256,
   // primitive polynomial 285, and primitive root 2).
   public static GaloisField GF = GaloisField.getInstance();
   public static final int PRIMITIVE_ROOT = 2;
 
+  private static RSKernel loadVectorKernel() {
+    if (!Boolean.parseBoolean(
+        System.getProperty(VECTOR_KERNEL_ENABLED_KEY, "true"))) {
+      return null;
+    }
+    try {
+      Class<?> clazz = Class.forName(
+          RSUtil.class.getPackage().getName() + ".RSVectorKernel");
+      RSKernel kernel =
+          (RSKernel) clazz.getDeclaredConstructor().newInstance();
+      if (!selfTest(kernel)) {
+        LOG.warn("Vector API kernel gives wrong results, using scalar RS " +
+            "kernel");
+        return null;
+      }
+      LOG.debug("Using Vector API kernel for RS coding");
+      return kernel;
+    } catch (Throwable t) {
+      LOG.debug("Vector API kernel not available, using scalar RS kernel: {}",
+          t.toString());
+      return null;
+    }
+  }
+
+  /**
+   * Encode some random data with both the kernel and the scalar code, over
+   * several tiles with a tail, from arrays and from heap and direct buffers.
+   * Any error the kernel hits with the running JDK, e.g. a missing method,
+   * is thrown here rather than on the first real encode.
+   */
+  private static boolean selfTest(RSKernel kernel) {
+    int numInputs = 3, numOutputs = 2, dataLen = 1000, tileSize = 256;
+    Random random = new Random(numInputs * dataLen);
+    byte[] gfTables = new byte[numInputs * numOutputs * 32];
+    for (int i = 0; i < numInputs * numOutputs; i++) {
+      GF256.gfVectMulInit((byte) random.nextInt(256), gfTables, i * 32);
+    }
+    byte[][] inputs = new byte[numInputs][dataLen + 1];
+    for (byte[] input : inputs) {
+      random.nextBytes(input);
+    }
+    int[] inputOffsets = new int[numInputs];
+    Arrays.fill(inputOffsets, 1);
+    int[] outputOffsets = new int[numOutputs];
+
+    byte[][] expected = new byte[numOutputs][dataLen];
+    encodeDataScalar(gfTables, dataLen, inputs, inputOffsets, expected,
+        outputOffsets, tileSize);
+
+    byte[][] actual = new byte[numOutputs][dataLen];
+    kernel.encodeData(gfTables, dataLen, inputs, inputOffsets, actual,
+        outputOffsets, tileSize);
+    if (!Arrays.deepEquals(expected, actual)) {
+      return false;
+    }
+
+    for (boolean direct : new boolean[] {false, true}) {
+      ByteBuffer[] inputBuffers = new ByteBuffer[numInputs];
+      for (int j = 0; j < numInputs; j++) {
+        inputBuffers[j] = direct ? ByteBuffer.allocateDirect(dataLen + 1) :
+            ByteBuffer.allocate(dataLen + 1);
+        inputBuffers[j].put(inputs[j]);
+        inputBuffers[j].position(1);
+      }
+      ByteBuffer[] outputBuffers = new ByteBuffer[numOutputs];
+      for (int l = 0; l < numOutputs; l++) {
+        outputBuffers[l] = direct ? ByteBuffer.allocateDirect(dataLen) :
+            ByteBuffer.allocate(dataLen);
+      }
+      kernel.encodeData(gfTables, inputBuffers, outputBuffers, tileSize);
+      for (int l = 0; l < numOutputs; l++) {
+        outputBuffers[l].get(actual[l]);
+      }
+      if (!Arrays.deepEquals(expected, actual)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return true if RS coding runs on the Vector API kernel.
+   */
+  public static boolean isVectorKernelLoaded() {
+    return VECTOR_KERNEL != null;
+  }
+
+  /**
+   * Get the tile size the encode kernels use for the given number of units:
+   * the configured {@link #TILE_SIZE_KEY} if set, otherwise the largest size
+   * for which a tile of every input and output fits the cache budget.
+   *
+   * @param numUnits number of inputs plus outputs.
+   * @return the tile size in bytes, a multiple of 64.
+   */
+  public static int getTileSize(int numUnits) {
+    int tileSize = CONFIGURED_TILE_SIZE > 0 ? CONFIGURED_TILE_SIZE :
+        Math.max(MIN_TILE_SIZE,
+            Math.min(MAX_TILE_SIZE, TILE_CACHE_BUDGET / numUnits));
+    return Math.max(TILE_ALIGNMENT,
+        tileSize - tileSize % TILE_ALIGNMENT);
+  }
+
   public static int[] getPrimitivePower(int numDataUnits, int numParityUnits) {
     int[] primitivePower = new int[numDataUnits + numParityUnits];
     // compute powers of the primitive root
@@ -79,13 +221,79 @@ public final class RSUtil {
     }
   }
 
+  /**
+   * Generate the decode matrix for an erasure pattern: invert the rows of the
+   * given input units, then for each erased unit multiply its encode row by
+   * the inverse (for a data unit this is just its row of the inverse).
+   *
+   * @param encodeMatrix the (k + m) x k encode matrix.
+   * @param k number of data units.
+   * @param inputIndexes indexes of the k units decoded from, whose encode
+   *                     rows must be linearly independent.
+   * @param erasedIndexes indexes of the erased units, in output order.
+   * @return the decode matrix, one row of k coefficients per erased unit.
+   */
+  public static byte[] genDecodeMatrix(byte[] encodeMatrix, int k,
+      int[] inputIndexes, int[] erasedIndexes) {
+    byte[] tmpMatrix = new byte[k * k];
+    for (int i = 0; i < k; i++) {
+      System.arraycopy(encodeMatrix, k * inputIndexes[i], tmpMatrix, k * i, k);
+    }
+    byte[] invertMatrix = new byte[k * k];
+    GF256.gfInvertMatrix(tmpMatrix, invertMatrix, k);
+
+    byte[] decodeMatrix = new byte[erasedIndexes.length * k];
+    for (int p = 0; p < erasedIndexes.length; p++) {
+      int e = erasedIndexes[p];
+      if (e < k) {
+        System.arraycopy(invertMatrix, k * e, decodeMatrix, k * p, k);
+        continue;
+      }
+      for (int i = 0; i < k; i++) {
+        byte s = 0;
+        for (int j = 0; j < k; j++) {
+          s ^= GF256.gfMul(invertMatrix[j * k + i], encodeMatrix[k * e + j]);
+        }
+        decodeMatrix[k * p + i] = s;
+      }
+    }
+    return decodeMatrix;
+  }
+
+  /**
+   * Generate the tables to update the parities after data unit dataIndex
+   * changed, for {@link #encodeData} with the old and the new data as the
+   * two inputs: both get the coefficient of the unit in each parity row, so
+   * each parity gets coef * (old ^ new) XOR-ed in.
+   *
+   * @param encodeMatrix the (k + m) x k encode matrix.
+   * @param k number of data units.
+   * @param m number of parity units.
+   * @param dataIndex index of the changed data unit.
+   * @return the tables, of size 2 * 32 * m.
+   */
+  public static byte[] genUpdateTables(byte[] encodeMatrix, int k, int m,
+      int dataIndex) {
+    byte[] gfTables = new byte[2 * 32 * m];
+    for (int p = 0; p < m; p++) {
+      byte c = encodeMatrix[k * (k + p) + dataIndex];
+      GF256.gfVectMulInit(c, gfTables, p * 64);
+      System.arraycopy(gfTables, p * 64, gfTables, p * 64 + 32, 32);
+    }
+    return gfTables;
+  }
+
   /**
    * Encode a group of inputs data and generate the outputs. It's also used for
    * decoding because, in this implementation, encoding and decoding are
    * unified.
    *
    * The algorithm is ported from Intel ISA-L library for compatible. It
-   * leverages Java auto-vectorization support for performance.
+   * leverages Java auto-vectorization support for performance, or runs on the
+   * Vector API kernel when it is available (see RSVectorKernel).
+   * The data is processed in cache-sized tiles, each one against all
+   * outputs, so every input is read from memory only once; see
+   * {@link #getTileSize}.
    *
    * @param gfTables gfTables.
    * @param dataLen dataLen.
@@ -97,46 +305,81 @@ public final class RSUtil {
   public static void encodeData(byte[] gfTables, int dataLen, byte[][] inputs,
       int[] inputOffsets, byte[][] outputs,
       int[] outputOffsets) {
+    encodeData(gfTables, dataLen, inputs, inputOffsets, outputs,
+        outputOffsets, getTileSize(inputs.length + outputs.length));
+  }
+
+  /**
+   * See above, with an explicit tile size. A tile size not smaller than
+   * dataLen gives the untiled loop order.
+   *
+   * @param gfTables gfTables.
+   * @param dataLen dataLen.
+   * @param inputs inputs.
+   * @param inputOffsets inputOffsets.
+   * @param outputs outputs.
+   * @param outputOffsets outputOffsets.
+   * @param tileSize tile size in bytes, a positive multiple of 64.
+   */
+  public static void encodeData(byte[] gfTables, int dataLen, byte[][] inputs,
+      int[] inputOffsets, byte[][] outputs, int[] outputOffsets,
+      int tileSize) {
+    if (VECTOR_KERNEL != null) {
+      VECTOR_KERNEL.encodeData(gfTables, dataLen, inputs, inputOffsets,
+          outputs, outputOffsets, tileSize);
+    } else {
+      encodeDataScalar(gfTables, dataLen, inputs, inputOffsets, outputs,
+          outputOffsets, tileSize);
+    }
+  }
+
+  private static void encodeDataScalar(byte[] gfTables, int dataLen,
+      byte[][] inputs, int[] inputOffsets, byte[][] outputs,
+      int[] outputOffsets, int tileSize) {
     int numInputs = inputs.length;
     int numOutputs = outputs.length;
-    int l, i, j, iPos, oPos;
+    int l, i, j, iPos, oPos, tile, tileLen, times, extra;
     byte[] input, output;
     byte s;
-    final int times = dataLen / 8;
-    final int extra = dataLen - dataLen % 8;
     byte[] tableLine;
 
-    for (l = 0; l < numOutputs; l++) {
-      output = outputs[l];
-
-      for (j = 0; j < numInputs; j++) {
-        input = inputs[j];
-        iPos = inputOffsets[j];
-        oPos = outputOffsets[l];
-
-        s = gfTables[j * 32 + l * numInputs * 32 + 1];
-        tableLine = GF256.gfMulTab()[s & 0xff];
-
-        /**
-         * Purely for performance, assuming we can use 8 bytes in the SIMD
-         * instruction. Subject to be improved.
-         */
-        for (i = 0; i < times; i++, iPos += 8, oPos += 8) {
-          output[oPos + 0] ^= tableLine[0xff & input[iPos + 0]];
-          output[oPos + 1] ^= tableLine[0xff & input[iPos + 1]];
-          output[oPos + 2] ^= tableLine[0xff & input[iPos + 2]];
-          output[oPos + 3] ^= tableLine[0xff & input[iPos + 3]];
-          output[oPos + 4] ^= tableLine[0xff & input[iPos + 4]];
-          output[oPos + 5] ^= tableLine[0xff & input[iPos + 5]];
-          output[oPos + 6] ^= tableLine[0xff & input[iPos + 6]];
-          output[oPos + 7] ^= tableLine[0xff & input[iPos + 7]];
-        }
+    for (tile = 0; tile < dataLen; tile += tileSize) {
+      tileLen = Math.min(tileSize, dataLen - tile);
+      times = tileLen / 8;
+      extra = tileLen - tileLen % 8;
+
+      for (l = 0; l < numOutputs; l++) {
+        output = outputs[l];
+
+        for (j = 0; j < numInputs; j++) {
+          input = inputs[j];
+          iPos = inputOffsets[j] + tile;
+          oPos = outputOffsets[l] + tile;
+
+          s = gfTables[j * 32 + l * numInputs * 32 + 1];
+          tableLine = GF256.gfMulTab()[s & 0xff];
+
+          /**
+           * Purely for performance, assuming we can use 8 bytes in the SIMD
+           * instruction. Subject to be improved.
+           */
+          for (i = 0; i < times; i++, iPos += 8, oPos += 8) {
+            output[oPos + 0] ^= tableLine[0xff & input[iPos + 0]];
+            output[oPos + 1] ^= tableLine[0xff & input[iPos + 1]];
+            output[oPos + 2] ^= tableLine[0xff & input[iPos + 2]];
+            output[oPos + 3] ^= tableLine[0xff & input[iPos + 3]];
+            output[oPos + 4] ^= tableLine[0xff & input[iPos + 4]];
+            output[oPos + 5] ^= tableLine[0xff & input[iPos + 5]];
+            output[oPos + 6] ^= tableLine[0xff & input[iPos + 6]];
+            output[oPos + 7] ^= tableLine[0xff & input[iPos + 7]];
+          }
 
-        /**
-         * For the left bytes, do it one by one.
-         */
-        for (i = extra; i < dataLen; i++, iPos++, oPos++) {
-          output[oPos] ^= tableLine[0xff & input[iPos]];
+          /**
+           * For the left bytes, do it one by one.
+           */
+          for (i = extra; i < tileLen; i++, iPos++, oPos++) {
+            output[oPos] ^= tableLine[0xff & input[iPos]];
+          }
         }
       }
     }
@@ -145,58 +388,116 @@ public final class RSUtil {
   /**
    * See above. Try to use the byte[] version when possible.
    *
+   * Array backed buffers are coded in place through their arrays. Otherwise,
+   * e.g. for the direct buffers handed over by the DataNode streaming path,
+   * a tile of every input and output is copied into a per-thread heap
+   * scratch with bulk get/put and coded with the array kernel, so direct
+   * buffers run at the speed of heap arrays.
+   *
    * @param gfTables gfTables.
    * @param inputs inputs.
    * @param outputs outputs.
    */
   public static void encodeData(byte[] gfTables, ByteBuffer[] inputs,
       ByteBuffer[] outputs) {
+    encodeData(gfTables, inputs, outputs,
+        getTileSize(inputs.length + outputs.length));
+  }
+
+  /**
+   * See above, with an explicit tile size.
+   *
+   * @param gfTables gfTables.
+   * @param inputs inputs.
+   * @param outputs outputs.
+   * @param tileSize tile size in bytes, a positive multiple of 64.
+   */
+  public static void encodeData(byte[] gfTables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs, int tileSize) {
+    if (VECTOR_KERNEL != null) {
+      VECTOR_KERNEL.encodeData(gfTables, inputs, outputs, tileSize);
+    } else {
+      encodeDataScalar(gfTables, inputs, outputs, tileSize);
+    }
+  }
+
+  private static void encodeDataScalar(byte[] gfTables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs, int tileSize) {
     int numInputs = inputs.length;
     int numOutputs = outputs.length;
     int dataLen = inputs[0].remaining();
-    int l, i, j, iPos, oPos;
-    ByteBuffer input, output;
-    byte s;
-    final int times = dataLen / 8;
-    final int extra = dataLen - dataLen % 8;
-    byte[] tableLine;
+    byte[][] inputArrays = new byte[numInputs][];
+    int[] inputOffsets = new int[numInputs];
+    byte[][] outputArrays = new byte[numOutputs][];
+    int[] outputOffsets = new int[numOutputs];
 
-    for (l = 0; l < numOutputs; l++) {
-      output = outputs[l];
-
-      for (j = 0; j < numInputs; j++) {
-        input = inputs[j];
-        iPos = input.position();
-        oPos = output.position();
-
-        s = gfTables[j * 32 + l * numInputs * 32 + 1];
-        tableLine = GF256.gfMulTab()[s & 0xff];
-
-        for (i = 0; i < times; i++, iPos += 8, oPos += 8) {
-          output.put(oPos + 0, (byte) (output.get(oPos + 0) ^
-              tableLine[0xff & input.get(iPos + 0)]));
-          output.put(oPos + 1, (byte) (output.get(oPos + 1) ^
-              tableLine[0xff & input.get(iPos + 1)]));
-          output.put(oPos + 2, (byte) (output.get(oPos + 2) ^
-              tableLine[0xff & input.get(iPos + 2)]));
-          output.put(oPos + 3, (byte) (output.get(oPos + 3) ^
-              tableLine[0xff & input.get(iPos + 3)]));
-          output.put(oPos + 4, (byte) (output.get(oPos + 4) ^
-              tableLine[0xff & input.get(iPos + 4)]));
-          output.put(oPos + 5, (byte) (output.get(oPos + 5) ^
-              tableLine[0xff & input.get(iPos + 5)]));
-          output.put(oPos + 6, (byte) (output.get(oPos + 6) ^
-              tableLine[0xff & input.get(iPos + 6)]));
-          output.put(oPos + 7, (byte) (output.get(oPos + 7) ^
-              tableLine[0xff & input.get(iPos + 7)]));
-        }
+    if (hasArrays(inputs) && hasArrays(outputs)) {
+      for (int j = 0; j < numInputs; j++) {
+        inputArrays[j] = inputs[j].array();
+        inputOffsets[j] = inputs[j].arrayOffset() + inputs[j].position();
+      }
+      for (int l = 0; l < numOutputs; l++) {
+        outputArrays[l] = outputs[l].array();
+        outputOffsets[l] = outputs[l].arrayOffset() + outputs[l].position();
+      }
+      encodeDataScalar(gfTables, dataLen, inputArrays, inputOffsets,
+          outputArrays, outputOffsets, tileSize);
+      return;
+    }
 
-        for (i = extra; i < dataLen; i++, iPos++, oPos++) {
-          output.put(oPos, (byte) (output.get(oPos) ^
-              tableLine[0xff & input.get(iPos)]));
-        }
+    // All units share one scratch array, a tile apart, coded as one tile
+    int stageLen = Math.min(tileSize, dataLen);
+    byte[] scratch = scratch((numInputs + numOutputs) * stageLen);
+    for (int j = 0; j < numInputs; j++) {
+      inputArrays[j] = scratch;
+      inputOffsets[j] = j * stageLen;
+    }
+    for (int l = 0; l < numOutputs; l++) {
+      outputArrays[l] = scratch;
+      outputOffsets[l] = (numInputs + l) * stageLen;
+    }
+
+    for (int tile = 0; tile < dataLen; tile += stageLen) {
+      int tileLen = Math.min(stageLen, dataLen - tile);
+      for (int j = 0; j < numInputs; j++) {
+        stage(inputs[j], tile).get(scratch, inputOffsets[j], tileLen);
+      }
+      for (int l = 0; l < numOutputs; l++) {
+        stage(outputs[l], tile).get(scratch, outputOffsets[l], tileLen);
+      }
+      encodeDataScalar(gfTables, tileLen, inputArrays, inputOffsets,
+          outputArrays, outputOffsets, stageLen);
+      for (int l = 0; l < numOutputs; l++) {
+        stage(outputs[l], tile).put(scratch, outputOffsets[l], tileLen);
       }
     }
   }
 
+  /**
+   * Get the calling thread's scratch array, grown to at least len bytes. It
+   * is kept between calls so staging buffers doesn't allocate per encode.
+   */
+  private static byte[] scratch(int len) {
+    byte[] scratch = SCRATCH.get();
+    if (scratch.length < len) {
+      scratch = new byte[len];
+      SCRATCH.set(scratch);
+    }
+    return scratch;
+  }
+
+  private static ByteBuffer stage(ByteBuffer buffer, int tile) {
+    ByteBuffer view = buffer.duplicate();
+    view.position(buffer.position() + tile);
+    return view;
+  }
+
+  private static boolean hasArrays(ByteBuffer[] buffers) {
+    for (ByteBuffer buffer : buffers) {
+      if (!buffer.hasArray()) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder.util;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import net.fec.openrq.ArrayDataDecoder;
+import net.fec.openrq.OpenRQ;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Utilities for implementing RaptorQ code, used by RaptorQ coder.
+ *
+ * A stripe is mapped to a single OpenRQ source block with one source symbol
+ * per data unit (ESI 0..k-1) and parity unit p carried by repair symbol k+p.
+ * RaptorQ works over the same GF(256) as {@link GF256} (polynomial 285) and
+ * every symbol operation is byte-wise, so for a fixed (k, m) each parity unit
+ * is a fixed linear combination of the data units. The coefficients are
+ * derived from OpenRQ once per schema and then applied with the table-driven
+ * kernels in {@link RSUtil}, keeping the parity bit-exact with OpenRQ.
+ *
+ * The tables of a compiled schema take 32 * k * (k + m) bytes per coder, so
+ * only schemas with less than {@link #MAX_COMPILED_UNITS} units are compiled.
+ * Larger schemas are coded by running OpenRQ on every stripe, see
+ * {@link #newStripeEncoder} and {@link #newStripeDecoder}.
+ */
+@InterfaceAudience.Private
+public final class RaptorQUtil {
+
+  private RaptorQUtil() { }
+
+  /**
+   * Schemas with at least this many units (k + m) are not compiled.
+   */
+  public static final int MAX_COMPILED_UNITS = 256;
+
+  // Encode matrices per (numDataUnits, numParityUnits), never modified.
+  private static final ConcurrentMap<Long, byte[]> ENCODE_MATRICES =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Get the (k + m) x k encode matrix of the given schema, laid out like the
+   * one from {@link RSUtil#genCauchyMatrix}: identity in high position, the
+   * generator rows of the parity units below. The returned array is shared
+   * and must not be modified.
+   *
+   * @param numDataUnits k.
+   * @param numParityUnits m.
+   * @return the encode matrix.
+   */
+  public static byte[] getEncodeMatrix(int numDataUnits, int numParityUnits) {
+    Long key = ((long) numDataUnits << 32) | numParityUnits;
+    byte[] matrix = ENCODE_MATRICES.get(key);
+    if (matrix == null) {
+      matrix = genEncodeMatrix(numDataUnits, numParityUnits);
+      byte[] existing = ENCODE_MATRICES.putIfAbsent(key, matrix);
+      if (existing != null) {
+        matrix = existing;
+      }
+    }
+    return matrix;
+  }
+
+  /**
+   * Tell if a schema is coded with a compiled encode matrix, otherwise each
+   * stripe is coded with OpenRQ.
+   *
+   * @param numDataUnits k.
+   * @param numParityUnits m.
+   * @return true if the schema is compiled.
+   */
+  public static boolean isCompiled(int numDataUnits, int numParityUnits) {
+    return numDataUnits + numParityUnits < MAX_COMPILED_UNITS;
+  }
+
+  /**
+   * Get an OpenRQ encoder for a stripe of a schema that isn't compiled. The
+   * source block holds data unit i as source symbol i, and parity unit p is
+   * repair symbol k + p.
+   *
+   * @param data the k data units of the stripe, one after the other.
+   * @param unitSize the size of each unit.
+   * @return the encoder of the stripe.
+   */
+  public static SourceBlockEncoder newStripeEncoder(byte[] data,
+      int unitSize) {
+    FECParameters fecParams = FECParameters.newParameters(
+        (long) data.length, unitSize, 1);
+    return OpenRQ.newEncoder(data, fecParams).sourceBlock(0);
+  }
+
+  /**
+   * Get an OpenRQ decoder for a stripe of a schema that isn't compiled, see
+   * {@link #newStripeEncoder}. The data units are recovered into
+   * {@link ArrayDataDecoder#dataArray()}.
+   *
+   * @param numDataUnits k.
+   * @param unitSize the size of each unit.
+   * @return the decoder of the stripe.
+   */
+  public static ArrayDataDecoder newStripeDecoder(int numDataUnits,
+      int unitSize) {
+    FECParameters fecParams = FECParameters.newParameters(
+        (long) numDataUnits * unitSize, unitSize, 1);
+    return OpenRQ.newDecoderWithZeroOverhead(fecParams);
+  }
+
+  /**
+   * Derive the encode matrix by encoding the k x k identity with OpenRQ:
+   * source symbol j is then the unit vector e_j, so byte j of repair symbol
+   * k + p is exactly the coefficient of data unit j in parity unit p.
+   */
+  private static byte[] genEncodeMatrix(int k, int m) {
+    byte[] identity = new byte[k * k];
+    for (int i = 0; i < k; i++) {
+      identity[k * i + i] = 1;
+    }
+
+    SourceBlockEncoder sbe = newStripeEncoder(identity, k);
+
+    byte[] a = new byte[(k + m) * k];
+    System.arraycopy(identity, 0, a, 0, k * k);
+    for (int p = 0; p < m; p++) {
+      sbe.repairPacket(k + p).symbols().get(a, k * (k + p), k);
+    }
+
+    return a;
+  }
+}
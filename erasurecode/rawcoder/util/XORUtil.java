@@ -0,0 +1,184 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder.util;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Bulk XOR kernels, used by XOR coder and the HitchHiker piggybacks.
+ *
+ * Heap arrays are processed in small tiles: the output tile stays in L1 while
+ * every input is folded into it with a plain element-wise loop, which the JIT
+ * auto-vectorizes. Buffers go 8 bytes at a time with absolute
+ * getLong/putLong on native-order views, keeping the running word in a
+ * register across all inputs. None of the methods move buffer positions.
+ */
+@InterfaceAudience.Private
+public final class XORUtil {
+
+  private XORUtil() { }
+
+  // Bytes of output folded per pass over the inputs, well within L1
+  private static final int TILE_SIZE = 8 * 1024;
+
+  /**
+   * Set output to the XOR of all non-null inputs, or to zeros if there are
+   * none.
+   *
+   * @param inputs input arrays, null ones are skipped.
+   * @param inputOffsets offsets of the data in the inputs.
+   * @param dataLen number of bytes to process.
+   * @param output output array.
+   * @param outputOffset offset of the data in the output.
+   */
+  public static void xorData(byte[][] inputs, int[] inputOffsets,
+      int dataLen, byte[] output, int outputOffset) {
+    for (int tile = 0; tile < dataLen; tile += TILE_SIZE) {
+      int tileLen = Math.min(TILE_SIZE, dataLen - tile);
+      int oPos = outputOffset + tile;
+      boolean first = true;
+      for (int j = 0; j < inputs.length; j++) {
+        byte[] input = inputs[j];
+        if (input == null) {
+          continue;
+        }
+        int iPos = inputOffsets[j] + tile;
+        if (first) {
+          System.arraycopy(input, iPos, output, oPos, tileLen);
+          first = false;
+        } else {
+          for (int i = 0; i < tileLen; i++) {
+            output[oPos + i] ^= input[iPos + i];
+          }
+        }
+      }
+      if (first) {
+        Arrays.fill(output, oPos, oPos + tileLen, (byte) 0);
+      }
+    }
+  }
+
+  /**
+   * Set output to the XOR of all non-null inputs, reading from the inputs'
+   * positions and writing from the output's position.
+   *
+   * @param inputs input buffers, null ones are skipped.
+   * @param dataLen number of bytes to process.
+   * @param output output buffer.
+   */
+  public static void xorData(ByteBuffer[] inputs, int dataLen,
+      ByteBuffer output) {
+    if (output.hasArray() && allHaveArray(inputs)) {
+      byte[][] arrays = new byte[inputs.length][];
+      int[] offsets = new int[inputs.length];
+      for (int j = 0; j < inputs.length; j++) {
+        if (inputs[j] != null) {
+          arrays[j] = inputs[j].array();
+          offsets[j] = inputs[j].arrayOffset() + inputs[j].position();
+        }
+      }
+      xorData(arrays, offsets, dataLen, output.array(),
+          output.arrayOffset() + output.position());
+      return;
+    }
+
+    int numInputs = 0;
+    ByteBuffer[] words = new ByteBuffer[inputs.length];
+    int[] positions = new int[inputs.length];
+    for (ByteBuffer input : inputs) {
+      if (input != null) {
+        positions[numInputs] = input.position();
+        words[numInputs++] = input.duplicate().order(ByteOrder.nativeOrder());
+      }
+    }
+    ByteBuffer out = output.duplicate().order(ByteOrder.nativeOrder());
+    int oPos = output.position();
+    int extra = dataLen - dataLen % 8;
+
+    for (int i = 0; i < extra; i += 8) {
+      long acc = 0;
+      for (int j = 0; j < numInputs; j++) {
+        acc ^= words[j].getLong(positions[j] + i);
+      }
+      out.putLong(oPos + i, acc);
+    }
+    for (int i = extra; i < dataLen; i++) {
+      byte acc = 0;
+      for (int j = 0; j < numInputs; j++) {
+        acc ^= words[j].get(positions[j] + i);
+      }
+      out.put(oPos + i, acc);
+    }
+  }
+
+  /**
+   * XOR len bytes of src into dst.
+   *
+   * @param src source array.
+   * @param srcOffset offset in the source.
+   * @param dst destination array.
+   * @param dstOffset offset in the destination.
+   * @param len number of bytes to process.
+   */
+  public static void xorInto(byte[] src, int srcOffset, byte[] dst,
+      int dstOffset, int len) {
+    for (int i = 0; i < len; i++) {
+      dst[dstOffset + i] ^= src[srcOffset + i];
+    }
+  }
+
+  /**
+   * XOR len bytes of src, from its position, into dst, from its position.
+   *
+   * @param src source buffer.
+   * @param dst destination buffer.
+   * @param len number of bytes to process.
+   */
+  public static void xorInto(ByteBuffer src, ByteBuffer dst, int len) {
+    if (src.hasArray() && dst.hasArray()) {
+      xorInto(src.array(), src.arrayOffset() + src.position(),
+          dst.array(), dst.arrayOffset() + dst.position(), len);
+      return;
+    }
+
+    ByteBuffer in = src.duplicate().order(ByteOrder.nativeOrder());
+    ByteBuffer out = dst.duplicate().order(ByteOrder.nativeOrder());
+    int iPos = src.position();
+    int oPos = dst.position();
+    int extra = len - len % 8;
+    for (int i = 0; i < extra; i += 8) {
+      out.putLong(oPos + i, out.getLong(oPos + i) ^ in.getLong(iPos + i));
+    }
+    for (int i = extra; i < len; i++) {
+      out.put(oPos + i, (byte) (out.get(oPos + i) ^ in.get(iPos + i)));
+    }
+  }
+
+  private static boolean allHaveArray(ByteBuffer[] buffers) {
+    for (ByteBuffer buffer : buffers) {
+      if (buffer != null && !buffer.hasArray()) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
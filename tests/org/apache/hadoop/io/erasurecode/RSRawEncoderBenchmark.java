@@ -0,0 +1,79 @@
+package org.apache.hadoop.io.erasurecode;
+
+import org.apache.hadoop.io.erasurecode.rawcoder.RSRawEncoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureEncoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.RSUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Measures single-threaded RS encode throughput for heap arrays and direct
+ * buffers over a range of cell sizes. To measure the Vector API kernel, put
+ * the compiled erasurecode-vector classes on the classpath and run with
+ * --add-modules jdk.incubator.vector; run with
+ * -Dio.erasurecode.rs.vector.kernel.enabled=false for the scalar one.
+ *
+ * Usage: RSRawEncoderBenchmark [k] [m] [seconds]
+ */
+public final class RSRawEncoderBenchmark {
+
+  private static final int[] CELL_SIZES = {
+      64 * 1024, 256 * 1024, 1024 * 1024, 4 * 1024 * 1024 };
+
+  public static void main(String[] args) throws Exception {
+    int k = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+    int m = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 2;
+
+    RawErasureEncoder enc = new RSRawEncoder(new ErasureCoderOptions(k, m));
+    System.out.println("RS(" + k + "," + m + ") vectorKernel=" +
+        RSUtil.isVectorKernelLoaded());
+    for (int cell : CELL_SIZES) {
+      double heap = run(enc, k, m, cell, false, seconds);
+      double direct = run(enc, k, m, cell, true, seconds);
+      System.out.printf(
+          "cell=%5dKB  heap %8.1f MB/s  direct %8.1f MB/s  direct/heap %.2f%n",
+          cell / 1024, heap, direct, direct / heap);
+    }
+  }
+
+  /**
+   * @return data encoded per second, in MB.
+   */
+  private static double run(RawErasureEncoder enc, int k, int m, int cell,
+      boolean direct, double seconds) throws Exception {
+    Random rnd = new Random(cell);
+    ByteBuffer[] data = new ByteBuffer[k];
+    for (int i = 0; i < k; i++) {
+      byte[] b = new byte[cell];
+      rnd.nextBytes(b);
+      data[i] = direct ? ByteBuffer.allocateDirect(cell) : ByteBuffer.allocate(cell);
+      data[i].put(b).flip();
+    }
+    ByteBuffer[] parity = new ByteBuffer[m];
+    for (int i = 0; i < m; i++) {
+      parity[i] = direct ? ByteBuffer.allocateDirect(cell) : ByteBuffer.allocate(cell);
+    }
+
+    // Warm up, then measure
+    for (int n = 0; n < 20; n++) {
+      encodeOnce(enc, data, parity);
+    }
+    long start = System.nanoTime();
+    long deadline = start + (long) (seconds * 1e9);
+    long bytes = 0;
+    while (System.nanoTime() < deadline) {
+      encodeOnce(enc, data, parity);
+      bytes += (long) cell * k;
+    }
+    return bytes / ((System.nanoTime() - start) / 1e9) / (1024 * 1024);
+  }
+
+  private static void encodeOnce(RawErasureEncoder enc, ByteBuffer[] data,
+      ByteBuffer[] parity) throws Exception {
+    for (ByteBuffer d : data) d.rewind();
+    for (ByteBuffer p : parity) p.clear();
+    enc.encode(data, parity);
+  }
+}
@@ -0,0 +1,89 @@
+package org.apache.hadoop.io.erasurecode;
+
+import org.apache.hadoop.io.erasurecode.rawcoder.util.RSUtil;
+
+import java.util.Random;
+
+/**
+ * Compares the untiled loop order of RSUtil.encodeData (every input streamed
+ * once per output) with cache-sized tiles, for cell sizes from 64KB to 4MB.
+ * Results are checked to be identical across tile sizes.
+ *
+ * Usage: RSUtilTilingBenchmark [k] [m] [seconds]
+ */
+public final class RSUtilTilingBenchmark {
+
+  private static final int[] CELL_SIZES = {
+      64 * 1024, 256 * 1024, 1024 * 1024, 4 * 1024 * 1024 };
+  private static final int[] TILE_SIZES = { 8 * 1024, 16 * 1024, 64 * 1024 };
+
+  public static void main(String[] args) {
+    int k = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+    int m = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+    double seconds = args.length > 2 ? Double.parseDouble(args[2]) : 1;
+    Random rnd = new Random(0);
+
+    byte[] matrix = new byte[m * k];
+    rnd.nextBytes(matrix);
+    byte[] gfTables = new byte[m * k * 32];
+    RSUtil.initTables(k, m, matrix, 0, gfTables);
+
+    int autoTile = RSUtil.getTileSize(k + m);
+    System.out.println("RS(" + k + "," + m + ") vectorKernel=" +
+        RSUtil.isVectorKernelLoaded() + " autoTile=" + autoTile);
+    for (int cell : CELL_SIZES) {
+      byte[][] inputs = new byte[k][cell];
+      for (byte[] in : inputs) rnd.nextBytes(in);
+      byte[][] outputs = new byte[m][cell];
+      byte[][] reference = null;
+
+      StringBuilder line = new StringBuilder(
+          String.format("cell=%5dKB", cell / 1024));
+      int[] tiles = new int[TILE_SIZES.length + 2];
+      tiles[0] = cell;
+      tiles[1] = autoTile;
+      System.arraycopy(TILE_SIZES, 0, tiles, 2, TILE_SIZES.length);
+      for (int t = 0; t < tiles.length; t++) {
+        double mbps = run(gfTables, inputs, outputs, tiles[t], seconds);
+        if (reference == null) {
+          reference = new byte[m][];
+          for (int i = 0; i < m; i++) reference[i] = outputs[i].clone();
+        } else {
+          for (int i = 0; i < m; i++) {
+            if (!java.util.Arrays.equals(reference[i], outputs[i])) {
+              throw new AssertionError("Tile " + tiles[t] + " output mismatch");
+            }
+          }
+        }
+        String name = t == 0 ? "untiled" : t == 1 ? "auto" :
+            (tiles[t] / 1024) + "KB";
+        line.append(String.format("  %s %7.1f MB/s", name, mbps));
+      }
+      System.out.println(line);
+    }
+  }
+
+  private static double run(byte[] gfTables, byte[][] inputs,
+      byte[][] outputs, int tileSize, double seconds) {
+    int len = inputs[0].length;
+    int[] inOffs = new int[inputs.length];
+    int[] outOffs = new int[outputs.length];
+    for (int n = 0; n < 5; n++) {
+      encodeOnce(gfTables, len, inputs, inOffs, outputs, outOffs, tileSize);
+    }
+    long start = System.nanoTime();
+    long deadline = start + (long) (seconds * 1e9);
+    long bytes = 0;
+    while (System.nanoTime() < deadline) {
+      encodeOnce(gfTables, len, inputs, inOffs, outputs, outOffs, tileSize);
+      bytes += (long) len * inputs.length;
+    }
+    return bytes / ((System.nanoTime() - start) / 1e9) / (1024 * 1024);
+  }
+
+  private static void encodeOnce(byte[] gfTables, int len, byte[][] inputs,
+      int[] inOffs, byte[][] outputs, int[] outOffs, int tileSize) {
+    for (byte[] out : outputs) java.util.Arrays.fill(out, (byte) 0);
+    RSUtil.encodeData(gfTables, len, inputs, inOffs, outputs, outOffs, tileSize);
+  }
+}
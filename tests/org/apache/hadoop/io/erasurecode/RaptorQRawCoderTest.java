@@ -1,10 +1,18 @@
 package org.apache.hadoop.io.erasurecode;
 
+import org.apache.hadoop.io.erasurecode.rawcoder.DecodingPlanCache;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSRawDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSRawEncoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.RaptorQRawEncoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.RaptorQRawDecoder;
 
+import net.fec.openrq.OpenRQ;
+import net.fec.openrq.encoder.SourceBlockEncoder;
+import net.fec.openrq.parameters.FECParameters;
+
 import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 public final class RaptorQRawCoderTest {
 
@@ -13,6 +21,18 @@ public final class RaptorQRawCoderTest {
   public static void main(String[] args) throws Exception {
     testByteArrayPath(6, 3, 1024, 2);
     testByteBufferPath(6, 3, 2048, 3);
+    testParityMatchesOpenRQ(6, 3, 1024);
+    testParityMatchesOpenRQ(10, 4, 1021);
+    testRepeatedPatterns(6, 3, 512);
+    // Largest compiled schema, and schemas coded by OpenRQ per stripe
+    testParityMatchesOpenRQ(250, 5, 64);
+    testParityMatchesOpenRQ(250, 10, 64);
+    testParityMatchesOpenRQ(300, 4, 33);
+    testUncompiledSchemaEncoder(250, 10, 64);
+    testByteArrayPath(250, 10, 64, 3);
+    testByteBufferPath(250, 10, 64, 3);
+    testUncompiledSchemaDataErasures(250, 10, 64);
+    testRSPlanCache(12, 4, 16);
     System.out.println("OK: RaptorQRawCoder tests passed");
   }
 
@@ -84,6 +104,7 @@ public final class RaptorQRawCoderTest {
     ByteBuffer[] parity = new ByteBuffer[m];
     for (int i = 0; i < m; i++) parity[i] = ByteBuffer.allocate(T);
     enc.encode(data, parity);
+    for (int i = 0; i < k; i++) data[i].position(0);
 
     // Build inputs (data + parity)
     ByteBuffer[] inputs = new ByteBuffer[k + m];
@@ -130,6 +151,196 @@ public final class RaptorQRawCoderTest {
     }
   }
 
+  private static void testParityMatchesOpenRQ(int k, int m, int T) throws Exception {
+    ErasureCoderOptions opts = new ErasureCoderOptions(k, m);
+    RaptorQRawEncoder enc = new RaptorQRawEncoder(opts);
+
+    byte[][] data = new byte[k][T];
+    for (int i = 0; i < k; i++) RNG.nextBytes(data[i]);
+    byte[][] parity = new byte[m][T];
+    enc.encode(data, parity);
+
+    // Reference: repair symbols k..k+m-1 of a single OpenRQ source block
+    byte[] contiguous = new byte[k * T];
+    for (int i = 0; i < k; i++) System.arraycopy(data[i], 0, contiguous, i * T, T);
+    FECParameters fecParams = FECParameters.newParameters((long) contiguous.length, T, 1);
+    SourceBlockEncoder sbe = OpenRQ.newEncoder(contiguous, fecParams).sourceBlock(0);
+    for (int p = 0; p < m; p++) {
+      byte[] expected = new byte[T];
+      sbe.repairPacket(k + p).symbols().get(expected);
+      assertArrayEq(expected, 0, parity[p], 0, T, "OpenRQ parity " + p);
+    }
+  }
+
+  private static void testUncompiledSchemaEncoder(int k, int m, int T) throws Exception {
+    ErasureCoderOptions opts = new ErasureCoderOptions(k, m);
+    RaptorQRawEncoder enc = new RaptorQRawEncoder(opts);
+    if (enc.supportsParityUpdate()) {
+      throw new AssertionError("Parity update supported for k+m=" + (k + m));
+    }
+
+    // Direct buffers at a non-zero position must give the byte[] parity
+    byte[][] data = new byte[k][T];
+    ByteBuffer[] inputs = new ByteBuffer[k];
+    for (int i = 0; i < k; i++) {
+      RNG.nextBytes(data[i]);
+      inputs[i] = ByteBuffer.allocateDirect(T + 3);
+      inputs[i].position(3);
+      inputs[i].put(data[i]);
+      inputs[i].position(3);
+    }
+    ByteBuffer[] outputs = new ByteBuffer[m];
+    for (int p = 0; p < m; p++) {
+      outputs[p] = ByteBuffer.allocateDirect(T + 5);
+      outputs[p].position(5);
+    }
+    enc.encode(inputs, outputs);
+
+    byte[][] parity = new byte[m][T];
+    enc.encode(data, parity);
+    for (int p = 0; p < m; p++) {
+      byte[] actual = new byte[T];
+      outputs[p].position(5);
+      outputs[p].get(actual);
+      assertArrayEq(parity[p], 0, actual, 0, T, "direct parity " + p);
+    }
+  }
+
+  private static void testUncompiledSchemaDataErasures(int k, int m, int T) throws Exception {
+    ErasureCoderOptions opts = new ErasureCoderOptions(k, m);
+    RaptorQRawEncoder enc = new RaptorQRawEncoder(opts);
+    RaptorQRawDecoder dec = new RaptorQRawDecoder(opts);
+
+    byte[][] data = new byte[k][T];
+    for (int i = 0; i < k; i++) RNG.nextBytes(data[i]);
+    byte[][] parity = new byte[m][T];
+    enc.encode(data, parity);
+
+    // m data units erased, decoded from all the parity, at non-zero offsets
+    int off = 7;
+    byte[][] inputs = new byte[k + m][];
+    int[] inputOffsets = new int[k + m];
+    for (int i = 0; i < k + m; i++) {
+      if (i >= m) {
+        inputs[i] = new byte[off + T];
+        System.arraycopy(i < k ? data[i] : parity[i - k], 0, inputs[i], off, T);
+        inputOffsets[i] = off;
+      }
+    }
+    int[] erasedIndexes = new int[m];
+    for (int j = 0; j < m; j++) erasedIndexes[j] = j;
+    byte[][] outputs = new byte[m][off + T];
+    int[] outputOffsets = new int[m];
+    Arrays.fill(outputOffsets, off);
+    dec.decode(toBuffers(inputs, inputOffsets, T), erasedIndexes, toBuffers(outputs, outputOffsets, T));
+
+    for (int j = 0; j < m; j++) {
+      assertArrayEq(data[j], 0, outputs[j], off, T, "data erasure " + j);
+    }
+  }
+
+  private static void testRepeatedPatterns(int k, int m, int T) throws Exception {
+    ErasureCoderOptions opts = new ErasureCoderOptions(k, m);
+    RaptorQRawEncoder enc = new RaptorQRawEncoder(opts);
+    RaptorQRawDecoder dec = new RaptorQRawDecoder(opts);
+    // Data only, mixed, parity only; interleaved so cached plans get reused
+    int[][] patterns = { {0, 2}, {1, k + 1}, {k, k + 2}, {k + m - 1} };
+    DecodingPlanCache cache = RaptorQRawDecoder.getDecodingPlanCache();
+    long hitsBefore = cache.getHits();
+
+    for (int round = 0; round < 3; round++) {
+      for (int[] erasedIndexes : patterns) {
+        byte[][] data = new byte[k][T];
+        for (int i = 0; i < k; i++) RNG.nextBytes(data[i]);
+        byte[][] parity = new byte[m][T];
+        enc.encode(data, parity);
+
+        byte[][] inputs = new byte[k + m][];
+        for (int i = 0; i < k; i++) inputs[i] = data[i];
+        for (int i = 0; i < m; i++) inputs[k + i] = parity[i];
+        for (int idx : erasedIndexes) inputs[idx] = null;
+
+        byte[][] outputs = new byte[erasedIndexes.length][T];
+        // A fresh decoder must share the plans of the first one
+        (round == 1 ? new RaptorQRawDecoder(opts) : dec)
+            .decode(inputs, erasedIndexes, outputs);
+
+        for (int j = 0; j < erasedIndexes.length; j++) {
+          int idx = erasedIndexes[j];
+          byte[] expected = idx < k ? data[idx] : parity[idx - k];
+          assertArrayEq(expected, 0, outputs[j], 0, T, "repeated pattern unit " + idx);
+        }
+      }
+    }
+    if (cache.getHits() - hitsBefore < 2 * patterns.length) {
+      throw new AssertionError("Repeated patterns not served from plan cache");
+    }
+  }
+
+  private static void testRSPlanCache(int k, int m, int T) throws Exception {
+    ErasureCoderOptions opts = new ErasureCoderOptions(k, m);
+    RSRawEncoder enc = new RSRawEncoder(opts);
+    RSRawDecoder dec = new RSRawDecoder(opts);
+    DecodingPlanCache cache = RSRawDecoder.getDecodingPlanCache();
+
+    byte[][] data = new byte[k][T];
+    for (int i = 0; i < k; i++) RNG.nextBytes(data[i]);
+    byte[][] parity = new byte[m][T];
+    enc.encode(data, parity);
+
+    // A new pattern misses, then the same pattern hits, from any decoder
+    int[] pattern = {1, k + 2};
+    long hits = cache.getHits();
+    long misses = cache.getMisses();
+    decodeRS(dec, data, parity, pattern, true);
+    if (cache.getMisses() - misses != 1 || cache.getHits() != hits) {
+      throw new AssertionError("First RS decode of a pattern not a cache miss");
+    }
+    decodeRS(new RSRawDecoder(opts), data, parity, pattern, true);
+    if (cache.getHits() - hits != 1 || cache.getMisses() - misses != 1) {
+      throw new AssertionError("Repeated RS pattern not served from plan cache");
+    }
+
+    // More distinct patterns than the cache holds must evict some plans
+    long evictions = cache.getEvictions();
+    int decoded = 0;
+    for (int mask = 1; decoded <= cache.getMaxPlans(); mask++) {
+      if (Integer.bitCount(mask) > m) continue;
+      int[] erasedIndexes = new int[Integer.bitCount(mask)];
+      for (int i = 0, w = 0; i < k + m; i++) {
+        if ((mask & 1 << i) != 0) erasedIndexes[w++] = i;
+      }
+      decodeRS(dec, data, parity, erasedIndexes, false);
+      decoded++;
+    }
+    if (cache.getEvictions() == evictions) {
+      throw new AssertionError("No RS plan evicted after " + decoded + " patterns");
+    }
+    if (cache.size() > cache.getMaxPlans()) {
+      throw new AssertionError("RS plan cache holds " + cache.size() + " plans");
+    }
+  }
+
+  private static void decodeRS(RSRawDecoder dec, byte[][] data, byte[][] parity,
+      int[] erasedIndexes, boolean verify) throws Exception {
+    int k = data.length;
+    int T = data[0].length;
+    byte[][] inputs = new byte[k + parity.length][];
+    for (int i = 0; i < k; i++) inputs[i] = data[i];
+    for (int i = 0; i < parity.length; i++) inputs[k + i] = parity[i];
+    for (int idx : erasedIndexes) inputs[idx] = null;
+
+    byte[][] outputs = new byte[erasedIndexes.length][T];
+    dec.decode(inputs, erasedIndexes, outputs);
+    if (verify) {
+      for (int j = 0; j < erasedIndexes.length; j++) {
+        int idx = erasedIndexes[j];
+        byte[] expected = idx < k ? data[idx] : parity[idx - k];
+        assertArrayEq(expected, 0, outputs[j], 0, T, "RS pattern unit " + idx);
+      }
+    }
+  }
+
   private static void assertArrayEq(byte[] a, int ao, byte[] b, int bo, int len, String msg) {
     for (int i = 0; i < len; i++) {
       if (a[ao + i] != b[bo + i]) throw new AssertionError("Mismatch in " + msg + " at byte " + i);
@@ -142,6 +353,14 @@ public final class RaptorQRawCoderTest {
     }
   }
 
+  private static ByteBuffer[] toBuffers(byte[][] arr, int[] offsets, int len) {
+    ByteBuffer[] bufs = new ByteBuffer[arr.length];
+    for (int i = 0; i < arr.length; i++) {
+      if (arr[i] != null) bufs[i] = ByteBuffer.wrap(arr[i], offsets[i], len);
+    }
+    return bufs;
+  }
+
   private static ByteBuffer[] toBuffers(byte[][] arr) {
     ByteBuffer[] bufs = new ByteBuffer[arr.length];
     for (int i = 0; i < arr.length; i++) bufs[i] = ByteBuffer.wrap(arr[i]);
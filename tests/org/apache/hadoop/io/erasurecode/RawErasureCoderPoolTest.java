@@ -0,0 +1,210 @@
+package org.apache.hadoop.io.erasurecode;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.erasurecode.coder.ErasureCoder;
+import org.apache.hadoop.io.erasurecode.coder.ErasureCodingStep;
+import org.apache.hadoop.io.erasurecode.coder.ErasureDecoder;
+import org.apache.hadoop.io.erasurecode.coder.RSErasureDecoder;
+import org.apache.hadoop.io.erasurecode.coder.RSErasureEncoder;
+import org.apache.hadoop.io.erasurecode.coder.RaptorQDecoder;
+import org.apache.hadoop.io.erasurecode.coder.RaptorQEncoder;
+import org.apache.hadoop.io.erasurecode.coder.XORErasureDecoder;
+import org.apache.hadoop.io.erasurecode.coder.XORErasureEncoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureEncoder;
+
+/**
+ * Checks the borrow/return semantics of the raw coder pool in
+ * {@link CodecUtil}: coders are reused per (codec, coder, options), never
+ * handed to two borrowers at once, and erasure coders give theirs back on
+ * release.
+ */
+public final class RawErasureCoderPoolTest {
+
+  public static void main(String[] args) throws Exception {
+    Configuration conf = new Configuration();
+    RawErasureCoderPool<RawErasureEncoder> encoders =
+        CodecUtil.getRawEncoderPool();
+    RawErasureCoderPool<RawErasureDecoder> decoders =
+        CodecUtil.getRawDecoderPool();
+    ErasureCoderOptions rs63 = new ErasureCoderOptions(6, 3);
+
+    RawErasureEncoder e1 = CodecUtil.borrowRawEncoder(conf,
+        ErasureCodeConstants.RS_CODEC_NAME, rs63);
+    RawErasureEncoder e2 = CodecUtil.borrowRawEncoder(conf,
+        ErasureCodeConstants.RS_CODEC_NAME, rs63);
+    check(e1 != e2, "one encoder lent to two borrowers");
+
+    CodecUtil.returnRawEncoder(e1);
+    CodecUtil.returnRawEncoder(e1); // ignored, already returned
+    check(encoders.getNumIdle() == 1, "double return pooled twice");
+    long hits = encoders.getHits();
+    RawErasureEncoder e3 = CodecUtil.borrowRawEncoder(conf,
+        ErasureCodeConstants.RS_CODEC_NAME, rs63);
+    check(e3 == e1, "returned encoder not reused");
+    check(encoders.getHits() == hits + 1, "hit not counted");
+
+    // Other options or codec must not share coders
+    CodecUtil.returnRawEncoder(e3);
+    RawErasureEncoder e4 = CodecUtil.borrowRawEncoder(conf,
+        ErasureCodeConstants.RS_CODEC_NAME,
+        new ErasureCoderOptions(6, 3, true, false));
+    check(e4 != e1, "encoder shared across options");
+    RawErasureEncoder e5 = CodecUtil.borrowRawEncoder(conf,
+        ErasureCodeConstants.RAPTORQ_CODEC_NAME, rs63);
+    check(e5 != e1, "encoder shared across codecs");
+    CodecUtil.returnRawEncoder(e2);
+    CodecUtil.returnRawEncoder(e4);
+    CodecUtil.returnRawEncoder(e5);
+
+    RawErasureDecoder d1 = CodecUtil.borrowRawDecoder(conf,
+        ErasureCodeConstants.RAPTORQ_CODEC_NAME, rs63);
+    CodecUtil.returnRawDecoder(d1);
+    check(CodecUtil.borrowRawDecoder(conf,
+        ErasureCodeConstants.RAPTORQ_CODEC_NAME, rs63) == d1,
+        "returned decoder not reused");
+    CodecUtil.returnRawDecoder(d1);
+    check(decoders.getNumIdle() == 1, "decoder not pooled");
+
+    // Erasure coders borrow on their first step, share the encoder among
+    // their steps and return it on release, not on finish
+    encoders.clear();
+    check(encoders.getNumIdle() == 0, "clear left idle coders");
+    RaptorQEncoder coder = new RaptorQEncoder(rs63);
+    coder.setConf(conf);
+    ErasureCodingStep s1 = coder.calculateCoding(newBlockGroup(6, 3));
+    ErasureCodingStep s2 = coder.calculateCoding(newBlockGroup(6, 3));
+    s1.finish();
+    s2.finish();
+    check(encoders.getNumIdle() == 0, "step returned the coder's encoder");
+    coder.release();
+    check(encoders.getNumIdle() == 1, "release did not return the encoder");
+
+    // Releasing twice must not return an encoder lent out again since
+    hits = encoders.getHits();
+    RaptorQEncoder other = new RaptorQEncoder(rs63);
+    other.setConf(conf);
+    other.calculateCoding(newBlockGroup(6, 3)).finish();
+    check(encoders.getHits() == hits + 1, "coder did not reuse an encoder");
+    coder.release();
+    check(encoders.getNumIdle() == 0, "double release returned twice");
+    other.release();
+    check(encoders.getNumIdle() == 1, "release did not return the encoder");
+
+    // The same holds for the other coders
+    for (ErasureCoder c : new ErasureCoder[] {
+        new RSErasureEncoder(rs63), new RSErasureDecoder(rs63),
+        new XORErasureEncoder(rs63), new XORErasureDecoder(rs63),
+        new RaptorQDecoder(rs63)}) {
+      encoders.clear();
+      decoders.clear();
+      c.setConf(conf);
+      ECBlockGroup group = newBlockGroup(6, 3);
+      if (c instanceof ErasureDecoder) {
+        group.getDataBlocks()[0].setErased(true);
+      }
+      c.calculateCoding(group).finish();
+      check(encoders.getNumIdle() + decoders.getNumIdle() == 0,
+          c.getClass().getSimpleName() + " step returned its coder");
+      c.release();
+      c.release();
+      check(encoders.getNumIdle() + decoders.getNumIdle() == 1,
+          c.getClass().getSimpleName() + " release did not return its coder");
+    }
+
+    testFallback();
+    testEvictionReleasesUnlocked();
+
+    System.out.println("OK: raw coder pool tests passed");
+  }
+
+  /**
+   * Borrowing falls back over the configured raw coders the same way as
+   * creating: unknown and disabled native coders are skipped.
+   */
+  private static void testFallback() {
+    ErasureCoderOptions rs63 = new ErasureCoderOptions(6, 3);
+    Configuration conf = new Configuration();
+    conf.set(CodecUtil.IO_ERASURECODE_CODEC_RS_RAWCODERS_KEY,
+        "no_such_coder,rs_native,rs_java");
+    conf.setBoolean(CodecUtil.IO_ERASURECODE_CODEC_NATIVE_ENABLED_KEY, false);
+
+    RawErasureEncoder created = CodecUtil.createRawEncoder(conf,
+        ErasureCodeConstants.RS_CODEC_NAME, rs63);
+    RawErasureEncoder borrowed = CodecUtil.borrowRawEncoder(conf,
+        ErasureCodeConstants.RS_CODEC_NAME, rs63);
+    check(created.getClass() == borrowed.getClass(),
+        "borrowed and created encoders differ");
+    RawErasureDecoder decoder = CodecUtil.borrowRawDecoder(conf,
+        ErasureCodeConstants.RS_CODEC_NAME, rs63);
+    check(decoder != null, "no decoder after fallback");
+    CodecUtil.returnRawEncoder(borrowed);
+    CodecUtil.returnRawDecoder(decoder);
+
+    conf.set(CodecUtil.IO_ERASURECODE_CODEC_RS_RAWCODERS_KEY,
+        "no_such_coder,rs_native");
+    try {
+      CodecUtil.borrowRawEncoder(conf, ErasureCodeConstants.RS_CODEC_NAME,
+          rs63);
+      throw new AssertionError("borrowed an encoder without a usable coder");
+    } catch (IllegalArgumentException expected) {
+      // no coder left to fall back to
+    }
+  }
+
+  /**
+   * Coders of an evicted key must be released with the pool unlocked: the
+   * releaser asks another thread to read the pool, which would block on it.
+   */
+  private static void testEvictionReleasesUnlocked() throws Exception {
+    final RawErasureCoderPool<?>[] holder = new RawErasureCoderPool<?>[1];
+    final int[] released = new int[1];
+    RawErasureCoderPool<Object> pool = new RawErasureCoderPool<>(1, 2,
+        coder -> {
+          Thread reader = new Thread(() -> holder[0].getNumIdle());
+          reader.start();
+          try {
+            reader.join(10000);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          check(!reader.isAlive(), "coder released with the pool locked");
+          released[0]++;
+        });
+    holder[0] = pool;
+
+    RawErasureCoderPool.Key k1 = new RawErasureCoderPool.Key("rs", "a",
+        new ErasureCoderOptions(6, 3));
+    RawErasureCoderPool.Key k2 = new RawErasureCoderPool.Key("rs", "b",
+        new ErasureCoderOptions(6, 3));
+    Object c1 = new Object();
+    Object c2 = new Object();
+    Object c3 = new Object();
+    pool.track(k1, c1);
+    pool.track(k1, c2);
+    pool.track(k2, c3);
+    pool.giveBack(c1);
+    pool.giveBack(c2);
+    pool.giveBack(c3); // evicts k1 and its two coders
+    check(released[0] == 2, "evicted coders not released");
+    check(pool.getNumIdle() == 1, "evicted key still pooled");
+  }
+
+  private static ECBlockGroup newBlockGroup(int k, int m) {
+    ECBlock[] data = new ECBlock[k];
+    for (int i = 0; i < k; i++) {
+      data[i] = new ECBlock(false, false);
+    }
+    ECBlock[] parity = new ECBlock[m];
+    for (int i = 0; i < m; i++) {
+      parity[i] = new ECBlock(true, false);
+    }
+    return new ECBlockGroup(data, parity);
+  }
+
+  private static void check(boolean condition, String message) {
+    if (!condition) {
+      throw new AssertionError(message);
+    }
+  }
+}
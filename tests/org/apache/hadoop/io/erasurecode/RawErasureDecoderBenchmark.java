@@ -0,0 +1,98 @@
+package org.apache.hadoop.io.erasurecode;
+
+import org.apache.hadoop.io.erasurecode.rawcoder.RSRawDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RaptorQRawDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures decode throughput of a single decoder instance shared by a growing
+ * number of threads. Each thread decodes 6+3 stripes of 64KB chunks with two
+ * erased units, alternating between two patterns.
+ *
+ * Usage: RawErasureDecoderBenchmark [rs|raptorq] [seconds] [maxThreads]
+ */
+public final class RawErasureDecoderBenchmark {
+
+  private static final int K = 6;
+  private static final int M = 3;
+  private static final int CHUNK = 64 * 1024;
+  private static final int[][] PATTERNS = { {0, 7}, {2, 4} };
+
+  public static void main(String[] args) throws Exception {
+    String coder = args.length > 0 ? args[0] : "rs";
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) :
+        Runtime.getRuntime().availableProcessors();
+
+    ErasureCoderOptions opts = new ErasureCoderOptions(K, M);
+    RawErasureDecoder dec = "raptorq".equals(coder) ?
+        new RaptorQRawDecoder(opts) : new RSRawDecoder(opts);
+
+    run(dec, 1, 1); // warm up
+    System.out.println("coder=" + coder + " chunk=" + CHUNK);
+    for (int threads = 1; threads <= maxThreads; threads *= 2) {
+      double mbps = run(dec, threads, seconds);
+      System.out.printf("threads=%d  %.1f MB/s%n", threads, mbps);
+    }
+  }
+
+  private static double run(final RawErasureDecoder dec, int threads,
+      int seconds) throws Exception {
+    final AtomicLong bytes = new AtomicLong();
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    final CountDownLatch done = new CountDownLatch(threads);
+    long start = System.nanoTime();
+    for (int t = 0; t < threads; t++) {
+      final int seed = t;
+      new Thread(() -> {
+        try {
+          bytes.addAndGet(decodeUntil(dec, deadline, new Random(seed)));
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        } finally {
+          done.countDown();
+        }
+      }).start();
+    }
+    done.await();
+    double elapsed = (System.nanoTime() - start) / 1e9;
+    return bytes.get() / elapsed / (1024 * 1024);
+  }
+
+  private static long decodeUntil(RawErasureDecoder dec, long deadline,
+      Random rnd) throws Exception {
+    ByteBuffer[] units = new ByteBuffer[K + M];
+    for (int i = 0; i < units.length; i++) {
+      byte[] b = new byte[CHUNK];
+      rnd.nextBytes(b);
+      units[i] = ByteBuffer.wrap(b);
+    }
+    ByteBuffer[] inputs = new ByteBuffer[K + M];
+    ByteBuffer[] outputs = { ByteBuffer.allocate(CHUNK),
+        ByteBuffer.allocate(CHUNK) };
+
+    long decoded = 0;
+    for (int n = 0; System.nanoTime() < deadline; n++) {
+      int[] erased = PATTERNS[n & 1];
+      for (int i = 0; i < inputs.length; i++) {
+        units[i].clear();
+        inputs[i] = units[i];
+      }
+      for (int e : erased) {
+        inputs[e] = null;
+      }
+      for (ByteBuffer out : outputs) {
+        out.clear();
+      }
+      dec.decode(inputs, erased, outputs);
+      decoded += (long) CHUNK * erased.length;
+    }
+    return decoded;
+  }
+}
@@ -0,0 +1,123 @@
+package org.apache.hadoop.io.erasurecode;
+
+import org.apache.hadoop.io.erasurecode.rawcoder.RSLegacyRawDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSLegacyRawEncoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSRawDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSRawEncoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RaptorQRawDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RaptorQRawEncoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureEncoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.XORRawDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.XORRawEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Shares one decoder instance between many threads, each decoding its own
+ * stripes with random erasure patterns, and checks every recovered unit.
+ */
+public final class RawErasureDecoderConcurrencyTest {
+
+  private static final int THREADS = 8;
+  private static final int STRIPES_PER_THREAD = 300;
+
+  public static void main(String[] args) throws Exception {
+    ErasureCoderOptions rs = new ErasureCoderOptions(6, 3);
+    stress("RS", new RSRawEncoder(rs), new RSRawDecoder(rs), 3);
+    stress("RS-legacy", new RSLegacyRawEncoder(rs), new RSLegacyRawDecoder(rs), 3);
+    // Every pattern of up to 3 erasures is recoverable for RaptorQ (6, 3)
+    stress("RaptorQ", new RaptorQRawEncoder(rs), new RaptorQRawDecoder(rs), 3);
+    ErasureCoderOptions xor = new ErasureCoderOptions(10, 1);
+    stress("XOR", new XORRawEncoder(xor), new XORRawDecoder(xor), 1);
+    System.out.println("OK: RawErasureDecoder concurrency tests passed");
+  }
+
+  private static void stress(final String name, final RawErasureEncoder enc,
+      final RawErasureDecoder dec, final int maxErasures) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < THREADS; t++) {
+        final long seed = 1000L * t + name.hashCode();
+        futures.add(pool.submit(() -> {
+          runStripes(name, enc, dec, maxErasures, new Random(seed));
+          return null;
+        }));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private static void runStripes(String name, RawErasureEncoder enc,
+      RawErasureDecoder dec, int maxErasures, Random rnd) throws Exception {
+    int k = dec.getNumDataUnits();
+    int n = k + dec.getNumParityUnits();
+    for (int s = 0; s < STRIPES_PER_THREAD; s++) {
+      int len = 1 + rnd.nextInt(4096);
+      boolean direct = rnd.nextBoolean();
+
+      byte[][] units = new byte[n][len];
+      for (int i = 0; i < k; i++) rnd.nextBytes(units[i]);
+      byte[][] parity = new byte[n - k][];
+      for (int i = k; i < n; i++) parity[i - k] = units[i];
+      byte[][] data = new byte[k][];
+      System.arraycopy(units, 0, data, 0, k);
+      enc.encode(data, parity);
+
+      int numErased = 1 + rnd.nextInt(maxErasures);
+      boolean[] erased = new boolean[n];
+      for (int e = 0; e < numErased; e++) {
+        int idx;
+        do { idx = rnd.nextInt(n); } while (erased[idx]);
+        erased[idx] = true;
+      }
+      int[] erasedIndexes = new int[numErased];
+      for (int i = 0, w = 0; i < n; i++) if (erased[i]) erasedIndexes[w++] = i;
+
+      byte[][] recovered = new byte[numErased][];
+      if (direct) {
+        ByteBuffer[] inputs = new ByteBuffer[n];
+        for (int i = 0; i < n; i++) {
+          if (!erased[i]) {
+            inputs[i] = ByteBuffer.allocateDirect(len);
+            inputs[i].put(units[i]).flip();
+          }
+        }
+        ByteBuffer[] outputs = new ByteBuffer[numErased];
+        for (int j = 0; j < numErased; j++) outputs[j] = ByteBuffer.allocateDirect(len);
+        dec.decode(inputs, erasedIndexes, outputs);
+        for (int j = 0; j < numErased; j++) {
+          recovered[j] = new byte[len];
+          outputs[j].get(recovered[j]);
+        }
+      } else {
+        byte[][] inputs = new byte[n][];
+        for (int i = 0; i < n; i++) if (!erased[i]) inputs[i] = units[i];
+        byte[][] outputs = new byte[numErased][len];
+        dec.decode(inputs, erasedIndexes, outputs);
+        recovered = outputs;
+      }
+
+      for (int j = 0; j < numErased; j++) {
+        byte[] expected = units[erasedIndexes[j]];
+        for (int b = 0; b < len; b++) {
+          if (expected[b] != recovered[j][b]) {
+            throw new AssertionError(name + ": mismatch in unit " + erasedIndexes[j]
+                + " at byte " + b + (direct ? " (direct)" : " (array)"));
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package org.apache.hadoop.io.erasurecode;
+
+import org.apache.hadoop.HadoopIllegalArgumentException;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSLegacyRawEncoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSRawEncoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RaptorQRawEncoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureEncoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.XORRawEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that updating parities from a data delta, for whole cells and for
+ * byte ranges, gives the same parities as re-encoding the full stripe.
+ */
+public final class RawErasureEncoderUpdateParityTest {
+
+  private static final Random RNG = new Random(42);
+
+  public static void main(String[] args) throws Exception {
+    ErasureCoderOptions rs = new ErasureCoderOptions(6, 3);
+    testUpdates("RS", new RSRawEncoder(rs));
+    testUpdates("RaptorQ", new RaptorQRawEncoder(rs));
+    testUpdates("XOR", new XORRawEncoder(new ErasureCoderOptions(6, 1)));
+    testUnsupported(new RSLegacyRawEncoder(rs));
+    testInvalidArguments(new RSRawEncoder(rs));
+    System.out.println("OK: RawErasureEncoder parity update tests passed");
+  }
+
+  private static void testUpdates(String name, RawErasureEncoder enc)
+      throws Exception {
+    if (!enc.supportsParityUpdate()) {
+      throw new AssertionError(name + " should support parity update");
+    }
+    int k = enc.getNumDataUnits();
+    int m = enc.getNumParityUnits();
+    int cell = 4099;
+
+    byte[][] data = new byte[k][cell];
+    for (byte[] d : data) RNG.nextBytes(d);
+    byte[][] parity = new byte[m][cell];
+    enc.encode(data, parity);
+
+    for (int round = 0; round < 20; round++) {
+      int dataIndex = RNG.nextInt(k);
+      boolean whole = round % 4 == 0;
+      int off = whole ? 0 : RNG.nextInt(cell);
+      int len = whole ? cell : 1 + RNG.nextInt(cell - off);
+      byte[] oldRange = Arrays.copyOfRange(data[dataIndex], off, off + len);
+      byte[] newRange = new byte[len];
+      RNG.nextBytes(newRange);
+      System.arraycopy(newRange, 0, data[dataIndex], off, len);
+
+      switch (round % 3) {
+      case 0: {
+        int[] parityOffsets = new int[m];
+        Arrays.fill(parityOffsets, off);
+        // Ranges at non-zero offsets in the old/new arrays too
+        byte[] oldArr = new byte[len + 5];
+        System.arraycopy(oldRange, 0, oldArr, 5, len);
+        enc.updateParity(dataIndex, oldArr, 5, newRange, 0, len, parity,
+            parityOffsets);
+        break;
+      }
+      default: {
+        boolean direct = round % 3 == 2;
+        ByteBuffer[] parityBufs = new ByteBuffer[m];
+        for (int p = 0; p < m; p++) {
+          parityBufs[p] = toBuffer(parity[p], direct);
+          parityBufs[p].position(off);
+        }
+        ByteBuffer oldBuf = toBuffer(oldRange, direct);
+        ByteBuffer newBuf = toBuffer(newRange, direct);
+        enc.updateParity(dataIndex, oldBuf, newBuf, parityBufs);
+        if (oldBuf.remaining() != 0 || newBuf.remaining() != 0) {
+          throw new AssertionError(name + ": data buffers not consumed");
+        }
+        for (int p = 0; p < m; p++) {
+          if (parityBufs[p].position() != off) {
+            throw new AssertionError(name + ": parity position moved");
+          }
+          parityBufs[p].position(0);
+          parityBufs[p].get(parity[p]);
+        }
+      }
+      }
+
+      byte[][] expected = new byte[m][cell];
+      enc.encode(data, expected);
+      for (int p = 0; p < m; p++) {
+        if (!Arrays.equals(expected[p], parity[p])) {
+          throw new AssertionError(name + ": parity " + p + " wrong after" +
+              " updating unit " + dataIndex + " range " + off + "+" + len);
+        }
+      }
+    }
+  }
+
+  private static void testUnsupported(RawErasureEncoder enc) throws Exception {
+    if (enc.supportsParityUpdate()) {
+      throw new AssertionError("RS-legacy should not support parity update");
+    }
+    try {
+      enc.updateParity(0, new byte[1], 0, new byte[1], 0, 1,
+          new byte[enc.getNumParityUnits()][1], new int[enc.getNumParityUnits()]);
+      throw new AssertionError("Expected UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  private static void testInvalidArguments(RawErasureEncoder enc)
+      throws Exception {
+    int m = enc.getNumParityUnits();
+    int len = 16;
+
+    // Mixed on-heap and direct buffers: one of oldData, newData or the
+    // last parity is direct, the others are on-heap
+    for (int mixed = 0; mixed < 3; mixed++) {
+      ByteBuffer[] parities = new ByteBuffer[m];
+      for (int p = 0; p < m; p++) {
+        parities[p] = toBuffer(new byte[len], mixed == 2 && p == m - 1);
+      }
+      ByteBuffer oldBuf = toBuffer(new byte[len], mixed == 0);
+      ByteBuffer newBuf = toBuffer(new byte[len], mixed == 1);
+      expectInvalid("mixed buffers " + mixed, () ->
+          enc.updateParity(0, oldBuf, newBuf, parities));
+      if (oldBuf.position() != 0 || newBuf.position() != 0) {
+        throw new AssertionError("Rejected update moved data positions");
+      }
+    }
+
+    // Negative offsets and lengths in the byte[] overload
+    byte[][] parities = new byte[m][len];
+    int[] parityOffsets = new int[m];
+    expectInvalid("negative oldOffset", () -> enc.updateParity(0,
+        new byte[len], -1, new byte[len], 0, 1, parities, parityOffsets));
+    expectInvalid("negative newOffset", () -> enc.updateParity(0,
+        new byte[len], 0, new byte[len], -1, 1, parities, parityOffsets));
+    expectInvalid("negative len", () -> enc.updateParity(0,
+        new byte[len], 0, new byte[len], 0, -1, parities, parityOffsets));
+    int[] negativeParityOffsets = new int[m];
+    negativeParityOffsets[m - 1] = -1;
+    expectInvalid("negative parity offset", () -> enc.updateParity(0,
+        new byte[len], 0, new byte[len], 0, 1, parities,
+        negativeParityOffsets));
+    expectInvalid("overflowing range", () -> enc.updateParity(0,
+        new byte[len], 1, new byte[len], 0, Integer.MAX_VALUE, parities,
+        parityOffsets));
+  }
+
+  private interface Update {
+    void run() throws Exception;
+  }
+
+  private static void expectInvalid(String what, Update update)
+      throws Exception {
+    try {
+      update.run();
+      throw new AssertionError("Expected " + what + " to be rejected");
+    } catch (HadoopIllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  private static ByteBuffer toBuffer(byte[] b, boolean direct) {
+    ByteBuffer buf = direct ? ByteBuffer.allocateDirect(b.length) :
+        ByteBuffer.allocate(b.length);
+    buf.put(b).flip();
+    return buf;
+  }
+}
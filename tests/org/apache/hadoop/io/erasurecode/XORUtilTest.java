@@ -0,0 +1,194 @@
+package org.apache.hadoop.io.erasurecode;
+
+import org.apache.hadoop.io.erasurecode.rawcoder.util.XORUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks the XORUtil kernels against a byte-by-byte XOR, for heap arrays and
+ * for heap, sliced and direct buffers at non-zero positions and offsets.
+ */
+public final class XORUtilTest {
+
+  private static final Random RNG = new Random(7);
+
+  // Around the word size and the 8KB tile of the array kernel
+  private static final int[] LENGTHS = {0, 1, 7, 8, 9, 8191, 8192, 8193, 20001};
+
+  public static void main(String[] args) throws Exception {
+    for (int len : LENGTHS) {
+      testXorDataArrays(len);
+      for (int kind = 0; kind < 4; kind++) {
+        testXorDataBuffers(len, kind);
+        testXorIntoBuffers(len, kind);
+      }
+      testXorIntoArrays(len);
+    }
+    System.out.println("OK: XORUtil tests passed");
+  }
+
+  private static void testXorDataArrays(int len) {
+    int numInputs = 5;
+    byte[][] inputs = new byte[numInputs][];
+    int[] offsets = new int[numInputs];
+    for (int j = 0; j < numInputs; j++) {
+      if (j == 1) continue; // null inputs are skipped
+      offsets[j] = RNG.nextInt(16);
+      inputs[j] = randomBytes(offsets[j] + len + 3);
+    }
+    byte[] output = randomBytes(len + 11);
+    byte[] expected = output.clone();
+    for (int i = 0; i < len; i++) {
+      byte b = 0;
+      for (int j = 0; j < numInputs; j++) {
+        if (inputs[j] != null) b ^= inputs[j][offsets[j] + i];
+      }
+      expected[6 + i] = b;
+    }
+    XORUtil.xorData(inputs, offsets, len, output, 6);
+    assertEq(expected, output, "xorData byte[] len " + len);
+
+    // No input at all gives zeros
+    byte[] zeros = randomBytes(len + 2);
+    XORUtil.xorData(new byte[2][], new int[2], len, zeros, 1);
+    for (int i = 1; i < len + 1; i++) {
+      if (zeros[i] != 0) throw new AssertionError("xorData no inputs at " + i);
+    }
+  }
+
+  private static void testXorDataBuffers(int len, int kind) {
+    int numInputs = 4;
+    byte[][] raw = new byte[numInputs][];
+    ByteBuffer[] inputs = new ByteBuffer[numInputs];
+    for (int j = 0; j < numInputs; j++) {
+      if (j == 2) continue;
+      raw[j] = randomBytes(len);
+      inputs[j] = toBuffer(raw[j], kindOf(kind, j), 3 + j);
+    }
+    byte[] before = randomBytes(len);
+    ByteBuffer output = toBuffer(before, kindOf(kind, numInputs), 5);
+    byte[] whole = snapshot(output);
+
+    XORUtil.xorData(inputs, len, output);
+
+    byte[] expected = new byte[len];
+    for (int i = 0; i < len; i++) {
+      for (int j = 0; j < numInputs; j++) {
+        if (raw[j] != null) expected[i] ^= raw[j][i];
+      }
+    }
+    checkPositions(inputs, output, 3, 5);
+    checkGuards(whole, output, len);
+    assertEq(expected, contents(output, len), "xorData buffers kind " + kind
+        + " len " + len);
+  }
+
+  private static void testXorIntoArrays(int len) {
+    byte[] src = randomBytes(len + 4);
+    byte[] dst = randomBytes(len + 9);
+    byte[] expected = dst.clone();
+    for (int i = 0; i < len; i++) expected[9 + i] ^= src[4 + i];
+    XORUtil.xorInto(src, 4, dst, 9, len);
+    assertEq(expected, dst, "xorInto byte[] len " + len);
+  }
+
+  private static void testXorIntoBuffers(int len, int kind) {
+    byte[] srcBytes = randomBytes(len);
+    byte[] dstBytes = randomBytes(len);
+    ByteBuffer src = toBuffer(srcBytes, kindOf(kind, 0), 2);
+    ByteBuffer dst = toBuffer(dstBytes, kindOf(kind, 1), 6);
+    byte[] whole = snapshot(dst);
+
+    XORUtil.xorInto(src, dst, len);
+
+    byte[] expected = new byte[len];
+    for (int i = 0; i < len; i++) expected[i] = (byte) (srcBytes[i] ^ dstBytes[i]);
+    checkPositions(new ByteBuffer[] {src}, dst, 2, 6);
+    checkGuards(whole, dst, len);
+    assertEq(expected, contents(dst, len), "xorInto buffers kind " + kind
+        + " len " + len);
+  }
+
+  /**
+   * Buffer kind of the i-th buffer: 0 all heap, 1 all heap slices with a
+   * non-zero array offset, 2 all direct, 3 heap and direct mixed.
+   */
+  private static int kindOf(int kind, int i) {
+    return kind == 3 ? i % 2 * 2 : kind;
+  }
+
+  /**
+   * Put the bytes in a buffer of the given kind at the given position, with
+   * guard bytes before and after them.
+   */
+  private static ByteBuffer toBuffer(byte[] b, int kind, int position) {
+    int capacity = position + b.length + 4;
+    ByteBuffer buf;
+    if (kind == 1) {
+      ByteBuffer outer = ByteBuffer.wrap(randomBytes(capacity + 13));
+      outer.position(13);
+      buf = outer.slice();
+    } else if (kind == 2) {
+      buf = ByteBuffer.allocateDirect(capacity);
+      buf.put(randomBytes(capacity));
+    } else {
+      buf = ByteBuffer.wrap(randomBytes(capacity));
+    }
+    buf.position(position);
+    buf.duplicate().put(b);
+    return buf;
+  }
+
+  private static void checkPositions(ByteBuffer[] inputs, ByteBuffer output,
+      int firstInputPosition, int outputPosition) {
+    for (int j = 0; j < inputs.length; j++) {
+      if (inputs[j] != null && inputs[j].position() != firstInputPosition + j) {
+        throw new AssertionError("Input " + j + " position moved");
+      }
+    }
+    if (output.position() != outputPosition) {
+      throw new AssertionError("Output position moved");
+    }
+  }
+
+  private static byte[] snapshot(ByteBuffer buf) {
+    byte[] b = new byte[buf.capacity()];
+    ByteBuffer dup = buf.duplicate();
+    dup.clear();
+    dup.get(b);
+    return b;
+  }
+
+  /**
+   * Check the bytes of the output around the written range are unchanged.
+   */
+  private static void checkGuards(byte[] before, ByteBuffer output, int len) {
+    byte[] after = snapshot(output);
+    int start = output.position();
+    for (int i = 0; i < after.length; i++) {
+      if ((i < start || i >= start + len) && after[i] != before[i]) {
+        throw new AssertionError("Output byte " + i + " outside range changed");
+      }
+    }
+  }
+
+  private static byte[] contents(ByteBuffer buf, int len) {
+    byte[] b = new byte[len];
+    buf.duplicate().get(b);
+    return b;
+  }
+
+  private static byte[] randomBytes(int len) {
+    byte[] b = new byte[len];
+    RNG.nextBytes(b);
+    return b;
+  }
+
+  private static void assertEq(byte[] expected, byte[] actual, String msg) {
+    if (!Arrays.equals(expected, actual)) {
+      throw new AssertionError("Mismatch in " + msg);
+    }
+  }
+}